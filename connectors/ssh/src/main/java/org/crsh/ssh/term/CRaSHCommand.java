@@ -25,6 +25,7 @@ import org.crsh.command.ShellSafetyFactory;
 import org.crsh.console.jline.Terminal;
 import org.crsh.console.jline.console.ConsoleReader;
 import org.apache.sshd.server.Environment;
+import org.crsh.console.History;
 import org.crsh.console.jline.JLineProcessor;
 import org.crsh.shell.Shell;
 import org.crsh.auth.AuthInfo;
@@ -74,7 +75,7 @@ public class CRaSHCommand extends AbstractCommand implements Runnable, Terminal
   public void start(ChannelSession channel, Environment env) throws IOException {
     context = new SSHContext(env);
     encoding = context.encoding != null ? context.encoding.name() : factory.encoding.name();
-    thread = new Thread(this, "CRaSH");
+    thread = factory.pluginContext.getExecutionMode().newThread(this, "CRaSH");
 
     //
     thread.start();
@@ -127,7 +128,8 @@ public class CRaSHCommand extends AbstractCommand implements Runnable, Terminal
           super.shutdown();
         }
       };
-      JLineProcessor processor = new JLineProcessor(true, shell, reader, new PrintStream(out, false, encoding), "\r\n");
+      History history = factory.pluginContext.getHistory(userName);
+      JLineProcessor processor = new JLineProcessor(true, shell, reader, new PrintStream(out, false, encoding), "\r\n", history);
       processor.run();
     } catch (java.io.InterruptedIOException e) {
       // Expected behavior because of the onExit callback in the shutdown above
@@ -136,6 +138,7 @@ public class CRaSHCommand extends AbstractCommand implements Runnable, Terminal
     } catch (Exception e) {
       log.log(Level.WARNING, "Error during execution", e);
     } finally {
+      ShellSafetyFactory.unregisterShellSafetyForThread();
       // Make sure we call it
       if (!exited.get()) {
         callback.onExit(0);
@@ -52,7 +52,7 @@ public class SSHInlineCommand extends AbstractCommand implements Runnable {
 
   public void start(ChannelSession channel, Environment environment) throws IOException {
     this.env = environment;
-    thread = new Thread(this, "CRaSH");
+    thread = pluginContext.getExecutionMode().newThread(this, "CRaSH");
     thread.start();
   }
 
@@ -19,6 +19,8 @@
 
 package org.crsh.telnet.term.console;
 
+import org.crsh.console.History;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.telnet.term.CodeType;
 import org.crsh.telnet.term.Term;
 import org.crsh.telnet.term.TermEvent;
@@ -27,7 +29,6 @@ import org.crsh.text.Screenable;
 import org.crsh.text.Style;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,7 +41,7 @@ public class ConsoleTerm implements Term {
   private final Logger log = Logger.getLogger(ConsoleTerm.class.getName());
 
   /** . */
-  private final LinkedList<CharSequence> history;
+  private final History history;
 
   /** . */
   private CharSequence historyBuffer;
@@ -58,7 +59,14 @@ public class ConsoleTerm implements Term {
   private final TermIOWriter writer;
 
   public ConsoleTerm(final TermIO io) {
-    this.history = new LinkedList<CharSequence>();
+    this(io, new History(PropertyDescriptor.HISTORY_SIZE.defaultValue));
+  }
+
+  public ConsoleTerm(final TermIO io, final History history) {
+    if (history == null) {
+      throw new NullPointerException("No null history accepted");
+    }
+    this.history = history;
     this.historyBuffer = null;
     this.historyCursor = -1;
     this.io = io;
@@ -105,7 +113,7 @@ public class ConsoleTerm implements Term {
         case UP:
         case DOWN:
           int nextHistoryCursor = historyCursor +  (type == CodeType.UP ? + 1 : -1);
-          if (nextHistoryCursor >= -1 && nextHistoryCursor < history.size()) {
+          if (nextHistoryCursor >= -1 && nextHistoryCursor < history.getSize()) {
             CharSequence s = nextHistoryCursor == -1 ? historyBuffer : history.get(nextHistoryCursor);
             while (buffer.moveRight()) {
               // Do nothing
@@ -204,7 +212,7 @@ public class ConsoleTerm implements Term {
   }
 
   public void addToHistory(CharSequence line) {
-    history.addFirst(line);
+    history.add(line.toString());
   }
 
   public CharSequence getBuffer() {
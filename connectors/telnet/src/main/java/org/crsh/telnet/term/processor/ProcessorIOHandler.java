@@ -52,7 +52,7 @@ public class ProcessorIOHandler extends CRaSHPlugin<TermIOHandler> implements Te
 
   public void handle(final TermIO io, Principal user, AuthInfo authInfo) {
     Shell shell = factory.create(user, authInfo, ShellSafetyFactory.getCurrentThreadShellSafety());
-    ConsoleTerm term = new ConsoleTerm(io);
+    ConsoleTerm term = new ConsoleTerm(io, getContext().getHistory(user != null ? user.getName() : null));
     Processor processor = new Processor(term, shell);
     processor.addListener(io);
     processor.addListener(shell);
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.cli.impl.invocation;
+
+import org.crsh.cli.Argument;
+import org.crsh.cli.Command;
+import org.crsh.cli.Option;
+import org.crsh.cli.descriptor.CommandDescriptor;
+import org.crsh.cli.impl.lang.CommandFactory;
+import org.crsh.cli.impl.lang.Instance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and matching of a command line against a command descriptor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InvocationMatcherBenchmark {
+
+  public static class Cmd {
+    @Command
+    public void main(@Option(names = {"v", "verbose"}) Boolean verbose, @Argument List<String> args) {
+    }
+    @Command
+    public void sub(@Option(names = {"n", "name"}) String name, @Option(names = "l") Integer limit, @Argument List<String> args) {
+    }
+  }
+
+  @Param({"", "-v a b c", "sub -n foo -l 10 a b c"})
+  public String line;
+
+  /** . */
+  private CommandDescriptor<Instance<Cmd>> descriptor;
+
+  @Setup
+  public void setup() throws Exception {
+    descriptor = CommandFactory.DEFAULT.create(Cmd.class);
+  }
+
+  @Benchmark
+  public InvocationMatch<Instance<Cmd>> parse() throws Exception {
+    return descriptor.matcher().parse(line);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.cli.impl.lang;
+
+import org.crsh.cli.Argument;
+import org.crsh.cli.Command;
+import org.crsh.cli.Option;
+import org.crsh.cli.descriptor.CommandDescriptor;
+import org.crsh.cli.impl.invocation.InvocationMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of a parsed command line to a command method, the method handle invokers used by the descriptors
+ * compared to the reflective calls they replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InvokerBenchmark {
+
+  public static class Cmd {
+    @Option(names = {"v", "verbose"})
+    public Boolean verbose;
+    @Command
+    public Object main(@Option(names = {"n", "name"}) String name, @Argument List<String> args) {
+      return name;
+    }
+  }
+
+  /** . */
+  private InvocationMatch<Instance<Cmd>> match;
+
+  /** . */
+  private Cmd cmd;
+
+  /** . */
+  private Instance<Cmd> instance;
+
+  /** . */
+  private Field field;
+
+  /** . */
+  private ClassFieldBinding binding;
+
+  /** . */
+  private Method method;
+
+  /** . */
+  private MethodHandle constructorHandle;
+
+  /** . */
+  private MethodHandle methodHandle;
+
+  /** . */
+  private Object[] args;
+
+  @Setup
+  public void setup() throws Exception {
+    CommandDescriptor<Instance<Cmd>> descriptor = CommandFactory.DEFAULT.create(Cmd.class);
+    match = descriptor.matcher().parse("-v -n foo a b c");
+    cmd = new Cmd();
+    instance = new Instance<Cmd>() {
+      public <T> T resolve(Class<T> type) {
+        return null;
+      }
+      public Cmd get() {
+        return cmd;
+      }
+    };
+    field = Cmd.class.getField("verbose");
+    binding = new ClassFieldBinding(field);
+    method = Cmd.class.getMethod("main", String.class, List.class);
+    constructorHandle = MethodHandles.publicLookup().findConstructor(Cmd.class, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+    methodHandle = MethodHandles.publicLookup().unreflect(method).asSpreader(Object[].class, 2).asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    args = new Object[]{"foo", Arrays.asList("a", "b", "c")};
+  }
+
+  /**
+   * The complete dispatch of a parsed line: field and argument binding followed by the method invocation.
+   */
+  @Benchmark
+  public Object invoke() throws Exception {
+    return match.invoke(instance);
+  }
+
+  @Benchmark
+  public Object constructorReflective() throws Exception {
+    return Cmd.class.getConstructor().newInstance();
+  }
+
+  @Benchmark
+  public Object constructorHandle() throws Throwable {
+    return (Object)constructorHandle.invokeExact();
+  }
+
+  @Benchmark
+  public Object fieldReflective() throws Exception {
+    field.setAccessible(true);
+    field.set(cmd, Boolean.TRUE);
+    return cmd;
+  }
+
+  @Benchmark
+  public Object fieldHandle() throws Exception {
+    binding.set(cmd, null, Boolean.TRUE);
+    return cmd;
+  }
+
+  @Benchmark
+  public Object methodReflective() throws Exception {
+    return method.invoke(cmd, args);
+  }
+
+  @Benchmark
+  public Object methodHandle() throws Throwable {
+    return (Object)methodHandle.invokeExact((Object)cmd, args);
+  }
+}
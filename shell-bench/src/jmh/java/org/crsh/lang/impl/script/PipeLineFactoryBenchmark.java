@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl.script;
+
+import org.crsh.shell.impl.command.BenchmarkShell;
+import org.crsh.shell.impl.command.CRaSHSession;
+import org.crsh.shell.impl.command.spi.CommandInvoker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenization of a line and creation of its pipeline, the commands are compiled during the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PipeLineFactoryBenchmark {
+
+  @Param({"help", "thread ls | sort -f name", "thread ls | sort -f name | filter -p name:main | thread dump"})
+  public String line;
+
+  /** . */
+  private BenchmarkShell shell;
+
+  /** . */
+  private CRaSHSession session;
+
+  @Setup
+  public void setup() throws Exception {
+    shell = new BenchmarkShell().start();
+    session = shell.createSession();
+    create();
+  }
+
+  @TearDown
+  public void tearDown() {
+    session.close();
+    shell.stop();
+  }
+
+  @Benchmark
+  public CommandInvoker<Void, Object> create() throws Exception {
+    return Token.parse(line).createFactory().create(session);
+  }
+}
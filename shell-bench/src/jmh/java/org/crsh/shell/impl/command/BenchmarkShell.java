@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.lang.impl.groovy.GroovyLanguageProxy;
+import org.crsh.lang.impl.java.JavaLanguage;
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PluginLifeCycle;
+import org.crsh.plugin.SimplePluginDiscovery;
+import org.crsh.shell.ShellProcessContext;
+import org.crsh.shell.ShellResponse;
+import org.crsh.text.Screenable;
+import org.crsh.text.Style;
+import org.crsh.vfs.FS;
+import org.crsh.vfs.Path;
+import org.crsh.vfs.spi.ram.RAMDriver;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * A shell with the Groovy and Java languages and commands bound in memory, for the benchmarks.
+ */
+public class BenchmarkShell extends PluginLifeCycle {
+
+  /** . */
+  private final RAMDriver commands;
+
+  /** . */
+  private final PluginContext context;
+
+  /** . */
+  private final CRaSH crash;
+
+  public BenchmarkShell() throws Exception {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    this.commands = new RAMDriver();
+    this.context = new PluginContext(
+        new SimplePluginDiscovery(new GroovyLanguageProxy(), new JavaLanguage()),
+        new HashMap<String, Object>(),
+        new FS().mount(loader, Path.get("/crash/commands/")).mount(commands),
+        new FS().mount(loader, Path.get("/crash/")),
+        loader);
+    this.crash = new CRaSH(context);
+  }
+
+  public BenchmarkShell bind(String name, String ext, String source) {
+    commands.add(Path.get("/" + name + "." + ext), source);
+    context.refresh();
+    return this;
+  }
+
+  public BenchmarkShell start() {
+    context.refresh();
+    start(context);
+    return this;
+  }
+
+  public CRaSHSession createSession() {
+    return createSession(ShellSafetyFactory.getCurrentThreadShellSafety());
+  }
+
+  public CRaSHSession createSession(ShellSafety shellSafety) {
+    return crash.createSession(null, null, shellSafety);
+  }
+
+  /**
+   * Execute a line and discard its output.
+   *
+   * @param session the session
+   * @param line the line
+   * @return the response
+   */
+  public static ShellResponse execute(CRaSHSession session, String line) {
+    final ShellResponse[] response = new ShellResponse[1];
+    session.createProcess(line).execute(new ShellProcessContext() {
+      public void end(ShellResponse r) {
+        response[0] = r;
+      }
+      public boolean takeAlternateBuffer() {
+        return false;
+      }
+      public boolean releaseAlternateBuffer() {
+        return false;
+      }
+      public String getProperty(String propertyName) {
+        return null;
+      }
+      public String readLine(String msg, boolean echo) {
+        return null;
+      }
+      public int getWidth() {
+        return 80;
+      }
+      public int getHeight() {
+        return 40;
+      }
+      public Appendable append(char c) {
+        return this;
+      }
+      public Appendable append(CharSequence s) {
+        return this;
+      }
+      public Appendable append(CharSequence csq, int start, int end) {
+        return this;
+      }
+      public Screenable append(Style style) {
+        return this;
+      }
+      public Screenable cls() {
+        return this;
+      }
+      public void flush() throws IOException {
+      }
+    });
+    return response[0];
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.shell.ShellResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution and execution of the same command written in Groovy and in Java.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchBenchmark {
+
+  @Param({"groovy", "java"})
+  public String language;
+
+  /** . */
+  private BenchmarkShell shell;
+
+  /** . */
+  private CRaSHSession session;
+
+  @Setup
+  public void setup() throws Exception {
+    shell = new BenchmarkShell().start();
+    if ("groovy".equals(language)) {
+      shell.bind("hello", "groovy",
+          "class hello {\n" +
+          "  @Command\n" +
+          "  public String main(@Argument String name) {\n" +
+          "    return 'hello ' + name;\n" +
+          "  }\n" +
+          "}\n");
+    } else {
+      shell.bind("hello", "java",
+          "import org.crsh.cli.*;\n" +
+          "import org.crsh.command.*;\n" +
+          "public class hello extends BaseCommand {\n" +
+          "  @Command\n" +
+          "  public String main(@Argument String name) {\n" +
+          "    return \"hello \" + name;\n" +
+          "  }\n" +
+          "}\n");
+    }
+    session = shell.createSession();
+    ShellResponse response = BenchmarkShell.execute(session, "hello world");
+    if (!(response instanceof ShellResponse.Ok)) {
+      throw new AssertionError("Unexpected response " + response);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    session.close();
+    shell.stop();
+  }
+
+  @Benchmark
+  public ShellResponse dispatch() {
+    return BenchmarkShell.execute(session, "hello world");
+  }
+}
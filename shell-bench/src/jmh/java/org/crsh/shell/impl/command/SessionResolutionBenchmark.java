@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.command.ShellSafety;
+import org.crsh.shell.impl.command.spi.Command;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of a command by a session shared by several threads, in a safe session that rejects the command
+ * and in an unsafe session that resolves it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionResolutionBenchmark {
+
+  @Param({"SAFESAFE", "INTERNAL"})
+  public String mode;
+
+  /** . */
+  private BenchmarkShell shell;
+
+  /** . */
+  private CRaSHSession session;
+
+  @Setup
+  public void setup() throws Exception {
+    shell = new BenchmarkShell().start();
+    shell.bind("safety", "java",
+        "import org.crsh.cli.*;\n" +
+        "import org.crsh.command.*;\n" +
+        "public class safety extends BaseCommand {\n" +
+        "  @Command\n" +
+        "  public String main() {\n" +
+        "    return ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString();\n" +
+        "  }\n" +
+        "}\n");
+    session = shell.createSession(new ShellSafety(mode));
+    boolean resolved = session.getCommand("safety") != null;
+    if (resolved == "SAFESAFE".equals(mode)) {
+      throw new AssertionError("Unexpected resolution of safety command in " + mode + " mode");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    session.close();
+    shell.stop();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Command<?> resolve() throws Exception {
+    return session.getCommand("safety");
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Command<?> resolve4() throws Exception {
+    return session.getCommand("safety");
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Command<?> resolveMax() throws Exception {
+    return session.getCommand("safety");
+  }
+}
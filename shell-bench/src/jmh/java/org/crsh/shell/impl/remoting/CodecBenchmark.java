@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.text.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a stream of output chunks with each codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+
+  /** . */
+  private static final int SIZE = 1000;
+
+  @Param({"SERIALIZATION", "BINARY"})
+  public Codec codec;
+
+  /** . */
+  private ServerMessage[] messages;
+
+  /** . */
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    messages = new ServerMessage[SIZE];
+    for (int i = 0;i < SIZE;i++) {
+      if (i % 10 == 0) {
+        messages[i] = new ServerMessage.Chunk.Style(Color.values()[i % 8].fg());
+      } else if (i % 10 == 9) {
+        messages[i] = new ServerMessage.Flush();
+      } else {
+        messages[i] = new ServerMessage.Chunk.Text("line " + i + " of the rendered output\n");
+      }
+    }
+    encoded = encode();
+  }
+
+  @Benchmark
+  public byte[] encode() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    for (ServerMessage message : messages) {
+      codec.write(out, message);
+    }
+    out.close();
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  public ServerMessage decode() throws Exception {
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded));
+    ServerMessage last = null;
+    for (int i = 0;i < SIZE;i++) {
+      last = codec.read(in);
+    }
+    return last;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A screen context consuming what is appended in a blackhole.
+ */
+public class BlackholeContext implements ScreenContext {
+
+  /** . */
+  private final Blackhole blackhole;
+
+  /** . */
+  private final int width;
+
+  /** . */
+  private final int height;
+
+  public BlackholeContext(Blackhole blackhole, int width, int height) {
+    this.blackhole = blackhole;
+    this.width = width;
+    this.height = height;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public Screenable append(CharSequence s) {
+    blackhole.consume(s);
+    return this;
+  }
+
+  public Appendable append(char c) {
+    blackhole.consume(c);
+    return this;
+  }
+
+  public Appendable append(CharSequence csq, int start, int end) {
+    blackhole.consume(csq);
+    blackhole.consume(start);
+    blackhole.consume(end);
+    return this;
+  }
+
+  public Screenable append(Style style) {
+    blackhole.consume(style);
+    return this;
+  }
+
+  public Screenable cls() {
+    return this;
+  }
+
+  public void flush() {
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of styled text appended to a screen buffer, directly or through a render appendable, then
+ * formatted as ANSI.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScreenBufferBenchmark {
+
+  @Param({"100", "10000"})
+  public int lines;
+
+  /** . */
+  private final Style.Composite key = Style.style(true, null, null, Color.yellow, null);
+
+  /** . */
+  private final Style.Composite value = Style.style(Color.green);
+
+  /** . */
+  private String[] text;
+
+  /** . */
+  private ScreenBuffer buffer;
+
+  /** . */
+  private final StringBuilder ansi = new StringBuilder();
+
+  @Setup
+  public void setup() {
+    text = new String[lines];
+    for (int i = 0;i < lines;i++) {
+      text[i] = "line " + i + " of the rendered output";
+    }
+    buffer = new ScreenBuffer();
+    fill(buffer);
+  }
+
+  private void fill(ScreenBuffer buffer) {
+    for (String line : text) {
+      buffer.append(key).append("key").append(Style.reset).append(" ").append(value).append(line).append(Style.reset).append("\n");
+    }
+  }
+
+  @Benchmark
+  public ScreenBuffer append() {
+    ScreenBuffer buffer = new ScreenBuffer();
+    fill(buffer);
+    return buffer;
+  }
+
+  @Benchmark
+  public void renderAppendable(Blackhole blackhole) {
+    RenderAppendable appendable = new RenderAppendable(new BlackholeContext(blackhole, 80, 40));
+    for (String line : text) {
+      appendable.enterStyle(key);
+      appendable.append("key");
+      appendable.enterStyle(value);
+      appendable.append(line);
+      appendable.leaveStyle();
+      appendable.leaveStyle();
+      appendable.append('\n');
+    }
+  }
+
+  @Benchmark
+  public StringBuilder formatAnsi() throws IOException {
+    ansi.setLength(0);
+    buffer.format(Format.ANSI, ansi);
+    return ansi;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation, merge and ANSI encoding of styles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StyleBenchmark {
+
+  /** . */
+  private final Style.Composite style = Style.style(true, null, false, Color.red, Color.blue);
+
+  /** . */
+  private final Style.Composite other = Style.style(null, true, null, Color.green, null);
+
+  /** . */
+  private final StringBuilder buffer = new StringBuilder();
+
+  @Benchmark
+  public Style create() {
+    return Style.style(true, null, false, Color.red, Color.blue);
+  }
+
+  @Benchmark
+  public Style merge() {
+    return style.merge(other);
+  }
+
+  @Benchmark
+  public CharSequence toAnsiSequence() {
+    return style.toAnsiSequence();
+  }
+
+  @Benchmark
+  public StringBuilder writeAnsiTo() throws IOException {
+    buffer.setLength(0);
+    style.writeAnsiTo(buffer);
+    return buffer;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text.ui;
+
+import org.crsh.text.BlackholeContext;
+import org.crsh.text.Color;
+import org.crsh.text.LineReader;
+import org.crsh.text.RenderAppendable;
+import org.crsh.text.Style;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layout and rendering of tables, a wide table has many columns competing for the width while a tall table has
+ * many rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableRendererBenchmark {
+
+  @Param({"wide", "tall"})
+  public String shape;
+
+  @Param({"80", "200"})
+  public int width;
+
+  /** . */
+  private TableElement table;
+
+  @Setup
+  public void setup() {
+    int rows = "wide".equals(shape) ? 20 : 2000;
+    int columns = "wide".equals(shape) ? 30 : 4;
+    table = new TableElement().border(BorderStyle.DASHED).separator(BorderStyle.DASHED);
+    RowElement header = new RowElement(true).style(Style.style(Color.black, Color.white));
+    for (int column = 0;column < columns;column++) {
+      header.add("column " + column);
+    }
+    table.add(header);
+    for (int row = 0;row < rows;row++) {
+      RowElement element = new RowElement();
+      for (int column = 0;column < columns;column++) {
+        element.add("value " + row + "." + column);
+      }
+      table.add(element);
+    }
+  }
+
+  @Benchmark
+  public void render(Blackhole blackhole) {
+    RenderAppendable to = new RenderAppendable(new BlackholeContext(blackhole, width, 40));
+    LineReader reader = table.renderer().reader(width);
+    while (reader.hasLine()) {
+      reader.renderLine(to);
+    }
+  }
+}
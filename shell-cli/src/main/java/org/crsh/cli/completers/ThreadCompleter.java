@@ -21,14 +21,15 @@ package org.crsh.cli.completers;
 import org.crsh.cli.descriptor.ParameterDescriptor;
 import org.crsh.cli.spi.Completer;
 import org.crsh.cli.spi.Completion;
+import org.crsh.cli.type.ThreadSnapshot;
 
 /** @author <a href="mailto:julien.viet@exoplatform.com">Julien Viet</a> */
 public class ThreadCompleter implements Completer {
 
   public Completion complete(ParameterDescriptor parameter, String prefix) throws Exception {
     Completion.Builder b = new Completion.Builder(prefix);
-    for (Thread t : Thread.getAllStackTraces().keySet()) {
-      String id = Long.toString(t.getId());
+    for (Long threadId : ThreadSnapshot.getInstance().getThreads().keySet()) {
+      String id = threadId.toString();
       if (id.startsWith(prefix)) {
         b.add(id.substring(prefix.length()), true);
       }
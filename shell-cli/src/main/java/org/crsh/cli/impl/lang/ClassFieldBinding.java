@@ -21,15 +21,33 @@ package org.crsh.cli.impl.lang;
 
 import org.crsh.cli.impl.invocation.InvocationException;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
 public class ClassFieldBinding implements Binding {
 
+  /** . */
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
   /** . */
   private final Field field;
 
+  /** The field setter, null when it cannot be obtained (e.g. final fields) and the field is set reflectively. */
+  private final MethodHandle setter;
+
   public ClassFieldBinding(Field field) {
+    MethodHandle setter;
+    try {
+      field.setAccessible(true);
+      setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+    }
+    catch (Exception e) {
+      setter = null;
+    }
     this.field = field;
+    this.setter = setter;
   }
 
   public Field getField() {
@@ -38,6 +56,18 @@ public class ClassFieldBinding implements Binding {
 
   @Override
   public void set(Object target, Object[] args, Object value) throws InvocationException {
+    if (setter != null) {
+      try {
+        setter.invokeExact(target, value);
+      }
+      catch (Error e) {
+        throw e;
+      }
+      catch (Throwable t) {
+        throw new InvocationException(t.getMessage(), t);
+      }
+      return;
+    }
     try {
       field.setAccessible(true);
       field.set(target, value);
@@ -31,20 +31,35 @@ import org.crsh.cli.impl.invocation.InvocationException;
 import org.crsh.cli.impl.invocation.InvocationMatch;
 import org.crsh.cli.impl.invocation.ParameterMatch;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.Map;
 
 class MethodDescriptor<T> extends ObjectCommandDescriptor<T> {
 
+  /** . */
+  private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
   /** . */
   private final ClassDescriptor<T> owner;
 
   /** . */
   private final Method method;
 
+  /** . */
+  private final Class<?>[] parameterTypes;
+
+  /** The method handle invoked with the command and the arguments array, null when the method is not accessible. */
+  private final MethodHandle handle;
+
+  /** The reason why the method is not accessible. */
+  private final IllegalAccessException handleFailure;
+
   public MethodDescriptor(
     ClassDescriptor<T> owner,
     Method method,
@@ -55,6 +70,25 @@ class MethodDescriptor<T> extends ObjectCommandDescriptor<T> {
     //
     this.owner = owner;
     this.method = method;
+    this.parameterTypes = method.getParameterTypes();
+
+    // Adapt the method handle to the (Object, Object[])Object type
+    MethodHandle handle;
+    IllegalAccessException handleFailure;
+    try {
+      handle = MethodHandles.publicLookup().unreflect(method);
+      if (Modifier.isStatic(method.getModifiers())) {
+        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+      }
+      handle = handle.asSpreader(Object[].class, parameterTypes.length).asType(INVOKER_TYPE);
+      handleFailure = null;
+    }
+    catch (IllegalAccessException e) {
+      handle = null;
+      handleFailure = e;
+    }
+    this.handle = handle;
+    this.handleFailure = handleFailure;
   }
 
   @Override
@@ -138,8 +172,6 @@ class MethodDescriptor<T> extends ObjectCommandDescriptor<T> {
         }
 
         // Prepare invocation
-        Method m = getMethod();
-        Class<?>[] parameterTypes = m.getParameterTypes();
         Object[] mArgs = new Object[parameterTypes.length];
 
         // Bind method parameter first
@@ -155,26 +187,25 @@ class MethodDescriptor<T> extends ObjectCommandDescriptor<T> {
             }
           }
           if (mArgs[i] == null && parameterType.isPrimitive()) {
-            throw new SyntaxException("Method argument at position " + i + " of " + m + " is missing");
+            throw new SyntaxException("Method argument at position " + i + " of " + method + " is missing");
           }
         }
 
         // Perform method invocation
+        if (handle == null) {
+          throw new InvocationException(handleFailure);
+        }
+        Object ret;
         try {
-          Object ret = m.invoke(command, mArgs);
-          return returnType.cast(ret);
+          ret = (Object)handle.invokeExact((Object)command, mArgs);
         }
-        catch (InvocationTargetException e) {
-          Throwable t = e.getTargetException();
-          if (t instanceof Error) {
-            throw (Error)t;
-          } else {
-            throw new InvocationException(t);
-          }
+        catch (Error e) {
+          throw e;
         }
-        catch (IllegalAccessException t) {
+        catch (Throwable t) {
           throw new InvocationException(t);
         }
+        return returnType.cast(ret);
       }
     };
   }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.cli.type;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of the live threads indexed by their id. The threads are enumerated from the root thread group, unlike
+ * {@link Thread#getAllStackTraces()} it does not capture the stack of every thread at a safepoint. A snapshot is
+ * reused during a short period of time, so completing or parsing several thread ids enumerates the threads once.
+ * The snapshot is only weakly referenced, it does not keep the terminated threads reachable once it is not used.
+ */
+public final class ThreadSnapshot {
+
+  /** The default time to live of a snapshot in milliseconds. */
+  public static final long DEFAULT_TTL = 500;
+
+  /** . */
+  private static final ThreadSnapshot instance = new ThreadSnapshot(DEFAULT_TTL);
+
+  /**
+   * @return the shared snapshot service
+   */
+  public static ThreadSnapshot getInstance() {
+    return instance;
+  }
+
+  /** . */
+  private final long ttl;
+
+  /** . */
+  private volatile Entry current;
+
+  public ThreadSnapshot(long ttl) {
+    this.ttl = ttl;
+  }
+
+  /**
+   * Returns the live threads keyed by id, the map is ordered as the thread group enumeration.
+   *
+   * @return the threads
+   */
+  public Map<Long, Thread> getThreads() {
+    Entry entry = current;
+    Map<Long, Thread> threads = entry != null ? entry.threads.get() : null;
+    if (threads == null || System.currentTimeMillis() - entry.timestamp > ttl) {
+      threads = enumerate();
+      current = new Entry(System.currentTimeMillis(), threads);
+    }
+    return threads;
+  }
+
+  /**
+   * Returns a live thread, the snapshot is refreshed when the thread is not found or is not alive anymore.
+   *
+   * @param id the thread id
+   * @return the thread or null
+   */
+  public Thread getThread(long id) {
+    Thread thread = getThreads().get(id);
+    if (thread == null || !thread.isAlive()) {
+      current = null;
+      thread = getThreads().get(id);
+    }
+    return thread != null && thread.isAlive() ? thread : null;
+  }
+
+  private static Map<Long, Thread> enumerate() {
+    ThreadGroup root = Thread.currentThread().getThreadGroup();
+    for (ThreadGroup parent = root.getParent();parent != null;parent = parent.getParent()) {
+      root = parent;
+    }
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Thread[] threads = new Thread[bean.getThreadCount() + 16];
+    int count;
+    while ((count = root.enumerate(threads, true)) == threads.length) {
+      threads = new Thread[threads.length * 2];
+    }
+    LinkedHashMap<Long, Thread> map = new LinkedHashMap<Long, Thread>(count * 2);
+    for (int i = 0;i < count;i++) {
+      map.put(threads[i].getId(), threads[i]);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  private static class Entry {
+
+    /** . */
+    private final long timestamp;
+
+    /** The threads, reachable as long as a caller uses them. */
+    private final WeakReference<Map<Long, Thread>> threads;
+
+    private Entry(long timestamp, Map<Long, Thread> threads) {
+      this.timestamp = timestamp;
+      this.threads = new WeakReference<Map<Long, Thread>>(threads);
+    }
+  }
+}
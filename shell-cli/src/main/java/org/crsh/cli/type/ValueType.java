@@ -111,10 +111,9 @@ public abstract class ValueType<V> {
     @Override
     public <S extends Thread> S parse(Class<S> type, String s) throws Exception {
       long id = Long.parseLong(s);
-      for (Thread t : Thread.getAllStackTraces().keySet()) {
-        if (t.getId() == id) {
-          return type.cast(t);
-        }
+      Thread thread = ThreadSnapshot.getInstance().getThread(id);
+      if (thread != null) {
+        return type.cast(thread);
       }
       throw new IllegalArgumentException("No thread " + s );
     }
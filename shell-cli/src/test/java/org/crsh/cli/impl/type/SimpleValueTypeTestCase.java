@@ -26,6 +26,7 @@ import junit.framework.TestCase;
 import javax.management.ObjectName;
 import java.io.File;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 
 public class SimpleValueTypeTestCase extends TestCase {
 
@@ -53,6 +54,38 @@ public class SimpleValueTypeTestCase extends TestCase {
     assertEquals(false, b);
   }
 
+  public void testThread() throws Exception {
+    ValueType<Thread> threadVT = factory.get(Thread.class);
+    assertSame(Thread.currentThread(), threadVT.parse("" + Thread.currentThread().getId()));
+
+    // A thread started after the last snapshot is found
+    final CountDownLatch latch = new CountDownLatch(1);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          latch.await();
+        }
+        catch (InterruptedException ignore) {
+        }
+      }
+    };
+    thread.start();
+    try {
+      assertSame(thread, threadVT.parse("" + thread.getId()));
+    }
+    finally {
+      latch.countDown();
+      thread.join();
+    }
+    try {
+      threadVT.parse("" + thread.getId());
+      fail();
+    }
+    catch (IllegalArgumentException expected) {
+    }
+  }
+
   private static enum Color  {
     RED, BLUE
   }
@@ -32,6 +32,22 @@ import java.io.IOException;
  */
 public abstract class Pipe<C, P> implements Filter<C, P, InvocationContext<P>> {
 
+  /**
+   * How a pipe maps the elements it consumes.
+   */
+  public enum Mapping {
+
+    /** The elements are provided one after another by the invocation thread. */
+    SEQUENTIAL,
+
+    /** The elements are provided concurrently, what is produced is emitted in the order of the consumed elements. */
+    ORDERED,
+
+    /** The elements are provided concurrently, what is produced is emitted as soon as it is available. */
+    UNORDERED
+
+  }
+
   /** . */
   protected InvocationContext<P> context;
 
@@ -59,6 +75,17 @@ public abstract class Pipe<C, P> implements Filter<C, P, InvocationContext<P>> {
   public void provide(C element) throws Exception {
   }
 
+  /**
+   * Returns how this pipe maps the elements it consumes. With a parallel mapping the {@link #provide(Object)}
+   * invocations are executed concurrently by the fork-join pool of the shell, so the implementation must be thread
+   * safe. What is produced during the invocation for an element is buffered and emitted by the invocation thread.
+   *
+   * @return the mapping, {@link Mapping#SEQUENTIAL} by default
+   */
+  public Mapping getMapping() {
+    return Mapping.SEQUENTIAL;
+  }
+
   /**
    * Flush pipe.
    *
@@ -1,28 +1,50 @@
 package org.crsh.command;
 
 
-import java.util.HashMap;
-
+/**
+ * Binds a {@link ShellSafety} to the current thread. The safety is bound by the shell session for the duration of
+ * a process and restored afterwards. The threads created meanwhile don't inherit it since they may be pooled and
+ * outlive the process, a task executed by another thread binds the safety it is given explicitly.
+ */
 public class ShellSafetyFactory {
-    static private HashMap<Long, ShellSafety> safetyByThread = new HashMap<Long, ShellSafety>();
+    static private final ThreadLocal<ShellSafety> current = new ThreadLocal<ShellSafety>();
+
     static public ShellSafety getCurrentThreadShellSafety() {
-        long threadId = Thread.currentThread().getId();
-        synchronized (safetyByThread) {
-            if (safetyByThread.containsKey(threadId)) {
-                return safetyByThread.get(threadId);
-            }
+        ShellSafety ret = current.get();
+        if (ret != null) {
+            return ret;
         }
 
-        ShellSafety ret = new ShellSafety();
+        ret = new ShellSafety();
         ret.setSafeShell(false);
         ret.setDefault(true);
         return ret;
     }
 
-    static public void registerShellSafetyForThread(ShellSafety shellSafety) {
-        long threadId = Thread.currentThread().getId();
-        synchronized (safetyByThread) {
-            safetyByThread.put(threadId, shellSafety);
+    /**
+     * Bind a safety to the current thread.
+     *
+     * @param shellSafety the safety to bind or null to clear the thread
+     * @return the previously bound safety or null
+     */
+    static public ShellSafety setCurrentThreadShellSafety(ShellSafety shellSafety) {
+        ShellSafety previous = current.get();
+        if (shellSafety != null) {
+            current.set(shellSafety);
+        } else {
+            current.remove();
         }
+        return previous;
+    }
+
+    static public void registerShellSafetyForThread(ShellSafety shellSafety) {
+        current.set(shellSafety);
+    }
+
+    /**
+     * Clear the safety registered for the current thread.
+     */
+    static public void unregisterShellSafetyForThread() {
+        current.remove();
     }
 }
@@ -21,6 +21,7 @@ package org.crsh.console;
 import jline.console.Operation;
 import org.crsh.keyboard.KeyHandler;
 import org.crsh.keyboard.KeyType;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.Shell;
 import org.crsh.shell.ShellProcess;
 import org.crsh.util.Utils;
@@ -70,14 +71,21 @@ public class Console {
   int status;
 
   public Console(Shell shell, ConsoleDriver driver) throws NullPointerException {
+    this(shell, driver, new History(PropertyDescriptor.HISTORY_SIZE.defaultValue));
+  }
+
+  public Console(Shell shell, ConsoleDriver driver, History history) throws NullPointerException {
     if (shell == null) {
       throw new NullPointerException("No null shell accepted");
     }
+    if (history == null) {
+      throw new NullPointerException("No null history accepted");
+    }
     this.driver = driver;
     this.shell = shell;
     this.buffer = new LinkedBlockingDeque<KeyStroke>(1024);
     this.handler = new AtomicReference<Plugin>();
-    this.editor = new Editor(this);
+    this.editor = new Editor(this, history);
     this.status = RUNNING;
   }
 
@@ -24,7 +24,7 @@ import org.crsh.text.Style;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 
 /**
  * An editor state machine.
@@ -50,7 +50,10 @@ class Editor extends Plugin {
   final LineParser lineParser;
 
   /** . */
-  final LinkedList<String> history;
+  final History history;
+
+  /** The lines of the history edited by this editor, keyed by history line count. */
+  private final HashMap<Long, String> historyEdits;
 
   /** . */
   private Mode mode;
@@ -67,11 +70,11 @@ class Editor extends Plugin {
   /** . */
   private final ArrayList<Runnable> modeListeners;
 
-  Editor(Console console) {
-    this(console, true);
+  Editor(Console console, History history) {
+    this(console, history, true);
   }
 
-  Editor(Console console, boolean echo) {
+  Editor(Console console, History history, boolean echo) {
 
 
     //
@@ -82,7 +85,8 @@ class Editor extends Plugin {
     this.buffer = buffer;
     this.visitor = new MultiLineVisitor();
     this.lineParser = new LineParser(visitor);
-    this.history = new LinkedList<String>();
+    this.history = history;
+    this.historyEdits = new HashMap<Long, String>();
     this.historyCursor = -1;
     this.historyBuffer = null;
     this.killBuffer = new StringBuilder();
@@ -106,7 +110,28 @@ class Editor extends Plugin {
   }
 
   void addToHistory(String line) {
-    history.addFirst(line);
+    history.add(line);
+  }
+
+  /**
+   * Returns a line of the history as edited by this editor.
+   *
+   * @param index the line index
+   * @return the line
+   */
+  String getHistory(int index) {
+    String edit = historyEdits.get(history.getCount() - 1 - index);
+    return edit != null ? edit : history.get(index);
+  }
+
+  /**
+   * Keep the edition of a history line, the shared history is left unchanged.
+   *
+   * @param index the line index
+   * @param line the edited line
+   */
+  void setHistory(int index, String line) {
+    historyEdits.put(history.getCount() - 1 - index, line);
   }
 
   /**
@@ -216,26 +216,30 @@ class EditorAction {
     @Override
     void perform(Editor editor, EditorBuffer buffer) throws IOException {
       int nextHistoryCursor = getNext(editor);
-      if (nextHistoryCursor >= -1 && nextHistoryCursor < editor.history.size()) {
-        String s = nextHistoryCursor == -1 ? editor.historyBuffer : editor.history.get(nextHistoryCursor);
-        while (buffer.moveRight()) {
-          // Do nothing
-        }
-        String t = buffer.replace(s);
-        if (editor.historyCursor == -1) {
-          editor.historyBuffer = t;
-        } else {
-          editor.history.set(editor.historyCursor, t);
-        }
-        editor.historyCursor = nextHistoryCursor;
+      if (nextHistoryCursor >= -1 && nextHistoryCursor < editor.history.getSize()) {
+        moveTo(editor, buffer, nextHistoryCursor);
       }
     }
+
+    static void moveTo(Editor editor, EditorBuffer buffer, int nextHistoryCursor) throws IOException {
+      String s = nextHistoryCursor == -1 ? editor.historyBuffer : editor.getHistory(nextHistoryCursor);
+      while (buffer.moveRight()) {
+        // Do nothing
+      }
+      String t = buffer.replace(s);
+      if (editor.historyCursor == -1) {
+        editor.historyBuffer = t;
+      } else {
+        editor.setHistory(editor.historyCursor, t);
+      }
+      editor.historyCursor = nextHistoryCursor;
+    }
   }
 
   static EditorAction HISTORY_FIRST = new History() {
     @Override
     protected int getNext(Editor editor) {
-      return editor.history.size() - 1;
+      return editor.history.getSize() - 1;
     }
   };
 
@@ -260,6 +264,36 @@ class EditorAction {
     }
   };
 
+  /**
+   * Replace the current line with the most recent history line containing the query of a reverse search.
+   */
+  static class SearchHistory extends EditorAction {
+
+    /** . */
+    private final Mode.ReverseSearch search;
+
+    /** Whether the search skips the current match. */
+    private final boolean next;
+
+    /** Whether the search starts again from the most recent line, a shortened query may match a more recent line. */
+    private final boolean restart;
+
+    SearchHistory(Mode.ReverseSearch search, boolean next, boolean restart) {
+      this.search = search;
+      this.next = next;
+      this.restart = restart;
+    }
+
+    @Override
+    void perform(Editor editor, EditorBuffer buffer) throws IOException {
+      int from = restart ? 0 : next ? editor.historyCursor + 1 : Math.max(0, editor.historyCursor);
+      int index = editor.history.search(search.query.toString(), from);
+      if (index != -1 && index != editor.historyCursor) {
+        History.moveTo(editor, buffer, index);
+      }
+    }
+  }
+
   static EditorAction LEFT = new EditorAction() {
     @Override
     void perform(Editor editor, EditorBuffer buffer) throws IOException {
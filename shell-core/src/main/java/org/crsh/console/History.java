@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.console;
+
+import org.crsh.util.Utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded command history where the most recent line has the index <code>0</code>. The lines are kept in a ring
+ * buffer so accessing a line by its index is a constant time operation and a line identical to the most recent one
+ * is not added again.
+ *
+ * When a file is provided, the last lines of the file are loaded on creation and the added lines are appended
+ * to the file which is compacted once it holds twice as many lines as the history capacity. A history is safe
+ * for use by several consoles.
+ */
+public class History implements Closeable {
+
+  /** . */
+  private static final Logger log = Logger.getLogger(History.class.getName());
+
+  /** . */
+  private final String[] lines;
+
+  /** The number of lines added since the creation, it is the identifier of the next line. */
+  private long count;
+
+  /** . */
+  private int size;
+
+  /** . */
+  private final File file;
+
+  /** The file writer or null when the history is not persisted. */
+  private Writer writer;
+
+  /** The number of lines in the file. */
+  private int fileLines;
+
+  /**
+   * Create a history kept in memory.
+   *
+   * @param capacity the maximum number of lines
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public History(int capacity) throws IllegalArgumentException {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.lines = new String[capacity];
+    this.file = null;
+  }
+
+  /**
+   * Create a history persisted in a file.
+   *
+   * @param capacity the maximum number of lines
+   * @param file the history file
+   * @throws NullPointerException if the file is null
+   * @throws IllegalArgumentException if the capacity is not positive
+   * @throws IOException any io exception that would prevent to read or open the file
+   */
+  public History(int capacity, File file) throws NullPointerException, IllegalArgumentException, IOException {
+    if (file == null) {
+      throw new NullPointerException("No null file accepted");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.lines = new String[capacity];
+    this.file = file;
+
+    // Only the last lines are retained by the ring buffer
+    if (file.exists()) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        for (String line = reader.readLine();line != null;line = reader.readLine()) {
+          push(unescape(line));
+          fileLines++;
+        }
+      }
+      finally {
+        Utils.close(reader);
+      }
+    } else {
+      File parent = file.getParentFile();
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Could not create directory " + parent.getAbsolutePath());
+      }
+    }
+    this.writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+  }
+
+  /**
+   * @return the maximum number of lines
+   */
+  public int getCapacity() {
+    return lines.length;
+  }
+
+  /**
+   * @return the current number of lines
+   */
+  public synchronized int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of lines added since the creation of the history, the line at the index <code>i</code> is
+   * the <code>getCount() - 1 - i</code> added line.
+   *
+   * @return the number of added lines
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns a line.
+   *
+   * @param index the line index, <code>0</code> is the most recent line
+   * @return the line
+   * @throws IndexOutOfBoundsException if the index is not valid
+   */
+  public synchronized String get(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Invalid index " + index);
+    }
+    return lines[(int)((count - 1 - index) % lines.length)];
+  }
+
+  /**
+   * Add a line to the history, nothing happens when the line is equals to the most recent line.
+   *
+   * @param line the line to add
+   * @return true if the line was added
+   * @throws NullPointerException if the line is null
+   */
+  public synchronized boolean add(String line) throws NullPointerException {
+    if (line == null) {
+      throw new NullPointerException("No null line accepted");
+    }
+    if (!push(line)) {
+      return false;
+    }
+    if (writer != null) {
+      try {
+        if (fileLines >= lines.length * 2) {
+          compact();
+        } else {
+          writer.write(escape(line));
+          writer.write('\n');
+          writer.flush();
+          fileLines++;
+        }
+      }
+      catch (IOException e) {
+        log.log(Level.WARNING, "Could not write history file " + file.getAbsolutePath() + ", the history is not persisted anymore", e);
+        Utils.close(writer);
+        writer = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Search the most recent line containing the query starting at the specified index. When the query is extended,
+   * searching again from the index of the current match continues the search incrementally.
+   *
+   * @param query the query
+   * @param from the index to start from
+   * @return the index of the matching line or <code>-1</code>
+   * @throws NullPointerException if the query is null
+   */
+  public synchronized int search(String query, int from) throws NullPointerException {
+    if (query == null) {
+      throw new NullPointerException("No null query accepted");
+    }
+    for (int index = Math.max(0, from);index < size;index++) {
+      if (get(index).contains(query)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  public synchronized void close() {
+    if (writer != null) {
+      Utils.close(writer);
+      writer = null;
+    }
+  }
+
+  private boolean push(String line) {
+    if (size > 0 && get(0).equals(line)) {
+      return false;
+    }
+    lines[(int)(count % lines.length)] = line;
+    count++;
+    if (size < lines.length) {
+      size++;
+    }
+    return true;
+  }
+
+  /**
+   * Rewrite the file with the current lines.
+   */
+  private void compact() throws IOException {
+    Utils.close(writer);
+    writer = null;
+    File tmp = new File(file.getPath() + ".tmp");
+    Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+    try {
+      for (int index = size - 1;index >= 0;index--) {
+        out.write(escape(get(index)));
+        out.write('\n');
+      }
+    }
+    finally {
+      Utils.close(out);
+    }
+    // Replace the file at once, a failure leaves the previous file untouched
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+    fileLines = size;
+  }
+
+  private static String escape(String line) {
+    if (line.indexOf('\\') == -1 && line.indexOf('\n') == -1 && line.indexOf('\r') == -1) {
+      return line;
+    }
+    StringBuilder sb = new StringBuilder(line.length() + 8);
+    for (int i = 0;i < line.length();i++) {
+      char c = line.charAt(i);
+      switch (c) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String unescape(String line) {
+    if (line.indexOf('\\') == -1) {
+      return line;
+    }
+    StringBuilder sb = new StringBuilder(line.length());
+    for (int i = 0;i < line.length();i++) {
+      char c = line.charAt(i);
+      if (c == '\\' && i + 1 < line.length()) {
+        c = line.charAt(++i);
+        sb.append(c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -122,11 +122,12 @@ public abstract class Mode extends EditorAction {
           return EditorAction.PASTE_AFTER;
         case KILL_WORD:
           return EditorAction.DELETE_NEXT_WORD;
+        case REVERSE_SEARCH_HISTORY:
+          return new ReverseSearch(this);
         case DO_LOWERCASE_VERSION:
         case ABORT:
         case EXCHANGE_POINT_AND_MARK:
         case QUOTED_INSERT:
-        case REVERSE_SEARCH_HISTORY:
         case FORWARD_SEARCH_HISTORY:
         case CHARACTER_SEARCH:
         case UNDO:
@@ -207,10 +208,11 @@ public abstract class Mode extends EditorAction {
           return EditorAction.HISTORY_FIRST;
         case END_OF_HISTORY:
           return EditorAction.HISTORY_LAST;
+        case REVERSE_SEARCH_HISTORY:
+          return new ReverseSearch(this);
         case YANK:
         case MENU_COMPLETE:
         case MENU_COMPLETE_BACKWARD:
-        case REVERSE_SEARCH_HISTORY:
         case FORWARD_SEARCH_HISTORY:
         case QUOTED_INSERT:
         case UNDO:
@@ -469,6 +471,63 @@ public abstract class Mode extends EditorAction {
     }
   }
 
+  /**
+   * The incremental reverse search of the history: the typed characters extend the query and the current line is
+   * replaced by the most recent history line containing the query, searching again skips the current match. Any
+   * other key leaves the search and is processed by the previous mode.
+   */
+  public static class ReverseSearch extends Mode {
+
+    /** The mode to return to. */
+    final Mode previous;
+
+    /** . */
+    final StringBuilder query;
+
+    public ReverseSearch(Mode previous) {
+      this.previous = previous;
+      this.query = new StringBuilder();
+    }
+
+    @Override
+    public String getKeyMap() {
+      return previous.getKeyMap();
+    }
+
+    @Override
+    public EditorAction on(KeyStroke keyStroke) {
+      switch (keyStroke.operation) {
+        case SELF_INSERT:
+          for (int c : keyStroke.sequence) {
+            query.appendCodePoint(c);
+          }
+          return new EditorAction.SearchHistory(this, false, false);
+        case REVERSE_SEARCH_HISTORY:
+          return new EditorAction.SearchHistory(this, true, false);
+        case BACKWARD_DELETE_CHAR:
+          if (query.length() > 0) {
+            query.setLength(query.length() - 1);
+            if (query.length() > 0) {
+              return new EditorAction.SearchHistory(this, false, true);
+            }
+          }
+          return null;
+        case ACCEPT_LINE:
+          return previous.then(EditorAction.ENTER);
+        case INTERRUPT:
+          return EditorAction.INTERRUPT.then(previous);
+        default:
+          EditorAction action = previous.on(keyStroke);
+          return action != null ? previous.then(action) : previous;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Mode.ReverseSearch[query=" + query + "]";
+    }
+  }
+
   public static class Digit extends Mode {
 
     /** . */
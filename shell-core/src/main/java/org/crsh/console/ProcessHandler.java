@@ -44,7 +44,8 @@ class ProcessHandler extends Plugin implements ShellProcessContext {
     final ArrayBlockingQueue<String> line;
     Reader(Thread thread, boolean echo) {
       this.thread = thread;
-      this.editor = new Editor(console, echo);
+      // The lines read by a process (e.g passwords) never go to the console history
+      this.editor = new Editor(console, new History(1), echo);
       this.line = new ArrayBlockingQueue<String>(1);
     }
   }
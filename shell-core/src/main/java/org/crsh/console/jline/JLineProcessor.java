@@ -26,6 +26,8 @@ import jline.console.Operation;
 import jline.internal.NonBlockingInputStream;
 import org.crsh.console.Console;
 import org.crsh.console.ConsoleDriver;
+import org.crsh.console.History;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.Shell;
 import org.crsh.text.Style;
 
@@ -69,9 +71,19 @@ public class JLineProcessor implements Runnable, ConsoleDriver {
       final ConsoleReader reader,
       PrintStream out,
       String lineSeparator) {
+    this(ansi, shell, reader, out, lineSeparator, new History(PropertyDescriptor.HISTORY_SIZE.defaultValue));
+  }
+
+  public JLineProcessor(
+      boolean ansi,
+      Shell shell,
+      final ConsoleReader reader,
+      PrintStream out,
+      String lineSeparator,
+      History history) {
 
     //
-    this.console = new Console(shell, this);
+    this.console = new Console(shell, this, history);
     this.writer = out;
     this.useAlternate = false;
     this.terminal = reader.getTerminal();
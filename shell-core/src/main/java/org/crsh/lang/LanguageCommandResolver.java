@@ -19,6 +19,7 @@
 package org.crsh.lang;
 
 import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
 import org.crsh.lang.impl.script.ScriptCompiler;
 import org.crsh.lang.spi.Compiler;
 import org.crsh.lang.spi.Language;
@@ -31,11 +32,22 @@ import org.crsh.lang.spi.CommandResolution;
 import org.crsh.util.TimestampedObject;
 import org.crsh.vfs.Resource;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A shell command resolver for languages.
@@ -44,9 +56,15 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class LanguageCommandResolver implements CommandResolver {
 
+  /** . */
+  private static final Logger log = Logger.getLogger(LanguageCommandResolver.class.getName());
+
   /** . */
   private final Map<String, TimestampedObject<CommandResolution>> commandCache = new ConcurrentHashMap<String, TimestampedObject<CommandResolution>>();
 
+  /** The description index of the command resources keyed by resource name, it is shared by the sessions. */
+  private final Map<String, IndexEntry> descriptionIndex = new ConcurrentHashMap<String, IndexEntry>();
+
   /** . */
   final HashMap<String, Compiler> activeCompilers = new HashMap<String, Compiler>();
 
@@ -87,25 +105,213 @@ public class LanguageCommandResolver implements CommandResolver {
       int index = resourceName.indexOf('.');
       String name = resourceName.substring(0, index);
       String ext = resourceName.substring(index + 1);
-      if (activeCompilers.containsKey(ext)) {
+      Compiler compiler = activeCompilers.get(ext);
+      if (compiler != null && !commands.containsKey(name) && (!isRestricted || isCommandAllowed(name, shellSafety))) {
+        Resource resource = context.loadResource(resourceName, ResourceKind.COMMAND);
+        if (resource != null) {
+          IndexEntry entry = describeCommand(compiler, name, resourceName, resource);
+          if (entry.isValid()) {
+            commands.put(name, entry.getDescription());
+          }
+        }
+      }
+    }
+    return commands.entrySet();
+  }
+
+  /**
+   * Returns the names of the commands, the command resources are listed but not loaded.
+   *
+   * @param shellSafety the shell safety
+   * @return the command names
+   */
+  public Set<String> getNames(ShellSafety shellSafety) {
+    LinkedHashSet<String> names = new LinkedHashSet<String>();
+    for (String resourceName : context.listResources(ResourceKind.COMMAND)) {
+      int index = resourceName.indexOf('.');
+      String name = resourceName.substring(0, index);
+      String ext = resourceName.substring(index + 1);
+      if (activeCompilers.containsKey(ext) && (!isRestricted || isCommandAllowed(name, shellSafety))) {
+        names.add(name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Returns the description index entry of a single command, the entry is replaced when the command resource changes.
+   *
+   * @param name the command name
+   * @param shellSafety the shell safety
+   * @return the index entry or null when the command does not exist
+   */
+  public IndexEntry getIndexEntry(String name, ShellSafety shellSafety) {
+    if (isRestricted && !isCommandAllowed(name, shellSafety)) {
+      return null;
+    }
+    for (Compiler compiler : activeCompilers.values()) {
+      for (String ext : compiler.getExtensions()) {
+        String resourceName = name + "." + ext;
+        for (Resource resource : context.loadResources(resourceName, ResourceKind.COMMAND)) {
+          return describeCommand(compiler, name, resourceName, resource);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compile the commands of the context and put them in the cache, the compilation is performed by concurrent tasks
+   * submitted to the executor. The calling thread waits for the tasks, so it must not be a thread of the executor.
+   * Restricted resolvers don't warm up.
+   *
+   * @param executor the executor
+   * @param concurrency the maximum number of commands compiled concurrently
+   * @return the number of compiled commands
+   * @throws InterruptedException if the current thread is interrupted while waiting for the compilation
+   */
+  public int warmUp(ExecutorService executor, int concurrency) throws InterruptedException {
+    if (isRestricted) {
+      return 0;
+    }
+    long time = System.currentTimeMillis();
+    int count = warmUpBatches();
+    final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+    for (String resourceName : context.listResources(ResourceKind.COMMAND)) {
+      queue.add(resourceName);
+    }
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = Math.min(concurrency, queue.size());i > 0;i--) {
+      tasks.add(new Callable<Integer>() {
+        public Integer call() {
+          int count = 0;
+          for (String resourceName = queue.poll();resourceName != null;resourceName = queue.poll()) {
+            if (warmUp(resourceName)) {
+              count++;
+            }
+          }
+          return count;
+        }
+      });
+    }
+    for (Future<Integer> future : executor.invokeAll(tasks)) {
+      try {
+        count += future.get();
+      }
+      catch (ExecutionException e) {
+        log.log(Level.WARNING, "Command warm up failed", e.getCause());
+      }
+    }
+    log.log(Level.INFO, "Compiled " + count + " commands in " + (System.currentTimeMillis() - time) + "ms");
+    return count;
+  }
+
+  /**
+   * Compile the changed commands of each compiler in a single batch, the commands left out of the batch are
+   * compiled individually afterwards.
+   *
+   * @return the number of compiled commands
+   */
+  private int warmUpBatches() {
+    LinkedHashMap<Compiler, LinkedHashMap<String, Resource>> batches = new LinkedHashMap<Compiler, LinkedHashMap<String, Resource>>();
+    for (String resourceName : context.listResources(ResourceKind.COMMAND)) {
+      int index = resourceName.indexOf('.');
+      String name = resourceName.substring(0, index);
+      String ext = resourceName.substring(index + 1);
+      Compiler compiler = activeCompilers.get(ext);
+      if (compiler != null) {
+        Resource resource = context.loadResource(resourceName, ResourceKind.COMMAND);
+        if (resource != null) {
+          TimestampedObject<CommandResolution> ref = commandCache.get(name);
+          if (ref == null || ref.getTimestamp() != resource.getTimestamp()) {
+            LinkedHashMap<String, Resource> batch = batches.get(compiler);
+            if (batch == null) {
+              batches.put(compiler, batch = new LinkedHashMap<String, Resource>());
+            }
+            if (!batch.containsKey(name)) {
+              batch.put(name, resource);
+            }
+          }
+        }
+      }
+    }
+    int count = 0;
+    for (Map.Entry<Compiler, LinkedHashMap<String, Resource>> batch : batches.entrySet()) {
+      if (batch.getValue().size() > 1) {
+        long time = System.currentTimeMillis();
+        LinkedHashMap<String, byte[]> sources = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, Resource> entry : batch.getValue().entrySet()) {
+          sources.put(entry.getKey(), entry.getValue().getContent());
+        }
+        Map<String, CommandResolution> resolutions;
         try {
-          CommandResolution resolution = resolveCommand2(name, shellSafety);
-          if (resolution != null) {
-            commands.put(name, resolution.getDescription());
+          resolutions = batch.getKey().compileCommands(sources);
+        }
+        catch (Exception e) {
+          log.log(Level.WARNING, "Could not compile commands in batch", e);
+          continue;
+        }
+        for (Map.Entry<String, CommandResolution> resolution : resolutions.entrySet()) {
+          Resource resource = batch.getValue().get(resolution.getKey());
+          if (resource != null) {
+            commandCache.put(resolution.getKey(), new TimestampedObject<CommandResolution>(resource.getTimestamp(), resolution.getValue()));
+            count++;
           }
         }
-        catch (CommandException e) {
-          //
+        if (resolutions.size() > 0) {
+          log.log(Level.INFO, "Compiled " + resolutions.size() + " commands in batch in " + (System.currentTimeMillis() - time) + "ms");
         }
       }
     }
-    return commands.entrySet();
+    return count;
+  }
+
+  private boolean warmUp(String resourceName) {
+    int index = resourceName.indexOf('.');
+    String name = resourceName.substring(0, index);
+    String ext = resourceName.substring(index + 1);
+    Compiler compiler = activeCompilers.get(ext);
+    if (compiler != null) {
+      Resource resource = context.loadResource(resourceName, ResourceKind.COMMAND);
+      if (resource != null) {
+        TimestampedObject<CommandResolution> ref = commandCache.get(name);
+        if (ref == null || ref.getTimestamp() != resource.getTimestamp()) {
+          long time = System.currentTimeMillis();
+          try {
+            CommandResolution resolution = resolveCommand(compiler, name, resource);
+            if (resolution != null) {
+              resolution.getCommand();
+            }
+            log.log(Level.INFO, "Compiled command " + name + " in " + (System.currentTimeMillis() - time) + "ms");
+            return true;
+          }
+          catch (Exception e) {
+            log.log(Level.WARNING, "Could not compile command " + name, e);
+          }
+          catch (NoClassDefFoundError e) {
+            log.log(Level.WARNING, "Could not compile command " + name, e);
+          }
+        }
+      }
+    }
+    return false;
   }
 
   @Override
   public Command<?> resolveCommand(String name, ShellSafety shellSafety) throws CommandException, NullPointerException {
     CommandResolution resolution = resolveCommand2(name, shellSafety);
-    return resolution != null ? resolution.getCommand() : null;
+    if (resolution != null) {
+      // The cached resolutions are shared, they create the command for the safety of the current thread
+      ShellSafety previous = ShellSafetyFactory.setCurrentThreadShellSafety(shellSafety);
+      try {
+        return resolution.getCommand();
+      }
+      finally {
+        ShellSafetyFactory.setCurrentThreadShellSafety(previous);
+      }
+    } else {
+      return null;
+    }
   }
 
   private CommandResolution resolveCommand2(String name, ShellSafety shellSafety) throws CommandException, NullPointerException {
@@ -135,6 +341,41 @@ public class LanguageCommandResolver implements CommandResolver {
     return false;
   }
 
+  /**
+   * Describe a command from the description index, the index entry is created from the command source and it is
+   * replaced when the resource changes. The command is compiled only when its description cannot be determined from
+   * its source.
+   */
+  private IndexEntry describeCommand(Compiler compiler, String name, String resourceName, Resource resource) {
+    IndexEntry entry = descriptionIndex.get(resourceName);
+    if (entry == null || entry.getTimestamp() != resource.getTimestamp()) {
+      TimestampedObject<CommandResolution> resolved = commandCache.get(name);
+      if (resolved != null && resolved.getTimestamp() == resource.getTimestamp()) {
+        entry = new IndexEntry(name, resource.getTimestamp(), resolved.getObject().getDescription(), true);
+      } else {
+        String description = compiler.describeCommand(name, resource.getContent());
+        if (description != null) {
+          entry = new IndexEntry(name, resource.getTimestamp(), description, true);
+        } else {
+          try {
+            CommandResolution resolution = resolveCommand(compiler, name, resource);
+            if (resolution != null) {
+              entry = new IndexEntry(name, resource.getTimestamp(), resolution.getDescription(), true);
+            } else {
+              entry = new IndexEntry(name, resource.getTimestamp(), null, false);
+            }
+          }
+          catch (CommandException e) {
+            // The command cannot be created, it is not listed until its source changes
+            entry = new IndexEntry(name, resource.getTimestamp(), null, false);
+          }
+        }
+      }
+      descriptionIndex.put(resourceName, entry);
+    }
+    return entry;
+  }
+
   private CommandResolution resolveCommand(org.crsh.lang.spi.Compiler manager, String name, Resource script) throws CommandException {
     TimestampedObject<CommandResolution> ref = commandCache.get(name);
     if (ref != null) {
@@ -154,4 +395,48 @@ public class LanguageCommandResolver implements CommandResolver {
     return command;
   }
 
+  /**
+   * An entry of the description index: the description of a command and the timestamp of the resource it was
+   * described from.
+   */
+  public static final class IndexEntry {
+
+    /** . */
+    private final String name;
+
+    /** . */
+    private final long timestamp;
+
+    /** . */
+    private final String description;
+
+    /** . */
+    private final boolean valid;
+
+    IndexEntry(String name, long timestamp, String description, boolean valid) {
+      this.name = name;
+      this.timestamp = timestamp;
+      this.description = description;
+      this.valid = valid;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    /**
+     * @return false when the command cannot be created
+     */
+    public boolean isValid() {
+      return valid;
+    }
+  }
 }
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl;
+
+/**
+ * An annotation only scanner that finds the {@link org.crsh.cli.Usage} of a Java or Groovy command from its source
+ * without compiling it. The scanner follows the rules of the command introspection and returns null whenever it
+ * cannot be sure of the result, the command must then be compiled to be described.
+ */
+public final class UsageScanner {
+
+  /**
+   * Scan the source of a Java command: the usage of the <code>main</code> method is used when it is the single command
+   * method, otherwise the usage of the class is used.
+   *
+   * @param name the command name
+   * @param source the command source
+   * @return the command usage or null if it cannot be determined
+   */
+  public static String scanJava(String name, CharSequence source) {
+    UsageScanner scanner = new UsageScanner(source, name);
+    scanner.scan();
+    if (!scanner.isComplete() || scanner.commandMethods == 0) {
+      return null;
+    }
+    if (!"BaseCommand".equals(scanner.superClass) && !"org.crsh.command.BaseCommand".equals(scanner.superClass)) {
+      // Command methods may be inherited
+      return null;
+    }
+    String usage = scanner.mainCommand && scanner.commandMethods == 1 ? scanner.mainUsage : scanner.classUsage;
+    return usage != null ? usage : "";
+  }
+
+  /**
+   * Scan the source of a Groovy command: the usage of the first class is used, otherwise the usage of its
+   * <code>main</code> method is used.
+   *
+   * @param source the command source
+   * @return the command usage or null if it cannot be determined
+   */
+  public static String scanGroovy(CharSequence source) {
+    UsageScanner scanner = new UsageScanner(source, null);
+    scanner.scan();
+    if (!scanner.isComplete()) {
+      return null;
+    }
+    return scanner.classUsage != null ? scanner.classUsage : scanner.mainUsage;
+  }
+
+  /** . */
+  private final CharSequence s;
+
+  /** The name of the class to scan or null for the first class. */
+  private final String target;
+
+  /** . */
+  private int pos;
+
+  /** . */
+  private int depth;
+
+  /** Set when the source is not well formed. */
+  private boolean broken;
+
+  /** The last usage seen and not yet attached to a declaration. */
+  private String pending;
+
+  /** The last qualified usage seen and not yet attached to a declaration. */
+  private String pendingQualified;
+
+  /** Whether the declaration being scanned is annotated by a command annotation. */
+  private boolean pendingCommand;
+
+  /** The last identifier. */
+  private String identifier;
+
+  /** . */
+  private boolean classKeyword;
+
+  /** . */
+  private boolean extendsKeyword;
+
+  /** . */
+  private boolean inCommandClass;
+
+  /** . */
+  private boolean commandClassDone;
+
+  /** . */
+  private String superClass;
+
+  /** . */
+  private String classUsage;
+
+  /** . */
+  private String mainUsage;
+
+  /** . */
+  private boolean mainCommand;
+
+  /** . */
+  private int commandMethods;
+
+  private UsageScanner(CharSequence s, String target) {
+    this.s = s;
+    this.target = target;
+  }
+
+  private boolean isComplete() {
+    return inCommandClass && commandClassDone && !broken;
+  }
+
+  private void scan() {
+    while (pos < s.length() && !broken) {
+      char c = s.charAt(pos);
+      if (Character.isWhitespace(c)) {
+        pos++;
+      } else if (c == '/' && peek(1) == '/') {
+        while (pos < s.length() && s.charAt(pos) != '\n') {
+          pos++;
+        }
+      } else if (c == '/' && peek(1) == '*') {
+        int end = indexOf("*/", pos + 2);
+        if (end == -1) {
+          broken = true;
+        } else {
+          pos = end + 2;
+        }
+      } else if (c == '"' || c == '\'') {
+        literal();
+        identifier = null;
+      } else if (c == '@') {
+        pos++;
+        String annotation = qualifiedIdentifier();
+        if ("interface".equals(annotation)) {
+          identifier = null;
+        } else {
+          skipBlank();
+          String value = null;
+          if (pos < s.length() && s.charAt(pos) == '(') {
+            value = arguments();
+          }
+          if (annotation.equals("Usage")) {
+            pending = value;
+          } else if (annotation.equals("org.crsh.cli.Usage")) {
+            pendingQualified = value;
+          } else if (annotation.equals("Command") || annotation.equals("org.crsh.cli.Command")) {
+            pendingCommand = true;
+            if (inCommandClass && !commandClassDone && depth == 1) {
+              commandMethods++;
+            }
+          }
+        }
+      } else if (Character.isJavaIdentifierStart(c)) {
+        String id = qualifiedIdentifier();
+        if (classKeyword) {
+          classKeyword = false;
+          if (depth == 0 && !inCommandClass && (target == null || id.equals(target))) {
+            inCommandClass = true;
+            classUsage = usage();
+          }
+        } else if (extendsKeyword) {
+          extendsKeyword = false;
+          if (depth == 0 && inCommandClass && !commandClassDone) {
+            superClass = id;
+          }
+        } else if (id.equals("class")) {
+          classKeyword = true;
+        } else if (id.equals("extends")) {
+          extendsKeyword = true;
+        }
+        identifier = id;
+      } else if (c == '(') {
+        if (inCommandClass && !commandClassDone && depth == 1 && "main".equals(identifier)) {
+          if (pendingCommand) {
+            mainCommand = true;
+          }
+          if (mainUsage == null) {
+            mainUsage = usage();
+          }
+        }
+        pos++;
+        reset();
+      } else if (c == '{') {
+        depth++;
+        pos++;
+        reset();
+      } else if (c == '}') {
+        if (--depth < 0) {
+          broken = true;
+        }
+        pos++;
+        reset();
+        if (depth == 0 && inCommandClass) {
+          commandClassDone = true;
+        }
+      } else if (c == ';') {
+        pos++;
+        reset();
+      } else {
+        pos++;
+        identifier = null;
+      }
+    }
+    if (depth != 0) {
+      broken = true;
+    }
+  }
+
+  /**
+   * Returns the usage attached to the current declaration, the qualified annotation is only recognized by the Java
+   * introspection.
+   */
+  private String usage() {
+    if (pending != null) {
+      return pending;
+    } else {
+      return target != null ? pendingQualified : null;
+    }
+  }
+
+  private void reset() {
+    pending = null;
+    pendingQualified = null;
+    pendingCommand = false;
+    identifier = null;
+  }
+
+  /**
+   * Parse annotation arguments and returns the concatenation of the literals of the value member.
+   */
+  private String arguments() {
+    pos++;
+    int level = 1;
+    StringBuilder value = null;
+    boolean inValue = true;
+    while (pos < s.length() && level > 0) {
+      char c = s.charAt(pos);
+      if (c == '"' || c == '\'') {
+        String literal = literal();
+        if (inValue && level == 1) {
+          if (value == null) {
+            value = new StringBuilder();
+          }
+          value.append(literal);
+        }
+      } else if (c == '(' || c == '[' || c == '{') {
+        level++;
+        pos++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        level--;
+        pos++;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        String id = identifier();
+        skipBlank();
+        if (level == 1 && pos < s.length() && s.charAt(pos) == '=' && peek(1) != '=') {
+          inValue = id.equals("value");
+        } else if (inValue) {
+          // A constant reference
+          broken = true;
+        }
+      } else {
+        pos++;
+      }
+    }
+    if (level > 0) {
+      broken = true;
+    }
+    return value != null ? value.toString() : null;
+  }
+
+  /**
+   * Parse a string or char literal, the Groovy triple quoted strings are supported.
+   */
+  private String literal() {
+    char quote = s.charAt(pos);
+    boolean triple = peek(1) == quote && peek(2) == quote;
+    pos += triple ? 3 : 1;
+    StringBuilder sb = new StringBuilder();
+    boolean closed = false;
+    while (pos < s.length() && !closed) {
+      char c = s.charAt(pos);
+      if (c == '\\' && pos + 1 < s.length()) {
+        char e = s.charAt(pos + 1);
+        pos += 2;
+        switch (e) {
+          case 'n':
+            sb.append('\n');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'u':
+            if (pos + 4 <= s.length()) {
+              try {
+                sb.append((char)Integer.parseInt(s.subSequence(pos, pos + 4).toString(), 16));
+                pos += 4;
+                break;
+              }
+              catch (NumberFormatException ignore) {
+                //
+              }
+            }
+            sb.append(e);
+            break;
+          default:
+            sb.append(e);
+        }
+      } else if (c == quote && (!triple || (peek(1) == quote && peek(2) == quote))) {
+        pos += triple ? 3 : 1;
+        closed = true;
+      } else if (c == '\n' && !triple) {
+        break;
+      } else {
+        sb.append(c);
+        pos++;
+      }
+    }
+    if (!closed) {
+      broken = true;
+    }
+    return sb.toString();
+  }
+
+  private String qualifiedIdentifier() {
+    skipBlank();
+    StringBuilder sb = new StringBuilder();
+    while (pos < s.length() && Character.isJavaIdentifierStart(s.charAt(pos))) {
+      sb.append(identifier());
+      if (pos < s.length() && s.charAt(pos) == '.') {
+        sb.append('.');
+        pos++;
+      } else {
+        break;
+      }
+    }
+    return sb.toString();
+  }
+
+  private String identifier() {
+    int from = pos;
+    while (pos < s.length() && Character.isJavaIdentifierPart(s.charAt(pos))) {
+      pos++;
+    }
+    return s.subSequence(from, pos).toString();
+  }
+
+  private void skipBlank() {
+    while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private char peek(int offset) {
+    int index = pos + offset;
+    return index < s.length() ? s.charAt(index) : 0;
+  }
+
+  private int indexOf(String str, int from) {
+    for (int i = from;i + str.length() <= s.length();i++) {
+      boolean found = true;
+      for (int j = 0;j < str.length() && found;j++) {
+        found = s.charAt(i + j) == str.charAt(j);
+      }
+      if (found) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
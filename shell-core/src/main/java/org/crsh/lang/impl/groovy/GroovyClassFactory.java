@@ -20,49 +20,85 @@ package org.crsh.lang.impl.groovy;
 
 import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovySystem;
 import groovy.lang.Script;
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.SourceUnit;
+import org.crsh.lang.impl.java.LoadingClassLoader;
+import org.crsh.plugin.PluginContext;
 import org.crsh.shell.ErrorKind;
 import org.crsh.shell.impl.command.spi.CommandException;
+import org.crsh.util.BytecodeCache;
 import org.crsh.util.ClassFactory;
+import org.crsh.util.Utils;
+
+import java.util.LinkedHashMap;
 
 /** @author Julien Viet */
 class GroovyClassFactory<T> extends ClassFactory<T> {
 
+  /** . */
+  private final PluginContext context;
+
   /** . */
   private final ClassLoader baseLoader;
 
   /** . */
   private final Class<T> baseClass;
 
+  /** . */
+  private final String namespace;
+
   /** . */
   final CompilerConfiguration config;
 
-  GroovyClassFactory(ClassLoader baseLoader, Class<T> baseClass, Class<? extends Script> baseScriptClass) {
+  GroovyClassFactory(PluginContext context, Class<T> baseClass, Class<? extends Script> baseScriptClass) {
     CompilerConfiguration config = new CompilerConfiguration();
     config.setRecompileGroovySource(true);
     config.setScriptBaseClass(baseScriptClass.getName());
 
     //
-    this.baseLoader = baseLoader;
+    this.context = context;
+    this.baseLoader = context.getLoader();
     this.baseClass = baseClass;
+    this.namespace = "groovy:" + GroovySystem.getVersion() + ":" + baseScriptClass.getName();
     this.config = config;
   }
 
   @Override
   public Class<? extends T> parse(String name, String source) throws CommandException {
+    BytecodeCache cache = context.getBytecodeCache();
+    byte[] bytes = source.getBytes(Utils.UTF_8);
+    BytecodeCache.Entry entry = cache != null ? cache.load(namespace, name, bytes) : null;
     Class<?> clazz;
-    try {
-      GroovyCodeSource gcs = new GroovyCodeSource(source, name, "/groovy/shell");
-      GroovyClassLoader gcl = new GroovyClassLoader(baseLoader, config);
-      clazz = gcl.parseClass(gcs, false);
-    }
-    catch (NoClassDefFoundError e) {
-      throw new CommandException(ErrorKind.INTERNAL, "Could not compile command script " + name, e);
-    }
-    catch (CompilationFailedException e) {
-      throw new CommandException(ErrorKind.INTERNAL, "Could not compile command script " + name, e);
+    if (entry != null) {
+      try {
+        clazz = new LoadingClassLoader(baseLoader, entry.getClasses()).loadClass(entry.getMainClassName());
+      }
+      catch (ClassNotFoundException e) {
+        throw new CommandException(ErrorKind.INTERNAL, "Could not load cached command script " + name, e);
+      }
+    } else {
+      try {
+        GroovyCodeSource gcs = new GroovyCodeSource(source, name, "/groovy/shell");
+        if (cache != null) {
+          RecordingClassLoader gcl = new RecordingClassLoader(baseLoader, config);
+          clazz = gcl.parseClass(gcs, false);
+          cache.store(namespace, name, bytes, clazz.getName(), gcl.definitions);
+        } else {
+          GroovyClassLoader gcl = new GroovyClassLoader(baseLoader, config);
+          clazz = gcl.parseClass(gcs, false);
+        }
+      }
+      catch (NoClassDefFoundError e) {
+        throw new CommandException(ErrorKind.INTERNAL, "Could not compile command script " + name, e);
+      }
+      catch (CompilationFailedException e) {
+        throw new CommandException(ErrorKind.INTERNAL, "Could not compile command script " + name, e);
+      }
     }
 
     if (baseClass.isAssignableFrom(clazz)) {
@@ -72,4 +108,28 @@ class GroovyClassFactory<T> extends ClassFactory<T> {
           " does not implements " + baseClass.getName());
     }
   }
+
+  /**
+   * A groovy class loader that records the bytecode of the classes it generates.
+   */
+  private static class RecordingClassLoader extends GroovyClassLoader {
+
+    /** . */
+    private final LinkedHashMap<String, byte[]> definitions = new LinkedHashMap<String, byte[]>();
+
+    private RecordingClassLoader(ClassLoader parent, CompilerConfiguration config) {
+      super(parent, config);
+    }
+
+    @Override
+    protected ClassCollector createCollector(CompilationUnit unit, SourceUnit su) {
+      return new ClassCollector(new InnerLoader(this), unit, su) {
+        @Override
+        protected Class<?> createClass(byte[] code, ClassNode classNode) {
+          definitions.put(classNode.getName(), code);
+          return super.createClass(code, classNode);
+        }
+      };
+    }
+  }
 }
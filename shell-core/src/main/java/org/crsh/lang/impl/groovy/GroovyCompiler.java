@@ -33,6 +33,7 @@ import org.crsh.cli.impl.descriptor.IntrospectionException;
 import org.crsh.command.BaseCommand;
 import org.crsh.command.ShellSafety;
 import org.crsh.command.ShellSafetyFactory;
+import org.crsh.lang.impl.UsageScanner;
 import org.crsh.lang.impl.java.ClassShellCommand;
 import org.crsh.shell.ErrorKind;
 import org.crsh.shell.impl.command.ShellSession;
@@ -42,9 +43,12 @@ import org.crsh.lang.impl.groovy.command.GroovyScriptShellCommand;
 import org.crsh.lang.spi.CommandResolution;
 import org.crsh.lang.impl.groovy.command.GroovyScriptCommand;
 import org.crsh.plugin.PluginContext;
+import org.crsh.util.Utils;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,7 +66,7 @@ public class GroovyCompiler implements org.crsh.lang.spi.Compiler {
   private GroovyClassFactory<Object> objectGroovyClassFactory;
 
   public GroovyCompiler(PluginContext context) {
-    this.objectGroovyClassFactory = new GroovyClassFactory<Object>(context.getLoader(), Object.class, GroovyScriptCommand.class);
+    this.objectGroovyClassFactory = new GroovyClassFactory<Object>(context, Object.class, GroovyScriptCommand.class);
   }
 
   public Set<String> getExtensions() {
@@ -110,6 +114,14 @@ public class GroovyCompiler implements org.crsh.lang.spi.Compiler {
     }
   }
 
+  public String describeCommand(String name, byte[] source) throws NullPointerException {
+    return UsageScanner.scanGroovy(new String(source, Utils.UTF_8));
+  }
+
+  public Map<String, CommandResolution> compileCommands(Map<String, byte[]> sources) throws NullPointerException {
+    return Collections.emptyMap();
+  }
+
   public CommandResolution compileCommand(final String name, byte[] source) throws CommandException, NullPointerException {
 
     //
@@ -163,19 +175,25 @@ public class GroovyCompiler implements org.crsh.lang.spi.Compiler {
 
     //
     return new CommandResolution() {
-      Command<?> command;
+      Class<?> clazz;
+      /** The commands per safety mode, the resolution is shared by the sessions. */
+      final HashMap<String, Command<?>> commands = new HashMap<String, Command<?>>();
       @Override
       public String getDescription() {
         return description;
       }
       @Override
-      public Command<?> getCommand() throws CommandException {
+      public synchronized Command<?> getCommand() throws CommandException {
+        if (clazz == null) {
+          clazz = objectGroovyClassFactory.parse(name, script);
+        }
+        String mode = ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString();
+        Command<?> command = commands.get(mode);
         if (command == null) {
-          Class<?> clazz = objectGroovyClassFactory.parse(name, script);
           if (BaseCommand.class.isAssignableFrom(clazz)) {
             Class<? extends BaseCommand> cmd = clazz.asSubclass(BaseCommand.class);
             try {
-              command = make(cmd);
+              command = make(cmd, new ShellSafety(mode));
             }
             catch (IntrospectionException e) {
               throw new CommandException(ErrorKind.INTERNAL, "Invalid cli annotations for command " + name, e);
@@ -193,14 +211,15 @@ public class GroovyCompiler implements org.crsh.lang.spi.Compiler {
           else {
             throw new CommandException(ErrorKind.INTERNAL, "Could not create command " + name + " instance");
           }
+          commands.put(mode, command);
         }
         return command;
       }
     };
   }
 
-  private <C extends BaseCommand> ClassShellCommand<C> make(Class<C> clazz) throws IntrospectionException {
-    return new ClassShellCommand<C>(clazz, ShellSafetyFactory.getCurrentThreadShellSafety());
+  private <C extends BaseCommand> ClassShellCommand<C> make(Class<C> clazz, ShellSafety shellSafety) throws IntrospectionException {
+    return new ClassShellCommand<C>(clazz, shellSafety);
   }
 
   private <C extends GroovyScriptCommand> GroovyScriptShellCommand<C> make2(Class<C> clazz) throws IntrospectionException {
@@ -48,7 +48,7 @@ public class GroovyLanguage implements Language {
   public GroovyLanguage(PluginContext context) {
     compiler = new GroovyCompiler(context);
     repl = new GroovyRepl(this);
-    scriptCache = new ClassCache<GroovyScript>(context, new GroovyClassFactory<GroovyScript>(context.getLoader(), GroovyScript.class, GroovyScript.class), ResourceKind.LIFECYCLE);
+    scriptCache = new ClassCache<GroovyScript>(context, new GroovyClassFactory<GroovyScript>(context, GroovyScript.class, GroovyScript.class), ResourceKind.LIFECYCLE);
   }
 
   public String getName() {
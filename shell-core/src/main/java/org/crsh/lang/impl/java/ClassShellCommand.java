@@ -33,12 +33,18 @@ import org.crsh.shell.impl.command.spi.CommandException;
 import org.crsh.shell.impl.command.spi.CommandMatch;
 import org.crsh.util.Utils;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 
 /** @author Julien Viet */
 public class ClassShellCommand<T extends BaseCommand> extends Command<Instance<T>> {
 
+  /** . */
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
   /** . */
   private final Class<T> clazz;
 
@@ -46,6 +52,9 @@ public class ClassShellCommand<T extends BaseCommand> extends Command<Instance<T
   private final CommandDescriptor<Instance<T>> descriptor;
   private final ShellSafety shellSafety;
 
+  /** The no-arg constructor handle, looked up on first instantiation. */
+  private volatile MethodHandle constructor;
+
   public ClassShellCommand(Class<T> clazz, ShellSafety shellSafety) throws IntrospectionException {
     CommandFactory factory = new CommandFactory(getClass().getClassLoader());
     this.clazz = clazz;
@@ -107,19 +116,29 @@ public class ClassShellCommand<T extends BaseCommand> extends Command<Instance<T
   }
 
   T createCommand() throws CommandException {
-    T command;
+    MethodHandle constructor = this.constructor;
+    if (constructor == null) {
+      try {
+        if (Modifier.isAbstract(clazz.getModifiers())) {
+          throw new InstantiationException(clazz.getName());
+        }
+        this.constructor = constructor = MethodHandles.publicLookup().findConstructor(clazz, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+      }
+      catch (Exception e) {
+        String name = clazz.getSimpleName();
+        throw new CommandException(ErrorKind.INTERNAL, "Could not create command " + name + " instance", e);
+      }
+    }
     try {
-      command = clazz.getConstructor().newInstance();
+      return clazz.cast((Object)constructor.invokeExact());
     }
-    catch (InvocationTargetException e) {
-      String name = clazz.getSimpleName();
-      throw new CommandException(ErrorKind.EVALUATION, "Could not create command " + name + " instance", e.getCause());
+    catch (Error e) {
+      throw e;
     }
-    catch (Exception e) {
+    catch (Throwable t) {
       String name = clazz.getSimpleName();
-      throw new CommandException(ErrorKind.INTERNAL, "Could not create command " + name + " instance", e);
+      throw new CommandException(ErrorKind.EVALUATION, "Could not create command " + name + " instance", t);
     }
-    return command;
   }
 
   private <C, P, PC extends Pipe<C, P>> CommandMatch<C, P> getPipeInvoker(final org.crsh.cli.impl.invocation.CommandInvoker<Instance<T>, PC> invoker) {
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** @author Julien Viet */
 class ClasspathResolver {
@@ -41,6 +42,9 @@ class ClasspathResolver {
   /** . */
   final URLDriver driver;
 
+  /** The resolved packages, the class loader content does not change during the resolver lifetime. */
+  private final ConcurrentHashMap<String, List<JavaFileObject>> index = new ConcurrentHashMap<String, List<JavaFileObject>>();
+
   public ClasspathResolver(ClassLoader loader) {
 
     URLDriver driver = null;
@@ -79,6 +83,19 @@ class ClasspathResolver {
   }
 
   public Iterable<JavaFileObject> resolve(String pkg, boolean recurse) throws IOException, URISyntaxException {
+    String key = recurse ? pkg + ".*" : pkg;
+    List<JavaFileObject> files = index.get(key);
+    if (files == null) {
+      files = doResolve(pkg, recurse);
+      List<JavaFileObject> previous = index.putIfAbsent(key, files);
+      if (previous != null) {
+        files = previous;
+      }
+    }
+    return files;
+  }
+
+  private List<JavaFileObject> doResolve(String pkg, boolean recurse) throws IOException, URISyntaxException {
 
     Node current = driver.root();
 
@@ -94,7 +111,7 @@ class ClasspathResolver {
     //
     List<JavaFileObject> files = new ArrayList<JavaFileObject>();
     resolve(files, current, pkg, recurse);
-    return files;
+    return Collections.unmodifiableList(files);
 
 
 
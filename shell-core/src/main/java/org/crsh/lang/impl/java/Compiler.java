@@ -22,52 +22,114 @@ import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-/** @author Julien Viet */
+/**
+ * Compiles Java sources in memory. The standard file managers and the classpath index are created once and reused
+ * by the subsequent compilations, several sources can be compiled by a single compilation task. A file manager is
+ * used by a single compilation at a time, concurrent compilations use distinct file managers and share the classpath
+ * index. They can be large and are softly referenced so they can be reclaimed and created again when the memory
+ * is low.
+ *
+ * @author Julien Viet
+ */
 class Compiler {
 
   /** . */
   private final ClassLoader classLoader;
 
+  /** . */
+  private final JavaCompiler compiler;
+
+  /** Lazily created, shared by all compilations. */
+  private SoftReference<ClasspathResolver> resolver;
+
+  /** The environments not used by a compilation. */
+  private final ConcurrentLinkedQueue<SoftReference<JavaFileManagerImpl.Environment>> environments = new ConcurrentLinkedQueue<SoftReference<JavaFileManagerImpl.Environment>>();
+
   Compiler() {
-    this.classLoader = Thread.currentThread().getContextClassLoader();
+    this(Thread.currentThread().getContextClassLoader());
   }
 
   Compiler(ClassLoader classLoader) {
     this.classLoader = classLoader;
+    this.compiler = ToolProvider.getSystemJavaCompiler();
   }
 
   List<JavaClassFileObject> compile(String className, String source) throws IOException, CompilationFailureException {
+    return compile(Collections.singletonMap(className, source)).get(className);
+  }
+
+  /**
+   * Compile several sources with a single compilation task.
+   *
+   * @param sources the sources keyed by class name
+   * @return the compiled classes of each source keyed by the source class name
+   * @throws IOException any io exception
+   * @throws CompilationFailureException if any of the source cannot be compiled
+   */
+  Map<String, List<JavaClassFileObject>> compile(Map<String, String> sources) throws IOException, CompilationFailureException {
+    JavaFileManagerImpl.Environment env = acquire();
+    try {
+      return compile(env, sources);
+    }
+    finally {
+      environments.add(new SoftReference<JavaFileManagerImpl.Environment>(env));
+    }
+  }
 
-    // Get compiler
-    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+  private JavaFileManagerImpl.Environment acquire() {
+    for (SoftReference<JavaFileManagerImpl.Environment> ref = environments.poll();ref != null;ref = environments.poll()) {
+      JavaFileManagerImpl.Environment env = ref.get();
+      if (env != null) {
+        return env;
+      }
+    }
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, Charset.defaultCharset());
+    return new JavaFileManagerImpl.Environment(fileManager, getResolver());
+  }
+
+  private synchronized ClasspathResolver getResolver() {
+    ClasspathResolver resolver = this.resolver != null ? this.resolver.get() : null;
+    if (resolver == null) {
+      resolver = new ClasspathResolver(classLoader);
+      this.resolver = new SoftReference<ClasspathResolver>(resolver);
+    }
+    return resolver;
+  }
+
+  private Map<String, List<JavaClassFileObject>> compile(JavaFileManagerImpl.Environment env, Map<String, String> sources) throws IOException, CompilationFailureException {
 
     // Diagnostics
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
 
-    // The compiler
-    JavaFileManagerImpl fileManager = new JavaFileManagerImpl(
-        compiler.getStandardFileManager(diagnostics, null, Charset.defaultCharset()),
-        new ClasspathResolver(classLoader));
+    // Collects the classes of this compilation
+    JavaFileManagerImpl manager = new JavaFileManagerImpl(env.fileManager, env.resolver);
 
     //
-    List<JavaFileObject> sources;
+    LinkedHashMap<String, JavaFileObject> files = new LinkedHashMap<String, JavaFileObject>();
     try {
-      sources = Collections.<JavaFileObject>singletonList(new JavaSourceFileObject(className, source));
+      for (Map.Entry<String, String> source : sources.entrySet()) {
+        files.put(source.getKey(), new JavaSourceFileObject(source.getKey(), source.getValue()));
+      }
     }
     catch (URISyntaxException e) {
       throw new IOException(e);
     }
 
     // Compile
-    JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, null, null, sources);
+    JavaCompiler.CompilationTask task = compiler.getTask(null, manager, diagnostics, null, null, files.values());
 
     //
     Boolean ok = task.call();
@@ -80,8 +142,11 @@ class Compiler {
       }
       throw new CompilationFailureException(errors);
     } else {
-      return new ArrayList<JavaClassFileObject>(fileManager.getClasses());
+      LinkedHashMap<String, List<JavaClassFileObject>> classes = new LinkedHashMap<String, List<JavaClassFileObject>>();
+      for (Map.Entry<String, JavaFileObject> file : files.entrySet()) {
+        classes.put(file.getKey(), manager.getClasses(file.getValue()));
+      }
+      return classes;
     }
   }
-
 }
@@ -20,40 +20,235 @@ package org.crsh.lang.impl.java;
 
 import org.crsh.cli.descriptor.Format;
 import org.crsh.cli.impl.descriptor.IntrospectionException;
+import org.crsh.command.ShellSafety;
 import org.crsh.command.ShellSafetyFactory;
 import org.crsh.shell.ErrorKind;
 import org.crsh.shell.impl.command.spi.CommandException;
 import org.crsh.shell.impl.command.ShellSession;
 import org.crsh.shell.impl.command.spi.Command;
+import org.crsh.lang.impl.UsageScanner;
 import org.crsh.lang.spi.CommandResolution;
+import org.crsh.plugin.PluginContext;
+import org.crsh.util.BytecodeCache;
+import org.crsh.util.Utils;
 
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /** @author Julien Viet */
 public class JavaCompiler implements org.crsh.lang.spi.Compiler {
 
+  /** . */
+  private static final Logger log = Logger.getLogger(JavaCompiler.class.getName());
+
   /** . */
   private static final Set<String> EXT = Collections.singleton("java");
 
+  /** The bytecode cache namespace, compiled classes depend on the compiler version. */
+  private static final String NAMESPACE = "java:" + System.getProperty("java.specification.version");
+
   /** . */
   private final org.crsh.lang.impl.java.Compiler compiler;
 
   /** . */
   private final ClassLoader loader;
 
-  JavaCompiler(ClassLoader loader) {
-    this.compiler = new org.crsh.lang.impl.java.Compiler(loader);
-    this.loader = loader;
+  /** . */
+  private final PluginContext context;
+
+  JavaCompiler(PluginContext context) {
+    this.compiler = new org.crsh.lang.impl.java.Compiler(context.getLoader());
+    this.loader = context.getLoader();
+    this.context = context;
   }
 
   public Set<String> getExtensions() {
     return EXT;
   }
 
+  public String describeCommand(String name, byte[] source) throws NullPointerException {
+    return UsageScanner.scanJava(name, new String(source));
+  }
+
+  public Map<String, CommandResolution> compileCommands(Map<String, byte[]> sources) throws NullPointerException {
+    if (sources == null) {
+      throw new NullPointerException("No null sources accepted");
+    }
+
+    // The commands of a batch can refer to each other: the cache entry of a command is keyed by its source and
+    // the sources of the commands it refers to, so each command is looked up separately and only the misses are
+    // compiled again
+    BytecodeCache cache = context.getBytecodeCache();
+    LinkedHashMap<String, byte[]> keys = new LinkedHashMap<String, byte[]>();
+    for (String name : sources.keySet()) {
+      keys.put(name, key(name, sources));
+    }
+    LinkedHashMap<String, BytecodeCache.Entry> entries = new LinkedHashMap<String, BytecodeCache.Entry>();
+    LinkedHashMap<String, byte[]> misses = new LinkedHashMap<String, byte[]>();
+    for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+      String name = source.getKey();
+      BytecodeCache.Entry entry = cache != null ? cache.load(NAMESPACE, name, keys.get(name)) : null;
+      if (entry != null) {
+        entries.put(name, entry);
+      } else {
+        misses.put(name, source.getValue());
+      }
+    }
+    if (misses.size() > 0) {
+
+      // The misses are compiled with the commands they refer to, the cached classes of these commands are kept
+      LinkedHashMap<String, byte[]> batch = new LinkedHashMap<String, byte[]>(misses);
+      for (String name : misses.keySet()) {
+        for (String dependency : dependencies(name, sources)) {
+          batch.put(dependency, sources.get(dependency));
+        }
+      }
+      for (Map.Entry<String, BytecodeCache.Entry> compiled : compile(batch).entrySet()) {
+        String name = compiled.getKey();
+        if (misses.containsKey(name)) {
+          entries.put(name, compiled.getValue());
+          if (cache != null) {
+            cache.store(NAMESPACE, name, keys.get(name), compiled.getValue().getMainClassName(), compiled.getValue().getClasses());
+          }
+        }
+      }
+    }
+
+    // The classes of the batch are defined by a single class loader
+    LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+    for (BytecodeCache.Entry entry : entries.values()) {
+      classes.putAll(entry.getClasses());
+    }
+    LoadingClassLoader loader = new LoadingClassLoader(this.loader, classes);
+    LinkedHashMap<String, CommandResolution> resolutions = new LinkedHashMap<String, CommandResolution>();
+    for (Map.Entry<String, BytecodeCache.Entry> entry : entries.entrySet()) {
+      String name = entry.getKey();
+      try {
+        resolutions.put(name, createResolution(name, loader, entry.getValue().getMainClassName()));
+      }
+      catch (CommandException e) {
+        log.log(Level.FINE, "Could not create command " + name, e);
+      }
+    }
+    return resolutions;
+  }
+
+  /**
+   * Compile the sources in a single task, when the compilation fails the sources reported by the errors are
+   * left to the individual compilation and the others are compiled again.
+   *
+   * @param sources the sources
+   * @return the compiled entries
+   */
+  private LinkedHashMap<String, BytecodeCache.Entry> compile(Map<String, byte[]> sources) {
+    LinkedHashMap<String, String> scripts = new LinkedHashMap<String, String>();
+    for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+      scripts.put(source.getKey(), new String(source.getValue()));
+    }
+    LinkedHashMap<String, BytecodeCache.Entry> entries = new LinkedHashMap<String, BytecodeCache.Entry>();
+    while (scripts.size() > 0) {
+      try {
+        Map<String, List<JavaClassFileObject>> compiled = compiler.compile(scripts);
+        for (Map.Entry<String, List<JavaClassFileObject>> classFiles : compiled.entrySet()) {
+          String name = classFiles.getKey();
+          try {
+            entries.put(name, createEntry(name, classFiles.getValue()));
+          }
+          catch (CommandException e) {
+            log.log(Level.FINE, "Could not compile command " + name + " in batch", e);
+          }
+        }
+        break;
+      }
+      catch (IOException e) {
+        log.log(Level.FINE, "Could not compile commands in batch", e);
+        break;
+      }
+      catch (CompilationFailureException e) {
+        int size = scripts.size();
+        for (Diagnostic<? extends JavaFileObject> error : e.getErrors()) {
+          if (error.getSource() instanceof JavaSourceFileObject) {
+            scripts.remove(((JavaSourceFileObject)error.getSource()).getClassName());
+          }
+        }
+        if (scripts.size() == size) {
+          break;
+        }
+      }
+    }
+    return entries;
+  }
+
   public CommandResolution compileCommand(String name, byte[] source) throws CommandException, NullPointerException {
+    BytecodeCache cache = context.getBytecodeCache();
+    BytecodeCache.Entry entry = cache != null ? cache.load(NAMESPACE, name, source) : null;
+    if (entry != null) {
+      return createResolution(name, new LoadingClassLoader(loader, entry.getClasses()), entry.getMainClassName());
+    }
+    entry = compile(name, source);
+    CommandResolution resolution = createResolution(name, new LoadingClassLoader(loader, entry.getClasses()), entry.getMainClassName());
+    if (cache != null) {
+      cache.store(NAMESPACE, name, source, entry.getMainClassName(), entry.getClasses());
+    }
+    return resolution;
+  }
+
+  private CommandResolution createResolution(String name, ClassLoader loader, String mainClassName) throws CommandException {
+    try {
+      final Class<?> clazz = loader.loadClass(mainClassName);
+      final ConcurrentHashMap<String, Command<?>> commands = new ConcurrentHashMap<String, Command<?>>();
+      String mode = ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString();
+      ClassShellCommand command = createCommand(clazz, mode);
+      commands.put(mode, command);
+      final String description = command.describe(name, Format.DESCRIBE);
+      return new CommandResolution() {
+        @Override
+        public String getDescription() {
+          return description;
+        }
+        @Override
+        public Command<?> getCommand() throws CommandException {
+          // The resolution is shared by the sessions, each safety mode gets a command bound to a copy of the safety
+          String mode = ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString();
+          Command<?> command = commands.get(mode);
+          if (command == null) {
+            command = createCommand(clazz, mode);
+            Command<?> previous = commands.putIfAbsent(mode, command);
+            if (previous != null) {
+              command = previous;
+            }
+          }
+          return command;
+        }
+      };
+    }
+    catch (ClassNotFoundException e) {
+      throw new CommandException(ErrorKind.INTERNAL, "Command cannot be loaded", e);
+    }
+  }
+
+  private ClassShellCommand createCommand(Class<?> clazz, String mode) throws CommandException {
+    try {
+      return new ClassShellCommand(clazz, new ShellSafety(mode));
+    }
+    catch (IntrospectionException e) {
+      throw new CommandException(ErrorKind.INTERNAL, "Invalid cli annotations", e);
+    }
+  }
+
+  private BytecodeCache.Entry compile(String name, byte[] source) throws CommandException {
     String script = new String(source);
     List<JavaClassFileObject> classFiles;
     try {
@@ -65,38 +260,72 @@ public class JavaCompiler implements org.crsh.lang.spi.Compiler {
     catch (CompilationFailureException e) {
         throw new CommandException(ErrorKind.INTERNAL, "Could not compile command: " + e.getMessage(), e);
     }
+    return createEntry(name, classFiles);
+  }
+
+  private BytecodeCache.Entry createEntry(String name, List<JavaClassFileObject> classFiles) throws CommandException {
+    String mainClassName = null;
+    LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
     for (JavaClassFileObject classFile : classFiles) {
       String className = classFile.getClassName();
       String simpleName = className.substring(className.lastIndexOf('.') + 1);
-      if (simpleName.equals(name)) {
-        LoadingClassLoader loader = new LoadingClassLoader(this.loader, classFiles);
-        try {
-          Class<?> clazz = loader.loadClass(classFile.getClassName());
-          final ClassShellCommand command;
-          try {
-            command = new ClassShellCommand(clazz, ShellSafetyFactory.getCurrentThreadShellSafety());
-          }
-          catch (IntrospectionException e) {
-            throw new CommandException(ErrorKind.INTERNAL, "Invalid cli annotations", e);
-          }
-          final String description = command.describe(name, Format.DESCRIBE);
-          return new CommandResolution() {
-            @Override
-            public String getDescription() {
-              return description;
-            }
-            @Override
-            public Command<Object> getCommand() throws CommandException {
-              return command;
-            }
-          };
-        }
-        catch (ClassNotFoundException e) {
-          throw new CommandException(ErrorKind.INTERNAL, "Command cannot be loaded", e);
+      if (mainClassName == null && simpleName.equals(name)) {
+        mainClassName = className;
+      }
+      classes.put(className, classFile.getBytes());
+    }
+    if (mainClassName == null) {
+      throw new CommandException(ErrorKind.INTERNAL, "Command class not found");
+    }
+    return new BytecodeCache.Entry(mainClassName, classes);
+  }
+
+  /**
+   * Returns the commands of a batch a command may refer to: the commands whose name appears in its source and
+   * transitively in the sources of these commands.
+   *
+   * @param name the command name
+   * @param sources the sources of the batch
+   * @return the names of the referred commands, sorted
+   */
+  private static Set<String> dependencies(String name, Map<String, byte[]> sources) {
+    TreeSet<String> dependencies = new TreeSet<String>();
+    LinkedList<String> pending = new LinkedList<String>();
+    pending.add(name);
+    while (pending.size() > 0) {
+      String source = new String(sources.get(pending.removeFirst()));
+      for (String other : sources.keySet()) {
+        if (!other.equals(name) && !dependencies.contains(other) && source.contains(other)) {
+          dependencies.add(other);
+          pending.add(other);
         }
       }
     }
-    throw new CommandException(ErrorKind.INTERNAL, "Command class not found");
+    return dependencies;
+  }
+
+  /**
+   * Returns the cache key of a command: its source followed by the sources of the commands it refers to, so
+   * the classes of a command compiled against another command are not used anymore once the other one changed.
+   * A command that does not refer to any other has the same key than when it is compiled individually.
+   */
+  private static byte[] key(String name, Map<String, byte[]> sources) {
+    Set<String> dependencies = dependencies(name, sources);
+    if (dependencies.isEmpty()) {
+      return sources.get(name);
+    }
+    ByteArrayOutputStream key = new ByteArrayOutputStream();
+    byte[] source = sources.get(name);
+    key.write(source, 0, source.length);
+    for (String dependency : dependencies) {
+      byte[] dependencyName = dependency.getBytes(Utils.UTF_8);
+      source = sources.get(dependency);
+      key.write(0);
+      key.write(dependencyName, 0, dependencyName.length);
+      key.write(0);
+      key.write(source, 0, source.length);
+    }
+    return key.toByteArray();
   }
 
   public void init(ShellSession session) {
@@ -25,9 +25,12 @@ import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 
 /** @author Julien Viet */
@@ -36,6 +39,9 @@ class JavaFileManagerImpl extends ForwardingJavaFileManager<StandardJavaFileMana
   /** . */
   private final LinkedHashMap<String, JavaClassFileObject> classes = new LinkedHashMap<String, JavaClassFileObject>();
 
+  /** The classes grouped by the source they are compiled from. */
+  private final HashMap<FileObject, List<JavaClassFileObject>> sources = new HashMap<FileObject, List<JavaClassFileObject>>();
+
   /** . */
   private final ClasspathResolver finder;
 
@@ -50,6 +56,11 @@ class JavaFileManagerImpl extends ForwardingJavaFileManager<StandardJavaFileMana
     return classes.values();
   }
 
+  List<JavaClassFileObject> getClasses(FileObject source) {
+    List<JavaClassFileObject> ret = sources.get(source);
+    return ret != null ? ret : Collections.<JavaClassFileObject>emptyList();
+  }
+
   @Override
   public boolean hasLocation(Location location) {
     return location == StandardLocation.CLASS_PATH || location == StandardLocation.PLATFORM_CLASS_PATH;
@@ -107,7 +118,29 @@ class JavaFileManagerImpl extends ForwardingJavaFileManager<StandardJavaFileMana
       catch (URISyntaxException e) {
         throw new IOException(e);
       }
+      List<JavaClassFileObject> siblings = sources.get(sibling);
+      if (siblings == null) {
+        sources.put(sibling, siblings = new ArrayList<JavaClassFileObject>());
+      }
+      siblings.add(clazz);
     }
     return clazz;
   }
+
+  /**
+   * The state shared by the file managers of successive compilations.
+   */
+  static class Environment {
+
+    /** . */
+    final StandardJavaFileManager fileManager;
+
+    /** . */
+    final ClasspathResolver resolver;
+
+    Environment(StandardJavaFileManager fileManager, ClasspathResolver resolver) {
+      this.fileManager = fileManager;
+      this.resolver = resolver;
+    }
+  }
 }
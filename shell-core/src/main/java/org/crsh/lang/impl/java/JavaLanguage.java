@@ -32,7 +32,7 @@ public class JavaLanguage extends CRaSHPlugin<Language> implements Language {
 
   @Override
   public void init() {
-    compiler = new JavaCompiler(getContext().getLoader());
+    compiler = new JavaCompiler(getContext());
   }
 
   @Override
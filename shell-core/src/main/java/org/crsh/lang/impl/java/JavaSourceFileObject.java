@@ -26,6 +26,9 @@ import java.net.URISyntaxException;
 /** @author Julien Viet */
 class JavaSourceFileObject extends SimpleJavaFileObject {
 
+  /** . */
+  private final String className;
+
   /** . */
   private final String source;
 
@@ -33,9 +36,14 @@ class JavaSourceFileObject extends SimpleJavaFileObject {
     super(new URI("whatever", null, '/' + className.replace('.', '/') + ".java", null), Kind.SOURCE);
 
     //
+    this.className = className;
     this.source = source;
   }
 
+  String getClassName() {
+    return className;
+  }
+
   @Override
   public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
     return source;
@@ -22,8 +22,12 @@ import java.security.SecureClassLoader;
 import java.util.HashMap;
 import java.util.Map;
 
-/** @author Julien Viet */
-class LoadingClassLoader extends SecureClassLoader {
+/**
+ * A class loader defining classes from their bytecode.
+ *
+ * @author Julien Viet
+ */
+public class LoadingClassLoader extends SecureClassLoader {
 
   /** . */
   private final Map<String, byte[]> definitions;
@@ -45,6 +49,14 @@ class LoadingClassLoader extends SecureClassLoader {
     this.classes = new HashMap<String, Class<?>>();
   }
 
+  public LoadingClassLoader(ClassLoader parent, Map<String, byte[]> definitions) {
+    super(parent);
+
+    //
+    this.definitions = definitions;
+    this.classes = new HashMap<String, Class<?>>();
+  }
+
   LoadingClassLoader(Map<String, byte[]> definitions) {
     this.definitions = definitions;
     this.classes = new HashMap<String, Class<?>>();
@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl.java;
+
+import org.crsh.command.CommandContext;
+import org.crsh.command.Pipe;
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.text.Screenable;
+import org.crsh.text.Style;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Maps the elements consumed by a pipe in parallel: each {@link Pipe#provide(Object)} invocation runs as a task of a
+ * fork-join pool and what the pipe produces during an invocation is captured and emitted later to the consumer by
+ * the invocation thread, either in the order of the consumed elements or as soon as the invocation is done.
+ *
+ * What the pipe produces outside of the tasks, for instance when it is opened or closed, is emitted directly after
+ * the pending tasks.
+ */
+class ParallelMap<C, P> implements CommandContext<P> {
+
+  /** . */
+  private static final Object CLS = new Object();
+
+  /** Marks an element produced by a task, the elements are kept in order by the task. */
+  private static final Object ELEMENT = new Object();
+
+  /** Text produced by a task. */
+  private static class Text {
+    final String value;
+    Text(String value) {
+      this.value = value;
+    }
+  }
+
+  /** Style produced by a task. */
+  private static class Styled {
+    final Style value;
+    Styled(Style value) {
+      this.value = value;
+    }
+  }
+
+  /** The provide invocation of an element. */
+  private class Task implements Runnable {
+
+    /** . */
+    final C element;
+
+    /** . */
+    final List<Object> output = new ArrayList<Object>();
+
+    /** The elements produced in order, each one is marked by {@link #ELEMENT} in the output. */
+    final List<P> elements = new ArrayList<P>();
+
+    /** . */
+    ForkJoinTask<?> future;
+
+    /** . */
+    Throwable failure;
+
+    /** Guarded by the lock. */
+    boolean done;
+
+    /** Guarded by the lock, true when the task must not run anymore. */
+    boolean cancelled;
+
+    /** Guarded by the lock, the thread running the task or null. */
+    Thread thread;
+
+    Task(C element) {
+      this.element = element;
+    }
+
+    public void run() {
+      Thread thread = Thread.currentThread();
+      synchronized (lock) {
+        if (cancelled) {
+          return;
+        }
+        this.thread = thread;
+      }
+      ClassLoader previousLoader = thread.getContextClassLoader();
+      ShellSafety previousSafety = ShellSafetyFactory.setCurrentThreadShellSafety(shellSafety);
+      thread.setContextClassLoader(loader);
+      current.set(this);
+      try {
+        pipe.provide(element);
+      }
+      catch (Throwable t) {
+        failure = t;
+      }
+      finally {
+        current.remove();
+        thread.setContextClassLoader(previousLoader);
+        ShellSafetyFactory.setCurrentThreadShellSafety(previousSafety);
+        boolean interrupted;
+        synchronized (lock) {
+          done = true;
+          interrupted = cancelled;
+          this.thread = null;
+          lock.notifyAll();
+        }
+        if (interrupted) {
+          // Do not leak the cancellation to the next task of the pool thread
+          Thread.interrupted();
+        }
+      }
+    }
+  }
+
+  /** . */
+  private final Pipe<C, P> pipe;
+
+  /** . */
+  private final CommandContext<P> consumer;
+
+  /** . */
+  private final ForkJoinPool pool;
+
+  /** . */
+  private final boolean ordered;
+
+  /** The maximum number of pending tasks. */
+  private final int window;
+
+  /** . */
+  private final ClassLoader loader;
+
+  /** . */
+  private final ShellSafety shellSafety;
+
+  /** The task running on the current thread. */
+  private final ThreadLocal<Task> current = new ThreadLocal<Task>();
+
+  /** The pending tasks in the order of the consumed elements. */
+  private final LinkedList<Task> pending = new LinkedList<Task>();
+
+  /** . */
+  private final Object lock = new Object();
+
+  ParallelMap(Pipe<C, P> pipe, CommandContext<P> consumer, ForkJoinPool pool, boolean ordered, ShellSafety shellSafety) {
+    this.pipe = pipe;
+    this.consumer = consumer;
+    this.pool = pool;
+    this.ordered = ordered;
+    this.window = pool.getParallelism() * 2;
+    this.loader = Thread.currentThread().getContextClassLoader();
+    this.shellSafety = shellSafety;
+  }
+
+  /**
+   * Submit an element to the pipe, the invocation waits when too many elements are pending.
+   *
+   * @param element the element
+   * @throws Exception any exception thrown by the pipe for a previous element
+   */
+  void submit(C element) throws Exception {
+    emit();
+    while (pending.size() >= window) {
+      await();
+      emit();
+    }
+    Task task = new Task(element);
+    pending.addLast(task);
+    task.future = pool.submit(task);
+  }
+
+  /**
+   * Wait until all the pending elements are emitted.
+   *
+   * @throws Exception any exception thrown by the pipe for a pending element
+   */
+  void drain() throws Exception {
+    while (true) {
+      emit();
+      if (pending.isEmpty()) {
+        break;
+      }
+      await();
+    }
+  }
+
+  /**
+   * Cancel the pending tasks: the tasks that did not start yet will not run and the running tasks are interrupted,
+   * this method returns when they are done, so the pipe is not invoked anymore by the tasks. The output of the
+   * cancelled tasks is dropped.
+   */
+  void cancel() {
+    List<Task> running = new ArrayList<Task>();
+    synchronized (lock) {
+      for (Task task : pending) {
+        task.cancelled = true;
+        if (task.thread != null) {
+          task.thread.interrupt();
+          running.add(task);
+        }
+      }
+    }
+    for (Task task : pending) {
+      task.future.cancel(false);
+    }
+    pending.clear();
+
+    //
+    boolean interrupted = false;
+    synchronized (lock) {
+      for (Task task : running) {
+        while (!task.done) {
+          try {
+            lock.wait();
+          }
+          catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void await() throws InterruptedIOException {
+    synchronized (lock) {
+      try {
+        while (!isDone()) {
+          lock.wait();
+        }
+      }
+      catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  /**
+   * @return true when a pending task can be emitted
+   */
+  private boolean isDone() {
+    if (ordered) {
+      return pending.getFirst().done;
+    } else {
+      for (Task task : pending) {
+        if (task.done) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Emit the tasks that are done, the first failure of a task or of the consumer is rethrown and cancels the
+   * pending tasks.
+   */
+  private void emit() throws Exception {
+    try {
+      for (Iterator<Task> i = pending.iterator();i.hasNext();) {
+        Task task = i.next();
+        boolean done;
+        synchronized (lock) {
+          done = task.done;
+        }
+        if (done) {
+          i.remove();
+          if (task.failure != null) {
+            rethrow(task.failure);
+          }
+          Iterator<P> elements = task.elements.iterator();
+          for (Object item : task.output) {
+            if (item == ELEMENT) {
+              consumer.provide(elements.next());
+            } else if (item == CLS) {
+              consumer.cls();
+            } else if (item instanceof Text) {
+              consumer.append(((Text)item).value);
+            } else {
+              consumer.append(((Styled)item).value);
+            }
+          }
+        } else if (ordered) {
+          break;
+        }
+      }
+    }
+    catch (Throwable t) {
+      cancel();
+      throw t;
+    }
+  }
+
+  private static void rethrow(Throwable t) throws Exception {
+    if (t instanceof Exception) {
+      throw (Exception)t;
+    } else if (t instanceof Error) {
+      throw (Error)t;
+    } else {
+      throw new UndeclaredThrowableException(t);
+    }
+  }
+
+  private void flushPending() throws IOException {
+    try {
+      drain();
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new UndeclaredThrowableException(e);
+    }
+  }
+
+  public boolean takeAlternateBuffer() throws IOException {
+    return consumer.takeAlternateBuffer();
+  }
+
+  public boolean releaseAlternateBuffer() throws IOException {
+    return consumer.releaseAlternateBuffer();
+  }
+
+  public String getProperty(String propertyName) {
+    return consumer.getProperty(propertyName);
+  }
+
+  public String readLine(String msg, boolean echo) throws IOException, InterruptedException {
+    return consumer.readLine(msg, echo);
+  }
+
+  public Map<String, Object> getSession() {
+    return consumer.getSession();
+  }
+
+  public Map<String, Object> getAttributes() {
+    return consumer.getAttributes();
+  }
+
+  public int getWidth() {
+    return consumer.getWidth();
+  }
+
+  public int getHeight() {
+    return consumer.getHeight();
+  }
+
+  public Class<P> getConsumedType() {
+    return consumer.getConsumedType();
+  }
+
+  public void provide(P element) throws Exception {
+    Task task = current.get();
+    if (task != null) {
+      task.output.add(ELEMENT);
+      task.elements.add(element);
+    } else {
+      drain();
+      consumer.provide(element);
+    }
+  }
+
+  public Screenable append(CharSequence s) throws IOException {
+    Task task = current.get();
+    if (task != null) {
+      task.output.add(new Text(s.toString()));
+    } else {
+      flushPending();
+      consumer.append(s);
+    }
+    return this;
+  }
+
+  public Appendable append(char c) throws IOException {
+    return append(Character.toString(c));
+  }
+
+  public Appendable append(CharSequence csq, int start, int end) throws IOException {
+    return append(csq.subSequence(start, end));
+  }
+
+  public Screenable append(Style style) throws IOException {
+    Task task = current.get();
+    if (task != null) {
+      task.output.add(new Styled(style));
+    } else {
+      flushPending();
+      consumer.append(style);
+    }
+    return this;
+  }
+
+  public Screenable cls() throws IOException {
+    Task task = current.get();
+    if (task != null) {
+      task.output.add(CLS);
+    } else {
+      flushPending();
+      consumer.cls();
+    }
+    return this;
+  }
+
+  public void flush() throws IOException {
+    if (current.get() == null) {
+      flushPending();
+      consumer.flush();
+    }
+  }
+
+  public void close() throws Exception {
+    try {
+      drain();
+    }
+    finally {
+      consumer.close();
+    }
+  }
+}
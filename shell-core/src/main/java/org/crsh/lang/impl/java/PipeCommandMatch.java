@@ -26,11 +26,16 @@ import org.crsh.keyboard.KeyHandler;
 import org.crsh.shell.ErrorKind;
 import org.crsh.text.ScreenContext;
 import org.crsh.shell.impl.command.InvocationContextImpl;
+import org.crsh.shell.impl.command.ShellSession;
 import org.crsh.shell.impl.command.spi.CommandException;
 import org.crsh.util.Utils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
 * @author Julien Viet
@@ -79,6 +84,7 @@ class PipeCommandMatch<T extends BaseCommand, C, P, PC extends Pipe<C, P>> exten
 
       Pipe<C, P> real;
       InvocationContext<P> invocationContext;
+      ParallelMap<C, P> map;
 
       public Class<P> getProducedType() {
         return producedType;
@@ -129,6 +135,20 @@ class PipeCommandMatch<T extends BaseCommand, C, P, PC extends Pipe<C, P>> exten
         // It's a pipe command
         if (ret != null) {
           real = ret;
+
+          // Map the elements in parallel, the pipe produces to the map
+          Pipe.Mapping mapping = real.getMapping();
+          if (mapping != null && mapping != Pipe.Mapping.SEQUENTIAL) {
+            ShellSafety shellSafety = invocationContext.getShellSafety();
+            Map<String, Object> session = consumer.getSession();
+            ForkJoinPool pool = session instanceof ShellSession ? ((ShellSession)session).getContext().getForkJoinPool() : ForkJoinPool.commonPool();
+            map = new ParallelMap<C, P>(real, consumer, pool, mapping == Pipe.Mapping.ORDERED, shellSafety);
+            command.popContext();
+            invocationContext = new InvocationContextImpl<P>(map, shellSafety);
+            command.pushContext(invocationContext);
+          }
+
+          //
           try {
             real.open(invocationContext);
           }
@@ -139,7 +159,17 @@ class PipeCommandMatch<T extends BaseCommand, C, P, PC extends Pipe<C, P>> exten
       }
 
       public void provide(C element) throws IOException, CommandException {
-        if (real != null) {
+        if (map != null) {
+          try {
+            map.submit(element);
+          }
+          catch (InterruptedIOException e) {
+            throw e;
+          }
+          catch (Exception e) {
+            throw new CommandException(ErrorKind.EVALUATION, "Command " + name + " failed", e);
+          }
+        } else if (real != null) {
           try {
             real.provide(element);
           }
@@ -150,6 +180,17 @@ class PipeCommandMatch<T extends BaseCommand, C, P, PC extends Pipe<C, P>> exten
       }
 
       public void flush() throws IOException {
+        if (map != null) {
+          try {
+            map.drain();
+          }
+          catch (IOException e) {
+            throw e;
+          }
+          catch (Exception e) {
+            throw new UndeclaredThrowableException(e);
+          }
+        }
         if (real != null) {
           real.flush();
         } else {
@@ -160,6 +201,9 @@ class PipeCommandMatch<T extends BaseCommand, C, P, PC extends Pipe<C, P>> exten
       public void close() throws IOException, CommandException {
         try {
           try {
+            if (map != null) {
+              map.drain();
+            }
             if (real != null) {
               real.close();
             }
@@ -19,6 +19,8 @@
 
 package org.crsh.lang.impl.script;
 
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.shell.ErrorKind;
 import org.crsh.shell.impl.command.ShellSession;
 import org.crsh.shell.impl.command.spi.Command;
@@ -84,19 +86,27 @@ public class PipeLineFactory {
   }
 
   public CommandInvoker<Void, Object> create(ShellSession session) throws CommandNotFoundException, CommandException {
-    LinkedList<CommandInvoker> pipes = new LinkedList<CommandInvoker>();
+    LinkedList<CommandInvoker<?, ?>> pipes = new LinkedList<CommandInvoker<?, ?>>();
     for (PipeLineFactory current = this;current != null;current = current.next) {
       Command<?> command = session.getCommand(current.name);
       if (command == null) {
         throw new CommandNotFoundException(current.name);
       }
-      CommandInvoker commandInvoker = command.resolveInvoker(current.rest);
+      CommandInvoker<?, ?> commandInvoker = command.resolveInvoker(current.rest);
       if (commandInvoker == null) {
         throw new CommandNotFoundException(current.name);
       }
       pipes.add(commandInvoker);
     }
-    return new PipeLine(pipes.toArray(new CommandInvoker[pipes.size()]));
+    CommandInvoker<?, ?>[] invokers = pipes.toArray(new CommandInvoker<?, ?>[pipes.size()]);
+    if (invokers.length > 1) {
+      PluginContext context = session.getContext();
+      Integer buffer = context != null ? context.getProperty(PropertyDescriptor.PIPELINE_BUFFER) : null;
+      if (buffer != null && buffer > 0) {
+        return new PipeLine(invokers, context.getExecutionMode(), buffer);
+      }
+    }
+    return new PipeLine(invokers);
   }
 
   public PipeLineFactory getLast() {
@@ -66,6 +66,16 @@ public class ScriptCompiler implements Compiler {
     return EXT;
   }
 
+  @Override
+  public String describeCommand(String name, byte[] source) throws NullPointerException {
+    return "";
+  }
+
+  @Override
+  public Map<String, CommandResolution> compileCommands(Map<String, byte[]> sources) throws NullPointerException {
+    return Collections.emptyMap();
+  }
+
   @Override
   public CommandResolution compileCommand(final String name, final byte[] source) throws CommandException, NullPointerException {
 
@@ -117,11 +117,8 @@ public class ScriptRepl implements Repl {
     int pos = termPrefix.indexOf(' ');
     if (pos == -1) {
       Completion.Builder builder = Completion.builder(termPrefix);
-      for (Map.Entry<String, String> command : session.getCommands()) {
-        String name = command.getKey();
-        if (name.startsWith(termPrefix)) {
-          builder.add(name.substring(termPrefix.length()), true);
-        }
+      for (Map.Entry<String, String> command : session.getCommands(termPrefix)) {
+        builder.add(command.getKey().substring(termPrefix.length()), true);
       }
       completion = new CompletionMatch(Delimiter.EMPTY, builder.build());
     } else {
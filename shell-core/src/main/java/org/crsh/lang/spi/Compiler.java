@@ -21,6 +21,7 @@ package org.crsh.lang.spi;
 import org.crsh.shell.impl.command.ShellSession;
 import org.crsh.shell.impl.command.spi.CommandException;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,6 +48,30 @@ public interface Compiler {
    */
   CommandResolution compileCommand(String name, byte[] source) throws CommandException, NullPointerException;
 
+  /**
+   * Returns the description of a command without compiling it, this is used for listing the commands and
+   * must be cheap compared to {@link #compileCommand(String, byte[])}. When the description cannot be determined
+   * from the source alone, the command is compiled to be described.
+   *
+   * @param name the command name
+   * @param source the command source
+   * @return the command description or null if it cannot be determined without compiling the command
+   * @throws NullPointerException if the command name is null
+   */
+  String describeCommand(String name, byte[] source) throws NullPointerException;
+
+  /**
+   * Compile several commands at once, this is an optimization for compilers that can share the cost of a
+   * compilation between commands. The commands that are not present in the returned map are not compiled
+   * and should be compiled individually with {@link #compileCommand(String, byte[])}, in particular the commands
+   * that fail to compile are never reported by this method.
+   *
+   * @param sources the command sources keyed by command name
+   * @return the compiled commands keyed by command name
+   * @throws NullPointerException if the sources are null
+   */
+  Map<String, CommandResolution> compileCommands(Map<String, byte[]> sources) throws NullPointerException;
+
   //
   String doCallBack(ShellSession session, String name, String defaultValue);
 
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The kind of threads executing the shell sessions and the commands, configured by the
+ * {@link PropertyDescriptor#EXECUTION_MODE} property.
+ */
+public enum ExecutionMode {
+
+  /**
+   * Platform threads, the commands are executed by a fixed pool of threads.
+   */
+  PLATFORM,
+
+  /**
+   * Virtual threads, each session and each command gets its own virtual thread. When the runtime does not
+   * support virtual threads the {@link #PLATFORM} mode is used instead.
+   */
+  VIRTUAL;
+
+  /** . */
+  private static final Logger log = Logger.getLogger(ExecutionMode.class.getName());
+
+  /** The <code>Thread.ofVirtual()</code> method. */
+  private static final Method OF_VIRTUAL;
+
+  /** The <code>Thread.Builder.name(String)</code> method. */
+  private static final Method NAME;
+
+  /** The <code>Thread.Builder.name(String, long)</code> method. */
+  private static final Method NAME_COUNTER;
+
+  /** The <code>Thread.Builder.unstarted(Runnable)</code> method. */
+  private static final Method UNSTARTED;
+
+  /** The <code>Thread.Builder.factory()</code> method. */
+  private static final Method FACTORY;
+
+  /** The <code>Executors.newThreadPerTaskExecutor(ThreadFactory)</code> method. */
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method nameCounter = null;
+    Method unstarted = null;
+    Method factory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builder.getMethod("name", String.class);
+      nameCounter = builder.getMethod("name", String.class, long.class);
+      unstarted = builder.getMethod("unstarted", Runnable.class);
+      factory = builder.getMethod("factory");
+      newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+      // Fails when virtual threads are a preview feature that is not enabled
+      unstarted.invoke(ofVirtual.invoke(null), new Runnable() {
+        public void run() {
+        }
+      });
+    }
+    catch (Exception e) {
+      log.log(Level.FINE, "Virtual threads are not supported by this runtime", e);
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    NAME_COUNTER = nameCounter;
+    UNSTARTED = unstarted;
+    FACTORY = factory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  /**
+   * @return true when the runtime supports virtual threads
+   */
+  public static boolean isVirtualThreadSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Returns the mode effectively used: the {@link #VIRTUAL} mode resolves to the {@link #PLATFORM} mode when
+   * the runtime does not support virtual threads.
+   *
+   * @return the effective mode
+   */
+  public ExecutionMode getEffectiveMode() {
+    return this == VIRTUAL && isVirtualThreadSupported() ? VIRTUAL : PLATFORM;
+  }
+
+  /**
+   * Create a new unstarted thread for executing a session.
+   *
+   * @param task the task to execute
+   * @param name the thread name
+   * @return the thread
+   */
+  public Thread newThread(Runnable task, String name) {
+    if (getEffectiveMode() == VIRTUAL) {
+      return (Thread)invoke(UNSTARTED, invoke(NAME, invoke(OF_VIRTUAL, null), name), task);
+    } else {
+      return new Thread(task, name);
+    }
+  }
+
+  /**
+   * Create a new executor for executing the commands, in the {@link #VIRTUAL} mode the executor starts a virtual
+   * thread for each task and the pool size is ignored.
+   *
+   * @param poolSize the pool size
+   * @return the executor
+   */
+  public ExecutorService newExecutor(int poolSize) {
+    if (getEffectiveMode() == VIRTUAL) {
+      Object factory = invoke(FACTORY, invoke(NAME_COUNTER, invoke(OF_VIRTUAL, null), "CRaSH-", 0L));
+      return (ExecutorService)invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, factory);
+    } else {
+      return Executors.newFixedThreadPool(poolSize);
+    }
+  }
+
+  private static Object invoke(Method method, Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    }
+    catch (IllegalAccessException e) {
+      throw new UndeclaredThrowableException(e);
+    }
+    catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new UndeclaredThrowableException(cause);
+      }
+    }
+  }
+}
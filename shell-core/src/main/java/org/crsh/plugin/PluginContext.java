@@ -18,14 +18,21 @@
  */
 package org.crsh.plugin;
 
+import org.crsh.console.History;
+import org.crsh.lang.LanguageCommandResolver;
+import org.crsh.text.Renderer;
+import org.crsh.util.BytecodeCache;
 import org.crsh.util.Utils;
 import org.crsh.vfs.FS;
 import org.crsh.vfs.Resource;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -38,6 +45,9 @@ public final class PluginContext {
   /** . */
   private static final Logger log = Logger.getLogger(PluginContext.class.getName());
 
+  /** . */
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
   /** . */
   final PluginManager manager;
 
@@ -53,12 +63,21 @@ public final class PluginContext {
   /** . */
   private final Map<String, Object> attributes;
 
-  /** The shared executor. */
-  private final ExecutorService executor;
+  /** Guarded by this, the shared executor or null when it is created from the execution mode. */
+  private ExecutorService executor;
+
+  /** Guarded by this, the pool of the parallel pipes, created when it is first used. */
+  private ForkJoinPool forkJoinPool;
+
+  /** The command histories of the users. */
+  private final HashMap<String, History> histories = new HashMap<String, History>();
 
   /** . */
   private boolean started;
 
+  /** Guarded by this, true once stopped: the pools are not created anymore. */
+  private boolean stopped;
+
   /** . */
   private ScheduledFuture scannerFuture;
 
@@ -68,11 +87,20 @@ public final class PluginContext {
   /** . */
   private final PropertyManager propertyManager;
 
+  /** . */
+  private BytecodeCache bytecodeCache;
+
+  /** The command resolvers to warm up when this context starts. */
+  private final List<LanguageCommandResolver> warmUps = new ArrayList<LanguageCommandResolver>();
+
+  /** The pools compiling the commands of the running warm ups. */
+  private final Set<ExecutorService> warmUpExecutors = new HashSet<ExecutorService>();
+
   /**
    * Create a new plugin context with preconfigured executor and scanner, this is equivalent to invoking:
    *
    * <code><pre>new PluginContext(
-   *    Executors.newFixedThreadPool(20),
+   *    mode.newExecutor(20),
    *    new ScheduledThreadPoolExecutor(1),
    *    discovery,
    *    attributes,
@@ -80,6 +108,9 @@ public final class PluginContext {
    *    confFS,
    *    loader);</pre></code>
    *
+   * where the mode is the {@link #getExecutionMode() execution mode} of the context, the executor is created when
+   * it is first used.
+   *
    * @param discovery the plugin discovery
    * @param cmdFS the command file system
    * @param attributes the attributes
@@ -94,13 +125,14 @@ public final class PluginContext {
       FS confFS,
       ClassLoader loader) throws NullPointerException {
     this(
-        Executors.newFixedThreadPool(20),
+        null,
         new ScheduledThreadPoolExecutor(1),
         discovery,
         attributes,
         cmdFS,
         confFS,
-        loader);
+        loader,
+        false);
   }
 
   /**
@@ -123,7 +155,19 @@ public final class PluginContext {
     FS cmdFS,
     FS confFS,
     ClassLoader loader) throws NullPointerException {
-    if (executor == null) {
+    this(executor, scanner, discovery, attributes, cmdFS, confFS, loader, true);
+  }
+
+  private PluginContext(
+    ExecutorService executor,
+    ScheduledExecutorService scanner,
+    PluginDiscovery discovery,
+    Map<String, Object> attributes,
+    FS cmdFS,
+    FS confFS,
+    ClassLoader loader,
+    boolean requireExecutor) throws NullPointerException {
+    if (executor == null && requireExecutor) {
       throw new NullPointerException("No null executor accepted");
     }
     if (scanner == null) {
@@ -184,10 +228,58 @@ public final class PluginContext {
     return attributes;
   }
 
-  public ExecutorService getExecutor() {
+  /**
+   * Returns the shared executor, when the context was not created with an executor, it is created according to
+   * the execution mode on the first invocation.
+   *
+   * @return the executor
+   * @throws IllegalStateException if the executor must be created and the context is stopped
+   */
+  public synchronized ExecutorService getExecutor() throws IllegalStateException {
+    if (executor == null) {
+      if (stopped) {
+        throw new IllegalStateException("Context stopped");
+      }
+      ExecutionMode mode = getExecutionMode();
+      log.log(Level.FINE, "Creating executor with execution mode " + mode.getEffectiveMode());
+      executor = mode.newExecutor(20);
+    }
     return executor;
   }
 
+  /**
+   * Returns the fork-join pool mapping the elements of the parallel pipes, its parallelism is configured by
+   * the {@link PropertyDescriptor#PIPE_PARALLELISM} property. The pool is created on the first invocation.
+   *
+   * @return the fork-join pool
+   * @throws IllegalStateException if the pool must be created and the context is stopped
+   */
+  public synchronized ForkJoinPool getForkJoinPool() throws IllegalStateException {
+    if (forkJoinPool == null) {
+      if (stopped) {
+        throw new IllegalStateException("Context stopped");
+      }
+      Integer parallelism = getProperty(PropertyDescriptor.PIPE_PARALLELISM);
+      if (parallelism == null || parallelism < 1) {
+        parallelism = Runtime.getRuntime().availableProcessors();
+      }
+      log.log(Level.FINE, "Creating fork-join pool with parallelism " + parallelism);
+      forkJoinPool = new ForkJoinPool(parallelism);
+    }
+    return forkJoinPool;
+  }
+
+  /**
+   * Returns the execution mode configured by the {@link PropertyDescriptor#EXECUTION_MODE} property, the
+   * {@link ExecutionMode#PLATFORM} mode is returned when it is not configured.
+   *
+   * @return the execution mode
+   */
+  public ExecutionMode getExecutionMode() {
+    ExecutionMode mode = getProperty(PropertyDescriptor.EXECUTION_MODE);
+    return mode != null ? mode : ExecutionMode.PLATFORM;
+  }
+
   /**
    * @return the property manager
    */
@@ -232,6 +324,82 @@ public final class PluginContext {
     propertyManager.parseProperty(desc, value);
   }
 
+  /**
+   * Returns the bytecode cache configured by the {@link PropertyDescriptor#COMPILER_CACHE_DIR} property, null is
+   * returned when no cache directory is configured.
+   *
+   * @return the bytecode cache
+   */
+  public synchronized BytecodeCache getBytecodeCache() {
+    String dir = getProperty(PropertyDescriptor.COMPILER_CACHE_DIR);
+    if (dir == null) {
+      bytecodeCache = null;
+    } else {
+      File root = new File(dir);
+      if (bytecodeCache == null || !bytecodeCache.getRoot().equals(root)) {
+        bytecodeCache = new BytecodeCache(root, BytecodeCache.fingerprint(loader));
+      }
+    }
+    return bytecodeCache;
+  }
+
+  /**
+   * Returns the command history of a user, the history is shared by the sessions of the user and lives as long
+   * as this context. Its capacity is configured by the {@link PropertyDescriptor#HISTORY_SIZE} property and it is
+   * saved in the directory configured by the {@link PropertyDescriptor#HISTORY_DIR} property. An anonymous user
+   * gets a new history kept in memory, so anonymous sessions do not see each other lines.
+   *
+   * @param user the user name or null for an anonymous user
+   * @return the history
+   */
+  public synchronized History getHistory(String user) {
+    Integer size = getProperty(PropertyDescriptor.HISTORY_SIZE);
+    if (size == null || size < 1) {
+      size = PropertyDescriptor.HISTORY_SIZE.defaultValue;
+    }
+    if (user == null) {
+      return new History(size);
+    }
+    History history = histories.get(user);
+    if (history == null) {
+      String dir = getProperty(PropertyDescriptor.HISTORY_DIR);
+      if (dir != null) {
+        File file = new File(dir, escape(user) + ".history");
+        try {
+          history = new History(size, file);
+        }
+        catch (IOException e) {
+          log.log(Level.WARNING, "Could not open history file " + file.getAbsolutePath(), e);
+        }
+      }
+      if (history == null) {
+        history = new History(size);
+      }
+      histories.put(user, history);
+    }
+    return history;
+  }
+
+  /**
+   * Escape a user name to a file name, the bytes of the name that are not lower case letters, digits, dots,
+   * underscores or hyphens are percent encoded. Distinct names give distinct file names, including on case
+   * insensitive file systems.
+   *
+   * @param user the user name
+   * @return the file name
+   */
+  static String escape(String user) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : user.getBytes(Utils.UTF_8)) {
+      if ((b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '.' || b == '_' || b == '-') {
+        sb.append((char)b);
+      } else {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+      }
+    }
+    return sb.toString();
+  }
+
   /**
    * Load a resource from the context.
    *
@@ -301,31 +469,109 @@ public final class PluginContext {
   }
 
   /**
-   * Refresh the fs system view. This is normally triggered by the periodic job but it can be manually
-   * invoked to trigger explicit refreshes.
+   * Refresh the fs system view. This is normally triggered by the periodic job or by the changes of the watched
+   * directories but it can be manually invoked to trigger explicit refreshes.
    */
   public void refresh() {
     resourceManager.refresh();
   }
 
+  /**
+   * Returns the generation of the command resources, the generation changes each time a refresh detects
+   * that command resources were added or removed.
+   *
+   * @return the command generation
+   */
+  public int getCommandGeneration() {
+    return resourceManager.getCommandGeneration();
+  }
+
+  /**
+   * Warm up a command resolver by compiling the commands in background, the warm up happens when this context starts
+   * or immediately when it is already started. Nothing happens unless the {@link PropertyDescriptor#COMPILER_WARMUP}
+   * property is set.
+   *
+   * @param resolver the resolver to warm up
+   */
+  public synchronized void warmUp(LanguageCommandResolver resolver) {
+    if (stopped) {
+      log.log(Level.FINE, "Ignoring command warm up of stopped context");
+    } else if (started) {
+      doWarmUp(resolver);
+    } else {
+      warmUps.add(resolver);
+    }
+  }
+
+  private void doWarmUp(final LanguageCommandResolver resolver) {
+    final Integer concurrency = getProperty(PropertyDescriptor.COMPILER_WARMUP);
+    if (concurrency != null && concurrency > 0) {
+      // The compilation tasks get their own pool: the warm up task waits for them and would otherwise hold
+      // a thread of the shared executor they need
+      final ExecutorService compilers = getExecutionMode().newExecutor(concurrency);
+      warmUpExecutors.add(compilers);
+      try {
+        getExecutor().execute(new Runnable() {
+          public void run() {
+            try {
+              refresh();
+              resolver.warmUp(compilers, concurrency);
+            }
+            catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            catch (RejectedExecutionException e) {
+              log.log(Level.FINE, "Command warm up interrupted", e);
+            }
+            finally {
+              synchronized (PluginContext.this) {
+                warmUpExecutors.remove(compilers);
+              }
+              compilers.shutdown();
+            }
+          }
+        });
+      }
+      catch (RejectedExecutionException e) {
+        log.log(Level.FINE, "Could not schedule command warm up", e);
+        warmUpExecutors.remove(compilers);
+        compilers.shutdown();
+      }
+    }
+  }
+
   synchronized void start() {
     if (!started) {
 
-      // Start refresh
+      // Start refresh, the mounts based on the file system are watched and the other mounts are polled
       Integer refreshRate = getProperty(PropertyDescriptor.VFS_REFRESH_PERIOD);
       TimeUnit timeUnit = getProperty(PropertyDescriptor.VFS_REFRESH_UNIT);
       if (refreshRate != null && refreshRate > 0) {
         TimeUnit tu = timeUnit != null ? timeUnit : TimeUnit.SECONDS;
-        scannerFuture = scanner.scheduleWithFixedDelay(new Runnable() {
+        Runnable refresh = new Runnable() {
           public void run() {
             refresh();
           }
-        }, 0, refreshRate, tu);
+        };
+        if (resourceManager.watch()) {
+          scannerFuture = scanner.schedule(refresh, 0, tu);
+        } else {
+          scannerFuture = scanner.scheduleWithFixedDelay(refresh, 0, refreshRate, tu);
+        }
       }
 
       // Init plugins
       manager.getPlugins(Object.class);
 
+      // Make the renderers of the context class loader available
+      Renderer.register(loader);
+
+      // Warm up commands
+      for (LanguageCommandResolver resolver : warmUps) {
+        doWarmUp(resolver);
+      }
+      warmUps.clear();
+
       //
       started = true;
     } else {
@@ -336,7 +582,10 @@ public final class PluginContext {
   synchronized void stop() {
 
     //
-    if (started) {
+    if (started && !stopped) {
+
+      // No pool is created from now
+      stopped = true;
 
       // Shutdown manager
       manager.shutdown();
@@ -349,8 +598,33 @@ public final class PluginContext {
       //
       scanner.shutdownNow();
 
+      // Stop watching
+      resourceManager.unwatch();
+
       // Shutdown executor
-      executor.shutdownNow();
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+
+      // Shutdown the warm up compilations
+      for (ExecutorService compilers : warmUpExecutors) {
+        compilers.shutdownNow();
+      }
+      warmUpExecutors.clear();
+
+      // Shutdown fork-join pool
+      if (forkJoinPool != null) {
+        forkJoinPool.shutdownNow();
+      }
+
+      // Remove the renderers of the context class loader
+      Renderer.unregister(loader);
+
+      // Close the history files
+      for (History history : histories.values()) {
+        history.close();
+      }
+      histories.clear();
     } else {
       log.log(Level.WARNING, "Attempt to stop when stopped");
     }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -95,6 +96,32 @@ public abstract class PropertyDescriptor<T> {
   /** . */
   public static final PropertyDescriptor<Integer> VFS_REFRESH_PERIOD = PropertyDescriptor.create("vfs.refresh_period", (Integer)null, "The refresh rate period");
 
+  /** . */
+  public static final PropertyDescriptor<String> COMPILER_CACHE_DIR = PropertyDescriptor.create("compiler.cache_dir", (String)null, "The directory where compiled command bytecode is cached across restarts");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> COMPILER_WARMUP = PropertyDescriptor.create("compiler.warmup", (Integer)null, "The number of commands compiled concurrently in background at startup, no command is compiled at startup when not set");
+
+  /** . */
+  public static final PropertyDescriptor<ExecutionMode> EXECUTION_MODE = new PropertyDescriptor<ExecutionMode>(ExecutionMode.class, "execution.mode", ExecutionMode.PLATFORM, "The threads executing the sessions and the commands: platform or virtual, virtual threads fall back to platform threads when the runtime does not support them") {
+    @Override
+    protected ExecutionMode doParse(String s) throws Exception {
+      return ExecutionMode.valueOf(s.trim().toUpperCase(Locale.ROOT));
+    }
+  };
+
+  /** . */
+  public static final PropertyDescriptor<Integer> PIPELINE_BUFFER = PropertyDescriptor.create("pipeline.buffer", (Integer)null, "The number of elements buffered between two pipeline stages, when set each stage of a pipeline runs on its own thread");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> PIPE_PARALLELISM = PropertyDescriptor.create("pipe.parallelism", (Integer)null, "The number of threads mapping the elements of parallel pipes, the number of available processors when not set");
+
+  /** . */
+  public static final PropertyDescriptor<Integer> HISTORY_SIZE = PropertyDescriptor.create("history.size", 500, "The maximum number of lines kept in the command history of a user");
+
+  /** . */
+  public static final PropertyDescriptor<String> HISTORY_DIR = PropertyDescriptor.create("history.dir", (String)null, "The directory where the command history of each user is saved, the history is kept in memory when not set");
+
   /** . */
   public final Class<T> type;
 
@@ -19,19 +19,30 @@
 
 package org.crsh.plugin;
 
+import org.crsh.util.Utils;
 import org.crsh.vfs.FS;
 import org.crsh.vfs.File;
 import org.crsh.vfs.Path;
 import org.crsh.vfs.Resource;
+import org.crsh.vfs.spi.FSDriver;
+import org.crsh.vfs.spi.file.FileDriver;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -55,6 +66,27 @@ public class ResourceManager {
   /** . */
   private volatile List<File> dirs;
 
+  /** The command resource ids seen by the last refresh. */
+  private Set<String> commandIds = Collections.emptySet();
+
+  /** . */
+  private volatile int commandGeneration;
+
+  /** The watch service of the file mounts or null when they are not watched. */
+  private WatchService watcher;
+
+  /** The watched directories. */
+  private final Set<java.nio.file.Path> watched = Collections.newSetFromMap(new ConcurrentHashMap<java.nio.file.Path, Boolean>());
+
+  /** The command resources, they are cached only when all the command mounts are watched. */
+  private final ConcurrentHashMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+
+  /** . */
+  private volatile boolean cached;
+
+  /** Incremented each time cached resources are invalidated. */
+  private volatile int invalidations;
+
   ResourceManager(FS cmdFS, FS confFS) {
     this.cmdFS = cmdFS;
     this.confFS = confFS;
@@ -89,11 +121,22 @@ public class ResourceManager {
           }
           break;
         case COMMAND:
+          if (cached) {
+            Resource resource = resources.get(resourceId);
+            if (resource != null) {
+              return Collections.singleton(resource);
+            }
+          }
+          int generation = invalidations;
           // Find the resource first, we find for the first found
           for (File path : dirs) {
             File f = path.child(resourceId);
             if (f != null) {
-              return Collections.singleton(f.getResource());
+              Resource resource = f.getResource();
+              if (cached && resource != null) {
+                cache(resourceId, resource, generation);
+              }
+              return Collections.singleton(resource);
             }
           }
           break;
@@ -119,36 +162,46 @@ public class ResourceManager {
   Iterable<String> listResourceId(ResourceKind kind) {
     switch (kind) {
       case COMMAND:
-        SortedSet<String> all = new TreeSet<String>();
-        try {
-          for (File path : dirs) {
-            for (File file : path.children()) {
-              String fileName = file.getName();
-              Matcher matcher = p.matcher(fileName);
-              if (matcher.matches()) {
-                String name = matcher.group(1);
-                if (!"login".equals(name) && !"logout".equals(name)) {
-                  all.add(fileName);
-                }
-              }
+        return listCommandIds();
+      default:
+        return Collections.emptyList();
+    }
+  }
+
+  private SortedSet<String> listCommandIds() {
+    SortedSet<String> all = new TreeSet<String>();
+    try {
+      for (File path : dirs) {
+        for (File file : path.children()) {
+          String fileName = file.getName();
+          Matcher matcher = p.matcher(fileName);
+          if (matcher.matches()) {
+            String name = matcher.group(1);
+            if (!"login".equals(name) && !"logout".equals(name)) {
+              all.add(fileName);
             }
           }
         }
-        catch (IOException e) {
-          e.printStackTrace();
-        }
-        return all;
-      default:
-        return Collections.emptyList();
+      }
+    }
+    catch (IOException e) {
+      e.printStackTrace();
     }
+    return all;
   }
 
   /**
-   * Refresh the fs system view. This is normally triggered by the periodic job but it can be manually
-   * invoked to trigger explicit refreshes.
+   * Refresh the fs system view. This is normally triggered by the periodic job or by the changes of the watched
+   * directories but it can be manually invoked to trigger explicit refreshes.
    */
   void refresh() {
+    invalidate(null);
+    scan();
+  }
+
+  private void scan() {
     try {
+      register();
       File commands = cmdFS.get(Path.get("/"));
       List<File> newDirs = new ArrayList<File>();
       newDirs.add(commands);
@@ -158,12 +211,181 @@ public class ResourceManager {
         }
       }
       dirs = newDirs;
+      Set<String> ids = listCommandIds();
+      synchronized (this) {
+        if (!ids.equals(commandIds)) {
+          commandIds = ids;
+          commandGeneration++;
+        }
+      }
     }
     catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Returns the generation of the command resources, the generation changes each time a refresh detects
+   * that command resources were added or removed.
+   *
+   * @return the command generation
+   */
+  int getCommandGeneration() {
+    return commandGeneration;
+  }
+
+  /**
+   * Watch the directories of the command mounts based on the file system, a change in a watched directory refreshes
+   * this manager immediately and only invalidates the changed resource. The command resources are cached when all
+   * the command mounts are watched, otherwise the mounts that cannot be watched such as the jar or servlet mounts
+   * must still be polled by periodic refreshes.
+   *
+   * @return true when all the command mounts are watched
+   */
+  synchronized boolean watch() {
+    if (watcher == null) {
+      boolean all = true;
+      boolean any = false;
+      for (FSDriver<?> driver : cmdFS.getDrivers()) {
+        if (driver instanceof FileDriver) {
+          any = true;
+        } else {
+          all = false;
+        }
+      }
+      if (any) {
+        final WatchService service;
+        try {
+          service = FileSystems.getDefault().newWatchService();
+        }
+        catch (IOException e) {
+          log.log(Level.WARNING, "Could not watch the command directories, they will be polled instead", e);
+          return false;
+        }
+        Thread thread = new Thread(new Runnable() {
+          public void run() {
+            process(service);
+          }
+        }, "CRaSH resource watcher");
+        thread.setDaemon(true);
+        thread.start();
+        watcher = service;
+        cached = all;
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Stop watching the command directories.
+   */
+  synchronized void unwatch() {
+    if (watcher != null) {
+      Utils.close(watcher);
+      watcher = null;
+      cached = false;
+      watched.clear();
+      invalidate(null);
+    }
+  }
+
+  private void process(WatchService service) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        boolean rescan = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          WatchEvent.Kind<?> kind = event.kind();
+          if (kind == StandardWatchEventKinds.OVERFLOW) {
+            invalidate(null);
+            rescan = true;
+          } else {
+            // The resource id is the file name whatever the directory is
+            invalidate(event.context().toString());
+            rescan |= kind != StandardWatchEventKinds.ENTRY_MODIFY;
+          }
+        }
+        if (!key.reset()) {
+          watched.remove((java.nio.file.Path)key.watchable());
+          rescan = true;
+        }
+        if (rescan) {
+          scan();
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ClosedWatchServiceException ignore) {
+      // Stopped
+    }
+  }
+
+  /**
+   * Register the root directories of the file mounts and their sub directories, the directories are registered
+   * before they are listed so no change can be missed.
+   */
+  private void register() throws IOException {
+    WatchService service;
+    synchronized (this) {
+      service = watcher;
+    }
+    if (service != null) {
+      try {
+        for (FSDriver<?> driver : cmdFS.getDrivers()) {
+          if (driver instanceof FileDriver) {
+            java.io.File root = ((FileDriver)driver).root();
+            if (register(service, root)) {
+              java.io.File[] children = root.listFiles();
+              if (children != null) {
+                for (java.io.File child : children) {
+                  register(service, child);
+                }
+              }
+            }
+          }
+        }
+      }
+      catch (ClosedWatchServiceException ignore) {
+        // Stopped
+      }
+    }
+  }
+
+  private boolean register(WatchService service, java.io.File dir) throws IOException {
+    if (dir.isDirectory()) {
+      java.nio.file.Path path = dir.toPath();
+      if (watched.add(path)) {
+        try {
+          path.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        catch (IOException e) {
+          watched.remove(path);
+          throw e;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private synchronized void cache(String resourceId, Resource resource, int generation) {
+    // A resource loaded before an invalidation may be stale
+    if (generation == invalidations) {
+      resources.put(resourceId, resource);
+    }
+  }
+
+  private synchronized void invalidate(String resourceId) {
+    invalidations++;
+    if (resourceId != null) {
+      resources.remove(resourceId);
+    } else {
+      resources.clear();
+    }
+  }
+
   /** . */
   private static final byte[] SEPARATOR = System.getProperty("line.separator").getBytes();
 
@@ -52,20 +52,8 @@ public class CRaSH {
   private final ArrayList<CommandResolver> semiSafeResolversWithoutManCommand = new ArrayList<CommandResolver>();
   private final ArrayList<CommandResolver> unSafeResolvers = new ArrayList<CommandResolver>();
 
-  static ShellSafety subthreadSafety = null;
-  static Object subthreadLock = new Object();
-
-  static ShellSafety getSubthreadSafety() {
-    synchronized (subthreadLock) {
-      return (subthreadSafety != null) ? subthreadSafety : ShellSafetyFactory.getCurrentThreadShellSafety();
-    }
-  }
-
-  static void setSubthreadSafety(ShellSafety shellSafety) {
-    synchronized (subthreadLock) {
-      subthreadSafety = shellSafety;
-    }
-  }
+  /** The command names of each resolver list, shared by the sessions for completing command names. */
+  private final IdentityHashMap<ArrayList<CommandResolver>, CommandTrie> commandTries = new IdentityHashMap<ArrayList<CommandResolver>, CommandTrie>();
 
   /** . */
   final ArrayList<Language> langs = new ArrayList<Language>();
@@ -82,6 +70,9 @@ public class CRaSH {
     this.scriptResolver = new LanguageCommandResolver(context, false);
     this.restrictedScriptResolver = new LanguageCommandResolver(context, true);
 
+    // Compile the commands in background when configured
+    context.warmUp(scriptResolver);
+
     // Add the resolver plugins
     for (CommandResolver resolver : context.getPlugins(CommandResolver.class)) {
       unSafeResolvers.add(resolver);
@@ -105,7 +96,11 @@ public class CRaSH {
     safeResolversWithoutManCommand.add(ExternalResolver.INSTANCE);
     semiSafeResolversWithoutManCommand.add(SystemResolver.SEMI_SAFE_INSTANCE_WITHOUT_MAN);
     semiSafeResolversWithoutManCommand.add(ExternalResolver.INSTANCE);
-
+    commandTries.put(unSafeResolvers, new CommandTrie());
+    commandTries.put(safeResolvers, new CommandTrie());
+    commandTries.put(semiSafeResolvers, new CommandTrie());
+    commandTries.put(safeResolversWithoutManCommand, new CommandTrie());
+    commandTries.put(semiSafeResolversWithoutManCommand, new CommandTrie());
   }
 
   public CRaSHSession createSession(Principal user, AuthInfo authInfo, ShellSafety shellSafety) {
@@ -147,27 +142,27 @@ public class CRaSH {
       throw new NullPointerException("No null name accepted");
     }
 
-    boolean safe = shellSafety.isSafeShell();
-    boolean permitExit = shellSafety.permitExit();
-    boolean isManAllowed = shellSafety.isAllowManCommand();
-
+    // Without a session safety, use the safety bound by the current process
     if (shellSafety.isDefault()) {
-      shellSafety = getSubthreadSafety();
-      ShellSafetyFactory.registerShellSafetyForThread(shellSafety);
-    } else {
-      setSubthreadSafety(shellSafety);
+      shellSafety = ShellSafetyFactory.getCurrentThreadShellSafety();
     }
-    
-    ArrayList<CommandResolver> resolvers = safe ? (permitExit ? (isManAllowed ? semiSafeResolvers : semiSafeResolversWithoutManCommand) : (isManAllowed ? safeResolvers : safeResolversWithoutManCommand)) : unSafeResolvers;
 
-    ShellSafetyFactory.registerShellSafetyForThread(shellSafety);
-    for (int i = 0;i < resolvers.size();i++) {
-      Command<?> command = resolvers.get(i).resolveCommand(name, shellSafety);
-      if (command != null) {
-        return command;
+    ArrayList<CommandResolver> resolvers = getResolvers(shellSafety);
+
+    // The created commands capture the safety of the thread
+    ShellSafety previous = ShellSafetyFactory.setCurrentThreadShellSafety(shellSafety);
+    try {
+      for (int i = 0;i < resolvers.size();i++) {
+        Command<?> command = resolvers.get(i).resolveCommand(name, shellSafety);
+        if (command != null) {
+          return command;
+        }
       }
+      return null;
+    }
+    finally {
+      ShellSafetyFactory.setCurrentThreadShellSafety(previous);
     }
-    return null;
   }
 
   public Iterable<Map.Entry<String, String>> getCommands() {
@@ -175,10 +170,7 @@ public class CRaSH {
   }
 
   public Iterable<Map.Entry<String, String>> getCommandsSafetyCheck(ShellSafety shellSafety) {
-    boolean safe = shellSafety.isSafeShell();
-    boolean permitExit = shellSafety.permitExit();
-    boolean isManAllowed = shellSafety.isAllowManCommand();
-    ArrayList<CommandResolver> resolvers = safe ? (permitExit ? (isManAllowed ? semiSafeResolvers : semiSafeResolversWithoutManCommand) : (isManAllowed ? safeResolvers : safeResolversWithoutManCommand)) : unSafeResolvers;
+    ArrayList<CommandResolver> resolvers = getResolvers(shellSafety);
     LinkedHashMap<String, String> names = new LinkedHashMap<String, String>();
     for (int i = 0;i < resolvers.size();i++) {
       for (Map.Entry<String, String> entry : resolvers.get(i).getDescriptions(shellSafety)) {
@@ -188,6 +180,121 @@ public class CRaSH {
     return names.entrySet();
   }
 
+  /**
+   * Returns the commands whose name starts with the specified prefix. The names are kept in a prefix tree shared by
+   * the sessions that is updated when commands are added or removed, the script commands are described from the
+   * description index of their resolver.
+   *
+   * @param prefix the command name prefix
+   * @param shellSafety the shell safety
+   * @return the matching commands sorted by name
+   * @throws NullPointerException if the prefix argument is null
+   */
+  public Iterable<Map.Entry<String, String>> getCommandsSafetyCheck(String prefix, ShellSafety shellSafety) throws NullPointerException {
+    if (prefix == null) {
+      throw new NullPointerException("No null prefix accepted");
+    }
+    ArrayList<CommandResolver> resolvers = getResolvers(shellSafety);
+    long generation = ((long)context.getCommandGeneration() << 32) | (ExternalResolver.INSTANCE.getGeneration() & 0xFFFFFFFFL);
+    List<Map.Entry<String, String>> matches;
+    LanguageCommandResolver[] scripts;
+    CommandTrie trie = commandTries.get(resolvers);
+    synchronized (trie) {
+      if (trie.generation != generation) {
+        update(trie, resolvers, shellSafety);
+        trie.generation = generation;
+      }
+      matches = trie.complete(prefix);
+      scripts = new LanguageCommandResolver[matches.size()];
+      for (int i = 0;i < scripts.length;i++) {
+        scripts[i] = trie.scripts.get(matches.get(i).getKey());
+      }
+    }
+
+    // The script commands are described from the index of their resolver out of the lock, the index is updated
+    // when a command resource changes and it only compiles the commands it cannot describe from their source
+    List<Map.Entry<String, String>> commands = new ArrayList<Map.Entry<String, String>>(matches.size());
+    for (int i = 0;i < scripts.length;i++) {
+      Map.Entry<String, String> match = matches.get(i);
+      if (scripts[i] != null) {
+        LanguageCommandResolver.IndexEntry entry = scripts[i].getIndexEntry(match.getKey(), shellSafety);
+        if (entry != null && entry.isValid()) {
+          commands.add(new AbstractMap.SimpleImmutableEntry<String, String>(match.getKey(), entry.getDescription()));
+        }
+      } else {
+        commands.add(match);
+      }
+    }
+
+    // The commands of the resolver plugins are not indexed since we cannot know when they change
+    TreeMap<String, String> plugins = null;
+    for (int i = 0;i < resolvers.size();i++) {
+      CommandResolver resolver = resolvers.get(i);
+      if (!isIndexed(resolver)) {
+        for (Map.Entry<String, String> entry : resolver.getDescriptions(shellSafety)) {
+          if (entry.getKey().startsWith(prefix)) {
+            if (plugins == null) {
+              plugins = new TreeMap<String, String>();
+            }
+            plugins.put(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+    if (plugins != null) {
+      for (Map.Entry<String, String> command : commands) {
+        plugins.put(command.getKey(), command.getValue());
+      }
+      return plugins.entrySet();
+    }
+    return commands;
+  }
+
+  private void update(CommandTrie trie, ArrayList<CommandResolver> resolvers, ShellSafety shellSafety) {
+    HashMap<String, CommandResolver> owners = new HashMap<String, CommandResolver>();
+    HashMap<String, String> descriptions = new HashMap<String, String>();
+    for (int i = 0;i < resolvers.size();i++) {
+      CommandResolver resolver = resolvers.get(i);
+      if (resolver instanceof LanguageCommandResolver) {
+        for (String name : ((LanguageCommandResolver)resolver).getNames(shellSafety)) {
+          owners.put(name, resolver);
+          descriptions.remove(name);
+        }
+      } else if (isIndexed(resolver)) {
+        for (Map.Entry<String, String> entry : resolver.getDescriptions(shellSafety)) {
+          owners.put(entry.getKey(), resolver);
+          descriptions.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    for (Map.Entry<String, String> command : trie.complete("")) {
+      if (!owners.containsKey(command.getKey())) {
+        trie.remove(command.getKey());
+      }
+    }
+    trie.scripts.clear();
+    for (Map.Entry<String, CommandResolver> owner : owners.entrySet()) {
+      String name = owner.getKey();
+      if (descriptions.containsKey(name)) {
+        trie.put(name, descriptions.get(name));
+      } else {
+        trie.put(name, null);
+        trie.scripts.put(name, (LanguageCommandResolver)owner.getValue());
+      }
+    }
+  }
+
+  private boolean isIndexed(CommandResolver resolver) {
+    return resolver instanceof LanguageCommandResolver || resolver instanceof SystemResolver || resolver == ExternalResolver.INSTANCE;
+  }
+
+  private ArrayList<CommandResolver> getResolvers(ShellSafety shellSafety) {
+    boolean safe = shellSafety.isSafeShell();
+    boolean permitExit = shellSafety.permitExit();
+    boolean isManAllowed = shellSafety.isAllowManCommand();
+    return safe ? (permitExit ? (isManAllowed ? semiSafeResolvers : semiSafeResolversWithoutManCommand) : (isManAllowed ? safeResolvers : safeResolversWithoutManCommand)) : unSafeResolvers;
+  }
+
   private boolean isCommandUnsafe(String command) {
     ArrayList<String> unsafeCommandNames = new ArrayList<String>(Arrays.asList("bye", "dashboard","egrep", "env", "exit",
             "filter", "java", "jdbc", "jndi", "jpa",
@@ -18,6 +18,7 @@
  */
 package org.crsh.shell.impl.command;
 
+import org.crsh.command.ShellSafety;
 import org.crsh.keyboard.KeyHandler;
 import org.crsh.shell.ShellProcess;
 import org.crsh.shell.ShellProcessContext;
@@ -46,6 +47,7 @@ abstract class CRaSHProcess implements ShellProcess {
 
   public void execute(ShellProcessContext processContext) {
     ClassLoader previous = crash.setCRaSHLoader();
+    ShellSafety previousSafety = crash.setShellSafety();
     try {
       ShellResponse resp;
       thread = Thread.currentThread();
@@ -88,6 +90,7 @@ abstract class CRaSHProcess implements ShellProcess {
       }
     }
     finally {
+      crash.setPreviousShellSafety(previousSafety);
       crash.setPreviousLoader(previous);
     }
   }
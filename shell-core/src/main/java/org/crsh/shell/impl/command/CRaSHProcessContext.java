@@ -22,6 +22,7 @@ package org.crsh.shell.impl.command;
 import org.crsh.command.CommandContext;
 import org.crsh.shell.impl.command.spi.CommandException;
 import org.crsh.text.Screenable;
+import org.crsh.text.FrameScreen;
 import org.crsh.text.ScreenContext;
 import org.crsh.shell.ShellProcessContext;
 import org.crsh.text.ScreenBuffer;
@@ -43,20 +44,14 @@ class CRaSHProcessContext implements CommandContext<Object>, Closeable {
   /** . */
   private final ScreenContextConsumer adapter;
 
-  /** . */
-  private final ScreenBuffer buffer;
+  /** The buffer flushed to the process context or to a frame screen when the alternate buffer is used. */
+  private ScreenBuffer buffer;
 
   /** . */
   private boolean useAlternateBuffer;
 
   CRaSHProcessContext(CRaSHSession session, final ShellProcessContext processContext) {
 
-    // We use this chunk buffer to buffer stuff
-    // but also because it optimises the chunks
-    // which provides better perormances on the client
-    final ScreenBuffer buffer = new ScreenBuffer(processContext);
-
-    //
     final ScreenContextConsumer adapter = new ScreenContextConsumer(new ScreenContext() {
       public int getWidth() {
         return processContext.getWidth();
@@ -68,36 +63,36 @@ class CRaSHProcessContext implements CommandContext<Object>, Closeable {
 
       @Override
       public Screenable append(CharSequence s) throws IOException {
-        buffer.append(s);
+        CRaSHProcessContext.this.buffer.append(s);
         return this;
       }
 
       @Override
       public Appendable append(char c) throws IOException {
-        buffer.append(c);
+        CRaSHProcessContext.this.buffer.append(c);
         return this;
       }
 
       @Override
       public Screenable append(CharSequence csq, int start, int end) throws IOException {
-        buffer.append(csq, start, end);
+        CRaSHProcessContext.this.buffer.append(csq, start, end);
         return this;
       }
 
       @Override
       public Screenable append(Style style) throws IOException {
-        buffer.append(style);
+        CRaSHProcessContext.this.buffer.append(style);
         return this;
       }
 
       @Override
       public Screenable cls() throws IOException {
-        buffer.cls();
+        CRaSHProcessContext.this.buffer.cls();
         return this;
       }
 
       public void flush() throws IOException {
-        buffer.flush();
+        CRaSHProcessContext.this.buffer.flush();
       }
     });
 
@@ -106,15 +101,30 @@ class CRaSHProcessContext implements CommandContext<Object>, Closeable {
     this.processContext = processContext;
     this.adapter = adapter;
     this.useAlternateBuffer = false;
-    this.buffer = buffer;
+
+    // We use this chunk buffer to buffer stuff
+    // but also because it optimises the chunks
+    // which provides better perormances on the client
+    this.buffer = new ScreenBuffer(processContext);
   }
 
   public boolean takeAlternateBuffer() throws IOException {
-    return useAlternateBuffer = processContext.takeAlternateBuffer();
+    buffer.flush();
+    boolean taken = processContext.takeAlternateBuffer();
+    if (taken && !useAlternateBuffer) {
+      // The alternate buffer is repainted by difference between two frames
+      buffer = new ScreenBuffer(new FrameScreen(processContext));
+    }
+    return useAlternateBuffer = taken;
   }
 
   public boolean releaseAlternateBuffer() throws IOException {
-    return useAlternateBuffer = processContext.releaseAlternateBuffer();
+    if (useAlternateBuffer) {
+      buffer.flush();
+      buffer = new ScreenBuffer(processContext);
+    }
+    useAlternateBuffer = false;
+    return processContext.releaseAlternateBuffer();
   }
 
   public String getProperty(String propertyName) {
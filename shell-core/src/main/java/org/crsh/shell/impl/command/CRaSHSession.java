@@ -73,16 +73,17 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
     this.user = user;
     this.authInfo = authInfo;
     this.shellSafety = shellSafety;
-    ShellSafetyFactory.registerShellSafetyForThread(this.shellSafety);
 
     //
     ClassLoader previous = setCRaSHLoader();
+    ShellSafety previousSafety = setShellSafety();
     try {
       for (Language manager : crash.langs) {
         manager.init(this);
       }
     }
     finally {
+      setPreviousShellSafety(previousSafety);
       setPreviousLoader(previous);
     }
   }
@@ -106,6 +107,10 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
     return crash.getCommandsSafetyCheck(shellSafety);
   }
 
+  public Iterable<Map.Entry<String, String>> getCommands(String prefix) throws NullPointerException {
+    return crash.getCommandsSafetyCheck(prefix, shellSafety);
+  }
+
   public Command<?> getCommand(String name) throws CommandException {
     return crash.getCommandSafetyCheck(name, shellSafety);
   }
@@ -124,12 +129,14 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
 
   public void close() {
     ClassLoader previous = setCRaSHLoader();
+    ShellSafety previousSafety = setShellSafety();
     try {
       for (Language manager : crash.langs) {
         manager.destroy(this);
       }
     }
     finally {
+      setPreviousShellSafety(previousSafety);
       setPreviousLoader(previous);
     }
   }
@@ -138,6 +145,7 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
 
   public String getWelcome() {
     ClassLoader previous = setCRaSHLoader();
+    ShellSafety previousSafety = setShellSafety();
     try {
       Compiler groovy = crash.scriptResolver.getCompiler("groovy");
       if (groovy != null) {
@@ -147,12 +155,14 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
       }
     }
     finally {
+      setPreviousShellSafety(previousSafety);
       setPreviousLoader(previous);
     }
   }
 
   public String getPrompt() {
     ClassLoader previous = setCRaSHLoader();
+    ShellSafety previousSafety = setShellSafety();
     try {
       Compiler groovy = crash.scriptResolver.getCompiler("groovy");
       if (groovy != null) {
@@ -162,11 +172,22 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
       }
     }
     finally {
+      setPreviousShellSafety(previousSafety);
       setPreviousLoader(previous);
     }
   }
 
   public ShellProcess createProcess(String request) {
+    ShellSafety previousSafety = setShellSafety();
+    try {
+      return doCreateProcess(request);
+    }
+    finally {
+      setPreviousShellSafety(previousSafety);
+    }
+  }
+
+  private ShellProcess doCreateProcess(String request) {
     log.log(Level.FINE, "Invoking request " + request);
     String trimmedRequest = request.trim();
     final StringBuilder msg = new StringBuilder();
@@ -191,10 +212,12 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
    */
   public CompletionMatch complete(final String prefix) {
     ClassLoader previous = setCRaSHLoader();
+    ShellSafety previousSafety = setShellSafety();
     try {
       return repl.complete(this, prefix);
     }
     finally {
+      setPreviousShellSafety(previousSafety);
       setPreviousLoader(previous);
     }
   }
@@ -210,4 +233,12 @@ public class CRaSHSession extends HashMap<String, Object> implements Shell, Clos
     Thread.currentThread().setContextClassLoader(previous);
   }
 
+  ShellSafety setShellSafety() {
+    return ShellSafetyFactory.setCurrentThreadShellSafety(shellSafety);
+  }
+
+  void setPreviousShellSafety(ShellSafety previous) {
+    ShellSafetyFactory.setCurrentThreadShellSafety(previous);
+  }
+
 }
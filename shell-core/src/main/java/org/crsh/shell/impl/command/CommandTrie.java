@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.lang.LanguageCommandResolver;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prefix tree of command names and their descriptions, it finds the commands starting with a prefix in a time
+ * proportional to the prefix length and the number of matches.
+ */
+class CommandTrie {
+
+  /** . */
+  private static final char[] NO_KEYS = new char[0];
+
+  /** . */
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  private static class Node {
+
+    /** The sorted keys of the children. */
+    private char[] keys = NO_KEYS;
+
+    /** . */
+    private Node[] children = NO_CHILDREN;
+
+    /** . */
+    private int size;
+
+    /** The command name when a command ends at this node, null otherwise. */
+    private String name;
+
+    /** . */
+    private String description;
+
+    Node get(char key) {
+      int index = Arrays.binarySearch(keys, 0, size, key);
+      return index >= 0 ? children[index] : null;
+    }
+
+    Node getOrCreate(char key) {
+      int index = Arrays.binarySearch(keys, 0, size, key);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      if (size == keys.length) {
+        int capacity = Math.max(2, size * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        children = Arrays.copyOf(children, capacity);
+      }
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      System.arraycopy(children, index, children, index + 1, size - index);
+      Node child = new Node();
+      keys[index] = key;
+      children[index] = child;
+      size++;
+      return child;
+    }
+
+    void remove(char key) {
+      int index = Arrays.binarySearch(keys, 0, size, key);
+      if (index >= 0) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(children, index + 1, children, index, size - index - 1);
+        children[--size] = null;
+      }
+    }
+
+    void collect(List<Map.Entry<String, String>> entries) {
+      if (name != null) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<String, String>(name, description));
+      }
+      for (int i = 0;i < size;i++) {
+        children[i].collect(entries);
+      }
+    }
+  }
+
+  /** . */
+  private final Node root = new Node();
+
+  /** The generation of the commands the trie was last updated with. */
+  long generation = -1;
+
+  /** The resolvers of the script commands, their descriptions are read from the resolver index when completed. */
+  final HashMap<String, LanguageCommandResolver> scripts = new HashMap<String, LanguageCommandResolver>();
+
+  /**
+   * Add or replace a command.
+   *
+   * @param name the command name
+   * @param description the command description
+   */
+  void put(String name, String description) {
+    Node node = root;
+    for (int i = 0;i < name.length();i++) {
+      node = node.getOrCreate(name.charAt(i));
+    }
+    node.name = name;
+    node.description = description;
+  }
+
+  /**
+   * Remove a command, the nodes left without command are pruned.
+   *
+   * @param name the command name
+   * @return true if the command was removed
+   */
+  boolean remove(String name) {
+    return remove(root, name, 0);
+  }
+
+  private boolean remove(Node node, String name, int index) {
+    if (index == name.length()) {
+      if (node.name == null) {
+        return false;
+      }
+      node.name = null;
+      node.description = null;
+      return true;
+    }
+    char key = name.charAt(index);
+    Node child = node.get(key);
+    if (child == null || !remove(child, name, index + 1)) {
+      return false;
+    }
+    if (child.name == null && child.size == 0) {
+      node.remove(key);
+    }
+    return true;
+  }
+
+  /**
+   * @param name the command name
+   * @return true if the trie contains the command
+   */
+  boolean contains(String name) {
+    Node node = find(name);
+    return node != null && node.name != null;
+  }
+
+  /**
+   * Returns the commands starting with the prefix sorted by name.
+   *
+   * @param prefix the prefix
+   * @return the matching commands
+   */
+  List<Map.Entry<String, String>> complete(String prefix) {
+    List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>();
+    Node node = find(prefix);
+    if (node != null) {
+      node.collect(entries);
+    }
+    return entries;
+  }
+
+  private Node find(String prefix) {
+    Node node = root;
+    for (int i = 0;i < prefix.length() && node != null;i++) {
+      node = node.get(prefix.charAt(i));
+    }
+    return node;
+  }
+}
@@ -2,6 +2,7 @@ package org.crsh.shell.impl.command;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.crsh.cli.descriptor.Format;
 import org.crsh.cli.impl.descriptor.IntrospectionException;
@@ -21,17 +22,32 @@ public class ExternalResolver implements CommandResolver
 	public static final ExternalResolver INSTANCE = new ExternalResolver();
 	private final HashMap<String, Class<? extends BaseCommand>> commands;
 	private final HashMap<String, String> descriptions;
+	private volatile int generation;
+
+	/** The commands per name and safety mode, reused so a command keeps the lines it already parsed. */
+	private final ConcurrentHashMap<String, Command<?>> resolved;
 
 	private ExternalResolver()
 	{
 		commands = new HashMap<String, Class<? extends BaseCommand>>();
 		descriptions = new HashMap<String, String>();
+		resolved = new ConcurrentHashMap<String, Command<?>>();
 	}
 
 	public void addCommand(String command, String description, Class<? extends BaseCommand> clazz)
 	{
 		commands.put(command, clazz);
 		descriptions.put(command, description);
+		resolved.clear();
+		generation++;
+	}
+
+	/**
+	 * @return a number that changes each time a command is added
+	 */
+	int getGeneration()
+	{
+		return generation;
 	}
 
 	@Override
@@ -46,18 +62,31 @@ public class ExternalResolver implements CommandResolver
 		final Class<? extends BaseCommand> systemCommand = commands.get(name);
 		if (systemCommand != null)
 		{
-			return createCommand(systemCommand).getCommand();
+			String mode = ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString();
+			String key = name + mode;
+			Command<?> command = resolved.get(key);
+			if (command == null)
+			{
+				// The command keeps its own copy of the safety since the safety of a session is mutable
+				command = createCommand(systemCommand, new ShellSafety(mode)).getCommand();
+				Command<?> previous = resolved.putIfAbsent(key, command);
+				if (previous != null)
+				{
+					command = previous;
+				}
+			}
+			return command;
 		}
 		return null;
 	}
 
-	private <C extends BaseCommand> CommandResolution createCommand(final Class<C> commandClass) throws CommandException
+	private <C extends BaseCommand> CommandResolution createCommand(final Class<C> commandClass, ShellSafety shellSafety) throws CommandException
 	{
 		final ClassShellCommand<C> shellCommand;
 		final String description;
 		try
 		{
-			shellCommand = new ClassShellCommand<C>(commandClass, ShellSafetyFactory.getCurrentThreadShellSafety());
+			shellCommand = new ClassShellCommand<C>(commandClass, shellSafety);
 			description = shellCommand.describe(commandClass.getSimpleName(), Format.DESCRIBE);
 		}
 		catch (IntrospectionException e)
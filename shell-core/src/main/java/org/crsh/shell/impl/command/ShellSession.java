@@ -32,6 +32,15 @@ public interface ShellSession extends Map<String, Object> {
 
   Iterable<Map.Entry<String, String>> getCommands();
 
+  /**
+   * Returns the commands whose name starts with the specified prefix, this is used for completing command names.
+   *
+   * @param prefix the command name prefix
+   * @return the matching commands sorted by name
+   * @throws NullPointerException if the prefix is null
+   */
+  Iterable<Map.Entry<String, String>> getCommands(String prefix) throws NullPointerException;
+
   Command<?> getCommand(String name) throws CommandException;
 
   /**
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command.pipeline;
+
+import org.crsh.command.CommandContext;
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.plugin.ExecutionMode;
+import org.crsh.text.Screenable;
+import org.crsh.text.Style;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands off the elements provided by a pipeline stage to the next stage running on its own thread, the two
+ * stages are connected by a bounded queue so a producer cannot get too far ahead of its consumer. The flush and
+ * close operations are queued after the elements, close waits until the next stage is closed.
+ *
+ * When the thread providing the elements is interrupted, the thread of the next stage is interrupted as well,
+ * which propagates the cancellation of a process to the whole pipeline.
+ */
+class HandOffContext implements CommandContext<Object>, Runnable {
+
+  /** . */
+  private static final Object FLUSH = new Object();
+
+  /** . */
+  private static final Object CLOSE = new Object();
+
+  /** . */
+  private static final Object CLS = new Object();
+
+  /** Text appended to the context. */
+  private static class Text {
+    final String value;
+    Text(String value) {
+      this.value = value;
+    }
+  }
+
+  /** Style appended to the context. */
+  private static class Styled {
+    final Style value;
+    Styled(Style value) {
+      this.value = value;
+    }
+  }
+
+  /** . */
+  private final CommandContext<? super Object> next;
+
+  /** . */
+  private final BlockingQueue<Object> queue;
+
+  /** . */
+  private final Thread thread;
+
+  /** . */
+  private final CountDownLatch done;
+
+  /** The safety of the process, bound to the thread of the next stage. */
+  private final ShellSafety shellSafety;
+
+  /** . */
+  private volatile boolean closed;
+
+  /** Set before the thread of the next stage is interrupted, the interruption may be consumed by the stage. */
+  private volatile boolean cancelled;
+
+  /** The first failure of the next stage. */
+  private volatile Throwable failure;
+
+  HandOffContext(CommandContext<? super Object> next, ExecutionMode mode, int capacity, ShellSafety shellSafety) {
+    this.next = next;
+    this.queue = new ArrayBlockingQueue<Object>(capacity);
+    this.done = new CountDownLatch(1);
+    this.shellSafety = shellSafety;
+    this.thread = mode.newThread(this, "CRaSH pipeline");
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  public void run() {
+    ShellSafety previousSafety = ShellSafetyFactory.setCurrentThreadShellSafety(shellSafety);
+    try {
+      while (true) {
+        Object item;
+        try {
+          if (cancelled) {
+            throw new InterruptedException();
+          }
+          item = queue.take();
+        }
+        catch (InterruptedException e) {
+          // Cancelled : keep the interrupted status so the next stage gets cancelled when it is closed
+          if (failure == null) {
+            failure = e;
+          }
+          Thread.currentThread().interrupt();
+          item = CLOSE;
+        }
+        if (item == CLOSE) {
+          try {
+            next.close();
+          }
+          catch (Throwable t) {
+            if (failure == null) {
+              failure = t;
+            }
+          }
+          break;
+        } else if (failure == null) {
+          try {
+            dispatch(item);
+          }
+          catch (Throwable t) {
+            failure = t;
+          }
+        }
+      }
+    }
+    finally {
+      ShellSafetyFactory.setCurrentThreadShellSafety(previousSafety);
+      queue.clear();
+      done.countDown();
+    }
+  }
+
+  private void dispatch(Object item) throws Exception {
+    if (item == FLUSH) {
+      next.flush();
+    } else if (item == CLS) {
+      next.cls();
+    } else if (item instanceof Text) {
+      next.append(((Text)item).value);
+    } else if (item instanceof Styled) {
+      next.append(((Styled)item).value);
+    } else {
+      next.provide(item);
+    }
+  }
+
+  private void put(Object item) throws IOException {
+    checkFailure();
+    try {
+      offer(item);
+    }
+    catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    checkFailure();
+  }
+
+  /**
+   * Wait until the queue accepts the item or the next stage is terminated.
+   */
+  private void offer(Object item) throws InterruptedException {
+    while (!queue.offer(item, 10, TimeUnit.MILLISECONDS)) {
+      if (done.getCount() == 0) {
+        break;
+      }
+    }
+  }
+
+  private void cancel() {
+    cancelled = true;
+    thread.interrupt();
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure;
+    if (t != null) {
+      if (t instanceof IOException) {
+        throw (IOException)t;
+      } else if (t instanceof InterruptedException) {
+        throw new InterruptedIOException();
+      } else if (t instanceof RuntimeException) {
+        throw (RuntimeException)t;
+      } else if (t instanceof Error) {
+        throw (Error)t;
+      } else {
+        throw new UndeclaredThrowableException(t);
+      }
+    }
+  }
+
+  public boolean takeAlternateBuffer() throws IOException {
+    return next.takeAlternateBuffer();
+  }
+
+  public boolean releaseAlternateBuffer() throws IOException {
+    return next.releaseAlternateBuffer();
+  }
+
+  public String getProperty(String propertyName) {
+    return next.getProperty(propertyName);
+  }
+
+  public String readLine(String msg, boolean echo) throws IOException, InterruptedException {
+    return next.readLine(msg, echo);
+  }
+
+  public Map<String, Object> getSession() {
+    return next.getSession();
+  }
+
+  public Map<String, Object> getAttributes() {
+    return next.getAttributes();
+  }
+
+  public int getWidth() {
+    return next.getWidth();
+  }
+
+  public int getHeight() {
+    return next.getHeight();
+  }
+
+  public Class<Object> getConsumedType() {
+    return Object.class;
+  }
+
+  public void provide(Object element) throws Exception {
+    put(element);
+  }
+
+  public Appendable append(char c) throws IOException {
+    put(new Text(Character.toString(c)));
+    return this;
+  }
+
+  public Appendable append(CharSequence s) throws IOException {
+    put(new Text(s.toString()));
+    return this;
+  }
+
+  public Appendable append(CharSequence csq, int start, int end) throws IOException {
+    put(new Text(csq.subSequence(start, end).toString()));
+    return this;
+  }
+
+  public Screenable append(Style style) throws IOException {
+    put(new Styled(style));
+    return this;
+  }
+
+  public Screenable cls() throws IOException {
+    put(CLS);
+    return this;
+  }
+
+  public void flush() throws IOException {
+    put(FLUSH);
+  }
+
+  public void close() throws Exception {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      offer(CLOSE);
+      done.await();
+    }
+    catch (InterruptedException e) {
+      // The next stage must not use its context anymore once we return
+      cancel();
+      while (true) {
+        try {
+          done.await();
+          break;
+        }
+        catch (InterruptedException ignore) {
+        }
+      }
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    Throwable t = failure;
+    if (t instanceof Exception) {
+      throw (Exception)t;
+    }
+    checkFailure();
+  }
+}
@@ -20,23 +20,60 @@
 package org.crsh.shell.impl.command.pipeline;
 
 import org.crsh.command.CommandContext;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.plugin.ExecutionMode;
 import org.crsh.shell.ErrorKind;
 import org.crsh.shell.impl.command.spi.CommandException;
 import org.crsh.shell.impl.command.spi.CommandInvoker;
 import org.crsh.keyboard.KeyHandler;
 
 import java.io.IOException;
+import java.util.LinkedList;
 
 public class  PipeLine extends CommandInvoker<Void, Object> {
 
   /** . */
-  private final CommandInvoker[] invokers;
+  private final CommandInvoker<?, ?>[] invokers;
+
+  /** The mode of the stage threads or null when the pipeline runs on the caller thread. */
+  private final ExecutionMode mode;
+
+  /** . */
+  private final int bufferSize;
+
+  /** The hand-offs between stages, upstream first. */
+  private final LinkedList<HandOffContext> handOffs = new LinkedList<HandOffContext>();
 
   /** . */
   private CommandContext<?> current;
 
-  public PipeLine(CommandInvoker[] invokers) {
+  public PipeLine(CommandInvoker<?, ?>[] invokers) {
+    this.invokers = invokers;
+    this.mode = null;
+    this.bufferSize = 0;
+    this.current = null;
+  }
+
+  /**
+   * Create a pipelined pipeline: each stage consumes the elements of the previous stage on its own thread,
+   * the stages are connected by queues holding at most <code>bufferSize</code> elements.
+   *
+   * @param invokers the invokers
+   * @param mode the mode of the stage threads
+   * @param bufferSize the size of the queues between stages
+   * @throws NullPointerException if the mode is null
+   * @throws IllegalArgumentException if the buffer size is not positive
+   */
+  public PipeLine(CommandInvoker<?, ?>[] invokers, ExecutionMode mode, int bufferSize) throws NullPointerException, IllegalArgumentException {
+    if (mode == null) {
+      throw new NullPointerException("No null mode accepted");
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
     this.invokers = invokers;
+    this.mode = mode;
+    this.bufferSize = bufferSize;
     this.current = null;
   }
 
@@ -52,23 +89,23 @@ public class  PipeLine extends CommandInvoker<Void, Object> {
     open(0, consumer);
   }
 
-  private CommandContext open(final int index, final CommandContext last) throws IOException, CommandException {
+  private CommandContext<? super Object> open(final int index, final CommandContext<? super Object> last) throws IOException, CommandException {
     if (index < invokers.length) {
 
       //
-      final CommandInvoker invoker = invokers[index];
-      CommandContext next = open(index + 1, last);
+      CommandContext<? super Object> next = open(index + 1, last);
+
+      // Hand off to the next stage running on its own thread
+      if (mode != null && index + 1 < invokers.length) {
+        HandOffContext handOff = new HandOffContext(next, mode, bufferSize, ShellSafetyFactory.getCurrentThreadShellSafety());
+        handOff.start();
+        handOffs.addFirst(handOff);
+        current = handOff;
+        next = handOff;
+      }
 
       //
-      Class produced = invoker.getProducedType();
-      Class<?> consumed = invoker.getConsumedType();
-      CommandInvokerAdapter filterContext = new CommandInvokerAdapter(invoker, consumed, produced);
-      try {
-        filterContext.open(next);
-      }
-      catch (Exception e) {
-        throw new CommandException(ErrorKind.EVALUATION, e);
-      }
+      CommandInvokerAdapter<?, ?, ?> filterContext = open(invokers[index], next);
 
       // Save current filter in field
       // so if anything wrong happens it will be closed
@@ -82,6 +119,17 @@ public class  PipeLine extends CommandInvoker<Void, Object> {
     }
   }
 
+  private <C, P> CommandInvokerAdapter<C, P, CommandContext<? super P>> open(CommandInvoker<C, P> invoker, CommandContext<? super P> next) throws CommandException {
+    CommandInvokerAdapter<C, P, CommandContext<? super P>> filterContext = new CommandInvokerAdapter<C, P, CommandContext<? super P>>(invoker, invoker.getConsumedType(), invoker.getProducedType());
+    try {
+      filterContext.open(next);
+    }
+    catch (Exception e) {
+      throw new CommandException(ErrorKind.EVALUATION, e);
+    }
+    return filterContext;
+  }
+
   @Override
   public KeyHandler getKeyHandler() {
     for (CommandInvoker<?, ?> invoker : invokers) {
@@ -102,11 +150,29 @@ public class  PipeLine extends CommandInvoker<Void, Object> {
   }
 
   public void close() throws IOException, CommandException {
+    Exception failure = null;
     try {
       current.close();
     }
     catch (Exception e) {
-      throw new CommandException(ErrorKind.EVALUATION, e);
+      failure = e;
+    }
+
+    // Not every command closes its consumer, so make sure every stage thread terminates
+    for (HandOffContext handOff : handOffs) {
+      try {
+        handOff.close();
+      }
+      catch (Exception e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+
+    //
+    if (failure != null) {
+      throw new CommandException(ErrorKind.EVALUATION, failure);
     }
   }
 }
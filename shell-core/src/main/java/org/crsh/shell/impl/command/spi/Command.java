@@ -35,6 +35,7 @@ import org.crsh.shell.ErrorKind;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +44,23 @@ import java.util.Map;
  */
 public abstract class Command<T> {
 
+  /** The maximum number of parsed lines retained by a command. */
+  private static final int MATCH_CACHE_SIZE = 32;
+
+  /** The maximum length of a line retained by the cache. */
+  private static final int MATCH_CACHE_LINE_LENGTH = 256;
+
+  /** The recently parsed lines in access order, the matches are not modified after parsing. */
+  private final LinkedHashMap<String, InvocationMatch<T>> matches = new LinkedHashMap<String, InvocationMatch<T>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, InvocationMatch<T>> eldest) {
+      return size() > MATCH_CACHE_SIZE;
+    }
+  };
+
+  /** The match of the empty line. */
+  private volatile InvocationMatch<T> emptyMatch;
+
   /**
    * Returns the command descriptor.
    *
@@ -130,16 +148,7 @@ public abstract class Command<T> {
    * @return the description
    */
   public final String describe(String line, Format format) throws CommandException {
-    CommandDescriptor<T> descriptor = getDescriptor();
-    InvocationMatcher<T> analyzer = descriptor.matcher();
-    InvocationMatch<T> match;
-    try {
-      match = analyzer.parse(line);
-    }
-    catch (org.crsh.cli.impl.SyntaxException e) {
-      throw new CommandException(ErrorKind.SYNTAX, "Syntax exception when evaluating " + descriptor.getName(), e);
-    }
-    return describe(match, format);
+    return describe(parse(line), format);
   }
 
   /**
@@ -153,16 +162,50 @@ public abstract class Command<T> {
   }
 
   public final CommandMatch<?, ?> resolveCommand(String line) throws CommandException {
+    return resolve(parse(line));
+  }
+
+  /**
+   * Parse a command line, the matches of the empty line and of the recently parsed lines are reused since the same
+   * lines are usually invoked many times, e.g by scripts or scheduled jobs. The cache lives as long as the command,
+   * so a command recompiled after a change starts with an empty cache.
+   *
+   * @param line the command line arguments
+   * @return the invocation match
+   * @throws CommandException when the line cannot be parsed
+   */
+  private InvocationMatch<T> parse(String line) throws CommandException {
+    InvocationMatch<T> match;
+    if (line.length() == 0) {
+      match = emptyMatch;
+      if (match == null) {
+        emptyMatch = match = doParse(line);
+      }
+    } else if (line.length() <= MATCH_CACHE_LINE_LENGTH) {
+      synchronized (matches) {
+        match = matches.get(line);
+      }
+      if (match == null) {
+        match = doParse(line);
+        synchronized (matches) {
+          matches.put(line, match);
+        }
+      }
+    } else {
+      match = doParse(line);
+    }
+    return match;
+  }
+
+  private InvocationMatch<T> doParse(String line) throws CommandException {
     CommandDescriptor<T> descriptor = getDescriptor();
     InvocationMatcher<T> analyzer = descriptor.matcher();
-    InvocationMatch<T> match;
     try {
-      match = analyzer.parse(line);
+      return analyzer.parse(line);
     }
     catch (org.crsh.cli.impl.SyntaxException e) {
-      throw new CommandException(ErrorKind.SYNTAX, "Syntax exception when evaluating "+ getDescriptor().getName(), e);
+      throw new CommandException(ErrorKind.SYNTAX, "Syntax exception when evaluating " + descriptor.getName(), e);
     }
-    return resolve(match);
   }
 
   /**
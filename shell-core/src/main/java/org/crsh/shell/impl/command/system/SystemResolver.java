@@ -37,6 +37,7 @@ import org.crsh.text.ui.LabelElement;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Julien Viet
@@ -98,6 +99,9 @@ public class SystemResolver implements CommandResolver {
   private final boolean allowExit;
   private final boolean allowMan;
 
+  /** The commands per name and safety mode, reused so a command keeps the lines it already parsed. */
+  private final ConcurrentHashMap<String, Command<?>> resolved = new ConcurrentHashMap<String, Command<?>>();
+
   private SystemResolver(boolean safe, boolean allowExit, boolean allowMan) {
     this.safeInstance = safe;
     this.allowExit = allowExit; // Ignored in unsafe mode as exit is allowed
@@ -115,7 +119,18 @@ public class SystemResolver implements CommandResolver {
             ? (allowExit ? (allowMan ? semiSafeCommands.get(name) : semiSafeCommandsWithoutMan.get(name)) : (allowMan ? safeCommands.get(name) : safeCommandsWithoutMan.get(name)))
             : unsafeCommands.get(name);
     if (systemCommand != null) {
-      return createCommand(systemCommand, shellSafety).getCommand();
+      String mode = shellSafety.toSafeString();
+      String key = name + mode;
+      Command<?> command = resolved.get(key);
+      if (command == null) {
+        // The command keeps its own copy of the safety since the safety of a session is mutable
+        command = createCommand(systemCommand, new ShellSafety(mode)).getCommand();
+        Command<?> previous = resolved.putIfAbsent(key, command);
+        if (previous != null) {
+          command = previous;
+        }
+      }
+      return command;
     }
     return null;
   }
@@ -58,6 +58,12 @@ public class ClientAutomaton implements Runnable {
   /** . */
   long last;
 
+  /** The codec used for writing the messages. */
+  Codec codec;
+
+  /** The codec selected from the codecs proposed by the server, announced by the next message. */
+  private Codec selected;
+
   public ClientAutomaton(ObjectOutputStream out, ObjectInputStream in, Shell shell) {
     CloseableList listeners = new CloseableList();
     listeners.add(in);
@@ -70,10 +76,11 @@ public class ClientAutomaton implements Runnable {
     this.listeners = listeners;
     this.width = null;
     this.height = null;
+    this.codec = Codec.SERIALIZATION;
   }
 
   public ClientAutomaton(InputStream in,OutputStream out, Shell shell) throws IOException {
-    this(new ObjectOutputStream(out), new ObjectInputStream(in), shell);
+    this(new ObjectOutputStream(out), new ClientMessageInputStream(in), shell);
   }
 
   public ClientAutomaton addCloseListener(Closeable closeable) {
@@ -84,62 +91,7 @@ public class ClientAutomaton implements Runnable {
   public void run() {
     try {
       while (!listeners.isClosed()) {
-        ClientMessage msg = (ClientMessage)in.readObject();
-
-        //
-        if (msg instanceof ClientMessage.GetWelcome) {
-          String welcome = shell.getWelcome();
-          out.writeObject(new ServerMessage.Welcome(welcome));
-          out.flush();
-        } else if (msg instanceof ClientMessage.GetPrompt) {
-          String prompt = shell.getPrompt();
-          out.writeObject(new ServerMessage.Prompt(prompt));
-          out.flush();
-        } else if (msg instanceof ClientMessage.GetCompletion) {
-          String prefix = ((ClientMessage.GetCompletion)msg).prefix;
-          CompletionMatch completion = shell.complete(prefix);
-          out.writeObject(new ServerMessage.Completion(completion));
-          out.flush();
-        } else if (msg instanceof ClientMessage.SetSize) {
-          ClientMessage.SetSize setSize = (ClientMessage.SetSize)msg;
-          width = setSize.width;
-          height = setSize.height;
-          last = System.currentTimeMillis();
-        } else if (msg instanceof ClientMessage.Execute) {
-          ClientMessage.Execute execute = (ClientMessage.Execute)msg;
-          width = execute.width;
-          height = execute.height;
-          last = System.currentTimeMillis();
-          current = new ClientProcessContext(this, shell.createProcess(execute.line));
-          current.execute();
-        } else if (msg instanceof ClientMessage.Cancel) {
-          if (current != null) {
-
-            // For now we
-            // 1/ end the context
-            // 2/ cancel the process
-            // it is not the best strategy instead we should
-            // 1/ cancel the process
-            // 2/ wait a few milli seconds
-            // 3/ if it's not ended then we end it
-
-            final ClientProcessContext context = current;
-            Statement statements = new Statement() {
-              @Override
-              protected void run() throws Throwable {
-                context.end(ShellResponse.cancelled());
-              }
-            }.with(new Statement() {
-              @Override
-              protected void run() throws Throwable {
-                context.process.cancel();
-              }
-            });
-            statements.all();
-          }
-        } else if (msg instanceof ClientMessage.Close) {
-          close();
-        }
+        process((ClientMessage)in.readObject());
       }
     }
     catch (Exception e) {
@@ -151,6 +103,106 @@ public class ClientAutomaton implements Runnable {
     }
   }
 
+  /**
+   * Process a message sent by the server.
+   *
+   * @param msg the message
+   * @throws IOException any io exception
+   */
+  void process(ClientMessage msg) throws IOException {
+    if (msg.codecs != null) {
+      select(msg.codecs);
+    }
+    if (msg instanceof ClientMessage.Authenticate) {
+      // The connection was authenticated before this automaton was created
+      write(new ServerMessage.Authentication(true));
+      out.flush();
+    } else if (msg instanceof ClientMessage.GetWelcome) {
+      String welcome = shell.getWelcome();
+      write(new ServerMessage.Welcome(welcome));
+      out.flush();
+    } else if (msg instanceof ClientMessage.GetPrompt) {
+      String prompt = shell.getPrompt();
+      write(new ServerMessage.Prompt(prompt));
+      out.flush();
+    } else if (msg instanceof ClientMessage.GetCompletion) {
+      String prefix = ((ClientMessage.GetCompletion)msg).prefix;
+      CompletionMatch completion = shell.complete(prefix);
+      write(new ServerMessage.Completion(completion));
+      out.flush();
+    } else if (msg instanceof ClientMessage.SetSize) {
+      ClientMessage.SetSize setSize = (ClientMessage.SetSize)msg;
+      width = setSize.width;
+      height = setSize.height;
+      last = System.currentTimeMillis();
+    } else if (msg instanceof ClientMessage.Execute) {
+      ClientMessage.Execute execute = (ClientMessage.Execute)msg;
+      width = execute.width;
+      height = execute.height;
+      last = System.currentTimeMillis();
+      current = new ClientProcessContext(this, shell.createProcess(execute.line));
+      current.execute();
+    } else if (msg instanceof ClientMessage.Cancel) {
+      if (current != null) {
+
+        // For now we
+        // 1/ end the context
+        // 2/ cancel the process
+        // it is not the best strategy instead we should
+        // 1/ cancel the process
+        // 2/ wait a few milli seconds
+        // 3/ if it's not ended then we end it
+
+        final ClientProcessContext context = current;
+        Statement statements = new Statement() {
+          @Override
+          protected void run() throws Throwable {
+            context.end(ShellResponse.cancelled());
+          }
+        }.with(new Statement() {
+          @Override
+          protected void run() throws Throwable {
+            context.process.cancel();
+          }
+        });
+        statements.all();
+      }
+    } else if (msg instanceof ClientMessage.Close) {
+      close();
+    }
+  }
+
+  private synchronized void select(String[] codecs) {
+    for (String name : codecs) {
+      try {
+        selected = Codec.valueOf(name);
+        break;
+      }
+      catch (IllegalArgumentException ignore) {
+        // A codec this client does not know
+      }
+    }
+    if (selected == null) {
+      selected = Codec.SERIALIZATION;
+    }
+  }
+
+  synchronized void write(ServerMessage message) throws IOException {
+    if (selected != null) {
+      // The selection is written with the current codec, the selected one is used afterwards
+      message.codec = selected.name();
+      codec.write(out, message);
+      codec = selected;
+      selected = null;
+    } else {
+      codec.write(out, message);
+    }
+  }
+
+  boolean isClosed() {
+    return listeners.isClosed();
+  }
+
   void close() {
     listeners.close();
   }
@@ -23,6 +23,29 @@ import java.io.Serializable;
 
 public abstract class ClientMessage implements Serializable {
 
+  /** The serial version of the messages sent by the peers without codecs. */
+  private static final long serialVersionUID = -3304017322259903102L;
+
+  /**
+   * The names of the codecs proposed by the server in order of preference, carried by its first message. The peers
+   * that don't know this field ignore it, so it is null for the messages they send.
+   */
+  String[] codecs;
+
+  public static class Authenticate extends ClientMessage {
+
+    /** . */
+    public final String username;
+
+    /** . */
+    public final String password;
+
+    public Authenticate(String username, String password) {
+      this.username = username;
+      this.password = password;
+    }
+  }
+
   public static class GetWelcome extends ClientMessage {
   }
 
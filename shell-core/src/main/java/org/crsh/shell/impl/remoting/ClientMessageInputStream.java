@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * An object input stream that only deserializes the {@link ClientMessage} classes, the classes of any other object
+ * sent by a peer are rejected before they are loaded.
+ */
+class ClientMessageInputStream extends ObjectInputStream {
+
+  ClientMessageInputStream(InputStream in) throws IOException {
+    super(in);
+  }
+
+  @Override
+  protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+    String name = desc.getName();
+    if (name.equals("[Ljava.lang.String;") || name.equals(ClientMessage.class.getName()) || name.startsWith(ClientMessage.class.getName() + "$")) {
+      return super.resolveClass(desc);
+    } else {
+      throw new InvalidClassException(name, "Class not accepted in a client message");
+    }
+  }
+
+  @Override
+  protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+    throw new InvalidClassException("Proxy not accepted in a client message");
+  }
+}
@@ -29,9 +29,38 @@ import org.crsh.util.Statement;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 class ClientProcessContext implements ShellProcessContext {
 
+  /** The number of buffered chars that triggers a flush. */
+  static final int FLUSH_THRESHOLD = 8192;
+
+  /** The delay in milliseconds after which buffered output is flushed. */
+  static final long FLUSH_DELAY = 50;
+
+  /** The timer flushing the output of the processes that do not flush often enough. */
+  private static ScheduledExecutorService timer;
+
+  private static synchronized ScheduledExecutorService getTimer() {
+    if (timer == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "CRaSH remoting flush");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      timer = executor;
+    }
+    return timer;
+  }
+
   /** . */
   final ClientAutomaton client;
 
@@ -41,13 +70,25 @@ class ClientProcessContext implements ShellProcessContext {
   /** . */
   final ArrayList<ServerMessage.Chunk> buffer;
 
+  /** The text appended since the last style change, it becomes a single chunk. */
+  private final StringBuilder text;
+
+  /** The number of chars buffered since the last flush. */
+  private int buffered;
+
+  /** The pending timed flush. */
+  private ScheduledFuture<?> timedFlush;
+
   /** . */
   private boolean closed;
 
   ClientProcessContext(ClientAutomaton client, ShellProcess process) {
     this.client = client;
     this.process = process;
-    this.buffer = new ArrayList<ServerMessage.Chunk>(1000);
+    this.buffer = new ArrayList<ServerMessage.Chunk>();
+    this.text = new StringBuilder();
+    this.buffered = 0;
+    this.timedFlush = null;
     this.closed = false;
   }
 
@@ -59,7 +100,7 @@ class ClientProcessContext implements ShellProcessContext {
     if (System.currentTimeMillis() - client.last > 2000) {
       synchronized (this) {
         try {
-          client.out.writeObject(new ServerMessage.GetSize());
+          client.write(new ServerMessage.GetSize());
           client.out.flush();
         }
         catch (Exception e) {
@@ -105,7 +146,7 @@ class ClientProcessContext implements ShellProcessContext {
   public boolean takeAlternateBuffer() {
     if (!closed) {
       try {
-        client.out.writeObject(new ServerMessage.UseAlternateBuffer());
+        client.write(new ServerMessage.UseAlternateBuffer());
         client.out.flush();
       }
       catch (Exception e) {
@@ -120,7 +161,7 @@ class ClientProcessContext implements ShellProcessContext {
   public boolean releaseAlternateBuffer() {
     if (!closed) {
       try {
-        client.out.writeObject(new ServerMessage.UseMainBuffer());
+        client.write(new ServerMessage.UseMainBuffer());
         client.out.flush();
       }
       catch (Exception e) {
@@ -151,47 +192,94 @@ class ClientProcessContext implements ShellProcessContext {
   }
 
   @Override
-  public Screenable append(CharSequence s) throws IOException {
+  public synchronized Screenable append(CharSequence s) throws IOException {
     if (!closed) {
-      buffer.add(new ServerMessage.Chunk.Text(s));
+      text.append(s);
+      buffered(s.length());
     }
     return this;
   }
 
   @Override
-  public Screenable append(char c) throws IOException {
-    return append(Character.toString(c));
+  public synchronized Screenable append(char c) throws IOException {
+    if (!closed) {
+      text.append(c);
+      buffered(1);
+    }
+    return this;
   }
 
   @Override
-  public Screenable append(CharSequence csq, int start, int end) throws IOException {
-    return append(csq.subSequence(start, end));
+  public synchronized Screenable append(CharSequence csq, int start, int end) throws IOException {
+    if (!closed) {
+      text.append(csq, start, end);
+      buffered(end - start);
+    }
+    return this;
   }
 
   @Override
-  public Screenable append(Style style) throws IOException {
+  public synchronized Screenable append(Style style) throws IOException {
     if (!closed) {
+      appendText();
       buffer.add(new ServerMessage.Chunk.Style(style));
+      buffered(0);
     }
     return this;
   }
 
   @Override
-  public Screenable cls() throws IOException {
+  public synchronized Screenable cls() throws IOException {
     if (!closed) {
+      appendText();
       buffer.add(new ServerMessage.Chunk.Cls());
+      buffered(0);
     }
     return this;
   }
 
+  /**
+   * Turns the pending text into a single chunk.
+   */
+  private void appendText() {
+    if (text.length() > 0) {
+      buffer.add(new ServerMessage.Chunk.Text(text.toString()));
+      text.setLength(0);
+    }
+  }
+
+  /**
+   * Account the buffered chars and flush when the threshold is reached, otherwise make sure that a timed
+   * flush will send the buffered output.
+   *
+   * @param count the number of chars buffered
+   */
+  private void buffered(int count) {
+    buffered += count;
+    if (buffered >= FLUSH_THRESHOLD) {
+      flush();
+    } else if (timedFlush == null) {
+      timedFlush = getTimer().schedule(new Runnable() {
+        public void run() {
+          flush();
+        }
+      }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
   public synchronized void flush() {
+    if (timedFlush != null) {
+      timedFlush.cancel(false);
+      timedFlush = null;
+    }
     if (!closed) {
+      appendText();
       if (buffer.size() > 0) {
         try {
           for (ServerMessage.Chunk chunk : buffer) {
-            client.out.writeObject(chunk);
+            client.write(chunk);
           }
-          client.out.writeObject(new ServerMessage.Flush());
+          client.write(new ServerMessage.Flush());
           client.out.flush();
         }
         catch (IOException ignore) {
@@ -199,6 +287,7 @@ class ClientProcessContext implements ShellProcessContext {
         }
         finally {
           buffer.clear();
+          buffered = 0;
         }
       }
     }
@@ -215,7 +304,7 @@ class ClientProcessContext implements ShellProcessContext {
       // Send end message
       try {
         client.current = null;
-        client.out.writeObject(new ServerMessage.End(response));
+        client.write(new ServerMessage.End(response));
         client.out.flush();
       }
       catch (IOException ignore) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.text.Color;
+import org.crsh.text.Style;
+import org.crsh.util.Utils;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+
+/**
+ * The encoding of the messages sent by the client automaton to the server automaton, the codec is negotiated
+ * when the server automaton performs its first request. The peers that predate the negotiation ignore it and
+ * keep using {@link #SERIALIZATION}.
+ */
+public enum Codec {
+
+  /**
+   * Each message is written with Java serialization.
+   */
+  SERIALIZATION() {
+    @Override
+    void write(ObjectOutput out, ServerMessage message) throws IOException {
+      out.writeObject(message);
+    }
+
+    @Override
+    ServerMessage read(ObjectInput in) throws IOException, ClassNotFoundException {
+      return (ServerMessage)in.readObject();
+    }
+  },
+
+  /**
+   * The output chunks are written as binary frames starting with an opcode, the text is sent as length prefixed
+   * UTF-8 and the styles as a packed short. Any other message is written with Java serialization after the
+   * {@link #MESSAGE} opcode.
+   */
+  BINARY() {
+    @Override
+    void write(ObjectOutput out, ServerMessage message) throws IOException {
+      if (message instanceof ServerMessage.Chunk.Text) {
+        byte[] bytes = ((ServerMessage.Chunk.Text)message).payload.toString().getBytes(Utils.UTF_8);
+        out.writeByte(TEXT);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      } else if (message instanceof ServerMessage.Chunk.Style) {
+        out.writeByte(STYLE);
+        out.writeShort(pack(((ServerMessage.Chunk.Style)message).payload));
+      } else if (message instanceof ServerMessage.Chunk.Cls) {
+        out.writeByte(CLS);
+      } else if (message instanceof ServerMessage.Flush) {
+        out.writeByte(FLUSH);
+      } else if (message instanceof ServerMessage.End) {
+        out.writeByte(END);
+        out.writeObject(message);
+      } else {
+        out.writeByte(MESSAGE);
+        out.writeObject(message);
+      }
+    }
+
+    @Override
+    ServerMessage read(ObjectInput in) throws IOException, ClassNotFoundException {
+      byte opcode = in.readByte();
+      switch (opcode) {
+        case TEXT:
+          byte[] bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+          return new ServerMessage.Chunk.Text(new String(bytes, Utils.UTF_8));
+        case STYLE:
+          return new ServerMessage.Chunk.Style(unpack(in.readShort()));
+        case CLS:
+          return new ServerMessage.Chunk.Cls();
+        case FLUSH:
+          return new ServerMessage.Flush();
+        case END:
+        case MESSAGE:
+          return (ServerMessage)in.readObject();
+        default:
+          throw new StreamCorruptedException("Invalid opcode " + opcode);
+      }
+    }
+  };
+
+  /** . */
+  static final byte MESSAGE = 0;
+
+  /** . */
+  static final byte TEXT = 1;
+
+  /** . */
+  static final byte STYLE = 2;
+
+  /** . */
+  static final byte CLS = 3;
+
+  /** . */
+  static final byte FLUSH = 4;
+
+  /** . */
+  static final byte END = 5;
+
+  /** . */
+  private static final short RESET = -1;
+
+  /** . */
+  private static final Color[] COLORS = Color.values();
+
+  abstract void write(ObjectOutput out, ServerMessage message) throws IOException;
+
+  abstract ServerMessage read(ObjectInput in) throws IOException, ClassNotFoundException;
+
+  /**
+   * Pack a style in a short, the three decorations use two bits each (0 for null, 1 for true, 2 for false)
+   * followed by the foreground and the background colors on four bits each (0 for null, ordinal + 1 otherwise).
+   *
+   * @param style the style
+   * @return the packed style
+   */
+  static short pack(Style style) {
+    if (style instanceof Style.Composite) {
+      Style.Composite composite = (Style.Composite)style;
+      return (short)(
+          pack(composite.getBold()) |
+          pack(composite.getUnderline()) << 2 |
+          pack(composite.getBlink()) << 4 |
+          pack(composite.getForeground()) << 6 |
+          pack(composite.getBackground()) << 10);
+    } else {
+      return RESET;
+    }
+  }
+
+  static Style unpack(short packed) {
+    if (packed == RESET) {
+      return Style.reset;
+    } else {
+      return Style.style(
+          unpackBoolean(packed),
+          unpackBoolean(packed >> 2),
+          unpackBoolean(packed >> 4),
+          unpackColor(packed >> 6),
+          unpackColor(packed >> 10));
+    }
+  }
+
+  private static int pack(Boolean value) {
+    return value == null ? 0 : (value ? 1 : 2);
+  }
+
+  private static int pack(Color color) {
+    return color == null ? 0 : color.ordinal() + 1;
+  }
+
+  private static Boolean unpackBoolean(int bits) {
+    switch (bits & 3) {
+      case 1:
+        return true;
+      case 2:
+        return false;
+      default:
+        return null;
+    }
+  }
+
+  private static Color unpackColor(int bits) {
+    int index = bits & 15;
+    return index == 0 ? null : COLORS[index - 1];
+  }
+}
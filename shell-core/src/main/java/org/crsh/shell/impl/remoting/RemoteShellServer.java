@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.auth.AuthInfo;
+import org.crsh.auth.AuthenticationPlugin;
+import org.crsh.command.ShellSafety;
+import org.crsh.shell.Shell;
+import org.crsh.shell.ShellFactory;
+import org.crsh.util.AbstractSelectorServer;
+import org.crsh.util.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A server accepting several remote shell connections, each connection is served by a {@link ClientAutomaton}
+ * driven by the executor whenever a message is received, so an idle connection does not hold a thread.
+ *
+ * The first message of a connection must be a {@link ClientMessage.Authenticate} message, its password is checked
+ * by the authentication plugins, the connection is closed when none of them authenticates the user. A connection
+ * that is not authenticated within the handshake timeout is closed, so a peer that does not send a complete first
+ * message cannot hold an executor thread. The shells created for the remote users are safe shells.
+ */
+public class RemoteShellServer extends AbstractSelectorServer {
+
+  /** . */
+  private static final Logger log = Logger.getLogger(RemoteShellServer.class.getName());
+
+  /** The default time a connection has to authenticate in milliseconds. */
+  public static final long AUTHENTICATION_TIMEOUT = 30 * 1000;
+
+  /** . */
+  private final ShellFactory factory;
+
+  /** . */
+  private final List<AuthenticationPlugin<?>> authenticationPlugins;
+
+  public RemoteShellServer(int bindingPort, ShellFactory factory, List<AuthenticationPlugin<?>> authenticationPlugins, ExecutorService executor) {
+    this(InetAddress.getLoopbackAddress(), bindingPort, factory, authenticationPlugins, executor, 2, 64 * 1024);
+  }
+
+  public RemoteShellServer(
+      InetAddress bindingAddress,
+      int bindingPort,
+      ShellFactory factory,
+      List<AuthenticationPlugin<?>> authenticationPlugins,
+      ExecutorService executor,
+      int threads,
+      int bufferSize) {
+    super(bindingAddress, bindingPort, executor, threads, bufferSize);
+
+    //
+    if (factory == null) {
+      throw new NullPointerException("No null shell factory accepted");
+    }
+    if (authenticationPlugins == null) {
+      throw new NullPointerException("No null authentication plugins accepted");
+    }
+
+    //
+    this.factory = factory;
+    this.authenticationPlugins = new ArrayList<AuthenticationPlugin<?>>(authenticationPlugins);
+
+    //
+    setHandshakeTimeout(AUTHENTICATION_TIMEOUT);
+  }
+
+  private AuthInfo authenticate(String username, String password) {
+    for (AuthenticationPlugin<?> authenticationPlugin : authenticationPlugins) {
+      if (authenticationPlugin.getCredentialType().equals(String.class)) {
+        try {
+          log.log(Level.FINE, "Using authentication plugin " + authenticationPlugin + " to authenticate user " + username);
+          @SuppressWarnings("unchecked")
+          AuthenticationPlugin<String> authPlugin = (AuthenticationPlugin<String>) authenticationPlugin;
+          return authPlugin.authenticate(username, password);
+        } catch (Exception e) {
+          log.log(Level.SEVERE, "Exception authenticating user " + username + " in authentication plugin: " + authenticationPlugin, e);
+        }
+      }
+    }
+    return AuthInfo.UNSUCCESSFUL;
+  }
+
+  @Override
+  protected Handler handle(final InputStream in, OutputStream out, final Closeable connection) throws IOException {
+    final ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.flush();
+    return new Handler() {
+
+      /** . */
+      private ClientAutomaton automaton;
+
+      @Override
+      protected void process() throws Exception {
+        ClientAutomaton automaton;
+        synchronized (this) {
+          if (this.automaton == null) {
+            ObjectInputStream ois = new ClientMessageInputStream(in);
+            ClientMessage msg = (ClientMessage)ois.readObject();
+            if (!(msg instanceof ClientMessage.Authenticate)) {
+              throw new IOException("Connection not authenticated");
+            }
+            final ClientMessage.Authenticate authenticate = (ClientMessage.Authenticate)msg;
+            AuthInfo authInfo = authenticate(authenticate.username, authenticate.password);
+            if (authInfo == null || !authInfo.isSuccessful()) {
+              oos.writeObject(new ServerMessage.Authentication(false));
+              oos.flush();
+              throw new IOException("Could not authenticate user " + authenticate.username);
+            }
+            handshaked();
+            Principal user = new Principal() {
+              public String getName() {
+                return authenticate.username;
+              }
+            };
+            ShellSafety shellSafety = new ShellSafety();
+            shellSafety.setSafeShell(true);
+            Shell shell = factory.create(user, authInfo, shellSafety);
+            this.automaton = new ClientAutomaton(oos, ois, shell).addCloseListener(connection);
+            if (shell instanceof Closeable) {
+              this.automaton.addCloseListener((Closeable)shell);
+            }
+            this.automaton.process(msg);
+          }
+          automaton = this.automaton;
+        }
+
+        // Process the received messages and give back the thread
+        while (in.available() > 0 && !automaton.isClosed()) {
+          automaton.process((ClientMessage)automaton.in.readObject());
+        }
+      }
+
+      @Override
+      protected void closed() {
+        ClientAutomaton automaton;
+        synchronized (this) {
+          automaton = this.automaton;
+        }
+        if (automaton != null) {
+          automaton.close();
+        } else {
+          Utils.close(oos);
+        }
+      }
+    };
+  }
+}
@@ -27,6 +27,7 @@ import org.crsh.shell.ShellResponse;
 import org.crsh.util.CloseableList;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -53,6 +54,15 @@ public class ServerAutomaton implements Shell {
   /** . */
   final CloseableList listeners;
 
+  /** The codecs proposed to the client in order of preference. */
+  private Codec[] codecs;
+
+  /** True once the codecs were proposed to the client. */
+  private boolean proposed;
+
+  /** The negotiated codec or null when the client did not answer yet. */
+  private Codec codec;
+
   public ServerAutomaton(ObjectOutputStream out, ObjectInputStream in) {
     CloseableList listeners = new CloseableList();
     listeners.add(in);
@@ -62,6 +72,9 @@ public class ServerAutomaton implements Shell {
     this.in = in;
     this.out = out;
     this.listeners = listeners;
+    this.codecs = new Codec[]{Codec.BINARY, Codec.SERIALIZATION};
+    this.proposed = false;
+    this.codec = null;
   }
 
   public ServerAutomaton(InputStream in, OutputStream out) throws IOException {
@@ -73,11 +86,85 @@ public class ServerAutomaton implements Shell {
     return this;
   }
 
+  /**
+   * Configure the codecs proposed to the client by the first message.
+   *
+   * @param codecs the codecs in order of preference
+   * @return this automaton
+   * @throws IllegalStateException if the codecs were already proposed
+   */
+  public ServerAutomaton setCodecs(Codec... codecs) throws IllegalStateException {
+    if (proposed) {
+      throw new IllegalStateException("Codec already negotiated");
+    }
+    this.codecs = codecs.clone();
+    return this;
+  }
+
+  /**
+   * Returns the codec negotiated with the client or null when the client did not answer yet.
+   *
+   * @return the codec
+   */
+  public Codec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Write a message, the first message proposes the codecs to the client.
+   */
+  private void write(ClientMessage message) throws IOException {
+    if (!proposed) {
+      String[] names = new String[codecs.length];
+      for (int i = 0;i < codecs.length;i++) {
+        names[i] = codecs[i].name();
+      }
+      message.codecs = names;
+      proposed = true;
+    }
+    out.writeObject(message);
+    out.flush();
+  }
+
+  /**
+   * Read a message, the first message is serialized and selects the codec of the next messages. A client that
+   * ignores the proposed codecs selects none and keeps using serialization.
+   */
+  private ServerMessage read() throws IOException, ClassNotFoundException {
+    if (codec == null) {
+      ServerMessage message = (ServerMessage)in.readObject();
+      codec = message.codec != null ? Codec.valueOf(message.codec) : Codec.SERIALIZATION;
+      return message;
+    } else {
+      return codec.read(in);
+    }
+  }
+
+  /**
+   * Authenticate the connection, a {@link RemoteShellServer} closes the connection when the authentication fails.
+   *
+   * @param username the username
+   * @param password the password
+   * @return true when the user is authenticated
+   */
+  public boolean authenticate(String username, String password) {
+    try {
+      write(new ClientMessage.Authenticate(username, password));
+      return ((ServerMessage.Authentication)read()).successful;
+    }
+    catch (EOFException e) {
+      // The server closed the connection
+      return false;
+    }
+    catch (Exception e) {
+      throw new UndeclaredThrowableException(e);
+    }
+  }
+
   public String getWelcome() {
     try {
-      out.writeObject(new ClientMessage.GetWelcome());
-      out.flush();
-      return ((ServerMessage.Welcome)in.readObject()).value;
+      write(new ClientMessage.GetWelcome());
+      return ((ServerMessage.Welcome)read()).value;
     }
     catch (Exception e) {
       throw new UndeclaredThrowableException(e);
@@ -86,9 +173,8 @@ public class ServerAutomaton implements Shell {
 
   public String getPrompt() {
     try {
-      out.writeObject(new ClientMessage.GetPrompt());
-      out.flush();
-      return ((ServerMessage.Prompt)in.readObject()).value;
+      write(new ClientMessage.GetPrompt());
+      return ((ServerMessage.Prompt)read()).value;
     }
     catch (Exception e) {
       throw new UndeclaredThrowableException(e);
@@ -101,9 +187,8 @@ public class ServerAutomaton implements Shell {
 
   public CompletionMatch complete(String prefix) {
     try {
-      out.writeObject(new ClientMessage.GetCompletion(prefix));
-      out.flush();
-      return ((ServerMessage.Completion)in.readObject()).value;
+      write(new ClientMessage.GetCompletion(prefix));
+      return ((ServerMessage.Completion)read()).value;
     }
     catch (Exception e) {
       throw new UndeclaredThrowableException(e);
@@ -125,15 +210,13 @@ public class ServerAutomaton implements Shell {
     //
     ShellResponse response = null;
     try {
-      out.writeObject(new ClientMessage.Execute(processContext.getWidth(), processContext.getHeight(), process.line));
-      out.flush();
+      write(new ClientMessage.Execute(processContext.getWidth(), processContext.getHeight(), process.line));
 
       //
       while (response == null) {
-        ServerMessage msg = (ServerMessage)in.readObject();
+        ServerMessage msg = read();
         if (msg instanceof ServerMessage.GetSize) {
-          out.writeObject(new ClientMessage.SetSize(processContext.getWidth(), processContext.getHeight()));
-          out.flush();
+          write(new ClientMessage.SetSize(processContext.getWidth(), processContext.getHeight()));
         } else if (msg instanceof ServerMessage.ReadLine) {
 //            // This case should not really well supported ?
 //            String request = (String)in.readObject();
@@ -30,6 +30,25 @@ import java.io.Serializable;
 
 public class ServerMessage implements Serializable {
 
+  /** The serial version of the messages sent by the peers without codecs. */
+  private static final long serialVersionUID = 8995172966835328758L;
+
+  /**
+   * The name of the codec selected by the client, carried by its first message after the codecs are proposed. The
+   * peers that don't know this field ignore it, so it is null for the messages they send.
+   */
+  String codec;
+
+  public static class Authentication extends ServerMessage {
+
+    /** . */
+    public final boolean successful;
+
+    public Authentication(boolean successful) {
+      this.successful = successful;
+    }
+  }
+
   public static class Welcome extends ServerMessage {
 
     /** . */
@@ -18,6 +18,7 @@
  */
 package org.crsh.standalone;
 
+import org.crsh.auth.AuthenticationPlugin;
 import org.crsh.cli.Required;
 import org.crsh.cli.Usage;
 import org.crsh.cli.descriptor.CommandDescriptor;
@@ -29,17 +30,19 @@ import org.crsh.cli.impl.invocation.InvocationMatch;
 import org.crsh.cli.impl.invocation.InvocationMatcher;
 import org.crsh.cli.impl.lang.Instance;
 import org.crsh.cli.impl.lang.Util;
-import org.crsh.command.ShellSafety;
 import org.crsh.command.ShellSafetyFactory;
 import org.crsh.shell.Shell;
 import org.crsh.shell.ShellFactory;
 import org.crsh.shell.impl.remoting.RemoteClient;
+import org.crsh.shell.impl.remoting.RemoteShellServer;
 import org.crsh.util.Utils;
 import org.crsh.vfs.FS;
 import org.crsh.vfs.spi.file.FileMountFactory;
 import org.crsh.vfs.spi.url.ClassPathMountFactory;
 
 import java.lang.instrument.Instrumentation;
+import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -95,6 +98,12 @@ public class Agent {
       @Option(names={"p","property"})
       @Usage("set a property of the form a=b")
       List<String> properties,
+      @Option(names={"l","listen"})
+      @Usage("listen on a port for remote shell connections")
+      Integer listen,
+      @Option(names={"address"})
+      @Usage("the address of the remote shell connections, the loopback address by default")
+      String address,
       @Argument(name = "port")
       Integer port) throws Exception {
 
@@ -105,7 +114,7 @@ public class Agent {
     //
     FS cmdFS = new FS.Builder().register("file", fileDriver).register("classpath", classpathDriver).mount(cmd).build();
     FS confFS = new FS.Builder().register("file", fileDriver).register("classpath", classpathDriver).mount(conf).build();
-    Bootstrap bootstrap = new Bootstrap(Thread.currentThread().getContextClassLoader(), confFS, cmdFS);
+    final Bootstrap bootstrap = new Bootstrap(Thread.currentThread().getContextClassLoader(), confFS, cmdFS);
 
     //
     if (properties != null) {
@@ -128,10 +137,47 @@ public class Agent {
     // Do bootstrap
     bootstrap.bootstrap();
 
+    //
+    ShellFactory factory = bootstrap.getContext().getPlugin(ShellFactory.class);
+    RemoteShellServer server = null;
+    if (listen != null) {
+
+      // The remote users are authenticated like the ssh users
+      List<AuthenticationPlugin<?>> authPlugins = new ArrayList<AuthenticationPlugin<?>>();
+      List<?> authentication = bootstrap.getContext().getProperty(AuthenticationPlugin.AUTH);
+      if (authentication != null) {
+        for (AuthenticationPlugin<?> authenticationPlugin : bootstrap.getContext().getPlugins(AuthenticationPlugin.class)) {
+          if (authentication.contains(authenticationPlugin.getName())) {
+            authPlugins.add(authenticationPlugin);
+          }
+        }
+      }
+
+      //
+      InetAddress bindingAddress = address != null ? InetAddress.getByName(address) : InetAddress.getLoopbackAddress();
+      server = new RemoteShellServer(bindingAddress, listen, factory, authPlugins, bootstrap.getContext().getExecutor(), 2, 64 * 1024);
+      try {
+        log.log(Level.INFO, "Remote shell server listening on " + bindingAddress + ":" + server.bind());
+      }
+      catch (Exception e) {
+        bootstrap.shutdown();
+        throw e;
+      }
+
+      // Close the server before the bootstrap when the JVM stops
+      final RemoteShellServer closedServer = server;
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          closedServer.close();
+          bootstrap.shutdown();
+        }
+      });
+    }
+
     //
     if (port != null) {
       try {
-        ShellFactory factory = bootstrap.getContext().getPlugin(ShellFactory.class);
         Shell shell = factory.create(null,null, ShellSafetyFactory.getCurrentThreadShellSafety());
         RemoteClient client = new RemoteClient(port, shell);
         log.log(Level.INFO, "Callback back remote on port " + port);
@@ -139,7 +185,10 @@ public class Agent {
         client.getRunnable().run();
       }
       finally {
-        bootstrap.shutdown();
+        // Keep serving the remote shell connections
+        if (server == null) {
+          bootstrap.shutdown();
+        }
       }
     }
   }
@@ -40,11 +40,14 @@ import org.crsh.cli.impl.lang.Instance;
 import org.crsh.cli.impl.lang.Util;
 import org.crsh.command.ShellSafety;
 import org.crsh.command.ShellSafetyFactory;
+import org.crsh.console.History;
 import org.crsh.console.jline.JLineProcessor;
+import org.crsh.plugin.PropertyDescriptor;
 import org.crsh.plugin.ResourceManager;
 import org.crsh.shell.Shell;
 import org.crsh.shell.ShellFactory;
 import org.crsh.shell.impl.remoting.RemoteServer;
+import org.crsh.shell.impl.remoting.ServerAutomaton;
 import org.crsh.util.CloseableList;
 import org.crsh.util.InterruptHandler;
 import org.crsh.util.Utils;
@@ -59,12 +62,15 @@ import org.fusesource.jansi.AnsiConsole;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.Console;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.List;
 import java.util.Properties;
 import java.util.jar.Attributes;
@@ -161,6 +167,12 @@ public class CRaSH {
     @Option(names = {"conf-folder"})
     @Usage("a folder in which configuration should be extracted")
     String confFolder,
+    @Option(names = {"connect"})
+    @Usage("connect to the remote shell server of a JVM, of the form host:port")
+    String connect,
+    @Option(names = {"u","user"})
+    @Usage("the user connecting to the remote shell server")
+    String user,
     @Argument(name = "pid")
     @Usage("the optional list of JVM process id to attach to")
     List<Integer> pids) throws Exception {
@@ -212,7 +224,38 @@ public class CRaSH {
     //
     CloseableList closeable = new CloseableList();
     Shell shell;
-    if (pids != null && pids.size() > 0) {
+    History history = null;
+    if (connect != null) {
+
+      //
+      if (!interactive) {
+        throw new Exception("Cannot connect to a remote shell server in non interactive mode");
+      }
+      int index = connect.lastIndexOf(':');
+      if (index == -1) {
+        throw new Exception("Invalid remote shell server " + connect + ", was expecting host:port");
+      }
+      Console console = System.console();
+      if (console == null) {
+        throw new Exception("No console for reading the password");
+      }
+      if (user == null) {
+        user = console.readLine("Username: ");
+      }
+      String password = new String(console.readPassword("Password: "));
+
+      //
+      Socket socket = new Socket();
+      socket.connect(new InetSocketAddress(connect.substring(0, index), Integer.parseInt(connect.substring(index + 1))));
+      ServerAutomaton automaton = new ServerAutomaton(socket.getInputStream(), socket.getOutputStream()).addCloseListener(socket);
+      if (!automaton.authenticate(user, password)) {
+        automaton.close();
+        throw new Exception("Could not authenticate user " + user + " on " + connect);
+      }
+      log.log(Level.INFO, "Connected to remote shell server " + connect);
+      shell = automaton;
+      closeable.add(automaton);
+    } else if (pids != null && pids.size() > 0) {
 
       //
       if (interactive && pids.size() > 1) {
@@ -346,6 +389,7 @@ public class CRaSH {
         ShellSafety shellSafety = ShellSafetyFactory.getCurrentThreadShellSafety();
         shellSafety.setStandAlone(true);
         shell = factory.create(null, null, shellSafety);
+        history = bootstrap.getContext().getHistory(System.getProperty("user.name"));
       } else {
         shell = null;
       }
@@ -392,7 +436,10 @@ public class CRaSH {
       ConsoleReader reader = new ConsoleReader(null, in, out, term);
 
       //
-      final JLineProcessor processor = new JLineProcessor(ansi, shell, reader, out);
+      if (history == null) {
+        history = new History(PropertyDescriptor.HISTORY_SIZE.defaultValue);
+      }
+      final JLineProcessor processor = new JLineProcessor(ansi, shell, reader, out, System.getProperty("line.separator"), history);
 
       //
       InterruptHandler interruptHandler = new InterruptHandler(new Runnable() {
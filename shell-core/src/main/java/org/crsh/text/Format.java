@@ -45,6 +45,12 @@ public abstract class Format {
       }
     }
     @Override
+    public void write(CharSequence s, int start, int end, Appendable to) throws IOException {
+      if (start < end) {
+        to.append(s, start, end);
+      }
+    }
+    @Override
     public void write(Style style, Appendable to) throws IOException {
     }
     @Override
@@ -68,6 +74,12 @@ public abstract class Format {
       }
     }
     @Override
+    public void write(CharSequence s, int start, int end, Appendable to) throws IOException {
+      if (start < end) {
+        to.append(s, start, end);
+      }
+    }
+    @Override
     public void write(Style style, Appendable to) throws IOException {
       style.writeAnsiTo(to);
     }
@@ -88,8 +100,12 @@ public abstract class Format {
     }
     @Override
     public void write(CharSequence s, Appendable to) throws IOException {
-      if (s.length() > 0) {
-        for (int i = 0;i < s.length();i++) {
+      write(s, 0, s.length(), to);
+    }
+    @Override
+    public void write(CharSequence s, int start, int end, Appendable to) throws IOException {
+      if (start < end) {
+        for (int i = start;i < end;i++) {
           char c = s.charAt(i);
           switch (c) {
             case '>':
@@ -129,6 +145,19 @@ public abstract class Format {
 
   public abstract void write(CharSequence s, Appendable to) throws IOException;
 
+  /**
+   * Write a subsequence of chars, the default implementation writes the sub sequence.
+   *
+   * @param s the char sequence
+   * @param start the index of the first char
+   * @param end the index after the last char
+   * @param to the appendable
+   * @throws IOException any io exception
+   */
+  public void write(CharSequence s, int start, int end, Appendable to) throws IOException {
+    write(s.subSequence(start, end), to);
+  }
+
   public abstract void write(Style style, Appendable to) throws IOException;
 
   public abstract void cls(Appendable to) throws IOException;
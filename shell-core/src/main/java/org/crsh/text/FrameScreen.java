@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A screen context that repaints the underlying context by difference. The content is laid out by a
+ * {@link VirtualScreen} into a grid of cells, on each {@link #flush()} the grid is compared with the
+ * previous frame and only the cursor moves and the changed cells are sent to the underlying context.
+ *
+ * This is intended for views that refresh the whole screen periodically, for instance <code>thread top</code>,
+ * a new frame starts with {@link #cls()} and the content that does not fit the screen is not displayed. The
+ * cursor moves are sent as ANSI sequences, therefore it should only be used when the alternate buffer
+ * was taken.
+ */
+public class FrameScreen implements ScreenContext {
+
+  /** . */
+  private final ScreenContext out;
+
+  /** The frame being composed. */
+  private final Grid grid;
+
+  /** Lays out the content in the grid. */
+  private final VirtualScreen screen;
+
+  /** The frame displayed by the underlying context or null when it is unknown. */
+  private Grid painted;
+
+  public FrameScreen(ScreenContext out) {
+    this.out = out;
+    this.grid = new Grid(out);
+    this.screen = new VirtualScreen(grid);
+    this.painted = null;
+  }
+
+  public int getWidth() {
+    return out.getWidth();
+  }
+
+  public int getHeight() {
+    return out.getHeight();
+  }
+
+  @Override
+  public Screenable append(CharSequence s) throws IOException {
+    screen.append(s);
+    return this;
+  }
+
+  @Override
+  public Screenable append(char c) throws IOException {
+    screen.append(c);
+    return this;
+  }
+
+  @Override
+  public Screenable append(CharSequence csq, int start, int end) throws IOException {
+    screen.append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public Screenable append(Style style) throws IOException {
+    screen.append(style);
+    return this;
+  }
+
+  @Override
+  public Screenable cls() throws IOException {
+    screen.cls();
+    return this;
+  }
+
+  /**
+   * Paint the current frame and send the difference with the previous frame to the underlying context.
+   *
+   * @throws IOException any io exception
+   */
+  @Override
+  public synchronized void flush() throws IOException {
+    screen.update();
+    screen.paint();
+    Grid previous = painted;
+    if (previous == null || previous.width != grid.width || previous.height != grid.height) {
+      out.cls();
+      previous = new Grid(grid.width, grid.height);
+    }
+    diff(previous, grid, out);
+    painted = grid.copy();
+    out.flush();
+  }
+
+  /**
+   * Invalidates the previous frame, the next flush will repaint the whole screen.
+   */
+  public synchronized void invalidate() {
+    painted = null;
+  }
+
+  /**
+   * Send to a context the cursor moves and the cells that changes a grid into another grid of the same size.
+   *
+   * @param from the grid to change
+   * @param to the grid to obtain
+   * @param out the context
+   * @throws IOException any io exception
+   */
+  static void diff(Grid from, Grid to, ScreenContext out) throws IOException {
+    StringBuilder run = new StringBuilder();
+    Style.Composite pen = null;
+    int cursorX = -1, cursorY = -1;
+    for (int y = 0;y < to.height;y++) {
+      char[] fromChars = from.chars[y];
+      char[] toChars = to.chars[y];
+      Style.Composite[] fromStyles = from.styles[y];
+      Style.Composite[] toStyles = to.styles[y];
+      for (int x = 0;x < to.width;x++) {
+        if (fromChars[x] != toChars[x] || fromStyles[x] != toStyles[x]) {
+          if (x != cursorX || y != cursorY) {
+            write(run, out);
+            out.append("\033[" + (y + 1) + ';' + (x + 1) + 'H');
+          }
+          if (toStyles[x] != pen) {
+            write(run, out);
+            out.append(Style.reset);
+            if (toStyles[x] != Style.style()) {
+              out.append(toStyles[x]);
+            }
+            pen = toStyles[x];
+          }
+          run.append(toChars[x]);
+          cursorX = x + 1;
+          cursorY = y;
+        }
+      }
+    }
+    write(run, out);
+    if (pen != null && pen != Style.style()) {
+      out.append(Style.reset);
+    }
+  }
+
+  private static void write(StringBuilder run, ScreenContext out) throws IOException {
+    if (run.length() > 0) {
+      out.append(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  /**
+   * A grid of styled cells that records the content painted by a {@link VirtualScreen}.
+   */
+  static class Grid implements ScreenContext {
+
+    /** The context providing the size or null for a fixed size. */
+    private final ScreenContext size;
+
+    /** . */
+    int width, height;
+
+    /** . */
+    char[][] chars;
+
+    /** . */
+    Style.Composite[][] styles;
+
+    /** . */
+    private int x, y;
+
+    /** . */
+    private Style.Composite style;
+
+    Grid(ScreenContext size) {
+      this.size = size;
+      resize(Math.max(0, size.getWidth()), Math.max(0, size.getHeight()));
+    }
+
+    Grid(int width, int height) {
+      this.size = null;
+      resize(width, height);
+    }
+
+    private void resize(int width, int height) {
+      this.width = width;
+      this.height = height;
+      this.chars = new char[height][width];
+      this.styles = new Style.Composite[height][width];
+      for (int i = 0;i < height;i++) {
+        Arrays.fill(chars[i], ' ');
+        Arrays.fill(styles[i], Style.style());
+      }
+      this.x = 0;
+      this.y = 0;
+      this.style = Style.style();
+    }
+
+    Grid copy() {
+      Grid copy = new Grid(0, 0);
+      copy.width = width;
+      copy.height = height;
+      copy.chars = new char[height][];
+      copy.styles = new Style.Composite[height][];
+      for (int i = 0;i < height;i++) {
+        copy.chars[i] = chars[i].clone();
+        copy.styles[i] = styles[i].clone();
+      }
+      return copy;
+    }
+
+    public int getWidth() {
+      return size != null ? size.getWidth() : width;
+    }
+
+    public int getHeight() {
+      return size != null ? size.getHeight() : height;
+    }
+
+    @Override
+    public Screenable append(CharSequence s) {
+      return append(s, 0, s.length());
+    }
+
+    @Override
+    public Screenable append(char c) {
+      if (c == '\n') {
+        x = 0;
+        y++;
+      } else if (c >= 32) {
+        if (y < height && x < width) {
+          chars[y][x] = c;
+          styles[y][x] = style;
+        }
+        if (++x == width) {
+          x = 0;
+          y++;
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public Screenable append(CharSequence csq, int start, int end) {
+      while (start < end) {
+        append(csq.charAt(start++));
+      }
+      return this;
+    }
+
+    @Override
+    public Screenable append(Style style) {
+      if (style == Style.reset) {
+        this.style = Style.style();
+      } else {
+        this.style = (Style.Composite)this.style.merge(style);
+      }
+      return this;
+    }
+
+    @Override
+    public Screenable cls() {
+      resize(Math.max(0, getWidth()), Math.max(0, getHeight()));
+      return this;
+    }
+
+    public void flush() {
+    }
+  }
+}
@@ -22,31 +22,150 @@ package org.crsh.text;
 import org.crsh.text.ui.LabelElement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
+import java.util.Set;
 
 /**
  * Provide a renderable.
  */
 public abstract class Renderer<E> {
 
-  /** . */
-  private static final Renderer<?>[] renderables;
+  /** The renderers declared by the class loader of the shell. */
+  private static final Renderer<?>[] builtins;
+
+  /** The registrations of the class loaders, in registration order. */
+  private static final LinkedHashMap<ClassLoader, Registration> registrations = new LinkedHashMap<ClassLoader, Registration>();
+
+  /** The registered renderers. */
+  private static volatile Renderer<?>[] renderables;
+
+  /** Marks a type without renderer. */
+  private static final Object NONE = new Object();
+
+  /** The renderer resolved for each type, replaced when renderers are registered. */
+  private static volatile ClassValue<Object> resolutions;
 
   static {
+    builtins = load(ServiceLoader.load(Renderer.class), Collections.<Class<?>>emptySet());
+    renderables = builtins;
+    resolutions = createResolutions();
+  }
+
+  /**
+   * The renderers registered by a class loader.
+   */
+  private static class Registration {
+
+    /** . */
+    private final Renderer<?>[] renderers;
+
+    /** The number of registrations not yet unregistered. */
+    private int count;
+
+    private Registration(Renderer<?>[] renderers, int count) {
+      this.renderers = renderers;
+      this.count = count;
+    }
+  }
+
+  private static Renderer<?>[] load(ServiceLoader<?> loader, Set<Class<?>> existing) {
     ArrayList<Renderer<?>> tmp = new ArrayList<Renderer<?>>();
-    Iterator<Renderer> i = ServiceLoader.load(Renderer.class).iterator();
+    HashSet<Class<?>> types = new HashSet<Class<?>>(existing);
+    Iterator<?> i = loader.iterator();
     while (i.hasNext()) {
       try {
-        Renderer renderable = i.next();
-        tmp.add(renderable);
+        Renderer<?> renderable = (Renderer<?>)i.next();
+        if (types.add(renderable.getClass())) {
+          tmp.add(renderable);
+        }
       }
       catch (ServiceConfigurationError e) {
         // Config error
       }
     }
+    return tmp.toArray(new Renderer<?>[tmp.size()]);
+  }
+
+  private static ClassValue<Object> createResolutions() {
+    return new ClassValue<Object>() {
+      @Override
+      protected Object computeValue(Class<?> type) {
+        Renderer<?> renderable = resolve(type);
+        return renderable != null ? renderable : NONE;
+      }
+    };
+  }
+
+  /**
+   * Register the renderers declared by a class loader, for instance the class loader of a plugin context. The
+   * renderers of a class loader registered again are loaded again and replace the previous ones, the renderers
+   * already registered by another class loader are ignored. Each registration must be balanced by a call
+   * to {@link #unregister(ClassLoader)}.
+   *
+   * @param classLoader the class loader
+   * @throws NullPointerException if the class loader is null
+   */
+  public static synchronized void register(ClassLoader classLoader) throws NullPointerException {
+    if (classLoader == null) {
+      throw new NullPointerException("No null class loader accepted");
+    }
+    Registration previous = registrations.remove(classLoader);
+    Renderer<?>[] renderers = load(ServiceLoader.load(Renderer.class, classLoader), getTypes());
+    registrations.put(classLoader, new Registration(renderers, previous != null ? previous.count + 1 : 1));
+    update();
+  }
+
+  /**
+   * Unregister the renderers of a class loader, they are removed when the class loader has been unregistered
+   * as many times as it was registered.
+   *
+   * @param classLoader the class loader
+   * @throws NullPointerException if the class loader is null
+   */
+  public static synchronized void unregister(ClassLoader classLoader) throws NullPointerException {
+    if (classLoader == null) {
+      throw new NullPointerException("No null class loader accepted");
+    }
+    Registration registration = registrations.get(classLoader);
+    if (registration != null && --registration.count == 0) {
+      registrations.remove(classLoader);
+      update();
+    }
+  }
+
+  private static Set<Class<?>> getTypes() {
+    HashSet<Class<?>> types = new HashSet<Class<?>>();
+    for (Renderer<?> renderer : builtins) {
+      types.add(renderer.getClass());
+    }
+    for (Registration registration : registrations.values()) {
+      for (Renderer<?> renderer : registration.renderers) {
+        types.add(renderer.getClass());
+      }
+    }
+    return types;
+  }
+
+  private static void update() {
+    ArrayList<Renderer<?>> tmp = new ArrayList<Renderer<?>>(Arrays.asList(builtins));
+    for (Registration registration : registrations.values()) {
+      tmp.addAll(Arrays.asList(registration.renderers));
+    }
     renderables = tmp.toArray(new Renderer<?>[tmp.size()]);
+    invalidate();
+  }
+
+  /**
+   * Invalidate the resolved renderers.
+   */
+  public static void invalidate() {
+    resolutions = createResolutions();
   }
 
   public static Renderer<Object> ANY = new Renderer<Object>() {
@@ -71,10 +190,22 @@ public abstract class Renderer<E> {
   };
 
   public static <I> Renderer<? super I> getRenderable(Class<I> itemType) {
+    Object resolution = resolutions.get(itemType);
+    if (resolution != NONE) {
+      // The resolved renderer type is assignable from the item type
+      @SuppressWarnings("unchecked")
+      Renderer<? super I> renderable = (Renderer<? super I>)resolution;
+      return renderable;
+    } else {
+      return null;
+    }
+  }
+
+  private static Renderer<?> resolve(Class<?> itemType) {
     for (Renderer<?> formatter : renderables) {
       try {
         if (formatter.getType().isAssignableFrom(itemType)) {
-          return (Renderer<I>)formatter;
+          return formatter;
         }
       }
       catch (Exception e) {
@@ -89,4 +220,17 @@ public abstract class Renderer<E> {
 
   public abstract LineRenderer renderer(Iterator<E> stream);
 
+  /**
+   * Returns a renderer for a stream delivered as a sequence of chunks, allowing the stream to be rendered
+   * incrementally instead of being retained until its end. The returned renderer is used for a single stream,
+   * it can keep state between the chunks like the column widths of a table. The default implementation returns
+   * null: the stream must be rendered in one piece.
+   *
+   * @param width the width of the screen
+   * @return the streaming renderer or null
+   */
+  public Renderer<E> streaming(int width) {
+    return null;
+  }
+
 }
@@ -16,18 +16,41 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
-
 package org.crsh.text;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
+/**
+ * A buffer of styled text. The text is stored in a single char array and the structure in a parallel array
+ * of runs: a text run covers the chars appended since the previous run, the other runs are a style change or
+ * a clear screen.
+ */
 public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable {
 
-  /** . */
-  private final LinkedList<Object> chunks;
+  /** The run value of a clear screen, a style run value is <code>-(style.id() + 2)</code>. */
+  private static final int CLS_RUN = -1;
+
+  /** The text. */
+  private transient char[] text;
+
+  /** The text length. */
+  private transient int length;
+
+  /** A positive value is the end of a text run, {@link #CLS_RUN} or a style otherwise. */
+  private transient int[] runs;
+
+  /** The number of runs. */
+  private transient int size;
+
+  /** The cached hash code or zero. */
+  private transient int hash;
 
   /** . */
   private Style current;
@@ -36,35 +59,60 @@ public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable
   private Style next;
 
   /** Where we flush. */
-  private final ScreenContext out;
+  private final transient ScreenContext out;
 
   public ScreenBuffer() {
-    this.chunks = new LinkedList<Object>();
-    this.current = Style.style();
-    this.next = Style.style();
-    this.out = null;
+    this(null);
   }
 
   public ScreenBuffer(ScreenContext out) {
-    this.chunks = new LinkedList<Object>();
+    this.text = new char[16];
+    this.runs = new int[4];
     this.current = Style.style();
     this.next = Style.style();
     this.out = out;
   }
 
   public Iterator<Object> iterator() {
-    return chunks.iterator();
+    return new Iterator<Object>() {
+      int index = 0;
+      int start = 0;
+      public boolean hasNext() {
+        return index < size;
+      }
+      public Object next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        int run = runs[index++];
+        if (run >= 0) {
+          String s = new String(text, start, run - start);
+          start = run;
+          return s;
+        } else if (run == CLS_RUN) {
+          return CLS.INSTANCE;
+        } else {
+          return Style.valueOf(-run - 2);
+        }
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
   }
 
   public void format(Format format, Appendable appendable) throws IOException {
+    CharSequence chars = CharBuffer.wrap(text, 0, length);
     format.begin(appendable);
-    for (Object chunk : this) {
-      if (chunk instanceof Style) {
-        format.write((Style)chunk, appendable);
-      } else if (chunk instanceof CLS) {
+    for (int i = 0, start = 0;i < size;i++) {
+      int run = runs[i];
+      if (run >= 0) {
+        format.write(chars, start, run, appendable);
+        start = run;
+      } else if (run == CLS_RUN) {
         format.cls(appendable);
       } else {
-        format.write((CharSequence)chunk, appendable);
+        format.write(Style.valueOf(-run - 2), appendable);
       }
     }
     format.end(appendable);
@@ -85,7 +133,7 @@ public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable
   }
 
   public ScreenBuffer cls() {
-    chunks.addLast(CLS.INSTANCE);
+    addRun(CLS_RUN);
     return this;
   }
 
@@ -96,56 +144,116 @@ public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable
 
   @Override
   public ScreenBuffer append(char c) throws IOException {
-    return append(Character.toString(c));
+    beginText(1);
+    text[length++] = c;
+    endText();
+    return this;
   }
 
   public ScreenBuffer append(CharSequence s) {
-    if (s.length() > 0) {
-      if (!next.equals(current)) {
-        if (!Style.style().equals(next)) {
-          chunks.addLast(next);
+    return append(s, 0, s.length());
+  }
+
+  public ScreenBuffer append(CharSequence s, int start, int end) {
+    if (end != start) {
+      beginText(end - start);
+      if (s instanceof String) {
+        ((String)s).getChars(start, end, text, length);
+        length += end - start;
+      } else if (s instanceof StringBuilder) {
+        ((StringBuilder)s).getChars(start, end, text, length);
+        length += end - start;
+      } else {
+        while (start < end) {
+          text[length++] = s.charAt(start++);
         }
-        current = next;
-        next = Style.style();
       }
-      chunks.addLast(s);
+      endText();
     }
     return this;
   }
 
-  public ScreenBuffer append(CharSequence s, int start, int end) {
+  private void appendText(char[] chars, int start, int end) {
     if (end != start) {
-      if (start != 0 || end != s.length()) {
-        s = s.subSequence(start, end);
+      beginText(end - start);
+      System.arraycopy(chars, start, text, length, end - start);
+      length += end - start;
+      endText();
+    }
+  }
+
+  /**
+   * Emits the pending style and ensures the text can hold the specified amount of chars.
+   *
+   * @param amount the amount of chars
+   */
+  private void beginText(int amount) {
+    // Styles are interned so they can be compared by reference
+    if (next != current) {
+      if (next != Style.style()) {
+        addRun(-(next.id() + 2));
       }
-      append(s);
+      current = next;
+      next = Style.style();
     }
-    return this;
+    if (length + amount > text.length) {
+      text = Arrays.copyOf(text, Math.max(length + amount, text.length * 2));
+    }
+    hash = 0;
+  }
+
+  /**
+   * Extends the last text run up to the end of the text or creates a new one.
+   */
+  private void endText() {
+    if (size > 0 && runs[size - 1] >= 0) {
+      runs[size - 1] = length;
+    } else {
+      addRun(length);
+    }
+  }
+
+  private void addRun(int run) {
+    if (size == runs.length) {
+      runs = Arrays.copyOf(runs, size * 2);
+    }
+    runs[size++] = run;
   }
 
   public void flush() throws IOException {
     if (out != null) {
-      for (Object chunk : chunks) {
-        if (chunk instanceof CLS) {
+      for (int i = 0, start = 0;i < size;i++) {
+        int run = runs[i];
+        if (run >= 0) {
+          // The context may retain the chars, so we give it a copy
+          out.append(new String(text, start, run - start));
+          start = run;
+        } else if (run == CLS_RUN) {
           out.cls();
-        } else if (chunk instanceof CharSequence) {
-          out.append((CharSequence)chunk);
         } else {
-          out.append((Style)chunk);
+          out.append(Style.valueOf(-run - 2));
         }
       }
     }
-    chunks.clear();
+    clear();
     if (out != null) {
       out.flush();
     }
   }
 
   public ScreenBuffer append(ScreenBuffer s) throws NullPointerException {
-    for (Object chunk : s.chunks) {
-      append(chunk);
+    for (int i = 0, start = 0;i < s.size;i++) {
+      int run = s.runs[i];
+      if (run >= 0) {
+        appendText(s.text, start, run);
+        start = run;
+      } else if (run == CLS_RUN) {
+        cls();
+      } else {
+        append(Style.valueOf(-run - 2));
+      }
     }
-    if (s.next != null && !s.next.equals(Style.style())) {
+    if (s.next != null && s.next != Style.style()) {
       append(s.next);
     }
     return this;
@@ -170,20 +278,41 @@ public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable
   }
 
   public boolean contains(Object o) {
-    return toString().contains(o.toString());
+    String s = o.toString();
+    int max = length - s.length();
+    for (int i = 0;i <= max;i++) {
+      int j = 0;
+      while (j < s.length() && text[i + j] == s.charAt(j)) {
+        j++;
+      }
+      if (j == s.length()) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public boolean isEmpty() {
-    return chunks.isEmpty();
+    return size == 0;
   }
 
   public void clear() {
-    chunks.clear();
+    length = 0;
+    size = 0;
+    hash = 0;
   }
 
   @Override
   public int hashCode() {
-    return toString().hashCode();
+    // Same as the string hash code
+    int h = hash;
+    if (h == 0) {
+      for (int i = 0;i < length;i++) {
+        h = 31 * h + text[i];
+      }
+      hash = h;
+    }
+    return h;
   }
 
   @Override
@@ -193,19 +322,47 @@ public class ScreenBuffer implements Iterable<Object>, Serializable, Screenable
     }
     if (obj instanceof ScreenBuffer) {
       ScreenBuffer that = (ScreenBuffer)obj;
-      return toString().equals(that.toString());
+      if (length != that.length || (hash != 0 && that.hash != 0 && hash != that.hash)) {
+        return false;
+      }
+      for (int i = 0;i < length;i++) {
+        if (text[i] != that.text[i]) {
+          return false;
+        }
+      }
+      return true;
     }
     return false;
   }
 
   @Override
   public String toString() {
-    StringBuilder sb = new StringBuilder();
-    try {
-      format(Format.TEXT, sb);
+    return new String(text, 0, length);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(length);
+    for (int i = 0;i < length;i++) {
+      out.writeChar(text[i]);
+    }
+    out.writeInt(size);
+    for (int i = 0;i < size;i++) {
+      out.writeInt(runs[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    length = in.readInt();
+    text = new char[Math.max(16, length)];
+    for (int i = 0;i < length;i++) {
+      text[i] = in.readChar();
     }
-    catch (IOException ignore) {
+    size = in.readInt();
+    runs = new int[Math.max(4, size)];
+    for (int i = 0;i < size;i++) {
+      runs[i] = in.readInt();
     }
-    return sb.toString();
   }
 }
@@ -22,6 +22,7 @@ package org.crsh.text;
 import org.crsh.stream.Consumer;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 /**
@@ -29,17 +30,41 @@ import java.util.LinkedList;
  */
 public class ScreenContextConsumer implements Consumer<Object> {
 
+  /** The default number of objects buffered before a streaming renderer renders them. */
+  public static final int DEFAULT_WINDOW = 256;
+
   /** Buffers objects of the same kind. */
   private final LinkedList<Object> buffer = new LinkedList<Object>();
 
   /** . */
-  private Renderer renderable = null;
+  private Renderer<?> renderable = null;
+
+  /** The streaming renderer once the objects exceeded the window or null. */
+  private Renderer<?> streaming = null;
 
   /** . */
   private final RenderAppendable out;
 
+  /** . */
+  private final int window;
+
   public ScreenContextConsumer(ScreenContext out) {
+    this(out, DEFAULT_WINDOW);
+  }
+
+  /**
+   * Create a new consumer.
+   *
+   * @param out the screen context
+   * @param window the number of objects rendered at once when their renderer can stream and they exceed the window
+   * @throws IllegalArgumentException if the window is not positive
+   */
+  public ScreenContextConsumer(ScreenContext out, int window) throws IllegalArgumentException {
+    if (window < 1) {
+      throw new IllegalArgumentException("Invalid window " + window);
+    }
     this.out = new RenderAppendable(out);
+    this.window = window;
   }
 
   public Class<Object> getConsumedType() {
@@ -47,7 +72,7 @@ public class ScreenContextConsumer implements Consumer<Object> {
   }
 
   public void provide(Object element) throws IOException {
-    Renderer current = Renderer.getRenderable(element.getClass());
+    Renderer<?> current = Renderer.getRenderable(element.getClass());
     if (current == null) {
       send();
       if (element instanceof CharSequence) {
@@ -63,6 +88,16 @@ public class ScreenContextConsumer implements Consumer<Object> {
       if (renderable != null && !current.equals(renderable)) {
         send();
       }
+
+      // Stream the objects that exceed the window, the others are rendered at once
+      if (buffer.size() == window) {
+        if (streaming == null) {
+          streaming = current.streaming(out.getWidth());
+        }
+        if (streaming != null) {
+          render(streaming);
+        }
+      }
       buffer.addLast(element);
       renderable = current;
     }
@@ -75,10 +110,33 @@ public class ScreenContextConsumer implements Consumer<Object> {
 
   public void send() throws IOException {
     if (buffer.size() > 0) {
-      LineRenderer renderer = renderable.renderer(buffer.iterator());
-      renderer.render(out);
-      buffer.clear();
-      renderable = null;
+      if (streaming != null) {
+        render(streaming);
+      } else {
+        render(renderable);
+      }
     }
+    renderable = null;
+    streaming = null;
+  }
+
+  private <E> void render(Renderer<E> renderer) throws IOException {
+
+    // The buffered objects are instances of the renderer type
+    final Class<E> type = renderer.getType();
+    final Iterator<Object> i = buffer.iterator();
+    LineRenderer lines = renderer.renderer(new Iterator<E>() {
+      public boolean hasNext() {
+        return i.hasNext();
+      }
+      public E next() {
+        return type.cast(i.next());
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+    lines.render(out);
+    buffer.clear();
   }
 }
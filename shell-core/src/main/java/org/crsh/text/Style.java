@@ -19,8 +19,6 @@
 
 package org.crsh.text;
 
-import org.crsh.util.Utils;
-
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.UndeclaredThrowableException;
@@ -41,8 +39,14 @@ import java.util.Arrays;
  */
 public abstract class Style implements Serializable {
 
+  /** The serial version of the styles sent by the peers without codecs. */
+  private static final long serialVersionUID = 1044393012208013286L;
+
   public static final Style reset = new Style() {
 
+    /** . */
+    private static final long serialVersionUID = -894637280300996053L;
+
     @Override
     public Style merge(Style s) throws NullPointerException {
       if (s == null) {
@@ -56,14 +60,31 @@ public abstract class Style implements Serializable {
       return "Style.Reset[]";
     }
 
+    @Override
+    public CharSequence toAnsiSequence() {
+      return "\033[0m";
+    }
+
     @Override
     public void writeAnsiTo(Appendable appendable) throws IOException {
       appendable.append("\033[0m");
     }
+
+    @Override
+    int id() {
+      return 0;
+    }
+
+    private Object readResolve() {
+      return reset;
+    }
   };
 
   public static final class Composite extends Style {
 
+    /** . */
+    private static final long serialVersionUID = -8562014805019868975L;
+
     /** . */
     protected final Boolean bold;
 
@@ -79,12 +100,29 @@ public abstract class Style implements Serializable {
     /** . */
     protected final Color background;
 
-    private Composite(Boolean bold, Boolean underline, Boolean blink, Color foreground, Color background) {
-      this.bold = bold;
-      this.underline = underline;
-      this.blink = blink;
-      this.foreground = foreground;
-      this.background = background;
+    /** The indexes of this style in the {@link #ALL} table. */
+    private final transient byte bo, un, bl, fg, bg;
+
+    /** The precomputed ansi sequence. */
+    private final transient String ansi;
+
+    private Composite(int bo, int un, int bl, int fg, int bg) {
+      this.bold = BOOLEANS[bo];
+      this.underline = BOOLEANS[un];
+      this.blink = BOOLEANS[bl];
+      this.foreground = COLORS[fg];
+      this.background = COLORS[bg];
+      this.bo = (byte)bo;
+      this.un = (byte)un;
+      this.bl = (byte)bl;
+      this.fg = (byte)fg;
+      this.bg = (byte)bg;
+      this.ansi = ansi(bold, underline, blink, foreground, background);
+    }
+
+    @Override
+    int id() {
+      return 1 + (((bo * BOOLEANS.length + un) * BOOLEANS.length + bl) * COLORS.length + fg) * COLORS.length + bg;
     }
 
     public Composite fg(Color color) {
@@ -175,15 +213,24 @@ public abstract class Style implements Serializable {
         return reset;
       } else {
         Style.Composite that = (Composite)s;
-        Boolean bold = Utils.notNull(that.getBold(), getBold());
-        Boolean underline = Utils.notNull(that.getUnderline(), getUnderline());
-        Boolean blink = Utils.notNull(that.getBlink(), getBlink());
-        Color foreground = Utils.notNull(that.getForeground(), getForeground());
-        Color background = Utils.notNull(that.getBackground(), getBackground());
-        return style(bold, underline, blink, foreground, background);
+        return ALL
+            [that.bo != NULL_BOOLEAN ? that.bo : bo]
+            [that.un != NULL_BOOLEAN ? that.un : un]
+            [that.bl != NULL_BOOLEAN ? that.bl : bl]
+            [that.fg != NULL_COLOR ? that.fg : fg]
+            [that.bg != NULL_COLOR ? that.bg : bg];
       }
     }
 
+    /**
+     * Replace a deserialized style by its canonical instance so styles can be compared by reference.
+     *
+     * @return the canonical style
+     */
+    private Object readResolve() {
+      return style(bold, underline, blink, foreground, background);
+    }
+
     @Override
     public String toString() {
       return "Style.Composite[bold=" + bold + ",underline=" + underline + ",blink=" + blink +
@@ -230,15 +277,34 @@ public abstract class Style implements Serializable {
       return false;
     }
 
+    private static String ansi(Boolean bold, Boolean underline, Boolean blink, Color foreground, Color background) {
+      StringBuilder sb = new StringBuilder();
+      try {
+        boolean appended = decoration(sb, Decoration.bold.code, Decoration.bold_off.code, bold, false);
+        appended |= decoration(sb, Decoration.underline.code, Decoration.underline_off.code, underline, appended);
+        appended |= decoration(sb, Decoration.blink.code, Decoration.blink_off.code, blink, appended);
+        appended |= color(sb, foreground, '3', appended);
+        appended |= color(sb, background, '4', appended);
+        if (appended) {
+          sb.append("m");
+        }
+      }
+      catch (IOException e) {
+        // Should not happen
+        throw new UndeclaredThrowableException(e);
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public CharSequence toAnsiSequence() {
+      return ansi;
+    }
+
     @Override
     public void writeAnsiTo(Appendable appendable) throws IOException {
-      boolean appended = decoration(appendable, Decoration.bold.code, Decoration.bold_off.code, bold, false);
-      appended |= decoration(appendable, Decoration.underline.code, Decoration.underline_off.code, underline, appended);
-      appended |= decoration(appendable, Decoration.blink.code, Decoration.blink_off.code, blink, appended);
-      appended |= color(appendable, foreground, '3', appended);
-      appended |= color(appendable, background, '4', appended);
-      if (appended) {
-        appendable.append("m");
+      if (ansi.length() > 0) {
+        appendable.append(ansi);
       }
     }
   }
@@ -249,10 +315,21 @@ public abstract class Style implements Serializable {
   /** . */
   private static final Color[] COLORS = Arrays.copyOf(Color.values(), Color.values().length + 1);
 
+  /** The index of a null boolean. */
+  private static final int NULL_BOOLEAN = BOOLEANS.length - 1;
+
+  /** The index of a null color. */
+  private static final int NULL_COLOR = COLORS.length - 1;
+
   /** [bold][underline][blink][foreground][background]. */
   private static final Composite[][][][][] ALL;
 
+  /** All the styles indexed by their {@link #id()}. */
+  private static final Style[] STYLES;
+
   static {
+    STYLES = new Style[1 + BOOLEANS.length * BOOLEANS.length * BOOLEANS.length * COLORS.length * COLORS.length];
+    STYLES[0] = reset;
     ALL = new Composite[BOOLEANS.length][][][][];
     for (int bold = 0;bold < BOOLEANS.length;bold++) {
       ALL[bold] = new Composite[BOOLEANS.length][][][];
@@ -263,12 +340,14 @@ public abstract class Style implements Serializable {
           for (int foreground = 0;foreground < COLORS.length;foreground++) {
             ALL[bold][underline][blink][foreground] = new Composite[COLORS.length];
             for (int background = 0;background < COLORS.length;background++) {
-              ALL[bold][underline][blink][foreground][background] = new Composite(
-                  BOOLEANS[bold],
-                  BOOLEANS[underline],
-                  BOOLEANS[blink],
-                  COLORS[foreground],
-                  COLORS[background]);
+              Composite style = new Composite(
+                  bold,
+                  underline,
+                  blink,
+                  foreground,
+                  background);
+              ALL[bold][underline][blink][foreground][background] = style;
+              STYLES[style.id()] = style;
             }
           }
         }
@@ -314,11 +393,11 @@ public abstract class Style implements Serializable {
   }
 
   public static Composite style(Boolean bold, Boolean underline, Boolean blink, Color foreground, Color background) {
-    int bo = bold != null ? bold ? 0 : 1: 2;
-    int un = underline != null ? underline ? 0 : 1: 2;
-    int bl = blink != null ? blink ? 0 : 1: 2;
-    int fg = foreground != null ? foreground.ordinal() : COLORS.length - 1;
-    int bg = background != null ? background.ordinal() : COLORS.length - 1;
+    int bo = bold != null ? bold ? 0 : 1: NULL_BOOLEAN;
+    int un = underline != null ? underline ? 0 : 1: NULL_BOOLEAN;
+    int bl = blink != null ? blink ? 0 : 1: NULL_BOOLEAN;
+    int fg = foreground != null ? foreground.ordinal() : NULL_COLOR;
+    int bg = background != null ? background.ordinal() : NULL_COLOR;
     return ALL[bo][un][bl][fg][bg];
   }
 
@@ -339,6 +418,25 @@ public abstract class Style implements Serializable {
     return style(decoration, foreground, null);
   }
 
+  /**
+   * Returns the style for the specified id.
+   *
+   * @param id the style id
+   * @return the style
+   * @throws IndexOutOfBoundsException when the id is not valid
+   */
+  static Style valueOf(int id) throws IndexOutOfBoundsException {
+    return STYLES[id];
+  }
+
+  /**
+   * Returns the id of this style, the {@link #reset} style has the id 0 and each composite style has a distinct
+   * positive id.
+   *
+   * @return the style id
+   */
+  abstract int id();
+
   public abstract Style merge(Style s) throws NullPointerException;
 
   public CharSequence toAnsiSequence() {
@@ -22,9 +22,10 @@ import org.crsh.text.Color;
 import org.crsh.text.LineRenderer;
 import org.crsh.text.Renderer;
 import org.crsh.text.ui.LabelElement;
-import org.crsh.util.BaseIterator;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.SimpleFormatter;
@@ -43,34 +44,25 @@ public class LogRecordRenderer extends Renderer<LogRecord> {
   }
 
   @Override
-  public LineRenderer renderer(final Iterator<LogRecord> stream) {
-    return LineRenderer.vertical(new Iterable<LineRenderer>() {
-      @Override
-      public Iterator<LineRenderer> iterator() {
-        return new BaseIterator<LineRenderer>() {
-          final SimpleFormatter formatter = new SimpleFormatter();
-          @Override
-          public boolean hasNext() {
-            return stream.hasNext();
-          }
-          @Override
-          public LineRenderer next() {
-            LogRecord record = stream.next();
-            String line = formatter.format(record);
-            Color color;
-            if (record.getLevel() == Level.SEVERE) {
-              color = Color.red;
-            } else if (record.getLevel() == Level.WARNING) {
-              color = Color.yellow;
-            } else if (record.getLevel() == Level.INFO) {
-              color = Color.green;
-            } else {
-              color = Color.blue;
-            }
-            return new LabelElement(line).style(color.fg()).renderer();
-          }
-        };
+  public LineRenderer renderer(Iterator<LogRecord> stream) {
+    // The renderers are collected because the vertical renderer iterates them more than once
+    SimpleFormatter formatter = new SimpleFormatter();
+    List<LineRenderer> renderers = new ArrayList<LineRenderer>();
+    while (stream.hasNext()) {
+      LogRecord record = stream.next();
+      String line = formatter.format(record);
+      Color color;
+      if (record.getLevel() == Level.SEVERE) {
+        color = Color.red;
+      } else if (record.getLevel() == Level.WARNING) {
+        color = Color.yellow;
+      } else if (record.getLevel() == Level.INFO) {
+        color = Color.green;
+      } else {
+        color = Color.blue;
       }
-    });
+      renderers.add(new LabelElement(line).style(color.fg()).renderer());
+    }
+    return LineRenderer.vertical(renderers);
   }
 }
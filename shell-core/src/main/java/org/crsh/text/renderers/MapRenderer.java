@@ -24,20 +24,42 @@ import org.crsh.text.Decoration;
 import org.crsh.text.LineRenderer;
 import org.crsh.text.Renderer;
 import org.crsh.text.ui.LabelElement;
+import org.crsh.text.ui.Layout;
 import org.crsh.text.ui.RowElement;
 import org.crsh.text.ui.TableElement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 
 public class MapRenderer extends Renderer<Map<?, ?>> {
 
+  /** . */
+  @SuppressWarnings("unchecked")
+  private static final Class<Map<?, ?>> TYPE = (Class<Map<?, ?>>)(Object)Map.class;
+
+  /** . */
+  private final boolean reemitHeader;
+
+  public MapRenderer() {
+    this(true);
+  }
+
+  /**
+   * Create a map renderer.
+   *
+   * @param reemitHeader when streaming, re-emit the header when the column widths grow, otherwise the widths of the
+   *                     first rows are kept and the wider cells are wrapped
+   */
+  public MapRenderer(boolean reemitHeader) {
+    this.reemitHeader = reemitHeader;
+  }
+
   @Override
   public Class<Map<?, ?>> getType() {
-    Object mapClass = Map.class;
-    return (Class<Map<?,?>>)mapClass;
+    return TYPE;
   }
 
   @Override
@@ -92,4 +114,167 @@ public class MapRenderer extends Renderer<Map<?, ?>> {
     //
     return LineRenderer.vertical(renderers);
   }
+
+  @Override
+  public Renderer<Map<?, ?>> streaming(int width) {
+    return new Streaming(reemitHeader, width);
+  }
+
+  /**
+   * Renders the maps chunk by chunk, the column widths are computed from the first chunk and reused by the
+   * following chunks, so the chunks render as a single table without retaining the rows. The widths are reduced
+   * to fit the screen width, the widest columns are reduced first.
+   */
+  private static class Streaming extends Renderer<Map<?, ?>> {
+
+    /** . */
+    private final boolean reemitHeader;
+
+    /** The screen width. */
+    private final int width;
+
+    /** The current header. */
+    private LinkedHashSet<String> header;
+
+    /** The desired column widths including the cell padding. */
+    private int[] widths;
+
+    /** The minimum column widths including the cell padding. */
+    private int[] minWidths;
+
+    /** The column widths fitting the screen. */
+    private int[] fitted;
+
+    private Streaming(boolean reemitHeader, int width) {
+      this.reemitHeader = reemitHeader;
+      this.width = width;
+      this.header = null;
+      this.widths = null;
+      this.minWidths = null;
+      this.fitted = null;
+    }
+
+    @Override
+    public Class<Map<?, ?>> getType() {
+      return TYPE;
+    }
+
+    @Override
+    public LineRenderer renderer(Iterator<Map<?, ?>> stream) {
+      ArrayList<LineRenderer> renderers = new ArrayList<LineRenderer>();
+      ArrayList<LabelElement[]> rows = new ArrayList<LabelElement[]>();
+      LinkedHashSet<String> keys = new LinkedHashSet<String>();
+      while (stream.hasNext()) {
+        Map<?, ?> row = stream.next();
+        if (row.size() > 0) {
+          keys.clear();
+          for (Object key : row.keySet()) {
+            keys.add(String.valueOf(key));
+          }
+          if (!keys.equals(header)) {
+            render(rows, renderers);
+            header = new LinkedHashSet<String>(keys);
+            widths = null;
+          }
+          LabelElement[] cells = new LabelElement[header.size()];
+          int index = 0;
+          for (String key : header) {
+            cells[index++] = new LabelElement(String.valueOf(row.get(key)));
+          }
+          rows.add(cells);
+        }
+      }
+      render(rows, renderers);
+      return LineRenderer.vertical(renderers);
+    }
+
+    /**
+     * Render the rows sharing the current header.
+     */
+    private void render(ArrayList<LabelElement[]> rows, ArrayList<LineRenderer> renderers) {
+      if (rows.size() > 0) {
+
+        // Compute the widths of this chunk
+        int[] chunkWidths = new int[header.size()];
+        int[] chunkMinWidths = new int[header.size()];
+        int index = 0;
+        for (String key : header) {
+          LineRenderer renderer = new LabelElement(key).renderer();
+          chunkWidths[index] = renderer.getActualWidth();
+          chunkMinWidths[index++] = renderer.getMinWidth();
+        }
+        for (LabelElement[] row : rows) {
+          for (int i = 0;i < row.length;i++) {
+            LineRenderer renderer = row[i].renderer();
+            chunkWidths[i] = Math.max(chunkWidths[i], renderer.getActualWidth());
+            chunkMinWidths[i] = Math.max(chunkMinWidths[i], renderer.getMinWidth());
+          }
+        }
+        for (int i = 0;i < chunkWidths.length;i++) {
+          chunkWidths[i] += 1;
+          chunkMinWidths[i] += 1;
+        }
+
+        // The first chunk determines the widths, the next ones may grow them
+        if (widths == null) {
+          widths = chunkWidths;
+          minWidths = chunkMinWidths;
+          fitted = null;
+        } else if (reemitHeader) {
+          for (int i = 0;i < widths.length;i++) {
+            widths[i] = Math.max(widths[i], chunkWidths[i]);
+            minWidths[i] = Math.max(minWidths[i], chunkMinWidths[i]);
+          }
+        }
+
+        // The header is emitted again when the fitted widths change
+        int[] previous = fitted;
+        fitted = fit(widths, minWidths, width);
+        boolean emitHeader = !Arrays.equals(previous, fitted);
+
+        //
+        TableElement table = new TableElement().rightCellPadding(1).withColumnLayout(Layout.fixed(fitted));
+        if (emitHeader) {
+          RowElement r = new RowElement(true);
+          r.style(Decoration.bold.fg(Color.black).bg(Color.white));
+          for (String s : header) {
+            r.add(s);
+          }
+          table.add(r);
+        }
+        for (LabelElement[] row : rows) {
+          table.add(new RowElement().add(row));
+        }
+        renderers.add(table.renderer());
+        rows.clear();
+      }
+    }
+
+    /**
+     * Reduce the widest columns until the columns fit the width or cannot be reduced anymore.
+     */
+    private static int[] fit(int[] widths, int[] minWidths, int width) {
+      int[] fitted = widths.clone();
+      if (width > 0) {
+        int total = 0;
+        for (int w : fitted) {
+          total += w;
+        }
+        while (total > width) {
+          int widest = -1;
+          for (int i = 0;i < fitted.length;i++) {
+            if (fitted[i] > minWidths[i] && (widest == -1 || fitted[i] > fitted[widest])) {
+              widest = i;
+            }
+          }
+          if (widest == -1) {
+            break;
+          }
+          fitted[widest]--;
+          total--;
+        }
+      }
+      return fitted;
+    }
+  }
 }
@@ -34,6 +34,10 @@ public abstract class Layout {
     return new Weighted(weights);
   }
 
+  public static Layout fixed(int... lengths) throws NullPointerException, IllegalArgumentException {
+    return new Fixed(lengths);
+  }
+
   /**
    * Computes the list of lengths for the specifid list of cells with the following constraints:
    *
@@ -159,6 +163,48 @@ public abstract class Layout {
     }
   }
 
+  /**
+   * A layout using predefined lengths instead of the actual lengths, so distinct tables share the same column
+   * lengths, the lengths are reduced like the flow layout does when they exceed the total length.
+   */
+  public static class Fixed extends Layout {
+
+    /** . */
+    private final int[] lengths;
+
+    /**
+     * Create a new fixed layout.
+     *
+     * @param lengths the lengths
+     * @throws NullPointerException if the lengths argument is null
+     * @throws IllegalArgumentException if any length is negative
+     */
+    private Fixed(int... lengths) throws NullPointerException, IllegalArgumentException {
+      if (lengths == null) {
+        throw new NullPointerException("No null lengths accepted");
+      }
+      for (int length : lengths) {
+        if (length < 0) {
+          throw new IllegalArgumentException("No negative length accepted");
+        }
+      }
+      this.lengths = lengths.clone();
+    }
+
+    public int[] getLengths() {
+      return lengths.clone();
+    }
+
+    @Override
+    int[] compute(boolean spaced, int length, int[] actualLengths, int[] minLengths) {
+      int[] fixedLengths = actualLengths.clone();
+      for (int i = 0;i < Math.min(fixedLengths.length, lengths.length);i++) {
+        fixedLengths[i] = Math.max(lengths[i], minLengths[i]);
+      }
+      return RTL.compute(spaced, length, fixedLengths, minLengths);
+    }
+  }
+
   private static final Layout RTL = new Layout() {
 
     @Override
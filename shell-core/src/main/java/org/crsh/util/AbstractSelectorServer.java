@@ -0,0 +1,759 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A server multiplexing many connections over a few selector threads, the selector threads only move bytes
+ * between the sockets and the connection streams, the data is processed by a {@link Handler} executed by an
+ * executor when bytes are available.
+ *
+ * Each connection buffers at most <code>bufferSize</code> bytes in each direction: when the handler does not
+ * consume its input fast enough the socket is not read anymore and when the peer does not consume the output fast
+ * enough, the threads writing to the connection output stream are blocked until the output is drained.
+ */
+public abstract class AbstractSelectorServer implements Closeable {
+
+  /**
+   * Process the data of a connection.
+   */
+  protected static abstract class Handler {
+
+    /**
+     * Process the available data of the connection, this method is never invoked concurrently for the same
+     * connection and it is invoked again when more data becomes available.
+     *
+     * @throws Exception any exception closes the connection
+     */
+    protected abstract void process() throws Exception;
+
+    /**
+     * Invoked when the connection is closed.
+     */
+    protected void closed() {
+    }
+
+    /** . */
+    private volatile boolean handshaked;
+
+    /**
+     * Signals that the connection completed its handshake, the connection is not subject to the handshake timeout
+     * anymore.
+     */
+    protected final void handshaked() {
+      handshaked = true;
+    }
+  }
+
+  /** . */
+  private static final Logger log = Logger.getLogger(AbstractSelectorServer.class.getName());
+
+  /** . */
+  private final InetAddress bindingAddress;
+
+  /** . */
+  private final int bindingPort;
+
+  /** . */
+  private final ExecutorService executor;
+
+  /** . */
+  private final int bufferSize;
+
+  /** . */
+  private final Loop[] loops;
+
+  /** . */
+  private final Set<Connection> connections;
+
+  /** . */
+  private ServerSocketChannel serverChannel;
+
+  /** . */
+  private int port;
+
+  /** . */
+  private int next;
+
+  /** . */
+  private volatile boolean closed;
+
+  /** . */
+  private volatile long handshakeTimeout;
+
+  /**
+   * Create a new server bound to the loopback interface.
+   *
+   * @param bindingPort the binding port
+   * @param executor the executor processing the connection data
+   * @param threads the number of selector threads
+   * @param bufferSize the maximum number of bytes buffered per connection in each direction
+   * @throws NullPointerException if the executor is null
+   * @throws IllegalArgumentException if the number of threads or the buffer size is not positive
+   */
+  public AbstractSelectorServer(int bindingPort, ExecutorService executor, int threads, int bufferSize) throws NullPointerException, IllegalArgumentException {
+    this(InetAddress.getLoopbackAddress(), bindingPort, executor, threads, bufferSize);
+  }
+
+  /**
+   * Create a new server.
+   *
+   * @param bindingAddress the binding address
+   * @param bindingPort the binding port
+   * @param executor the executor processing the connection data
+   * @param threads the number of selector threads
+   * @param bufferSize the maximum number of bytes buffered per connection in each direction
+   * @throws NullPointerException if the binding address or the executor is null
+   * @throws IllegalArgumentException if the number of threads or the buffer size is not positive
+   */
+  public AbstractSelectorServer(InetAddress bindingAddress, int bindingPort, ExecutorService executor, int threads, int bufferSize) throws NullPointerException, IllegalArgumentException {
+    if (bindingAddress == null) {
+      throw new NullPointerException("No null binding address accepted");
+    }
+    if (executor == null) {
+      throw new NullPointerException("No null executor accepted");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads " + threads);
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Invalid buffer size " + bufferSize);
+    }
+
+    //
+    this.bindingAddress = bindingAddress;
+    this.bindingPort = bindingPort;
+    this.executor = executor;
+    this.bufferSize = bufferSize;
+    this.loops = new Loop[threads];
+    this.connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+  }
+
+  public final InetAddress getAddress() {
+    return bindingAddress;
+  }
+
+  public final int getPort() {
+    return port;
+  }
+
+  public final long getHandshakeTimeout() {
+    return handshakeTimeout;
+  }
+
+  /**
+   * Set the time a new connection has to complete its handshake, the connections whose handler does not signal
+   * the handshake completion in time are closed. The default value is zero and means no timeout.
+   *
+   * @param handshakeTimeout the timeout in milliseconds
+   * @throws IllegalArgumentException if the timeout is negative
+   */
+  public final void setHandshakeTimeout(long handshakeTimeout) throws IllegalArgumentException {
+    if (handshakeTimeout < 0) {
+      throw new IllegalArgumentException("Invalid handshake timeout " + handshakeTimeout);
+    }
+    this.handshakeTimeout = handshakeTimeout;
+  }
+
+  /**
+   * @return the number of open connections
+   */
+  public final int getConnectionCount() {
+    return connections.size();
+  }
+
+  public final synchronized int bind() throws IOException {
+    if (serverChannel != null) {
+      throw new IllegalStateException("Already bound");
+    }
+
+    //
+    ServerSocketChannel serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.configureBlocking(false);
+      serverChannel.socket().bind(new InetSocketAddress(bindingAddress, bindingPort));
+      for (int i = 0;i < loops.length;i++) {
+        loops[i] = new Loop(i);
+      }
+      serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+      for (Loop loop : loops) {
+        loop.thread.start();
+      }
+    }
+    catch (IOException e) {
+      for (Loop loop : loops) {
+        if (loop != null) {
+          Utils.close(loop.selector);
+        }
+      }
+      Utils.close(serverChannel);
+      throw e;
+    }
+
+    //
+    this.serverChannel = serverChannel;
+    this.port = serverChannel.socket().getLocalPort();
+
+    //
+    return port;
+  }
+
+  /**
+   * Handle a new connection, this method is invoked by a selector thread and should not block.
+   *
+   * @param in the connection input
+   * @param out the connection output
+   * @param connection closing the connection
+   * @return the handler processing the connection data
+   * @throws IOException any io exception closes the connection
+   */
+  protected abstract Handler handle(InputStream in, OutputStream out, Closeable connection) throws IOException;
+
+  public final void close() {
+    closed = true;
+    Utils.close(serverChannel);
+    for (Connection connection : connections) {
+      connection.close();
+    }
+    for (Loop loop : loops) {
+      if (loop != null) {
+        loop.selector.wakeup();
+        if (loop.thread != Thread.currentThread()) {
+          try {
+            loop.thread.join();
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        Utils.close(loop.selector);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = serverChannel.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Loop loop = loops[next++ % loops.length];
+      Connection connection = new Connection(loop, channel);
+      connections.add(connection);
+      try {
+        connection.handler = handle(connection.in, connection.out, connection);
+        loop.register(connection);
+      }
+      catch (Exception e) {
+        log.log(Level.SEVERE, "Could not handle connection", e);
+        connection.close();
+      }
+    }
+  }
+
+  /**
+   * A selector thread.
+   */
+  private class Loop implements Runnable {
+
+    /** . */
+    private final Selector selector;
+
+    /** . */
+    private final Thread thread;
+
+    /** The tasks that must be executed by the selector thread. */
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+
+    /** . */
+    private final ByteBuffer buffer;
+
+    /** The connections waiting for their handshake in deadline order, only accessed by the selector thread. */
+    private final ArrayDeque<Connection> handshakes;
+
+    private Loop(int index) throws IOException {
+      Thread thread = new Thread(this, "CRaSH selector " + index);
+      thread.setDaemon(true);
+
+      //
+      this.selector = Selector.open();
+      this.thread = thread;
+      this.tasks = new ConcurrentLinkedQueue<Runnable>();
+      this.buffer = ByteBuffer.allocate(Math.min(bufferSize, 8192));
+      this.handshakes = new ArrayDeque<Connection>();
+    }
+
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void register(final Connection connection) {
+      execute(new Runnable() {
+        public void run() {
+          try {
+            if (!connection.closed) {
+              connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+              connection.updateInterest();
+              if (connection.deadline > 0) {
+                handshakes.add(connection);
+              }
+            }
+          }
+          catch (IOException e) {
+            connection.close();
+          }
+        }
+      });
+    }
+
+    public void run() {
+      try {
+        while (!closed) {
+          selector.select(expire());
+          for (Runnable task = tasks.poll();task != null;task = tasks.poll()) {
+            task.run();
+          }
+          for (Iterator<SelectionKey> i = selector.selectedKeys().iterator();i.hasNext();) {
+            SelectionKey key = i.next();
+            i.remove();
+            if (key.isValid()) {
+              if (key.isAcceptable()) {
+                try {
+                  accept();
+                }
+                catch (IOException e) {
+                  log.log(Level.SEVERE, "Could not accept connection", e);
+                }
+              } else {
+                Connection connection = (Connection)key.attachment();
+                try {
+                  if (key.isReadable()) {
+                    connection.read(buffer);
+                  }
+                  if (key.isValid() && key.isWritable()) {
+                    connection.write();
+                  }
+                }
+                catch (IOException e) {
+                  log.log(Level.FINE, "Closing connection", e);
+                  connection.close();
+                }
+                catch (CancelledKeyException ignore) {
+                  // The connection was closed by another thread
+                  connection.close();
+                }
+              }
+            }
+          }
+        }
+      }
+      catch (ClosedSelectorException ignore) {
+        // Closed
+      }
+      catch (IOException e) {
+        if (!closed) {
+          log.log(Level.SEVERE, "Selector failure", e);
+        }
+      }
+    }
+
+    /**
+     * Close the connections that did not complete their handshake before their deadline.
+     *
+     * @return the time to wait for the next deadline or zero when there is none
+     */
+    private long expire() {
+      long now = System.currentTimeMillis();
+      for (Connection connection = handshakes.peek();connection != null;connection = handshakes.peek()) {
+        if (connection.closed || connection.handler.handshaked) {
+          handshakes.poll();
+        } else if (connection.deadline <= now) {
+          handshakes.poll();
+          log.log(Level.FINE, "Closing connection that did not complete its handshake");
+          connection.close();
+        } else {
+          return connection.deadline - now;
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * A connection, the selector thread reads the socket in the input and writes the output to the socket.
+   */
+  private class Connection implements Closeable, Runnable {
+
+    /** . */
+    private final Loop loop;
+
+    /** . */
+    private final SocketChannel channel;
+
+    /** . */
+    private final ConnectionInputStream in;
+
+    /** . */
+    private final ConnectionOutputStream out;
+
+    /** Only accessed by the selector thread. */
+    private SelectionKey key;
+
+    /** The time before which the handshake must be completed or zero. */
+    private final long deadline;
+
+    /** . */
+    private volatile Handler handler;
+
+    /** . */
+    private volatile boolean closed;
+
+    /** Guarded by this, true when the handler is scheduled or running. */
+    private boolean processing;
+
+    /** Guarded by this, true when the handler needs to run again. */
+    private boolean pending;
+
+    private Connection(Loop loop, SocketChannel channel) {
+      this.loop = loop;
+      this.channel = channel;
+      this.in = new ConnectionInputStream();
+      this.out = new ConnectionOutputStream();
+      this.key = null;
+      this.deadline = handshakeTimeout > 0 ? System.currentTimeMillis() + handshakeTimeout : 0;
+      this.closed = false;
+      this.processing = false;
+      this.pending = false;
+    }
+
+    /**
+     * Update the interest of the selection key, must be invoked by the selector thread.
+     */
+    private void updateInterest() {
+      if (key != null && key.isValid()) {
+        int ops = 0;
+        if (in.wantsData()) {
+          ops |= SelectionKey.OP_READ;
+        }
+        if (out.hasData()) {
+          ops |= SelectionKey.OP_WRITE;
+        }
+        try {
+          key.interestOps(ops);
+        }
+        catch (CancelledKeyException ignore) {
+          // The connection was closed by another thread after the key was checked
+        }
+      }
+    }
+
+    private void read(ByteBuffer buffer) throws IOException {
+      // Invoke the Buffer methods, the ByteBuffer overrides don't exist before Java 9
+      ((Buffer)buffer).clear();
+      int count = channel.read(buffer);
+      if (count == -1) {
+        close();
+      } else if (count > 0) {
+        byte[] bytes = new byte[count];
+        ((Buffer)buffer).flip();
+        buffer.get(bytes);
+        in.feed(bytes);
+        updateInterest();
+        schedule();
+      }
+    }
+
+    private void write() throws IOException {
+      out.drain();
+      updateInterest();
+    }
+
+    /**
+     * Schedule the execution of the handler.
+     */
+    private void schedule() {
+      synchronized (this) {
+        if (processing) {
+          pending = true;
+          return;
+        } else {
+          processing = true;
+        }
+      }
+      try {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e) {
+        log.log(Level.SEVERE, "Could not schedule connection processing", e);
+        close();
+      }
+    }
+
+    public void run() {
+      while (!closed) {
+        try {
+          handler.process();
+        }
+        catch (Exception e) {
+          log.log(Level.FINE, "Closing connection", e);
+          close();
+        }
+        synchronized (this) {
+          if (pending) {
+            pending = false;
+          } else {
+            processing = false;
+            return;
+          }
+        }
+      }
+    }
+
+    public void close() {
+      Handler handler;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        handler = this.handler;
+      }
+      connections.remove(this);
+      try {
+        // Best effort to send what was written before closing, such as the reason of the close
+        out.drain();
+      }
+      catch (IOException ignore) {
+      }
+      Utils.close(channel);
+      in.close();
+      out.close();
+      if (handler != null) {
+        handler.closed();
+      }
+    }
+
+    /**
+     * The connection input, fed by the selector thread.
+     */
+    private class ConnectionInputStream extends InputStream {
+
+      /** . */
+      private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<ByteBuffer>();
+
+      /** . */
+      private int size;
+
+      /** . */
+      private boolean suspended;
+
+      private synchronized void feed(byte[] bytes) {
+        chunks.add(ByteBuffer.wrap(bytes));
+        size += bytes.length;
+        notifyAll();
+      }
+
+      /**
+       * @return true when the socket should be read, false when enough data is buffered
+       */
+      private synchronized boolean wantsData() {
+        suspended = size >= bufferSize;
+        return !suspended;
+      }
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+      }
+
+      @Override
+      public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        while (size == 0) {
+          if (closed) {
+            return -1;
+          }
+          try {
+            wait();
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+        int count = 0;
+        while (count < len && size > 0) {
+          ByteBuffer chunk = chunks.peek();
+          int n = Math.min(len - count, chunk.remaining());
+          chunk.get(b, off + count, n);
+          count += n;
+          size -= n;
+          if (!chunk.hasRemaining()) {
+            chunks.poll();
+          }
+        }
+        if (suspended && size < bufferSize / 2) {
+          suspended = false;
+          loop.execute(new Runnable() {
+            public void run() {
+              updateInterest();
+            }
+          });
+        }
+        return count;
+      }
+
+      @Override
+      public synchronized int available() {
+        return size;
+      }
+
+      @Override
+      public synchronized void close() {
+        notifyAll();
+      }
+    }
+
+    /**
+     * The connection output, drained by the selector thread.
+     */
+    private class ConnectionOutputStream extends OutputStream {
+
+      /** . */
+      private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<ByteBuffer>();
+
+      /** . */
+      private int size;
+
+      /** True when the selector thread was asked to write. */
+      private boolean requested;
+
+      private synchronized boolean hasData() {
+        return size > 0;
+      }
+
+      private synchronized void drain() throws IOException {
+        while (size > 0) {
+          ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[chunks.size()]);
+          long count = channel.write(buffers);
+          size -= count;
+          while (!chunks.isEmpty() && !chunks.peek().hasRemaining()) {
+            chunks.poll();
+          }
+          if (count == 0) {
+            break;
+          }
+        }
+        if (size == 0) {
+          requested = false;
+        }
+        notifyAll();
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[]{(byte)b}, 0, 1);
+      }
+
+      @Override
+      public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+          throw new IOException("Connection closed");
+        }
+        if (len > 0) {
+          byte[] copy = new byte[len];
+          System.arraycopy(b, off, copy, 0, len);
+          chunks.add(ByteBuffer.wrap(copy));
+          size += len;
+
+          // Apply back pressure on the writer until the peer consumed enough data
+          if (size >= bufferSize) {
+            request();
+            while (size >= bufferSize) {
+              if (closed) {
+                throw new IOException("Connection closed");
+              }
+              try {
+                wait();
+              }
+              catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+              }
+            }
+          }
+        }
+      }
+
+      @Override
+      public synchronized void flush() throws IOException {
+        if (closed) {
+          throw new IOException("Connection closed");
+        }
+        if (size > 0) {
+          request();
+        }
+      }
+
+      private void request() {
+        if (!requested) {
+          requested = true;
+          loop.execute(new Runnable() {
+            public void run() {
+              updateInterest();
+            }
+          });
+        }
+      }
+
+      @Override
+      public synchronized void close() {
+        notifyAll();
+      }
+    }
+  }
+}
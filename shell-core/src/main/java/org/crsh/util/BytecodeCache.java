@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.crsh.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent store of compiled command classes. Entries are keyed by a hash of the compiler namespace, the
+ * command name, the command source and a fingerprint of the classpath the command is compiled against, so an
+ * unchanged script is loaded from its cached bytecode instead of being compiled again while a change of the
+ * classpath or of the runtime invalidates all the entries. The compiler namespace identifies the compiler and
+ * its version, it also identifies the other sources a command was compiled with. The store never fails a
+ * compilation: any error is logged and treated as a cache miss.
+ */
+public class BytecodeCache {
+
+  /** . */
+  private static final Logger log = Logger.getLogger(BytecodeCache.class.getName());
+
+  /** . */
+  private static final int MAGIC = 0xCAC4EB01;
+
+  /** . */
+  private static final String SUFFIX = ".bin";
+
+  /** The maximum number of files of a classpath directory walked for the fingerprint. */
+  private static final int MAX_WALKED_FILES = 10000;
+
+  /** . */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** . */
+  private final File root;
+
+  /** . */
+  private final String fingerprint;
+
+  /** . */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** . */
+  private final AtomicLong misses = new AtomicLong();
+
+  public BytecodeCache(File root, String fingerprint) throws NullPointerException {
+    if (root == null) {
+      throw new NullPointerException("No null root accepted");
+    }
+    if (fingerprint == null) {
+      throw new NullPointerException("No null fingerprint accepted");
+    }
+    this.root = root;
+    this.fingerprint = fingerprint;
+  }
+
+  public File getRoot() {
+    return root;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Compute the fingerprint of the classes visible from a class loader: the runtime version and the location, size
+   * and last modification of the classpath entries of the loader and of its ancestors. The directories are walked
+   * so a modified class file changes the fingerprint, the walk stops after a few thousand files.
+   *
+   * @param loader the class loader
+   * @return the fingerprint
+   */
+  public static String fingerprint(ClassLoader loader) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(System.getProperty("java.vendor")).append(':').append(System.getProperty("java.version"));
+    for (ClassLoader current = loader;current != null;current = current.getParent()) {
+      if (current instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader)current).getURLs()) {
+          sb.append('\n').append(url);
+          if ("file".equals(url.getProtocol())) {
+            try {
+              appendStats(sb, new File(url.toURI()));
+            }
+            catch (URISyntaxException ignore) {
+            }
+          }
+        }
+      }
+    }
+
+    // The application class loader is not an url class loader since Java 9
+    String classPath = System.getProperty("java.class.path");
+    if (classPath != null) {
+      for (String entry : classPath.split(File.pathSeparator)) {
+        if (entry.length() > 0) {
+          sb.append('\n').append(entry);
+          appendStats(sb, new File(entry));
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void appendStats(StringBuilder sb, File file) {
+    if (file.isDirectory()) {
+      long[] stats = new long[3];
+      walk(file, stats);
+      sb.append(':').append(stats[0]).append(':').append(stats[1]).append(':').append(stats[2]);
+    } else {
+      sb.append(':').append(file.length()).append(':').append(file.lastModified());
+    }
+  }
+
+  private static void walk(File dir, long[] stats) {
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (stats[2] >= MAX_WALKED_FILES) {
+          break;
+        } else if (child.isDirectory()) {
+          walk(child, stats);
+        } else {
+          stats[0] += child.length();
+          stats[1] = Math.max(stats[1], child.lastModified());
+          stats[2]++;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of lookups that returned cached bytecode
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of lookups that did not find cached bytecode
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Lookup the classes previously stored for a source.
+   *
+   * @param namespace the compiler namespace
+   * @param name the command name
+   * @param source the command source
+   * @return the entry or null when nothing is cached for this source
+   */
+  public Entry load(String namespace, String name, byte[] source) {
+    File file = getFile(namespace, name, source);
+    if (file.isFile()) {
+      DataInputStream in = null;
+      try {
+        // The lengths read from the file cannot exceed the file length unless it is corrupted
+        long length = file.length();
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() == MAGIC) {
+          String mainClassName = in.readUTF();
+          int size = in.readInt();
+          if (size < 0 || size > length) {
+            throw new IOException("Invalid class count " + size);
+          }
+          LinkedHashMap<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+          for (int i = 0;i < size;i++) {
+            String className = in.readUTF();
+            int len = in.readInt();
+            if (len < 0 || len > length) {
+              throw new IOException("Invalid class length " + len);
+            }
+            byte[] bytes = new byte[len];
+            in.readFully(bytes);
+            classes.put(className, bytes);
+          }
+          hits.incrementAndGet();
+          return new Entry(mainClassName, classes);
+        }
+      }
+      catch (Exception e) {
+        log.log(Level.FINE, "Could not read cached bytecode " + file.getAbsolutePath(), e);
+      }
+      finally {
+        Utils.close(in);
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Store the classes compiled from a source.
+   *
+   * @param namespace the compiler namespace
+   * @param name the command name
+   * @param source the command source
+   * @param mainClassName the name of the class implementing the command
+   * @param classes the compiled classes
+   */
+  public void store(String namespace, String name, byte[] source, String mainClassName, Map<String, byte[]> classes) {
+    if (!root.isDirectory() && !root.mkdirs()) {
+      log.log(Level.WARNING, "Could not create bytecode cache directory " + root.getAbsolutePath());
+      return;
+    }
+    File file = getFile(namespace, name, source);
+    File tmp = null;
+    DataOutputStream out = null;
+    try {
+      // A unique temporary file since several processes may share the directory
+      tmp = Files.createTempFile(root.toPath(), file.getName(), ".tmp").toFile();
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(MAGIC);
+      out.writeUTF(mainClassName);
+      out.writeInt(classes.size());
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().length);
+        out.write(entry.getValue());
+      }
+      out.close();
+      out = null;
+      try {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      log.log(Level.FINE, "Could not write bytecode cache file " + file.getAbsolutePath(), e);
+    }
+    finally {
+      Utils.close(out);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
+  private File getFile(String namespace, String name, byte[] source) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    digest.update(namespace.getBytes(Utils.UTF_8));
+    digest.update((byte)0);
+    digest.update(name.getBytes(Utils.UTF_8));
+    digest.update((byte)0);
+    digest.update(fingerprint.getBytes(Utils.UTF_8));
+    digest.update((byte)0);
+    byte[] hash = digest.digest(source);
+    char[] chars = new char[hash.length * 2];
+    for (int i = 0;i < hash.length;i++) {
+      chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+    }
+    return new File(root, new String(chars) + SUFFIX);
+  }
+
+  /**
+   * The classes compiled from a single source.
+   */
+  public static class Entry {
+
+    /** . */
+    private final String mainClassName;
+
+    /** . */
+    private final Map<String, byte[]> classes;
+
+    public Entry(String mainClassName, Map<String, byte[]> classes) {
+      this.mainClassName = mainClassName;
+      this.classes = Collections.unmodifiableMap(classes);
+    }
+
+    public String getMainClassName() {
+      return mainClassName;
+    }
+
+    public Map<String, byte[]> getClasses() {
+      return classes;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer with many producers and a single consumer. Producers never block nor wait: when the
+ * consumer is too slow the oldest elements are overwritten and counted as dropped.
+ *
+ * @param <E> the element type
+ */
+public class RingBuffer<E> {
+
+  /** . */
+  private final AtomicReferenceArray<Slot<E>> slots;
+
+  /** . */
+  private final int mask;
+
+  /** The next sequence to write. */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** . */
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** The next sequence to read, only accessed by the consumer. */
+  private long next;
+
+  /**
+   * Create a new ring buffer, the capacity is rounded to the next power of two.
+   *
+   * @param capacity the capacity
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  public RingBuffer(int capacity) throws IllegalArgumentException {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<Slot<E>>(size);
+    this.mask = size - 1;
+  }
+
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return the number of elements overwritten before they were drained
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Add an element, this method can be called concurrently.
+   *
+   * @param element the element
+   * @throws NullPointerException if the element is null
+   */
+  public void offer(E element) throws NullPointerException {
+    if (element == null) {
+      throw new NullPointerException("No null element accepted");
+    }
+    long seq = sequence.getAndIncrement();
+    slots.lazySet((int)(seq & mask), new Slot<E>(seq, element));
+  }
+
+  /**
+   * Move the available elements to a collection, this method must be called by a single consumer.
+   *
+   * @param to the collection
+   * @param max the maximum number of elements to drain
+   * @return the number of drained elements
+   */
+  public int drain(Collection<? super E> to, int max) {
+    int count = 0;
+    while (count < max) {
+      long head = sequence.get();
+      if (next >= head) {
+        break;
+      }
+      long oldest = head - getCapacity();
+      if (next < oldest) {
+        dropped.addAndGet(oldest - next);
+        next = oldest;
+      }
+      Slot<E> slot = slots.get((int)(next & mask));
+      if (slot == null || slot.seq < next) {
+        // The producer claimed the sequence but did not publish yet
+        break;
+      }
+      if (slot.seq == next) {
+        to.add(slot.element);
+        count++;
+      } else {
+        dropped.incrementAndGet();
+      }
+      next++;
+    }
+    return count;
+  }
+
+  private static class Slot<E> {
+
+    /** . */
+    private final long seq;
+
+    /** . */
+    private final E element;
+
+    private Slot(long seq, E element) {
+      this.seq = seq;
+      this.element = element;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -134,6 +135,13 @@ public class FS {
     this.drivers = new ArrayList<FSDriver<?>>();
   }
 
+  /**
+   * @return the drivers mounted by this file system
+   */
+  public List<FSDriver<?>> getDrivers() {
+    return Collections.unmodifiableList(drivers);
+  }
+
   public File get(Path path) throws IOException {
     return new File(this, path);
   }
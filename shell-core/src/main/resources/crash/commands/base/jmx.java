@@ -12,6 +12,7 @@ import org.crsh.command.InvocationContext;
 import org.crsh.command.Pipe;
 import org.crsh.command.ScriptException;
 
+import javax.management.Attribute;
 import javax.management.AttributeNotFoundException;
 import javax.management.JMException;
 import javax.management.MBeanAttributeInfo;
@@ -20,11 +21,11 @@ import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.RuntimeMBeanException;
-import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +35,12 @@ import java.util.Set;
 @Man("The jmx commands interracts with the JMX registry allowing several kind JMX operations.")
 public class jmx extends BaseCommand {
 
+  /** The session attribute caching the attribute names of the managed bean classes across the invocations. */
+  private static final String NAMES = "crash.jmx.names";
+
+  /** The maximum number of managed bean classes whose attribute names are cached. */
+  private static final int MAX_NAMES = 256;
+
   @Usage("query mbeans")
   @Man(
       "Create a stream of managed beans, by default the stream will contain all the registered managed beans:\n" +
@@ -100,7 +107,9 @@ public class jmx extends BaseCommand {
       "% jmx query -p java.lang:* | jmx get\n" +
       "By default all managed bean attributes will be retrieved, the attributes option allow to " +
       "use a list of attributes:\n" +
-      "% jmx query -p java.lang:* | jmx get -a TotalSwapSpaceSize\n"
+      "% jmx query -p java.lang:* | jmx get -a TotalSwapSpaceSize\n" +
+      "The attributes of a managed bean are fetched at once and its row is produced as soon as it is retrieved, " +
+      "so the managed beans of a stream do not share the same columns unless the attributes option is used.\n"
   )
   @Command
   public Pipe<ObjectName, Map> get(
@@ -122,61 +131,84 @@ public class jmx extends BaseCommand {
       /** . */
       private MBeanServer server;
 
-      /** . */
-      private List<ObjectName> buffer;
+      /**
+       * The attribute names of the managed beans with an immutable mbean info keyed by class name, kept in the
+       * session and bounded by evicting the least recently used class.
+       */
+      private Map<String, String[]> names;
 
       @Override
-      public void open() throws ScriptException {
+      public void open() throws Exception {
         this.server = ManagementFactory.getPlatformMBeanServer();
-        this.buffer = new ArrayList<ObjectName>();
+        Map<String, Object> session = context.getSession();
+        Object cached = session.get(NAMES);
+        if (cached instanceof Map<?, ?>) {
+          @SuppressWarnings("unchecked")
+          Map<String, String[]> tmp = (Map<String, String[]>)cached;
+          this.names = tmp;
+        } else {
+          this.names = Collections.synchronizedMap(new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+              return size() > MAX_NAMES;
+            }
+          });
+          session.put(NAMES, names);
+        }
 
         //
         if (mbeans != null) {
-          buffer.addAll(mbeans);
+          for (ObjectName mbean : mbeans) {
+            provide(mbean);
+          }
         }
       }
 
       @Override
-      public void provide(ObjectName name) throws IOException {
-        buffer.add(name);
+      public Mapping getMapping() {
+        return Mapping.ORDERED;
       }
 
       @Override
-      public void close() throws Exception, IOException {
-
-        // Determine attribute names
-        String[] names;
-        if (attributes == null) {
-          LinkedHashSet<String> tmp = new LinkedHashSet<String>();
-          for (ObjectName mbean : buffer) {
-            MBeanInfo mbeanInfo;
-            try {
-              mbeanInfo = server.getMBeanInfo(mbean);
-            }
-            catch (JMException e) {
-              throw new ScriptException(e);
-            }
-            for (MBeanAttributeInfo attributeInfo : mbeanInfo.getAttributes()) {
-              if (attributeInfo.isReadable()) {
-                tmp.add(attributeInfo.getName());
-              }
-            }
-          }
-          names = tmp.toArray(new String[tmp.size()]);
+      public void provide(ObjectName mbean) throws Exception {
+        String className;
+        String[] attributeNames;
+        if (attributes != null) {
+          className = null;
+          attributeNames = attributes.toArray(new String[attributes.size()]);
         } else {
-          names = attributes.toArray(new String[attributes.size()]);
+          try {
+            className = server.getObjectInstance(mbean).getClassName();
+          }
+          catch (JMException e) {
+            throw new ScriptException(e);
+          }
+          attributeNames = getAttributeNames(mbean, className);
+        }
+        LinkedHashMap<String, Object> tuple = new LinkedHashMap<String, Object>();
+        if (name != null) {
+          tuple.put(name, mbean);
         }
 
-        // Produce the output
-        for (ObjectName mbean : buffer) {
-          LinkedHashMap<String, Object> tuple = new LinkedHashMap<String, Object>();
-          if (name != null) {
-            tuple.put(name, mbean);
+        // Fetch all attributes at once
+        Map<String, Object> values = new HashMap<String, Object>();
+        try {
+          for (Attribute attribute : server.getAttributes(mbean, attributeNames).asList()) {
+            values.put(attribute.getName(), attribute.getValue());
           }
-          for (String name : names) {
-            Object value;
+        }
+        catch (JMException ignore) {
+          // Fallback on single attribute get
+        }
+
+        // The attributes missing from the bulk get failed, get them one by one to handle the failure
+        for (String attributeName : attributeNames) {
+          Object value;
+          if (values.containsKey(attributeName)) {
+            value = values.get(attributeName);
+          } else {
             try {
-              value = server.getAttribute(mbean, name);
+              value = server.getAttribute(mbean, attributeName);
             }
             catch (RuntimeMBeanException runtime) {
               if (Boolean.TRUE.equals(silent)) {
@@ -186,14 +218,43 @@ public class jmx extends BaseCommand {
               }
             }
             catch (AttributeNotFoundException e) {
+              if (className != null) {
+                // The managed bean may not have the same attributes as the other managed beans of its class
+                names.remove(className);
+              }
               value = null;
             }
             catch (JMException e) {
               throw new ScriptException(e);
             }
-            tuple.put(name, value);
           }
-          context.provide(tuple);
+          tuple.put(attributeName, value);
+        }
+        context.provide(tuple);
+      }
+
+      private String[] getAttributeNames(ObjectName mbean, String className) throws ScriptException {
+        try {
+          String[] attributeNames = names.get(className);
+          if (attributeNames == null) {
+            MBeanInfo mbeanInfo = server.getMBeanInfo(mbean);
+            ArrayList<String> tmp = new ArrayList<String>();
+            for (MBeanAttributeInfo attributeInfo : mbeanInfo.getAttributes()) {
+              if (attributeInfo.isReadable()) {
+                tmp.add(attributeInfo.getName());
+              }
+            }
+            attributeNames = tmp.toArray(new String[tmp.size()]);
+
+            // The info can be reused by the next invocations only when it is immutable
+            if ("true".equals(String.valueOf(mbeanInfo.getDescriptor().getFieldValue("immutableInfo")))) {
+              names.put(className, attributeNames);
+            }
+          }
+          return attributeNames;
+        }
+        catch (JMException e) {
+          throw new ScriptException(e);
         }
       }
     };
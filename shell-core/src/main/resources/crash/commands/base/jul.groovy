@@ -5,7 +5,7 @@ import java.util.logging.LogManager
 import java.util.logging.LogRecord
 import java.util.logging.Logger;
 import java.util.logging.LoggingMXBean
-import java.util.logging.StreamHandler;
+import java.util.logging.Handler;
 import java.util.regex.Pattern;
 import javax.management.ObjectName;
 import org.crsh.cli.spi.Completer;
@@ -22,6 +22,7 @@ import org.crsh.command.InvocationContext
 import org.crsh.cli.completers.EnumCompleter
 import org.crsh.cli.spi.Completion
 import org.crsh.command.Pipe;
+import org.crsh.util.RingBuffer;
 
 @Usage("java.util.logging commands")
 public class jul {
@@ -179,12 +180,21 @@ level will be used:
 Feb 10, 2014 1:50:36 PM java_util_logging_Logger\$log call
 INFO: HELLO
 
-The tail process will end upon interruption (ctrl-c).""")
+The tail process will end upon interruption (ctrl-c).
+
+The records are buffered and written by the tail process, the application threads that log never wait
+for the terminal. When the terminal cannot keep up, the oldest records are dropped and the number of
+dropped records is reported. The -b option configures the buffer size:
+
+% jul tail -b 4096""")
   @Usage("tail loggers")
   @Command
   public void tail(
       @Usage("the level treshold")
       @LevelOpt Level level,
+      @Usage("the number of records buffered before the oldest are dropped")
+      @Option(names=["b","buffer"])
+      Integer bufferSize,
       @Usage("the logger names to tail or empty for the root logger")
       @LoggerArg List<String> names,
       InvocationContext<LogRecord> context) {
@@ -197,29 +207,47 @@ The tail process will end upon interruption (ctrl-c).""")
     } else {
       loggers = [Logger.getLogger("")]
     }
-    def handler = new StreamHandler() {
+    def buffer = new RingBuffer<LogRecord>(bufferSize ?: 1024);
+    def threshold = level.value.intValue();
+    def handler = new Handler() {
       @Override
-      synchronized void publish(LogRecord record) {
-        if (record.level.intValue() >= level.value.intValue()) {
-          context.provide(record);
-          context.flush();
+      void publish(LogRecord record) {
+        if (record.level.intValue() >= threshold) {
+          // Infer the caller on the logging thread before the record is handed off
+          record.sourceClassName;
+          buffer.offer(record);
         }
       }
       @Override
-      synchronized void flush() {
-        context.flush();
+      void flush() {
       }
       @Override
       void close() throws SecurityException {
-        // ?
       }
     };
     loggers.each { it.addHandler(handler); }
-    def lock = new Object();
     try {
-      synchronized (lock) {
-        // Wait until ctrl-c
-        lock.wait();
+      def records = new ArrayList<LogRecord>();
+      long reported = 0;
+      while (true) {
+        buffer.drain(records, buffer.capacity);
+        long dropped = buffer.dropped;
+        if (dropped > reported) {
+          def warning = new LogRecord(java.util.logging.Level.WARNING, "Dropped ${dropped - reported} records (${dropped} since start)".toString());
+          warning.loggerName = "jul.tail";
+          warning.sourceClassName = "jul";
+          warning.sourceMethodName = "tail";
+          records.add(0, warning);
+          reported = dropped;
+        }
+        if (records.size() > 0) {
+          records.each { context.provide(it); }
+          records.clear();
+          context.flush();
+        } else {
+          // Wait until ctrl-c
+          Thread.sleep(100);
+        }
       }
     } finally {
       loggers.each { it.removeHandler(handler); }
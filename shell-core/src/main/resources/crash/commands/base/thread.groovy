@@ -7,6 +7,7 @@ import org.crsh.command.InvocationContext
 import org.crsh.cli.Option
 import org.crsh.cli.Man
 import org.crsh.cli.Argument
+import org.crsh.cli.type.ThreadSnapshot
 
 import org.crsh.command.Pipe
 import org.crsh.text.ui.UIBuilder
@@ -201,6 +202,9 @@ public class thread  {
       void open() throws org.crsh.command.ScriptException {
         threads.each(this.&provide)
       }
+      Pipe.Mapping getMapping() {
+        return Pipe.Mapping.ORDERED
+      }
       void provide(Thread element) throws IOException {
         Exception e = new Exception("Thread ${element.id} stack trace")
         e.setStackTrace(element.stackTrace)
@@ -209,25 +213,10 @@ public class thread  {
     }
   }
 
-  static ThreadGroup getRoot() {
-    ThreadGroup group = Thread.currentThread().threadGroup;
-    ThreadGroup parent;
-    while ((parent = group.parent) != null) {
-      group = parent;
-    }
-    return group;
-  }
-
   static Map<String, Thread> getThreads() {
-    ThreadGroup root = getRoot();
-    Thread[] threads = new Thread[root.activeCount()];
-    while (root.enumerate(threads, true) == threads.length ) {
-      threads = new Thread[threads.length * 2];
-    }
     def map = [:];
-    threads.each { thread ->
-      if (thread != null)
-        map["${thread.id}"] = thread
+    ThreadSnapshot.instance.threads.each { id, thread ->
+      map["${id}"] = thread
     }
     return map;
   }
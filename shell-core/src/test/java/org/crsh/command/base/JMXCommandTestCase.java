@@ -25,6 +25,9 @@ import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /** @author Julien Viet */
 public class JMXCommandTestCase extends AbstractShellTestCase {
@@ -55,4 +58,65 @@ public class JMXCommandTestCase extends AbstractShellTestCase {
     expected.put("MBean", OPERATING_SYSTEM);
     assertEquals(Collections.<Object>singletonList(expected), Commands.list);
   }
+
+  public void testGetArgument() throws Exception {
+    Object version = ManagementFactory.getPlatformMBeanServer().getAttribute(OPERATING_SYSTEM, "Version");
+    lifeCycle.bindClass("consume", Commands.ConsumeObject.class);
+    Commands.list.clear();
+    assertOk("jmx get -a Version -a Missing " + OPERATING_SYSTEM + " | consume");
+    HashMap<String, Object> expected = new HashMap<String, Object>();
+    expected.put("Version", version);
+    expected.put("Missing", null);
+    assertEquals(Collections.<Object>singletonList(expected), Commands.list);
+  }
+
+  public void testGetAll() throws Exception {
+    lifeCycle.bindClass("consume", Commands.ConsumeObject.class);
+    Commands.list.clear();
+    assertOk("jmx query java.lang:type=* | jmx get -n MBean | consume");
+    Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("java.lang:type=*"), null);
+    assertEquals(names.size(), Commands.list.size());
+    for (Object o : Commands.list) {
+      Map<?, ?> tuple = (Map<?, ?>)o;
+      ObjectName name = (ObjectName)tuple.get("MBean");
+      assertTrue(names.contains(name));
+      if (name.equals(OPERATING_SYSTEM)) {
+        assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(OPERATING_SYSTEM, "Version"), tuple.get("Version"));
+        assertFalse(tuple.containsKey("Verbose"));
+      }
+    }
+  }
+
+  public void testGetCachesNames() throws Exception {
+    lifeCycle.bindClass("consume", Commands.ConsumeObject.class);
+    Commands.list.clear();
+    assertOk("jmx get " + OPERATING_SYSTEM + " | consume");
+    Map<?, ?> names = (Map<?, ?>)session.get("crash.jmx.names");
+    assertNotNull(names);
+    assertEquals(Collections.singleton(getClassName(OPERATING_SYSTEM)), names.keySet());
+    assertOk("jmx get " + OPERATING_SYSTEM + " | consume");
+    assertSame(names, session.get("crash.jmx.names"));
+    assertEquals(2, Commands.list.size());
+    assertEquals(((Map<?, ?>)Commands.list.get(0)).keySet(), ((Map<?, ?>)Commands.list.get(1)).keySet());
+  }
+
+  public void testGetCachesNamesPerClass() throws Exception {
+    lifeCycle.bindClass("consume", Commands.ConsumeObject.class);
+    Commands.list.clear();
+    ObjectName pattern = new ObjectName("java.lang:type=MemoryPool,*");
+    Set<ObjectName> pools = ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null);
+    Set<String> classNames = new HashSet<String>();
+    for (ObjectName pool : pools) {
+      classNames.add(getClassName(pool));
+    }
+    assertTrue(pools.size() > classNames.size());
+    assertOk("jmx query " + pattern + " | jmx get | consume");
+    assertEquals(pools.size(), Commands.list.size());
+    Map<?, ?> names = (Map<?, ?>)session.get("crash.jmx.names");
+    assertEquals(classNames, names.keySet());
+  }
+
+  private static String getClassName(ObjectName mbean) throws Exception {
+    return ManagementFactory.getPlatformMBeanServer().getObjectInstance(mbean).getClassName();
+  }
 }
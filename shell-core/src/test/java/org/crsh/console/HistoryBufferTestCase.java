@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.console;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PropertyDescriptor;
+import org.crsh.plugin.SimplePluginDiscovery;
+import org.crsh.util.Utils;
+import org.crsh.vfs.FS;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class HistoryBufferTestCase extends AbstractTestCase {
+
+  /** . */
+  private File dir;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = File.createTempFile("crash", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  public void testCapacity() {
+    History history = new History(3);
+    assertEquals(0, history.getSize());
+    assertTrue(history.add("a"));
+    assertTrue(history.add("b"));
+    assertTrue(history.add("c"));
+    assertTrue(history.add("d"));
+    assertEquals(3, history.getSize());
+    assertEquals(4, history.getCount());
+    assertEquals("d", history.get(0));
+    assertEquals("c", history.get(1));
+    assertEquals("b", history.get(2));
+    try {
+      history.get(3);
+      fail();
+    }
+    catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  public void testInvalidCapacity() {
+    try {
+      new History(0);
+      fail();
+    }
+    catch (IllegalArgumentException ignore) {
+    }
+  }
+
+  public void testDuplicate() {
+    History history = new History(10);
+    assertTrue(history.add("a"));
+    assertFalse(history.add("a"));
+    assertTrue(history.add("b"));
+    assertTrue(history.add("a"));
+    assertEquals(3, history.getSize());
+  }
+
+  public void testSearch() {
+    History history = new History(10);
+    history.add("ls -l");
+    history.add("cd foo");
+    history.add("ls");
+    assertEquals(0, history.search("ls", 0));
+    assertEquals(2, history.search("ls", 1));
+    assertEquals(-1, history.search("ls", 3));
+    assertEquals(1, history.search("foo", 0));
+    assertEquals(-1, history.search("bar", 0));
+  }
+
+  public void testPersist() throws IOException {
+    File file = new File(dir, "foo.history");
+    History history = new History(10, file);
+    history.add("a");
+    history.add("b\nc");
+    history.add("d\\n");
+    history.close();
+    history = new History(10, file);
+    assertEquals(3, history.getSize());
+    assertEquals("d\\n", history.get(0));
+    assertEquals("b\nc", history.get(1));
+    assertEquals("a", history.get(2));
+    history.close();
+  }
+
+  public void testCreateDirectory() throws IOException {
+    File file = new File(new File(dir, "sub"), "foo.history");
+    History history = new History(10, file);
+    history.add("a");
+    history.close();
+    assertTrue(file.exists());
+    assertTrue(file.delete());
+    assertTrue(file.getParentFile().delete());
+  }
+
+  public void testCompact() throws IOException {
+    File file = new File(dir, "foo.history");
+    History history = new History(2, file);
+    history.add("a");
+    history.add("b");
+    history.add("c");
+    history.add("d");
+    assertEquals(Arrays.asList("a", "b", "c", "d"), lines(file));
+    history.add("e");
+    assertEquals(Arrays.asList("d", "e"), lines(file));
+    history.add("f");
+    assertEquals(Arrays.asList("d", "e", "f"), lines(file));
+    history.close();
+    history = new History(2, file);
+    assertEquals(2, history.getSize());
+    assertEquals("f", history.get(0));
+    assertEquals("e", history.get(1));
+    history.close();
+  }
+
+  public void testContextHistory() throws Exception {
+    PluginContext context = new PluginContext(
+        new SimplePluginDiscovery(),
+        new HashMap<String, Object>(),
+        new FS(),
+        new FS(),
+        Thread.currentThread().getContextClassLoader());
+    setProperty(context, PropertyDescriptor.HISTORY_DIR, dir.getAbsolutePath());
+    History history = context.getHistory("foo");
+    assertSame(history, context.getHistory("foo"));
+    history.add("a");
+    assertEquals(Arrays.asList("a"), lines(new File(dir, "foo.history")));
+
+    // Anonymous sessions do not share their history and it is not saved
+    History anonymous = context.getHistory(null);
+    anonymous.add("b");
+    assertNotSame(anonymous, context.getHistory(null));
+    assertEquals(0, context.getHistory(null).getSize());
+    assertEquals(Arrays.asList("foo.history"), Arrays.asList(dir.list()));
+    history.close();
+  }
+
+  public void testContextHistoryFileNames() throws Exception {
+    PluginContext context = new PluginContext(
+        new SimplePluginDiscovery(),
+        new HashMap<String, Object>(),
+        new FS(),
+        new FS(),
+        Thread.currentThread().getContextClassLoader());
+    setProperty(context, PropertyDescriptor.HISTORY_DIR, dir.getAbsolutePath());
+    String[] users = {"a b", "a_b", "a%20b", "Foo", "foo", "..", "../foo", "\u00e9"};
+    String[] names = {"a%20b", "a_b", "a%2520b", "%46oo", "foo", "..", "..%2Ffoo", "%C3%A9"};
+    for (String user : users) {
+      History history = context.getHistory(user);
+      history.add(user);
+      history.close();
+    }
+    assertEquals(users.length, dir.list().length);
+    for (int i = 0;i < users.length;i++) {
+      assertEquals(Arrays.asList(users[i]), lines(new File(dir, names[i] + ".history")));
+    }
+  }
+
+  private static <T> void setProperty(PluginContext context, PropertyDescriptor<T> desc, T value) {
+    context.setProperty(desc, value);
+  }
+
+  private static List<String> lines(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      return Arrays.asList(Utils.readAsUTF8(in).split("\n"));
+    }
+    finally {
+      Utils.close(in);
+    }
+  }
+}
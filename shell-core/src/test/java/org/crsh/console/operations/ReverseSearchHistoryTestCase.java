@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.console.operations;
+
+import jline.console.Operation;
+import org.crsh.console.AbstractConsoleTestCase;
+import org.crsh.console.KeyStrokes;
+import org.crsh.console.Mode;
+import org.crsh.shell.ShellProcessContext;
+import org.crsh.shell.ShellResponse;
+import test.shell.sync.SyncProcess;
+
+public class ReverseSearchHistoryTestCase extends AbstractConsoleTestCase {
+
+  public void testEmacs() {
+    console.init();
+    doTest(Mode.EMACS);
+  }
+
+  public void testInsert() {
+    console.init();
+    doTest(Mode.VI_INSERT);
+  }
+
+  public void testAccept() {
+    console.init();
+    accept("foo");
+    accept("bar");
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    console.on(KeyStrokes.of("fo"));
+    assertEquals("foo", getCurrentLine());
+    final String[] request = new String[1];
+    shell.addProcess(new SyncProcess() {
+      @Override
+      public void run(String r, ShellProcessContext context) throws Exception {
+        request[0] = r;
+        context.end(ShellResponse.ok());
+      }
+    });
+    console.on(Operation.ACCEPT_LINE);
+    assertEquals("foo", request[0]);
+    assertEquals(Mode.EMACS, console.getMode());
+  }
+
+  public void testInterrupt() {
+    console.init();
+    accept("foo");
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    console.on(KeyStrokes.of("f"));
+    assertEquals("foo", getCurrentLine());
+    console.on(Operation.INTERRUPT);
+    assertEquals("", getCurrentLine());
+    assertEquals(Mode.EMACS, console.getMode());
+  }
+
+  public void testBackwardDelete() {
+    console.init();
+    accept("ls");
+    accept("ls -l");
+    accept("cd foo");
+    accept("ls");
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    console.on(KeyStrokes.of("ls "));
+    assertEquals("ls -l", getCurrentLine());
+    console.on(Operation.BACKWARD_DELETE_CHAR);
+    assertEquals("ls", getCurrentLine());
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    assertEquals("ls -l", getCurrentLine());
+    console.on(KeyStrokes.of("x"));
+    assertEquals("ls -l", getCurrentLine());
+    console.on(Operation.BACKWARD_DELETE_CHAR);
+    assertEquals("ls", getCurrentLine());
+  }
+
+  private void doTest(Mode mode) {
+    accept("ls -l");
+    accept("cd foo");
+    accept("ls");
+    accept("cd bar");
+    console.setMode(mode);
+    console.on(KeyStrokes.of("abc"));
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    assertEquals("abc", getCurrentLine());
+    console.on(KeyStrokes.of("l"));
+    assertEquals("ls", getCurrentLine());
+    console.on(KeyStrokes.of("s"));
+    assertEquals("ls", getCurrentLine());
+    console.on(KeyStrokes.of(" "));
+    assertEquals("ls -l", getCurrentLine());
+    console.on(Operation.REVERSE_SEARCH_HISTORY);
+    assertEquals("ls -l", getCurrentLine());
+    console.on(Operation.BACKWARD_CHAR);
+    assertEquals(mode, console.getMode());
+    assertEquals("ls -l", getCurrentLine());
+    assertEquals(4, getCurrentCursor());
+    console.on(Operation.NEXT_HISTORY);
+    assertEquals("cd foo", getCurrentLine());
+  }
+
+  private void accept(String line) {
+    shell.addProcess(new SyncProcess() {
+      @Override
+      public void run(String request, ShellProcessContext context) throws Exception {
+        context.end(ShellResponse.ok());
+      }
+    });
+    console.on(KeyStrokes.of(line));
+    console.on(Operation.ACCEPT_LINE);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.lang.impl.groovy.GroovyLanguageProxy;
+import org.crsh.lang.impl.java.JavaLanguage;
+import org.crsh.plugin.PropertyDescriptor;
+import org.crsh.shell.Shell;
+import org.crsh.shell.ShellResponse;
+import org.crsh.util.BytecodeCache;
+import test.plugin.TestPluginLifeCycle;
+import test.shell.base.BaseProcessContext;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+public class BytecodeCacheTestCase extends AbstractTestCase {
+
+  /** . */
+  private static final Logger log = Logger.getLogger(BytecodeCacheTestCase.class.getName());
+
+  /** . */
+  private static final int SIZE = 10;
+
+  /** . */
+  private File root;
+
+  @Override
+  protected void setUp() throws Exception {
+    root = assertTmpFile("cache");
+    assertTrue(root.delete());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    File[] files = root.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    root.delete();
+  }
+
+  public void testColdAndWarmStartup() throws Exception {
+    BytecodeCache cold = startup("cold");
+    assertEquals(0, cold.getHits());
+    assertTrue(cold.getMisses() >= SIZE * 2);
+    BytecodeCache warm = startup("warm");
+    assertEquals(0, warm.getMisses());
+    assertEquals(cold.getMisses(), warm.getHits());
+  }
+
+  public void testModifiedSource() throws Exception {
+    run("return 'foo'", "foo");
+    assertEquals(1, run("return 'bar'", "bar").getMisses());
+    assertEquals(0, run("return 'foo'", "foo").getMisses());
+  }
+
+  public void testFingerprint() throws Exception {
+    byte[] source = "source".getBytes("UTF-8");
+    new BytecodeCache(root, "foo").store("ns", "cmd", source, "cmd", Collections.singletonMap("cmd", new byte[]{0}));
+    assertNotNull(new BytecodeCache(root, "foo").load("ns", "cmd", source));
+    assertNull(new BytecodeCache(root, "bar").load("ns", "cmd", source));
+  }
+
+  public void testCorruptEntry() throws Exception {
+    byte[] source = "source".getBytes("UTF-8");
+    BytecodeCache cache = new BytecodeCache(root, "foo");
+    cache.store("ns", "cmd", source, "cmd", Collections.singletonMap("cmd", new byte[]{0}));
+    File[] files = root.listFiles();
+    assertEquals(1, files.length);
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(files[0]));
+    try {
+      out.writeInt(0xCAC4EB01);
+      out.writeUTF("cmd");
+      out.writeInt(1);
+      out.writeUTF("cmd");
+      out.writeInt(Integer.MAX_VALUE);
+    }
+    finally {
+      out.close();
+    }
+    assertNull(cache.load("ns", "cmd", source));
+    assertEquals(1, cache.getMisses());
+  }
+
+  private BytecodeCache run(String script, String expected) throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    lifeCycle.setProperty(PropertyDescriptor.COMPILER_CACHE_DIR, root.getAbsolutePath());
+    lifeCycle.bindGroovy("cmd", script);
+    lifeCycle.start();
+    Shell shell = lifeCycle.createShell();
+    try {
+      BaseProcessContext context = BaseProcessContext.create(shell, "cmd").execute();
+      assertInstance(ShellResponse.Ok.class, context.getResponse());
+      assertEquals(expected, context.getOutput());
+      return lifeCycle.getContext().getBytecodeCache();
+    }
+    finally {
+      shell.close();
+      lifeCycle.stop();
+    }
+  }
+
+  private BytecodeCache startup(String run) throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    lifeCycle.setProperty(PropertyDescriptor.COMPILER_CACHE_DIR, root.getAbsolutePath());
+    for (int i = 0;i < SIZE;i++) {
+      lifeCycle.bindJava("java_" + i, "public class java_" + i + " extends org.crsh.command.BaseCommand {\n" +
+          "@org.crsh.cli.Command public String main() { return \"java_" + i + "\"; }\n" +
+          "}");
+      lifeCycle.bindGroovy("groovy_" + i, "class groovy_" + i + " {\n" +
+          "@Command public String main() { return \"groovy_" + i + "\"; }\n" +
+          "}");
+    }
+    lifeCycle.start();
+    Shell shell = lifeCycle.createShell();
+    try {
+      long time = -System.currentTimeMillis();
+      for (int i = 0;i < SIZE;i++) {
+        assertEquals("java_" + i, BaseProcessContext.create(shell, "java_" + i).execute().getOutput());
+        assertEquals("groovy_" + i, BaseProcessContext.create(shell, "groovy_" + i).execute().getOutput());
+      }
+      time += System.currentTimeMillis();
+      log.info("Executed " + SIZE * 2 + " commands on " + run + " startup in " + time + "ms");
+      return lifeCycle.getContext().getBytecodeCache();
+    }
+    finally {
+      shell.close();
+      lifeCycle.stop();
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.lang.impl.groovy.GroovyLanguageProxy;
+import org.crsh.lang.impl.java.JavaLanguage;
+import org.crsh.lang.spi.CommandResolution;
+import org.crsh.lang.spi.Compiler;
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PluginLifeCycle;
+import org.crsh.plugin.SimplePluginDiscovery;
+import org.crsh.shell.Shell;
+import org.crsh.shell.impl.command.CRaSH;
+import org.crsh.shell.impl.command.ShellSession;
+import org.crsh.shell.impl.command.spi.CommandException;
+import org.crsh.vfs.FS;
+import org.crsh.vfs.Path;
+import org.crsh.vfs.spi.ram.RAMDriver;
+import test.plugin.TestPluginLifeCycle;
+import test.shell.base.BaseProcessContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+public class DescriptionIndexTestCase extends AbstractTestCase {
+
+  /** The names of the compiled commands. */
+  private final List<String> compiled = new ArrayList<String>();
+
+  public void testHelpDoesNotCompile() throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new CountingJavaLanguage());
+    lifeCycle.bindJava("foo", "import org.crsh.cli.Command;\n" +
+        "import org.crsh.cli.Usage;\n" +
+        "import org.crsh.command.BaseCommand;\n" +
+        "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public String a() { return \"a\"; }\n" +
+        "@Command public String b() { return \"b\"; }\n" +
+        "}");
+    lifeCycle.bindJava("bar", "import org.crsh.cli.Command;\n" +
+        "import org.crsh.cli.Usage;\n" +
+        "import org.crsh.command.BaseCommand;\n" +
+        "public class bar extends BaseCommand {\n" +
+        "@Usage(\"the bar\") @Command public String main() { return \"bar\"; }\n" +
+        "}");
+    lifeCycle.start();
+    try {
+      for (int i = 0;i < 2;i++) {
+        Shell shell = lifeCycle.createShell();
+        try {
+          String help = BaseProcessContext.create(shell, "help").execute().getOutput();
+          assertTrue(help.contains("the foo"));
+          assertTrue(help.contains("the bar"));
+          assertEquals(new ArrayList<String>(), compiled);
+        }
+        finally {
+          shell.close();
+        }
+      }
+      Shell shell = lifeCycle.createShell();
+      try {
+        assertEquals("bar", BaseProcessContext.create(shell, "bar").execute().getOutput());
+        assertEquals(1, compiled.size());
+        assertEquals("bar", compiled.get(0));
+      }
+      finally {
+        shell.close();
+      }
+    }
+    finally {
+      lifeCycle.stop();
+    }
+  }
+
+  public void testCompletionFollowsChanges() throws Exception {
+    TimedDriver commands = new TimedDriver();
+    commands.add("/foo.groovy", "@Usage(\"the foo\") class foo {\n" +
+        "@Command public String main() { return 'foo'; }\n" +
+        "}");
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    final PluginContext context = new PluginContext(
+        Executors.newSingleThreadExecutor(),
+        new ScheduledThreadPoolExecutor(1),
+        new SimplePluginDiscovery(new GroovyLanguageProxy(), new CountingJavaLanguage()),
+        new HashMap<String, Object>(),
+        new FS().mount(commands),
+        new FS().mount(loader, Path.get("/crash/")),
+        loader);
+
+    // Scan the commands now instead of waiting for the first refresh of the scanner
+    context.refresh();
+    PluginLifeCycle lifeCycle = new PluginLifeCycle() {
+      {
+        start(context);
+      }
+    };
+    try {
+      CRaSH crash = new CRaSH(context);
+      ShellSafety shellSafety = ShellSafetyFactory.getCurrentThreadShellSafety();
+      assertEquals("the foo", complete(crash, shellSafety).get("foo"));
+
+      // The trie generation does not change when a command is modified
+      commands.lastModified = 1;
+      commands.add("/foo.groovy", "@Usage(\"the bar\") class foo {\n" +
+          "@Command public String main() { return 'foo'; }\n" +
+          "}");
+      assertEquals("the bar", complete(crash, shellSafety).get("foo"));
+
+      // A broken command is not completed until it is fixed
+      commands.lastModified = 2;
+      commands.add("/foo.groovy", "@Usage(\"the foo\") class foo {");
+      assertFalse(complete(crash, shellSafety).containsKey("foo"));
+      commands.lastModified = 3;
+      commands.add("/foo.groovy", "@Usage(\"the juu\") class foo {\n" +
+          "@Command public String main() { return 'foo'; }\n" +
+          "}");
+      assertEquals("the juu", complete(crash, shellSafety).get("foo"));
+    }
+    finally {
+      lifeCycle.stop();
+    }
+  }
+
+  private Map<String, String> complete(CRaSH crash, ShellSafety shellSafety) {
+    Map<String, String> commands = new LinkedHashMap<String, String>();
+    for (Map.Entry<String, String> command : crash.getCommandsSafetyCheck("fo", shellSafety)) {
+      commands.put(command.getKey(), command.getValue());
+    }
+    return commands;
+  }
+
+  private static class TimedDriver extends RAMDriver {
+
+    /** . */
+    private long lastModified;
+
+    @Override
+    public long getLastModified(Path handle) {
+      return lastModified;
+    }
+  }
+
+  private class CountingJavaLanguage extends JavaLanguage {
+    @Override
+    public Compiler getCompiler() {
+      final Compiler compiler = super.getCompiler();
+      return new Compiler() {
+        public Set<String> getExtensions() {
+          return compiler.getExtensions();
+        }
+        public CommandResolution compileCommand(String name, byte[] source) throws CommandException, NullPointerException {
+          compiled.add(name);
+          return compiler.compileCommand(name, source);
+        }
+        public String describeCommand(String name, byte[] source) throws NullPointerException {
+          return compiler.describeCommand(name, source);
+        }
+        public Map<String, CommandResolution> compileCommands(Map<String, byte[]> sources) throws NullPointerException {
+          compiled.addAll(sources.keySet());
+          return compiler.compileCommands(sources);
+        }
+        public String doCallBack(ShellSession session, String name, String defaultValue) {
+          return compiler.doCallBack(session, name, defaultValue);
+        }
+      };
+    }
+  }
+}
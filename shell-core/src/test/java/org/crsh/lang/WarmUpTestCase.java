@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.lang.impl.groovy.GroovyLanguageProxy;
+import org.crsh.lang.impl.java.JavaLanguage;
+import org.crsh.plugin.PluginContext;
+import org.crsh.plugin.PluginLifeCycle;
+import org.crsh.plugin.PropertyDescriptor;
+import org.crsh.plugin.SimplePluginDiscovery;
+import org.crsh.shell.Shell;
+import org.crsh.util.BytecodeCache;
+import org.crsh.vfs.FS;
+import org.crsh.vfs.Path;
+import org.crsh.vfs.spi.ram.RAMDriver;
+import test.command.TestInvocationContext;
+import test.plugin.TestPluginLifeCycle;
+import test.shell.base.BaseProcessContext;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class WarmUpTestCase extends AbstractTestCase {
+
+  public void testWarmUp() throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    lifeCycle.bindJava("java_cmd", "public class java_cmd extends org.crsh.command.BaseCommand {\n" +
+        "@org.crsh.cli.Command public String main() { return \"java\"; }\n" +
+        "}");
+    lifeCycle.bindGroovy("groovy_cmd", "class groovy_cmd {\n" +
+        "@Command public String main() { return \"groovy\"; }\n" +
+        "}");
+    lifeCycle.bindJava("broken_cmd", "public class broken_cmd extends");
+    lifeCycle.start();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      LanguageCommandResolver resolver = new LanguageCommandResolver(lifeCycle.getContext(), false);
+      assertTrue(resolver.warmUp(executor, 2) >= 2);
+      assertEquals(0, resolver.warmUp(executor, 2));
+      assertNotNull(resolver.resolveCommand("java_cmd", ShellSafetyFactory.getCurrentThreadShellSafety()));
+      assertNotNull(resolver.resolveCommand("groovy_cmd", ShellSafetyFactory.getCurrentThreadShellSafety()));
+      lifeCycle.bindJava("other_cmd", "public class other_cmd extends org.crsh.command.BaseCommand {\n" +
+          "@org.crsh.cli.Command public String main() { return \"other\"; }\n" +
+          "}");
+      assertEquals(1, resolver.warmUp(executor, 2));
+      LanguageCommandResolver restricted = new LanguageCommandResolver(lifeCycle.getContext(), true);
+      assertEquals(0, restricted.warmUp(executor, 2));
+    }
+    finally {
+      executor.shutdown();
+      lifeCycle.stop();
+    }
+  }
+
+  public void testWarmUpSafety() throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    lifeCycle.bindJava("java_cmd", "public class java_cmd extends org.crsh.command.BaseCommand {\n" +
+        "@org.crsh.cli.Command public String main(org.crsh.command.InvocationContext<Object> context) {\n" +
+        "return context.getShellSafety().toSafeString();\n" +
+        "}\n" +
+        "}");
+    lifeCycle.bindGroovy("groovy_cmd", "class groovy_cmd {\n" +
+        "@Command public String main(org.crsh.command.InvocationContext<Object> context) {\n" +
+        "return context.getShellSafety().toSafeString();\n" +
+        "}\n" +
+        "}");
+    lifeCycle.start();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      LanguageCommandResolver resolver = new LanguageCommandResolver(lifeCycle.getContext(), false);
+      assertTrue(resolver.warmUp(executor, 2) >= 2);
+
+      // The warmed up commands are not bound to the safety of the warm up threads
+      for (String name : new String[]{"java_cmd", "groovy_cmd"}) {
+        for (String mode : new String[]{"|SAFESAFE|SSH", "|INTERNAL"}) {
+          ShellSafety shellSafety = new ShellSafety(mode);
+          TestInvocationContext<Object> context = new TestInvocationContext<Object>();
+          context.execute(resolver.resolveCommand(name, shellSafety));
+          assertEquals(Collections.<Object>singletonList(mode), context.getProducedItems());
+
+          // The command keeps the mode it was created for
+          shellSafety.setSafeShell(false);
+          context = new TestInvocationContext<Object>();
+          context.execute(resolver.resolveCommand(name, new ShellSafety(mode)));
+          assertEquals(Collections.<Object>singletonList(mode), context.getProducedItems());
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+      lifeCycle.stop();
+    }
+  }
+
+  public void testBatch() throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    for (int i = 0;i < 3;i++) {
+      lifeCycle.bindJava("cmd_" + i, "public class cmd_" + i + " extends org.crsh.command.BaseCommand {\n" +
+          "@org.crsh.cli.Command public String main() { return \"" + i + "\"; }\n" +
+          "}\n" +
+          "class helper {}");
+    }
+    lifeCycle.bindJava("broken_cmd", "public class broken_cmd extends");
+    lifeCycle.start();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      LanguageCommandResolver resolver = new LanguageCommandResolver(lifeCycle.getContext(), false);
+      assertTrue(resolver.warmUp(executor, 2) >= 3);
+      for (int i = 0;i < 3;i++) {
+        Shell shell = lifeCycle.createShell();
+        try {
+          assertEquals("" + i, BaseProcessContext.create(shell, "cmd_" + i).execute().getOutput());
+        }
+        finally {
+          shell.close();
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+      lifeCycle.stop();
+    }
+  }
+
+  public void testBatchReferences() throws Exception {
+    File root = assertTmpFile("cache");
+    assertTrue(root.delete());
+    try {
+      for (int run = 0;run < 2;run++) {
+        TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+        lifeCycle.setProperty(PropertyDescriptor.COMPILER_CACHE_DIR, root.getAbsolutePath());
+        lifeCycle.bindJava("cmd_a", "public class cmd_a extends org.crsh.command.BaseCommand {\n" +
+            "@org.crsh.cli.Command public String main() { return cmd_b.value(); }\n" +
+            "}");
+        lifeCycle.bindJava("cmd_b", "public class cmd_b extends org.crsh.command.BaseCommand {\n" +
+            "static String value() { return \"b\"; }\n" +
+            "@org.crsh.cli.Command public String main() { return value(); }\n" +
+            "}");
+        lifeCycle.start();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+          LanguageCommandResolver resolver = new LanguageCommandResolver(lifeCycle.getContext(), false);
+          assertTrue(resolver.warmUp(executor, 2) >= 2);
+          BytecodeCache cache = lifeCycle.getContext().getBytecodeCache();
+          if (run == 0) {
+            assertEquals(0, cache.getHits());
+          } else {
+            assertTrue(cache.getHits() >= 2);
+          }
+          TestInvocationContext<Object> context = new TestInvocationContext<Object>();
+          context.execute(resolver.resolveCommand("cmd_a", ShellSafetyFactory.getCurrentThreadShellSafety()));
+          assertEquals(Collections.<Object>singletonList("b"), context.getProducedItems());
+        }
+        finally {
+          executor.shutdown();
+          lifeCycle.stop();
+        }
+      }
+    }
+    finally {
+      File[] files = root.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      root.delete();
+    }
+  }
+
+  public void testBatchCachePerCommand() throws Exception {
+    File root = assertTmpFile("cache");
+    assertTrue(root.delete());
+    try {
+      for (int run = 0;run < 3;run++) {
+
+        // Mark the stored entries to find the entries stored by this run
+        File[] entries = root.listFiles();
+        if (entries != null) {
+          for (File entry : entries) {
+            assertTrue(entry.setLastModified(0));
+          }
+        }
+        TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+        lifeCycle.setProperty(PropertyDescriptor.COMPILER_CACHE_DIR, root.getAbsolutePath());
+        lifeCycle.bindJava("cmd_a", "public class cmd_a extends org.crsh.command.BaseCommand {\n" +
+            "@org.crsh.cli.Command public String main() { return cmd_b.value(); }\n" +
+            "}");
+        lifeCycle.bindJava("cmd_b", "public class cmd_b extends org.crsh.command.BaseCommand {\n" +
+            "static String value() { return \"" + (run < 2 ? "b" : "c") + "\"; }\n" +
+            "@org.crsh.cli.Command public String main() { return value(); }\n" +
+            "}");
+        lifeCycle.bindJava("cmd_c", "public class cmd_c extends org.crsh.command.BaseCommand {\n" +
+            "@org.crsh.cli.Command public String main() { return \"c\"; }\n" +
+            "}");
+        lifeCycle.bindJava("broken_cmd", "public class broken_cmd extends");
+        lifeCycle.start();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+          LanguageCommandResolver resolver = new LanguageCommandResolver(lifeCycle.getContext(), false);
+          resolver.warmUp(executor, 2);
+          int stored = 0;
+          for (File entry : root.listFiles()) {
+            if (entry.lastModified() != 0) {
+              stored++;
+            }
+          }
+          if (run == 0) {
+            assertTrue(stored >= 3);
+          } else if (run == 1) {
+
+            // The broken command does not prevent the others to be loaded from the cache
+            assertTrue(lifeCycle.getContext().getBytecodeCache().getHits() >= 3);
+            assertEquals(0, stored);
+          } else {
+
+            // The changed command and the command referring to it are compiled again
+            assertEquals(2, stored);
+          }
+          TestInvocationContext<Object> context = new TestInvocationContext<Object>();
+          context.execute(resolver.resolveCommand("cmd_a", ShellSafetyFactory.getCurrentThreadShellSafety()));
+          assertEquals(Collections.<Object>singletonList(run < 2 ? "b" : "c"), context.getProducedItems());
+        }
+        finally {
+          executor.shutdown();
+          lifeCycle.stop();
+        }
+      }
+    }
+    finally {
+      File[] files = root.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      root.delete();
+    }
+  }
+
+  public void testSingleThreadExecutor() throws Exception {
+    RAMDriver commands = new RAMDriver();
+    for (int i = 0;i < 2;i++) {
+      commands.add(Path.get("/cmd_" + i + ".java"), "public class cmd_" + i + " extends org.crsh.command.BaseCommand {\n" +
+          "@org.crsh.cli.Command public String main() { return \"" + i + "\"; }\n" +
+          "}");
+    }
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final PluginContext context = new PluginContext(
+        executor,
+        new ScheduledThreadPoolExecutor(1),
+        new SimplePluginDiscovery(new GroovyLanguageProxy(), new JavaLanguage()),
+        new HashMap<String, Object>(),
+        new FS().mount(commands),
+        new FS().mount(loader, Path.get("/crash/")),
+        loader);
+    context.setProperty(PropertyDescriptor.COMPILER_WARMUP, 2);
+    LanguageCommandResolver resolver = new LanguageCommandResolver(context, false);
+    context.warmUp(resolver);
+    PluginLifeCycle lifeCycle = new PluginLifeCycle() {
+      {
+        start(context);
+      }
+    };
+    try {
+      // The warm up holds the only thread of the executor until the commands are compiled
+      assertTrue(executor.submit(new Callable<Boolean>() {
+        public Boolean call() {
+          return true;
+        }
+      }).get(30, TimeUnit.SECONDS));
+      assertEquals(0, resolver.warmUp(executor, 2));
+    }
+    finally {
+      lifeCycle.stop();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl;
+
+import junit.framework.TestCase;
+
+public class UsageScannerTestCase extends TestCase {
+
+  public void testJavaClassUsage() {
+    assertEquals("the foo", UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public void a() {}\n" +
+        "@Command public void b() {}\n" +
+        "}"));
+  }
+
+  public void testJavaMainUsage() {
+    assertEquals("the main", UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Usage(\"the main\") @Command public String main(@Usage(\"the arg\") @Argument String arg) { return arg; }\n" +
+        "}"));
+    assertEquals("", UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public void main() {}\n" +
+        "}"));
+  }
+
+  public void testJavaMainNotCommand() {
+    assertEquals("the foo", UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Usage(\"the main\") public static void main(String[] args) {}\n" +
+        "@Command public void a() {}\n" +
+        "}"));
+  }
+
+  public void testJavaUndetermined() {
+    assertNull(UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {}"));
+    assertNull(UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends Base {\n" +
+        "@Command public void a() {}\n" +
+        "}"));
+    assertNull(UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public void a() {\n" +
+        "}"));
+    assertNull(UsageScanner.scanJava("foo", "@Usage(Constants.FOO) public class foo extends BaseCommand {\n" +
+        "@Command public void a() {}\n" +
+        "}"));
+    assertNull(UsageScanner.scanJava("foo", "@Usage(\"the bar\") public class bar extends BaseCommand {\n" +
+        "@Command public void a() {}\n" +
+        "}"));
+  }
+
+  public void testGroovyClassUsage() {
+    assertEquals("the foo", UsageScanner.scanGroovy("@Usage(\"the foo\") class foo {\n" +
+        "@Usage(\"the main\") @Command public String main() { return ''; }\n" +
+        "}"));
+  }
+
+  public void testGroovyMainUsage() {
+    assertEquals("the main", UsageScanner.scanGroovy("class foo {\n" +
+        "@Usage(\"the main\") @Command public String main() { return ''; }\n" +
+        "}"));
+  }
+
+  public void testGroovyUndetermined() {
+    assertNull(UsageScanner.scanGroovy("class foo {}"));
+    assertNull(UsageScanner.scanGroovy("return 'foo'"));
+    assertNull(UsageScanner.scanGroovy("def c = String.class\nreturn 'foo'"));
+    assertNull(UsageScanner.scanGroovy("@Usage(\"the foo\") class foo {"));
+    assertNull(UsageScanner.scanGroovy("@Usage(\"the foo\") class foo { /* }"));
+    assertNull(UsageScanner.scanGroovy("@Usage(\"the foo) class foo {}"));
+  }
+
+  public void testQualifiedAnnotation() {
+    assertEquals("the foo", UsageScanner.scanJava("foo", "@org.crsh.cli.Usage(value = \"the foo\") public class foo extends org.crsh.command.BaseCommand {\n" +
+        "@org.crsh.cli.Command public void a() {}\n" +
+        "@org.crsh.cli.Command public void b() {}\n" +
+        "}"));
+    assertNull(UsageScanner.scanGroovy("@org.crsh.cli.Usage(value = \"the foo\") class foo {}"));
+  }
+
+  public void testConcatenation() {
+    assertEquals("the foo", UsageScanner.scanGroovy("@Usage(\"the \" +\n \"foo\") class foo {}"));
+  }
+
+  public void testEscape() {
+    assertEquals("the \"foo\"", UsageScanner.scanGroovy("@Usage(\"the \\\"foo\\\"\") class foo {}"));
+  }
+
+  public void testTripleQuotes() {
+    assertEquals("the foo", UsageScanner.scanGroovy("@Usage(\"\"\"the foo\"\"\") class foo {}"));
+  }
+
+  public void testComments() {
+    assertEquals("the foo", UsageScanner.scanGroovy("// class bar {\n" +
+        "/* @Usage(\"the bar\") */\n" +
+        "@Usage(\"the foo\") class foo {}"));
+  }
+
+  public void testSelectClass() {
+    assertEquals("the foo", UsageScanner.scanJava("foo", "@Usage(\"the bar\") class bar {}\n" +
+        "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public void a() {}\n" +
+        "}"));
+    assertEquals("the bar", UsageScanner.scanGroovy("@Usage(\"the bar\") class bar {}\n" +
+        "@Usage(\"the juu\") class juu {}"));
+  }
+
+  public void testIgnoreNestedMain() {
+    assertEquals("the foo", UsageScanner.scanJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public void a() { new Object() { @Usage(\"the main\") @Command void main() {} }; }\n" +
+        "}"));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl.groovy;
+
+import org.crsh.shell.AbstractShellTestCase;
+
+import java.util.Map;
+
+public class DescriptionTestCase extends AbstractShellTestCase {
+
+  public void testClassUsage() {
+    lifeCycle.bindGroovy("foo", "@Usage(\"the foo\") class foo {\n" +
+        "@Command public String main() { return ''; }\n" +
+        "}");
+    assertEquals("the foo", getDescription("foo"));
+  }
+
+  public void testMainUsage() {
+    lifeCycle.bindGroovy("foo", "class foo {\n" +
+        "@Usage(\"the main\") @Command public String main() { return ''; }\n" +
+        "}");
+    assertEquals("the main", getDescription("foo"));
+  }
+
+  public void testClassUsageBeforeMainUsage() {
+    lifeCycle.bindGroovy("foo", "@Usage(\"the foo\") class foo {\n" +
+        "@Usage(\"the main\") @Command public String main() { return ''; }\n" +
+        "}");
+    assertEquals("the foo", getDescription("foo"));
+  }
+
+  public void testScript() {
+    lifeCycle.bindGroovy("foo", "return 'foo'");
+    assertNull(getDescription("foo"));
+    assertTrue(isListed("foo"));
+  }
+
+  public void testBrokenCommandNotListed() {
+    lifeCycle.bindGroovy("foo", "@Usage(\"the foo\") class foo {");
+    assertFalse(isListed("foo"));
+  }
+
+  private boolean isListed(String name) {
+    for (Map.Entry<String, String> entry : session.getCommands()) {
+      if (entry.getKey().equals(name)) {
+        return true;
+      }
+    }
+    for (Map.Entry<String, String> entry : session.getCommands(name)) {
+      if (entry.getKey().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String getDescription(String name) {
+    String description = null;
+    for (Map.Entry<String, String> entry : session.getCommands()) {
+      if (entry.getKey().equals(name)) {
+        description = entry.getValue();
+      }
+    }
+    for (Map.Entry<String, String> entry : session.getCommands(name)) {
+      if (entry.getKey().equals(name)) {
+        assertEquals(description, entry.getValue());
+      }
+    }
+    return description;
+  }
+}
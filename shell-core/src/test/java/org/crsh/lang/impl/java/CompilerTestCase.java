@@ -33,11 +33,17 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** @author Julien Viet */
 public class CompilerTestCase extends AbstractTestCase {
@@ -58,6 +64,54 @@ public class CompilerTestCase extends AbstractTestCase {
     assertEquals("hello", ret);
   }
 
+  public void testCompileBatch() throws Exception {
+    Compiler compiler = new Compiler();
+    LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+    sources.put("A", "public class A { class Inner {} }");
+    sources.put("B", "public class B {}");
+    Map<String, List<JavaClassFileObject>> files = compiler.compile(sources);
+    assertEquals(2, files.size());
+    assertEquals(2, files.get("A").size());
+    assertEquals(1, files.get("B").size());
+    assertEquals("B", files.get("B").get(0).getClassName());
+    LoadingClassLoader loader = new LoadingClassLoader(Thread.currentThread().getContextClassLoader(), files.get("A"));
+    assertEquals("A", loader.findClass("A").getName());
+    try {
+      loader.findClass("B");
+      fail();
+    }
+    catch (ClassNotFoundException expected) {
+    }
+
+    // The compiler is reused
+    files = compiler.compile(sources);
+    assertEquals(2, files.size());
+  }
+
+  public void testConcurrentCompile() throws Exception {
+    final Compiler compiler = new Compiler();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<JavaClassFileObject>>> futures = new ArrayList<Future<List<JavaClassFileObject>>>();
+      for (int i = 0;i < 8;i++) {
+        final String name = "A" + i;
+        futures.add(executor.submit(new Callable<List<JavaClassFileObject>>() {
+          public List<JavaClassFileObject> call() throws Exception {
+            return compiler.compile(name, "public class " + name + " {}");
+          }
+        }));
+      }
+      for (int i = 0;i < 8;i++) {
+        List<JavaClassFileObject> files = futures.get(i).get();
+        assertEquals(1, files.size());
+        assertEquals("A" + i, files.get(0).getClassName());
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
   public void testImportFromFolder() throws Exception {
     doTestImport(new ClassLoaderFactory() {
       @Override
@@ -178,6 +232,7 @@ public class CompilerTestCase extends AbstractTestCase {
       assertEquals(1, errors.size());
       Diagnostic<? extends JavaFileObject> error = errors.get(0);
       assertEndsWith("/foo/A.java", error.getSource().getName());
+      assertEquals("foo.A", ((JavaSourceFileObject)error.getSource()).getClassName());
     }
   }
 }
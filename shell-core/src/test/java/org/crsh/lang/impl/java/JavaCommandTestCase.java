@@ -18,9 +18,14 @@
  */
 package org.crsh.lang.impl.java;
 
+import org.crsh.cli.Command;
 import org.crsh.cli.impl.completion.CompletionMatch;
 import org.crsh.cli.spi.Completion;
+import org.crsh.command.BaseCommand;
+import org.crsh.command.ShellSafety;
 import org.crsh.shell.AbstractShellTestCase;
+import org.crsh.shell.ErrorKind;
+import org.crsh.shell.impl.command.spi.CommandException;
 
 import java.util.Map;
 
@@ -37,6 +42,103 @@ public class JavaCommandTestCase extends AbstractShellTestCase {
     assertInternalError("foo");
   }
 
+  public void testBrokenCommandNotListed() {
+    lifeCycle.bindJava("foo", "@Usage(\"the foo\") public class foo extends BaseCommand {}");
+    assertFalse(isListed("foo"));
+    assertInternalError("foo");
+  }
+
+  public void testDescription() {
+    lifeCycle.bindJava("foo", "import org.crsh.cli.Command;\n" +
+        "import org.crsh.cli.Usage;\n" +
+        "import org.crsh.command.BaseCommand;\n" +
+        "@Usage(\"the foo\") public class foo extends BaseCommand {\n" +
+        "@Command public String main() { return \"\"; }\n" +
+        "}");
+    lifeCycle.bindJava("bar", "import org.crsh.cli.Command;\n" +
+        "import org.crsh.cli.Usage;\n" +
+        "import org.crsh.command.BaseCommand;\n" +
+        "public class bar extends BaseCommand {\n" +
+        "@Usage(\"the main\") @Command public String main() { return \"\"; }\n" +
+        "}");
+    lifeCycle.bindJava("juu", "import org.crsh.cli.Command;\n" +
+        "import org.crsh.cli.Usage;\n" +
+        "import org.crsh.command.BaseCommand;\n" +
+        "@Usage(\"the juu\") public class juu extends BaseCommand {\n" +
+        "@Usage(\"the main\") @Command public String main() { return \"\"; }\n" +
+        "}");
+    // The description of a single main command is the usage of its main method
+    assertEquals("", getDescription("foo"));
+    assertEquals("the main", getDescription("bar"));
+    assertEquals("the main", getDescription("juu"));
+  }
+
+  private boolean isListed(String name) {
+    for (Map.Entry<String, String> entry : session.getCommands()) {
+      if (entry.getKey().equals(name)) {
+        return true;
+      }
+    }
+    for (Map.Entry<String, String> entry : session.getCommands(name)) {
+      if (entry.getKey().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String getDescription(String name) {
+    String description = null;
+    for (Map.Entry<String, String> entry : session.getCommands()) {
+      if (entry.getKey().equals(name)) {
+        description = entry.getValue();
+      }
+    }
+    for (Map.Entry<String, String> entry : session.getCommands(name)) {
+      if (entry.getKey().equals(name)) {
+        assertEquals(description, entry.getValue());
+      }
+    }
+    return description;
+  }
+
+  public static class Failing extends BaseCommand {
+
+    /** . */
+    static Throwable failure;
+
+    public Failing() throws Throwable {
+      throw failure;
+    }
+
+    @Command
+    public void main() {
+    }
+  }
+
+  public void testConstructorFailure() throws Exception {
+    ClassShellCommand<Failing> command = new ClassShellCommand<Failing>(Failing.class, new ShellSafety());
+    Exception exception = new Exception();
+    Failing.failure = exception;
+    try {
+      command.createCommand();
+      fail();
+    }
+    catch (CommandException e) {
+      assertSame(ErrorKind.EVALUATION, e.getErrorKind());
+      assertSame(exception, e.getCause());
+    }
+    Error error = new Error();
+    Failing.failure = error;
+    try {
+      command.createCommand();
+      fail();
+    }
+    catch (Error e) {
+      assertSame(error, e);
+    }
+  }
+
   public void testComplete() {
     CompletionMatch match = assertComplete("java_");
     Completion completion = match.getValue();
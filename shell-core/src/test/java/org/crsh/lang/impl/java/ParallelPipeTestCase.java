@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.lang.impl.java;
+
+import org.crsh.cli.Command;
+import org.crsh.command.BaseCommand;
+import org.crsh.command.InvocationContext;
+import org.crsh.command.Pipe;
+import org.crsh.plugin.PropertyDescriptor;
+import org.crsh.shell.AbstractShellTestCase;
+import org.crsh.shell.ErrorKind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelPipeTestCase extends AbstractShellTestCase {
+
+  /** . */
+  private static final List<Object> consumed = new ArrayList<Object>();
+
+  /** . */
+  private static final AtomicInteger running = new AtomicInteger();
+
+  /** . */
+  private static final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+  public static class Produce extends BaseCommand {
+    @Command
+    public void main(InvocationContext<Integer> context) throws Exception {
+      for (int i = 0;i < 100;i++) {
+        context.provide(i);
+      }
+    }
+  }
+
+  public static class Consume extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public void provide(Integer element) throws Exception {
+          consumed.add(element);
+        }
+      };
+    }
+  }
+
+  static class Twice extends Pipe<Integer, Integer> {
+    final Mapping mapping;
+    Twice(Mapping mapping) {
+      this.mapping = mapping;
+    }
+    @Override
+    public Mapping getMapping() {
+      return mapping;
+    }
+    @Override
+    public void provide(Integer element) throws Exception {
+      threads.add(Thread.currentThread());
+
+      // Make the first elements the slowest ones
+      Thread.sleep(Math.max(0, 10 - element));
+      context.provide(element);
+      context.provide(element);
+    }
+  }
+
+  public static class Ordered extends BaseCommand {
+    @Command
+    public Pipe<Integer, Integer> main() {
+      return new Twice(Pipe.Mapping.ORDERED);
+    }
+  }
+
+  public static class Unordered extends BaseCommand {
+    @Command
+    public Pipe<Integer, Integer> main() {
+      return new Twice(Pipe.Mapping.UNORDERED);
+    }
+  }
+
+  public static class Failing extends BaseCommand {
+    @Command
+    public Pipe<Integer, Integer> main() {
+      return new Twice(Pipe.Mapping.ORDERED) {
+        @Override
+        public void provide(Integer element) throws Exception {
+          if (element == 50) {
+            throw new Exception("failed at " + element);
+          }
+          super.provide(element);
+        }
+      };
+    }
+  }
+
+  public static class Slow extends BaseCommand {
+    @Command
+    public Pipe<Integer, Integer> main() {
+      final CountDownLatch started = new CountDownLatch(1);
+      return new Twice(Pipe.Mapping.ORDERED) {
+        @Override
+        public void provide(Integer element) throws Exception {
+          if (element == 0) {
+            // Fail once another element is running
+            started.await(1, TimeUnit.SECONDS);
+            throw new Exception("failed at " + element);
+          }
+          running.incrementAndGet();
+          started.countDown();
+          try {
+            Thread.sleep(5000);
+            context.provide(element);
+          }
+          finally {
+            running.decrementAndGet();
+          }
+        }
+      };
+    }
+  }
+
+  public static class Text extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public Mapping getMapping() {
+          return Mapping.ORDERED;
+        }
+        @Override
+        public void open() throws Exception {
+          context.append("<");
+        }
+        @Override
+        public void provide(Integer element) throws Exception {
+          Thread.sleep(Math.max(0, 10 - element));
+          context.append(Integer.toString(element));
+        }
+        @Override
+        public void close() throws Exception {
+          context.append(">");
+          super.close();
+        }
+      };
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    //
+    lifeCycle.setProperty(PropertyDescriptor.PIPE_PARALLELISM, 4);
+    lifeCycle.bindClass("produce", Produce.class);
+    lifeCycle.bindClass("consume", Consume.class);
+    consumed.clear();
+    threads.clear();
+    running.set(0);
+  }
+
+  public void testOrdered() throws Exception {
+    lifeCycle.bindClass("ordered", Ordered.class);
+    assertOk("produce | ordered | consume");
+    assertEquals(200, consumed.size());
+    for (int i = 0;i < 100;i++) {
+      assertEquals(i, consumed.get(i * 2));
+      assertEquals(i, consumed.get(i * 2 + 1));
+    }
+    assertFalse(threads.contains(Thread.currentThread()));
+  }
+
+  public void testUnordered() throws Exception {
+    lifeCycle.bindClass("unordered", Unordered.class);
+    assertOk("produce | unordered | consume");
+    assertEquals(200, consumed.size());
+    for (int i = 0;i < 100;i++) {
+      int index = consumed.indexOf(i);
+      assertTrue(index >= 0);
+      assertEquals(i, consumed.get(index + 1));
+    }
+  }
+
+  public void testFailure() throws Exception {
+    lifeCycle.bindClass("failing", Failing.class);
+    Throwable failure = assertError("produce | failing | consume", ErrorKind.EVALUATION);
+    while (failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    assertEquals("failed at 50", failure.getMessage());
+    assertTrue(consumed.size() <= 100);
+    for (int i = 0;i < consumed.size();i++) {
+      assertEquals(i / 2, consumed.get(i));
+    }
+  }
+
+  public void testCancelWaitsForRunningTasks() throws Exception {
+    lifeCycle.bindClass("slow", Slow.class);
+    long time = System.currentTimeMillis();
+    assertError("produce | slow | consume", ErrorKind.EVALUATION);
+    assertEquals(0, running.get());
+    assertEquals(0, consumed.size());
+    assertTrue(System.currentTimeMillis() - time < 2000);
+  }
+
+  public void testText() throws Exception {
+    lifeCycle.bindClass("text", Text.class);
+    StringBuilder expected = new StringBuilder("<");
+    for (int i = 0;i < 100;i++) {
+      expected.append(i);
+    }
+    expected.append(">");
+    assertEquals(expected.toString(), assertOk("produce | text"));
+  }
+}
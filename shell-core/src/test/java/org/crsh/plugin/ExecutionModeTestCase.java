@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.plugin;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.shell.ShellProcessContext;
+import org.crsh.shell.ShellResponse;
+import org.crsh.shell.impl.async.AsyncShell;
+import org.crsh.vfs.FS;
+import test.shell.base.BaseProcess;
+import test.shell.base.BaseProcessContext;
+import test.shell.base.BaseProcessFactory;
+import test.shell.base.BaseShell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutionModeTestCase extends AbstractTestCase {
+
+  public void testParse() throws Exception {
+    assertEquals(ExecutionMode.VIRTUAL, PropertyDescriptor.EXECUTION_MODE.parse("virtual"));
+    assertEquals(ExecutionMode.PLATFORM, PropertyDescriptor.EXECUTION_MODE.parse("PLATFORM"));
+  }
+
+  public void testEffectiveMode() {
+    assertEquals(ExecutionMode.PLATFORM, ExecutionMode.PLATFORM.getEffectiveMode());
+    assertEquals(
+        ExecutionMode.isVirtualThreadSupported() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM,
+        ExecutionMode.VIRTUAL.getEffectiveMode());
+  }
+
+  public void testNewThread() throws Exception {
+    for (ExecutionMode mode : ExecutionMode.values()) {
+      final CountDownLatch latch = new CountDownLatch(1);
+      Thread thread = mode.newThread(new Runnable() {
+        public void run() {
+          latch.countDown();
+        }
+      }, "CRaSH");
+      assertEquals("CRaSH", thread.getName());
+      thread.start();
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      thread.join();
+    }
+  }
+
+  public void testContextExecutor() throws Exception {
+    PluginContext context = new PluginContext(
+        new SimplePluginDiscovery(),
+        new HashMap<String, Object>(),
+        new FS(),
+        new FS(),
+        Thread.currentThread().getContextClassLoader());
+    assertEquals(ExecutionMode.PLATFORM, context.getExecutionMode());
+    context.setProperty(PropertyDescriptor.EXECUTION_MODE, "virtual");
+    assertEquals(ExecutionMode.VIRTUAL, context.getExecutionMode());
+    ExecutorService executor = context.getExecutor();
+    assertSame(executor, context.getExecutor());
+    final CountDownLatch latch = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      public void run() {
+        latch.countDown();
+      }
+    });
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    executor.shutdownNow();
+  }
+
+  public void testNoPoolAfterStop() throws Exception {
+    PluginContext context = new PluginContext(
+        new SimplePluginDiscovery(),
+        new HashMap<String, Object>(),
+        new FS(),
+        new FS(),
+        Thread.currentThread().getContextClassLoader());
+    context.start();
+    context.stop();
+    try {
+      context.getExecutor();
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+    try {
+      context.getForkJoinPool();
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+  }
+
+  /**
+   * Hundreds of sessions, some idle and some streaming output, all blocked at the same time. The load is only
+   * exercised on a runtime supporting virtual threads, otherwise the fallback on platform threads is checked with
+   * fewer sessions than the size of the pool.
+   */
+  public void testLoad() throws Exception {
+    ExecutionMode mode = ExecutionMode.VIRTUAL;
+    int idle = ExecutionMode.isVirtualThreadSupported() ? 400 : 10;
+    int streaming = ExecutionMode.isVirtualThreadSupported() ? 200 : 5;
+    final int chunks = 100;
+    final CountDownLatch started = new CountDownLatch(idle + streaming);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger output = new AtomicInteger();
+    BaseProcessFactory factory = new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(final String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            if (request.equals("stream")) {
+              for (int i = 0;i < chunks;i++) {
+                processContext.append("chunk");
+                processContext.flush();
+                output.incrementAndGet();
+              }
+            }
+            started.countDown();
+            try {
+              release.await();
+              processContext.end(ShellResponse.ok());
+            }
+            catch (InterruptedException e) {
+              processContext.end(ShellResponse.cancelled());
+            }
+          }
+        };
+      }
+    };
+    ExecutorService executor = mode.newExecutor(20);
+    final AsyncShell shell = new AsyncShell(executor, new BaseShell(factory));
+    try {
+      final List<BaseProcessContext> contexts = new ArrayList<BaseProcessContext>();
+      List<Thread> sessions = new ArrayList<Thread>();
+      for (int i = 0;i < idle + streaming;i++) {
+        final BaseProcessContext context = BaseProcessContext.create(shell, i < idle ? "idle" : "stream");
+        contexts.add(context);
+        sessions.add(mode.newThread(new Runnable() {
+          public void run() {
+            context.execute();
+            context.getResponse();
+          }
+        }, "CRaSH"));
+      }
+      for (Thread session : sessions) {
+        session.start();
+      }
+      assertTrue("Sessions did not start concurrently", started.await(60, TimeUnit.SECONDS));
+      assertEquals(streaming * chunks, output.get());
+      release.countDown();
+      for (Thread session : sessions) {
+        session.join(60000);
+        assertFalse(session.isAlive());
+      }
+      for (BaseProcessContext context : contexts) {
+        assertInstance(ShellResponse.Ok.class, context.getResponse());
+      }
+    }
+    finally {
+      release.countDown();
+      shell.close();
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.plugin;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.util.Utils;
+import org.crsh.vfs.FS;
+import org.crsh.vfs.Resource;
+import org.crsh.vfs.spi.file.FileDriver;
+import org.crsh.vfs.spi.ram.RAMDriver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ResourceManagerTestCase extends AbstractTestCase {
+
+  /** . */
+  private File dir;
+
+  /** . */
+  private ResourceManager manager;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = File.createTempFile("crash", "");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdir());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (manager != null) {
+      manager.unwatch();
+    }
+    delete(dir);
+  }
+
+  public void testWatch() throws Exception {
+    write(new File(dir, "foo.groovy"), "a");
+    FS fs = new FS().mount(dir);
+    manager = new ResourceManager(fs, fs);
+    assertTrue(manager.watch());
+    manager.refresh();
+    Resource resource = load("foo.groovy");
+    assertEquals("a", new String(resource.getContent(), "UTF-8"));
+    assertSame(resource, load("foo.groovy"));
+
+    //
+    write(new File(dir, "foo.groovy"), "b");
+    waitForContent("foo.groovy", "b");
+
+    //
+    write(new File(dir, "bar.groovy"), "c");
+    waitForIds("bar.groovy", "foo.groovy");
+    assertTrue(new File(dir, "foo.groovy").delete());
+    waitForIds("bar.groovy");
+
+    //
+    File sub = new File(dir, "sub");
+    assertTrue(sub.mkdir());
+    write(new File(sub, "juu.groovy"), "d");
+    waitForIds("bar.groovy", "juu.groovy");
+    write(new File(sub, "juu.groovy"), "e");
+    waitForContent("juu.groovy", "e");
+  }
+
+  public void testPoll() throws Exception {
+    write(new File(dir, "foo.groovy"), "a");
+    RAMDriver driver = new RAMDriver();
+    driver.add("/bar.groovy", "b");
+    FS fs = new FS().mount(dir).mount(driver);
+    manager = new ResourceManager(fs, fs);
+    assertFalse(manager.watch());
+    manager.refresh();
+    assertNotSame(load("foo.groovy"), load("foo.groovy"));
+
+    // The file mount is still watched
+    write(new File(dir, "juu.groovy"), "c");
+    waitForIds("bar.groovy", "foo.groovy", "juu.groovy");
+  }
+
+  public void testNotWatched() throws Exception {
+    RAMDriver driver = new RAMDriver();
+    driver.add("/foo.groovy", "a");
+    FS fs = new FS().mount(driver);
+    manager = new ResourceManager(fs, fs);
+    assertFalse(manager.watch());
+    manager.refresh();
+    assertEquals("a", new String(load("foo.groovy").getContent(), "UTF-8"));
+  }
+
+  private Resource load(String id) {
+    return Utils.first(manager.loadResource(id, ResourceKind.COMMAND));
+  }
+
+  private void waitForContent(String id, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (true) {
+      Resource resource = load(id);
+      if (resource != null && expected.equals(new String(resource.getContent(), "UTF-8"))) {
+        break;
+      }
+      assertTrue("Resource " + id + " was not reloaded", System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  private void waitForIds(String... expected) throws Exception {
+    Set<String> set = new TreeSet<String>();
+    for (String id : expected) {
+      set.add(id);
+    }
+    long deadline = System.currentTimeMillis() + 10000;
+    while (true) {
+      Set<String> ids = new TreeSet<String>();
+      for (String id : manager.listResourceId(ResourceKind.COMMAND)) {
+        ids.add(id);
+      }
+      if (ids.equals(set)) {
+        break;
+      }
+      assertTrue("Expected " + set + " instead of " + ids, System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      Utils.close(out);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
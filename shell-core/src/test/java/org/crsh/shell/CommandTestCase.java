@@ -127,6 +127,15 @@ public class CommandTestCase extends AbstractShellTestCase {
     assertEquals("bar", evalOk("out << 'bar'; out.flush();"));
   }
 
+  public void testAlternateBufferRepaint() {
+    lifeCycle.bindGroovy("repaint",
+        "context.takeAlternateBuffer();\n" +
+        "out.cls(); out << 'abc'; out.flush();\n" +
+        "out.cls(); out << 'abd'; out.flush();\n" +
+        "context.releaseAlternateBuffer();");
+    assertEquals("\033[1;1Habc\033[1;3Hd", assertOk("repaint"));
+  }
+
   public void testResolveOut() {
     String resolve = "class resolve {\n" +
         "@Command\n" +
@@ -23,7 +23,10 @@ import org.crsh.cli.impl.completion.CompletionMatch;
 import org.crsh.cli.spi.Completion;
 import test.command.Commands;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
 
 public class CompleteTestCase extends AbstractShellTestCase {
 
@@ -45,4 +48,29 @@ public class CompleteTestCase extends AbstractShellTestCase {
     assertEquals(Collections.singleton("juu_value"), completion.getValues());
     assertTrue(completion.get("juu_value"));
   }
+
+  public void testCommandName() {
+    lifeCycle.bindGroovy("triefoo", "return 'foo'");
+    lifeCycle.bindGroovy("triebar", "return 'bar'");
+    CompletionMatch completionMatch = assertComplete("trie");
+    Completion completion = completionMatch.getValue();
+    assertEquals("trie", completion.getPrefix());
+    assertEquals(new HashSet<String>(Arrays.asList("foo", "bar")), completion.getValues());
+    assertTrue(completion.get("foo"));
+
+    // Commands added after the first completion
+    lifeCycle.bindGroovy("triejuu", "return 'juu'");
+    completion = assertComplete("trie").getValue();
+    assertEquals(new HashSet<String>(Arrays.asList("foo", "bar", "juu")), completion.getValues());
+    completion = assertComplete("triej").getValue();
+    assertEquals(Collections.singleton("uu"), completion.getValues());
+
+    //
+    int count = 0;
+    for (Map.Entry<String, String> command : session.getCommands("trie")) {
+      assertTrue(command.getKey().startsWith("trie"));
+      count++;
+    }
+    assertEquals(3, count);
+  }
 }
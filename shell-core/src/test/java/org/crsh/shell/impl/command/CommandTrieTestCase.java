@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class CommandTrieTestCase extends TestCase {
+
+  public void testComplete() {
+    CommandTrie trie = new CommandTrie();
+    trie.put("jvm", "jvm desc");
+    trie.put("jdbc", "jdbc desc");
+    trie.put("java", "java desc");
+    trie.put("j", "j desc");
+    trie.put("help", "help desc");
+    assertEquals(Arrays.asList("j", "java", "jdbc", "jvm"), names(trie, "j"));
+    assertEquals(Arrays.asList("help", "j", "java", "jdbc", "jvm"), names(trie, ""));
+    assertEquals(Collections.singletonList("jdbc"), names(trie, "jd"));
+    assertEquals(Collections.<String>emptyList(), names(trie, "jdbcx"));
+    assertEquals(Collections.<String>emptyList(), names(trie, "x"));
+    Map.Entry<String, String> entry = trie.complete("jv").get(0);
+    assertEquals("jvm", entry.getKey());
+    assertEquals("jvm desc", entry.getValue());
+  }
+
+  public void testPut() {
+    CommandTrie trie = new CommandTrie();
+    trie.put("jvm", "foo");
+    trie.put("jvm", "bar");
+    assertEquals(1, trie.complete("").size());
+    assertEquals("bar", trie.complete("jvm").get(0).getValue());
+  }
+
+  public void testRemove() {
+    CommandTrie trie = new CommandTrie();
+    trie.put("java", "java desc");
+    trie.put("jav", "jav desc");
+    trie.put("jvm", "jvm desc");
+    assertFalse(trie.remove("ja"));
+    assertFalse(trie.remove("javax"));
+    assertTrue(trie.remove("jav"));
+    assertFalse(trie.contains("jav"));
+    assertTrue(trie.contains("java"));
+    assertEquals(Arrays.asList("java", "jvm"), names(trie, "j"));
+    assertTrue(trie.remove("java"));
+    assertFalse(trie.remove("java"));
+    assertEquals(Collections.<String>emptyList(), names(trie, "ja"));
+    assertEquals(Collections.singletonList("jvm"), names(trie, "j"));
+  }
+
+  private static List<String> names(CommandTrie trie, String prefix) {
+    List<String> names = new ArrayList<String>();
+    for (Map.Entry<String, String> entry : trie.complete(prefix)) {
+      names.add(entry.getKey());
+    }
+    return names;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.cli.Command;
+import org.crsh.command.BaseCommand;
+import org.crsh.command.InvocationContext;
+import org.crsh.command.Pipe;
+import org.crsh.plugin.PropertyDescriptor;
+import org.crsh.shell.ErrorKind;
+import org.crsh.shell.ShellResponse;
+import test.shell.base.BaseProcessContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the pipe tests with each stage of the pipeline running on its own thread.
+ */
+public class PipeLinedTestCase extends PipeTestCase {
+
+  /** . */
+  private static final List<Object> consumed = new ArrayList<Object>();
+
+  /** . */
+  private static volatile Thread producerThread;
+
+  /** . */
+  private static volatile Thread consumerThread;
+
+  /** . */
+  private static volatile CountDownLatch blocked;
+
+  /** . */
+  private static volatile CountDownLatch interrupted;
+
+  /** . */
+  private static volatile boolean terminated;
+
+  public static class Produce extends BaseCommand {
+    @Command
+    public void main(InvocationContext<Integer> context) throws Exception {
+      producerThread = Thread.currentThread();
+      for (int i = 0;i < 1000;i++) {
+        context.provide(i);
+      }
+    }
+  }
+
+  public static class ProduceForever extends BaseCommand {
+    @Command
+    public void main(InvocationContext<Integer> context) throws Exception {
+      for (int i = 0;;i++) {
+        context.provide(i);
+      }
+    }
+  }
+
+  public static class Consume extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public void provide(Integer element) throws Exception {
+          consumerThread = Thread.currentThread();
+          consumed.add(element);
+        }
+      };
+    }
+  }
+
+  public static class Fail extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public void provide(Integer element) throws Exception {
+          if (element == 10) {
+            throw new Exception("failed at " + element);
+          }
+        }
+      };
+    }
+  }
+
+  public static class Block extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public void provide(Integer element) throws Exception {
+          blocked.countDown();
+          try {
+            Thread.sleep(10 * 1000);
+          }
+          catch (InterruptedException e) {
+            interrupted.countDown();
+            throw e;
+          }
+        }
+      };
+    }
+  }
+
+  public static class SlowClose extends BaseCommand {
+    @Command
+    public Pipe<Integer, Object> main() {
+      return new Pipe<Integer, Object>() {
+        @Override
+        public void close() throws Exception {
+          blocked.countDown();
+          try {
+            Thread.sleep(10 * 1000);
+          }
+          catch (InterruptedException e) {
+            // Take some time to terminate after the interruption
+            Thread.sleep(200);
+            terminated = true;
+            throw e;
+          }
+        }
+      };
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    //
+    lifeCycle.setProperty(PropertyDescriptor.PIPELINE_BUFFER, 2);
+  }
+
+  public void testOrdering() throws Exception {
+    lifeCycle.bindClass("produce", Produce.class);
+    lifeCycle.bindClass("consume", Consume.class);
+
+    //
+    consumed.clear();
+    producerThread = consumerThread = null;
+    assertOk("produce | consume");
+    assertEquals(1000, consumed.size());
+    for (int i = 0;i < 1000;i++) {
+      assertEquals(i, consumed.get(i));
+    }
+    assertNotNull(producerThread);
+    assertNotNull(consumerThread);
+    assertNotSame(producerThread, consumerThread);
+  }
+
+  public void testFailure() throws Exception {
+    lifeCycle.bindClass("produce", Produce.class);
+    lifeCycle.bindClass("failing", Fail.class);
+
+    //
+    Throwable failure = assertError("produce | failing", ErrorKind.EVALUATION);
+    while (failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    assertEquals("failed at 10", failure.getMessage());
+  }
+
+  public void testCancel() throws Exception {
+    lifeCycle.bindClass("produce", ProduceForever.class);
+    lifeCycle.bindClass("block", Block.class);
+
+    //
+    blocked = new CountDownLatch(1);
+    interrupted = new CountDownLatch(1);
+    final BaseProcessContext ctx = create("produce | block");
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        ctx.execute();
+      }
+    };
+    t.start();
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    //
+    ctx.cancel();
+    ShellResponse resp = ctx.getResponse();
+    assertEquals(ShellResponse.Cancelled.class, resp.getClass());
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    t.join(10 * 1000);
+    assertFalse(t.isAlive());
+  }
+
+  public void testCancelWaitsForStages() throws Exception {
+    lifeCycle.bindClass("produce", Produce.class);
+    lifeCycle.bindClass("slow", SlowClose.class);
+
+    //
+    blocked = new CountDownLatch(1);
+    terminated = false;
+    final BaseProcessContext ctx = create("produce | slow");
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        ctx.execute();
+      }
+    };
+    t.start();
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    // The pipeline is closing and waits for the slow stage
+    ctx.cancel();
+    t.join(10 * 1000);
+    assertFalse(t.isAlive());
+    assertTrue(terminated);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.command.ShellSafety;
+import org.crsh.command.ShellSafetyFactory;
+import org.crsh.lang.impl.groovy.GroovyLanguageProxy;
+import org.crsh.lang.impl.java.JavaLanguage;
+import org.crsh.plugin.PropertyDescriptor;
+import test.plugin.TestPluginLifeCycle;
+import test.shell.base.BaseProcessContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ShellSafetyTestCase extends AbstractTestCase {
+
+  /** . */
+  private TestPluginLifeCycle lifeCycle;
+
+  /** . */
+  private CRaSH crash;
+
+  @Override
+  protected void setUp() throws Exception {
+    lifeCycle = new TestPluginLifeCycle(new GroovyLanguageProxy(), new JavaLanguage());
+    lifeCycle.bindJava("safety", "public class safety extends org.crsh.command.BaseCommand {\n" +
+        "@org.crsh.cli.Command public String main() { return org.crsh.command.ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString(); }\n" +
+        "}");
+    lifeCycle.bindJava("safety_stage", "public class safety_stage extends org.crsh.command.BaseCommand {\n" +
+        "@org.crsh.cli.Command public org.crsh.command.Pipe<Object, String> main() {\n" +
+        "return new org.crsh.command.Pipe<Object, String>() {\n" +
+        "public void provide(Object element) throws Exception {\n" +
+        "context.provide(org.crsh.command.ShellSafetyFactory.getCurrentThreadShellSafety().toSafeString());\n" +
+        "}\n" +
+        "};\n" +
+        "}\n" +
+        "}");
+    lifeCycle.start();
+    crash = new CRaSH(lifeCycle.getContext());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    lifeCycle.stop();
+  }
+
+  public void testProcessScope() throws Exception {
+    ShellSafety unsafe = new ShellSafety("INTERNAL");
+    CRaSHSession session = crash.createSession(null, null, unsafe);
+    try {
+      assertEquals("|INTERNAL", BaseProcessContext.create(session, "safety").execute().getOutput());
+      assertTrue(ShellSafetyFactory.getCurrentThreadShellSafety().isDefault());
+    }
+    finally {
+      session.close();
+    }
+    assertTrue(ShellSafetyFactory.getCurrentThreadShellSafety().isDefault());
+  }
+
+  public void testRestorePrevious() throws Exception {
+    ShellSafety bound = new ShellSafety("STANDALONE");
+    ShellSafetyFactory.setCurrentThreadShellSafety(bound);
+    try {
+      CRaSHSession session = crash.createSession(null, null, new ShellSafety("INTERNAL"));
+      assertEquals("|INTERNAL", BaseProcessContext.create(session, "safety").execute().getOutput());
+      session.close();
+      assertSame(bound, ShellSafetyFactory.getCurrentThreadShellSafety());
+    }
+    finally {
+      ShellSafetyFactory.setCurrentThreadShellSafety(null);
+    }
+  }
+
+  public void testThreadsDontInherit() throws Exception {
+    ShellSafetyFactory.setCurrentThreadShellSafety(new ShellSafety("INTERNAL"));
+    try {
+      final ShellSafety[] inherited = new ShellSafety[1];
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          inherited[0] = ShellSafetyFactory.getCurrentThreadShellSafety();
+        }
+      };
+      thread.start();
+      thread.join();
+      assertTrue(inherited[0].isDefault());
+    }
+    finally {
+      ShellSafetyFactory.setCurrentThreadShellSafety(null);
+    }
+  }
+
+  public void testPipelineStage() throws Exception {
+    lifeCycle.setProperty(PropertyDescriptor.PIPELINE_BUFFER, 4);
+    CRaSHSession session = crash.createSession(null, null, new ShellSafety("INTERNAL"));
+    try {
+      assertEquals("|INTERNAL", BaseProcessContext.create(session, "safety | safety_stage").execute().getOutput());
+    }
+    finally {
+      session.close();
+    }
+  }
+
+  public void testConcurrentResolution() throws Exception {
+    final CRaSHSession safe = crash.createSession(null, null, new ShellSafety("SAFESAFE"));
+    final CRaSHSession unsafe = crash.createSession(null, null, new ShellSafety("INTERNAL"));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (int i = 0;i < 4;i++) {
+        tasks.add(new Callable<Void>() {
+          public Void call() throws Exception {
+            for (int j = 0;j < 1000;j++) {
+              assertNull(safe.getCommand("safety"));
+              assertNotNull(unsafe.getCommand("safety"));
+            }
+            return null;
+          }
+        });
+      }
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+      safe.close();
+      unsafe.close();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.command.spi;
+
+import org.crsh.command.ShellSafety;
+import org.crsh.shell.AbstractShellTestCase;
+import org.crsh.shell.impl.command.ExternalResolver;
+import org.crsh.shell.impl.command.system.SystemResolver;
+import test.command.Commands;
+
+import java.util.Arrays;
+
+public class CommandTestCase extends AbstractShellTestCase {
+
+  public void testRepeatedLine() throws Exception {
+    lifeCycle.bindClass("parameterized", Commands.Parameterized.class);
+    for (int i = 0;i < 3;i++) {
+      Commands.Parameterized.reset();
+      assertOk("parameterized --opt foo bar juu");
+      assertEquals("foo", Commands.Parameterized.opt);
+      assertEquals(Arrays.asList("bar", "juu"), Commands.Parameterized.args);
+      Commands.Parameterized.reset();
+      assertOk("parameterized");
+      assertEquals(null, Commands.Parameterized.opt);
+      assertEquals(null, Commands.Parameterized.args);
+    }
+  }
+
+  public void testEviction() throws Exception {
+    lifeCycle.bindClass("parameterized", Commands.Parameterized.class);
+    for (int i = 0;i < 100;i++) {
+      Commands.Parameterized.reset();
+      assertOk("parameterized --opt " + (i % 50));
+      assertEquals("" + (i % 50), Commands.Parameterized.opt);
+    }
+  }
+
+  public void testSystemCommandReused() throws Exception {
+    Command<?> help = SystemResolver.UNSAFE_INSTANCE.resolveCommand("help", new ShellSafety("|STANDALONE"));
+    assertNotNull(help);
+    assertSame(help, SystemResolver.UNSAFE_INSTANCE.resolveCommand("help", new ShellSafety("|STANDALONE")));
+    assertNotSame(help, SystemResolver.UNSAFE_INSTANCE.resolveCommand("help", new ShellSafety("|INTERNAL")));
+  }
+
+  public void testExternalCommandReused() throws Exception {
+    ExternalResolver.INSTANCE.addCommand("parameterized_external", "", Commands.Parameterized.class);
+    Command<?> command = ExternalResolver.INSTANCE.resolveCommand("parameterized_external", new ShellSafety());
+    assertNotNull(command);
+    assertSame(command, ExternalResolver.INSTANCE.resolveCommand("parameterized_external", new ShellSafety()));
+    ExternalResolver.INSTANCE.addCommand("parameterized_external", "", Commands.Parameterized.class);
+    assertNotSame(command, ExternalResolver.INSTANCE.resolveCommand("parameterized_external", new ShellSafety()));
+  }
+}
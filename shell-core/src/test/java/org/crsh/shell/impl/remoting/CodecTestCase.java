@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.shell.ShellResponse;
+import org.crsh.text.Color;
+import org.crsh.text.Style;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CodecTestCase extends AbstractTestCase {
+
+  public void testPackStyle() {
+    Boolean[] booleans = {null, true, false};
+    Color[] colors = new Color[Color.values().length + 1];
+    System.arraycopy(Color.values(), 0, colors, 1, Color.values().length);
+    for (Boolean bold : booleans) {
+      for (Boolean underline : booleans) {
+        for (Boolean blink : booleans) {
+          for (Color foreground : colors) {
+            for (Color background : colors) {
+              Style style = Style.style(bold, underline, blink, foreground, background);
+              assertEquals(style, Codec.unpack(Codec.pack(style)));
+            }
+          }
+        }
+      }
+    }
+    assertSame(Style.reset, Codec.unpack(Codec.pack(Style.reset)));
+  }
+
+  public void testRoundTrip() throws Exception {
+    List<ServerMessage> messages = new ArrayList<ServerMessage>();
+    messages.add(new ServerMessage.Chunk.Text("h\u00e9llo \u4e16\u754c"));
+    messages.add(new ServerMessage.Chunk.Text(new StringBuilder("")));
+    messages.add(new ServerMessage.Chunk.Style(Color.green.bg().underline()));
+    messages.add(new ServerMessage.Chunk.Style(Style.reset));
+    messages.add(new ServerMessage.Chunk.Cls());
+    messages.add(new ServerMessage.Flush());
+    messages.add(new ServerMessage.UseAlternateBuffer());
+    messages.add(new ServerMessage.End(ShellResponse.ok()));
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    for (ServerMessage message : messages) {
+      Codec.BINARY.write(out, message);
+    }
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    assertEquals("h\u00e9llo \u4e16\u754c", ((ServerMessage.Chunk.Text)Codec.BINARY.read(in)).payload.toString());
+    assertEquals("", ((ServerMessage.Chunk.Text)Codec.BINARY.read(in)).payload.toString());
+    assertEquals(Color.green.bg().underline(), ((ServerMessage.Chunk.Style)Codec.BINARY.read(in)).payload);
+    assertSame(Style.reset, ((ServerMessage.Chunk.Style)Codec.BINARY.read(in)).payload);
+    assertInstance(ServerMessage.Chunk.Cls.class, Codec.BINARY.read(in));
+    assertInstance(ServerMessage.Flush.class, Codec.BINARY.read(in));
+    assertInstance(ServerMessage.UseAlternateBuffer.class, Codec.BINARY.read(in));
+    assertInstance(ShellResponse.Ok.class, ((ServerMessage.End)Codec.BINARY.read(in)).response);
+  }
+
+  public void testSize() throws Exception {
+    assertTrue(size(Codec.BINARY) * 2 < size(Codec.SERIALIZATION));
+  }
+
+  private int size(Codec codec) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    for (int i = 0;i < 1000;i++) {
+      codec.write(out, new ServerMessage.Chunk.Text(new StringBuilder("line ").append(i)));
+      codec.write(out, new ServerMessage.Chunk.Style(Color.red.fg()));
+    }
+    out.close();
+    return baos.size();
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.text.Color;
+import org.crsh.text.Decoration;
+import org.crsh.text.Style;
+import test.shell.base.BaseShell;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exchanges messages with peers built from the messages of the versions that predate the codec negotiation.
+ */
+public class LegacyPeerTestCase extends AbstractTestCase {
+
+  /** The client messages of the legacy versions. */
+  private static final String LEGACY_CLIENT_MESSAGE = "package org.crsh.shell.impl.remoting;\n" +
+      "import java.io.Serializable;\n" +
+      "public abstract class ClientMessage implements Serializable {\n" +
+      "  public static class GetWelcome extends ClientMessage {\n" +
+      "  }\n" +
+      "  public static class GetPrompt extends ClientMessage {\n" +
+      "  }\n" +
+      "}\n";
+
+  /** The server messages of the legacy versions. */
+  private static final String LEGACY_SERVER_MESSAGE = "package org.crsh.shell.impl.remoting;\n" +
+      "import java.io.Serializable;\n" +
+      "public class ServerMessage implements Serializable {\n" +
+      "  public static class Welcome extends ServerMessage {\n" +
+      "    public final String value;\n" +
+      "    public Welcome(String value) {\n" +
+      "      this.value = value;\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class Prompt extends ServerMessage {\n" +
+      "    public final String value;\n" +
+      "    public Prompt(String value) {\n" +
+      "      this.value = value;\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static abstract class Chunk extends ServerMessage {\n" +
+      "    public static class Style extends Chunk {\n" +
+      "      public final org.crsh.text.Style payload;\n" +
+      "      public Style(org.crsh.text.Style payload) {\n" +
+      "        this.payload = payload;\n" +
+      "      }\n" +
+      "    }\n" +
+      "  }\n" +
+      "}\n";
+
+  /** The serialized form of the styles of the legacy versions, with the serial versions computed for them. */
+  private static final String LEGACY_STYLE = "package org.crsh.text;\n" +
+      "import java.io.Serializable;\n" +
+      "public abstract class Style implements Serializable {\n" +
+      "  private static final long serialVersionUID = 1044393012208013286L;\n" +
+      "  public static final Style reset = new Style() {\n" +
+      "    private static final long serialVersionUID = -894637280300996053L;\n" +
+      "  };\n" +
+      "  public static final class Composite extends Style {\n" +
+      "    private static final long serialVersionUID = -8562014805019868975L;\n" +
+      "    protected final Boolean bold;\n" +
+      "    protected final Boolean underline;\n" +
+      "    protected final Boolean blink;\n" +
+      "    protected final Color foreground;\n" +
+      "    protected final Color background;\n" +
+      "    public Composite(Boolean bold, Boolean underline, Boolean blink, Color foreground, Color background) {\n" +
+      "      this.bold = bold;\n" +
+      "      this.underline = underline;\n" +
+      "      this.blink = blink;\n" +
+      "      this.foreground = foreground;\n" +
+      "      this.background = background;\n" +
+      "    }\n" +
+      "  }\n" +
+      "}\n";
+
+  /** . */
+  private static final String LEGACY_COLOR = "package org.crsh.text;\n" +
+      "public enum Color {\n" +
+      "  black, red, green, yellow, blue, magenta, cyan, white, def\n" +
+      "}\n";
+
+  /** . */
+  private ClassLoader legacy;
+
+  /** . */
+  private ObjectOutputStream serverOOS;
+
+  /** . */
+  private ObjectOutputStream clientOOS;
+
+  /** . */
+  private InputStream serverIn;
+
+  /** . */
+  private InputStream clientIn;
+
+  @Override
+  protected void setUp() throws Exception {
+    HashMap<String, String> sources = new HashMap<String, String>();
+    sources.put("ClientMessage", LEGACY_CLIENT_MESSAGE);
+    sources.put("ServerMessage", LEGACY_SERVER_MESSAGE);
+    sources.put("Style", LEGACY_STYLE);
+    sources.put("Color", LEGACY_COLOR);
+    legacy = compile(sources);
+    PipedInputStream a = new PipedInputStream();
+    PipedInputStream c = new PipedInputStream();
+    clientOOS = new ObjectOutputStream(new PipedOutputStream(a));
+    clientOOS.flush();
+    serverOOS = new ObjectOutputStream(new PipedOutputStream(c));
+    serverOOS.flush();
+    serverIn = a;
+    clientIn = c;
+  }
+
+  public void testSerialVersion() throws Exception {
+    assertSameSerialVersion(ClientMessage.class);
+    assertSameSerialVersion(ClientMessage.GetWelcome.class);
+    assertSameSerialVersion(ClientMessage.GetPrompt.class);
+    assertSameSerialVersion(ServerMessage.class);
+    assertSameSerialVersion(ServerMessage.Welcome.class);
+    assertSameSerialVersion(ServerMessage.Prompt.class);
+    assertSameSerialVersion(ServerMessage.Chunk.class);
+    assertSameSerialVersion(ServerMessage.Chunk.Style.class);
+    assertSameSerialVersion(Style.class);
+    assertSameSerialVersion(Style.Composite.class);
+    assertSameSerialVersion(Style.reset.getClass());
+  }
+
+  public void testLegacyStyle() throws Exception {
+    ObjectInputStream legacyIn = legacyInput(clientIn);
+    ObjectInputStream in = new ObjectInputStream(serverIn);
+    Style[] styles = { Style.style(Decoration.bold, Color.red, Color.white), Style.style().underline(false), Style.reset };
+    for (Style style : styles) {
+      serverOOS.writeObject(new ServerMessage.Chunk.Style(style));
+      serverOOS.flush();
+      Object chunk = legacyIn.readObject();
+      assertSame(legacy, chunk.getClass().getClassLoader());
+      Object payload = chunk.getClass().getField("payload").get(chunk);
+      assertSame(legacy, payload.getClass().getClassLoader());
+      if (style instanceof Style.Composite) {
+        Style.Composite composite = (Style.Composite)style;
+        assertEquals(composite.getBold(), get(payload, "bold"));
+        assertEquals(composite.getUnderline(), get(payload, "underline"));
+        assertEquals(composite.getBlink(), get(payload, "blink"));
+        assertEquals(String.valueOf(composite.getForeground()), String.valueOf(get(payload, "foreground")));
+        assertEquals(String.valueOf(composite.getBackground()), String.valueOf(get(payload, "background")));
+      }
+      clientOOS.writeObject(chunk);
+      clientOOS.flush();
+      ServerMessage.Chunk.Style received = (ServerMessage.Chunk.Style)in.readObject();
+      assertSame(style, received.payload);
+    }
+  }
+
+  public void testLegacyClient() throws Exception {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread client = new Thread() {
+      @Override
+      public void run() {
+        try {
+          ObjectInputStream in = legacyInput(clientIn);
+          while (true) {
+            Object msg = in.readObject();
+            assertSame(legacy, msg.getClass().getClassLoader());
+            if (msg.getClass().getName().endsWith("$GetPrompt")) {
+              clientOOS.writeObject(newLegacy("ServerMessage$Prompt", "legacy"));
+            } else {
+              clientOOS.writeObject(newLegacy("ServerMessage$Welcome", "hello"));
+            }
+            clientOOS.flush();
+          }
+        }
+        catch (IOException ignore) {
+          // Closed
+        }
+        catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    };
+    client.start();
+
+    //
+    ServerAutomaton server = new ServerAutomaton(serverOOS, new ObjectInputStream(serverIn));
+    try {
+      assertEquals("legacy", server.getPrompt());
+      assertEquals(Codec.SERIALIZATION, server.getCodec());
+      assertEquals("hello", server.getWelcome());
+    }
+    finally {
+      server.close();
+    }
+    assertJoin(client);
+    assertNull(failure.get());
+  }
+
+  public void testLegacyServer() throws Exception {
+    final ClientAutomaton client = new ClientAutomaton(clientOOS, new ObjectInputStream(clientIn), new BaseShell() {
+      @Override
+      public String getPrompt() {
+        return "% ";
+      }
+    });
+    Thread t = new Thread(client);
+    t.start();
+
+    //
+    ObjectInputStream in = legacyInput(serverIn);
+    try {
+      for (int i = 0;i < 2;i++) {
+        serverOOS.writeObject(newLegacy("ClientMessage$GetPrompt"));
+        serverOOS.flush();
+        Object prompt = in.readObject();
+        assertSame(legacy, prompt.getClass().getClassLoader());
+        assertEquals("% ", prompt.getClass().getField("value").get(prompt));
+      }
+      assertEquals(Codec.SERIALIZATION, client.codec);
+    }
+    finally {
+      t.interrupt();
+    }
+    assertJoin(t);
+  }
+
+  private void assertSameSerialVersion(Class<?> type) throws Exception {
+    Class<?> legacyType = legacy.loadClass(type.getName());
+    assertNotSame(type, legacyType);
+    assertEquals(ObjectStreamClass.lookup(legacyType).getSerialVersionUID(), ObjectStreamClass.lookup(type).getSerialVersionUID());
+  }
+
+  private static Object get(Object o, String name) throws Exception {
+    Field field = o.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(o);
+  }
+
+  private Object newLegacy(String name, Object... args) throws Exception {
+    Class<?> type = legacy.loadClass("org.crsh.shell.impl.remoting." + name);
+    return args.length == 0 ? type.newInstance() : type.getConstructor(String.class).newInstance(args);
+  }
+
+  private ObjectInputStream legacyInput(InputStream in) throws IOException {
+    return new ObjectInputStream(in) {
+      @Override
+      protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        try {
+          return legacy.loadClass(desc.getName());
+        }
+        catch (ClassNotFoundException e) {
+          return super.resolveClass(desc);
+        }
+      }
+    };
+  }
+
+  private static ClassLoader compile(Map<String, String> sources) throws Exception {
+    File dir = Files.createTempDirectory("crash").toFile();
+    try {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      ArrayList<String> args = new ArrayList<String>();
+      args.add("-d");
+      args.add(dir.getAbsolutePath());
+      for (Map.Entry<String, String> source : sources.entrySet()) {
+        File file = new File(dir, source.getKey() + ".java");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+          writer.write(source.getValue());
+        }
+        finally {
+          writer.close();
+        }
+        args.add(file.getAbsolutePath());
+      }
+      assertEquals(0, compiler.run(null, null, null, args.toArray(new String[args.size()])));
+      final HashMap<String, byte[]> classes = new HashMap<String, byte[]>();
+      for (String pkg : new String[]{"org.crsh.shell.impl.remoting", "org.crsh.text"}) {
+        for (File file : new File(dir, pkg.replace('.', '/')).listFiles()) {
+          String name = file.getName();
+          classes.put(pkg + "." + name.substring(0, name.length() - ".class".length()), Files.readAllBytes(file.toPath()));
+        }
+      }
+      return new ClassLoader(null) {
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+          byte[] bytes = classes.get(name);
+          if (bytes == null) {
+            throw new ClassNotFoundException(name);
+          }
+          return defineClass(name, bytes, 0, bytes.length);
+        }
+      };
+    }
+    finally {
+      delete(dir);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.shell.impl.remoting;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.auth.AuthInfo;
+import org.crsh.auth.AuthenticationPlugin;
+import org.crsh.command.ShellSafety;
+import org.crsh.shell.Shell;
+import org.crsh.shell.ShellFactory;
+import org.crsh.shell.ShellProcessContext;
+import org.crsh.shell.ShellResponse;
+import test.shell.base.BaseProcess;
+import test.shell.base.BaseProcessContext;
+import test.shell.base.BaseProcessFactory;
+import test.shell.base.BaseShell;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RemoteShellServerTestCase extends AbstractTestCase {
+
+  /** . */
+  private static final AuthenticationPlugin<String> AUTH = new AuthenticationPlugin<String>() {
+    public String getName() {
+      return "test";
+    }
+    public Class<String> getCredentialType() {
+      return String.class;
+    }
+    public AuthInfo authenticate(String username, String credential) throws Exception {
+      return "admin".equals(username) && "secret".equals(credential) ? AuthInfo.SUCCESSFUL : AuthInfo.UNSUCCESSFUL;
+    }
+  };
+
+  /** . */
+  private ExecutorService executor;
+
+  /** . */
+  private RemoteShellServer server;
+
+  /** . */
+  private List<Socket> sockets;
+
+  @Override
+  protected void setUp() throws Exception {
+    executor = Executors.newFixedThreadPool(4);
+    sockets = new ArrayList<Socket>();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+    if (server != null) {
+      server.close();
+    }
+    executor.shutdownNow();
+  }
+
+  private int bind(final BaseProcessFactory factory, int bufferSize) throws IOException {
+    return bind(new ShellFactory() {
+      public Shell create(Principal principal, AuthInfo authInfo, ShellSafety shellSafety) {
+        return new BaseShell(factory) {
+          @Override
+          public String getPrompt() {
+            return "% ";
+          }
+        };
+      }
+    }, bufferSize);
+  }
+
+  private int bind(ShellFactory factory, int bufferSize) throws IOException {
+    List<AuthenticationPlugin<?>> plugins = Collections.<AuthenticationPlugin<?>>singletonList(AUTH);
+    server = new RemoteShellServer(InetAddress.getLoopbackAddress(), 0, factory, plugins, executor, 2, bufferSize);
+    return server.bind();
+  }
+
+  private ServerAutomaton login(int port) throws IOException {
+    Socket socket = connect(port);
+    ServerAutomaton automaton = new ServerAutomaton(socket.getInputStream(), socket.getOutputStream());
+    assertTrue(automaton.authenticate("admin", "secret"));
+    return automaton;
+  }
+
+  private void waitForConnectionCount(int count) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10000;
+    while (server.getConnectionCount() != count) {
+      assertTrue(System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+  }
+
+  private Socket connect(int port) throws IOException {
+    Socket socket = new Socket();
+    socket.setReceiveBufferSize(4096);
+    socket.connect(new InetSocketAddress("localhost", port));
+    sockets.add(socket);
+    return socket;
+  }
+
+  public void testSeveralClients() throws Exception {
+    int port = bind(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            processContext.append(request.toUpperCase());
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }, 64 * 1024);
+
+    //
+    int size = 10;
+    List<ServerAutomaton> automatons = new ArrayList<ServerAutomaton>();
+    for (int i = 0;i < size;i++) {
+      automatons.add(login(port));
+    }
+
+    // Interleave the clients
+    for (int j = 0;j < 3;j++) {
+      for (int i = 0;i < size;i++) {
+        ServerAutomaton automaton = automatons.get(i);
+        assertEquals("% ", automaton.getPrompt());
+        BaseProcessContext context = BaseProcessContext.create(automaton.createProcess("hello" + i));
+        context.execute();
+        assertInstance(ShellResponse.Ok.class, context.getResponse());
+        assertEquals("HELLO" + i, context.getOutput());
+      }
+    }
+    assertEquals(Codec.BINARY, automatons.get(0).getCodec());
+    assertEquals(size, server.getConnectionCount());
+
+    // Close a connection from the peer
+    sockets.get(0).close();
+    waitForConnectionCount(size - 1);
+  }
+
+  public void testBindLoopbackByDefault() throws Exception {
+    server = new RemoteShellServer(0, new ShellFactory() {
+      public Shell create(Principal principal, AuthInfo authInfo, ShellSafety shellSafety) {
+        return new BaseShell();
+      }
+    }, Collections.<AuthenticationPlugin<?>>singletonList(AUTH), executor);
+    server.bind();
+    assertTrue(server.getAddress().isLoopbackAddress());
+  }
+
+  public void testAuthentication() throws Exception {
+    final List<String> users = new ArrayList<String>();
+    final List<ShellSafety> safeties = new ArrayList<ShellSafety>();
+    int port = bind(new ShellFactory() {
+      public Shell create(Principal principal, AuthInfo authInfo, ShellSafety shellSafety) {
+        users.add(principal.getName());
+        safeties.add(shellSafety);
+        return new BaseShell() {
+          @Override
+          public String getPrompt() {
+            return "% ";
+          }
+        };
+      }
+    }, 64 * 1024);
+
+    // Wrong password
+    Socket socket = connect(port);
+    ServerAutomaton automaton = new ServerAutomaton(socket.getInputStream(), socket.getOutputStream());
+    assertFalse(automaton.authenticate("admin", "wrong"));
+    waitForConnectionCount(0);
+    assertEquals(Collections.<String>emptyList(), users);
+
+    // Right password
+    automaton = login(port);
+    assertEquals("% ", automaton.getPrompt());
+    assertEquals(Collections.singletonList("admin"), users);
+    assertTrue(safeties.get(0).isSafeShell());
+    assertFalse(safeties.get(0).isDefault());
+  }
+
+  public void testNotAuthenticated() throws Exception {
+    int port = bind(BaseProcessFactory.NOOP, 64 * 1024);
+    Socket socket = connect(port);
+    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+    out.writeObject(new ClientMessage.GetPrompt());
+    out.flush();
+    ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+    try {
+      in.readObject();
+      fail();
+    }
+    catch (EOFException expected) {
+    }
+    waitForConnectionCount(0);
+  }
+
+  public void testAuthenticationTimeout() throws Exception {
+    int port = bind(BaseProcessFactory.NOOP, 64 * 1024);
+    server.setHandshakeTimeout(500);
+
+    // Block each executor thread on an incomplete first message
+    for (int i = 0;i < 4;i++) {
+      Socket socket = connect(port);
+      socket.getOutputStream().write(0xAC);
+      socket.getOutputStream().flush();
+    }
+    waitForConnectionCount(4);
+    waitForConnectionCount(0);
+
+    // The authenticated connections are not closed
+    ServerAutomaton automaton = login(port);
+    Thread.sleep(1000);
+    assertEquals("% ", automaton.getPrompt());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testRejectClass() throws Exception {
+    int port = bind(BaseProcessFactory.NOOP, 64 * 1024);
+    Socket socket = connect(port);
+    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+    try {
+      out.writeObject(new ArrayList<String>());
+      out.flush();
+      new ObjectInputStream(socket.getInputStream()).readObject();
+      fail();
+    }
+    catch (IOException expected) {
+      // The server closes the connection as soon as it reads the class
+    }
+    waitForConnectionCount(0);
+  }
+
+  public void testBackPressure() throws Exception {
+    final int chunks = 20000;
+    final AtomicInteger written = new AtomicInteger();
+    final StringBuilder chunk = new StringBuilder();
+    while (chunk.length() < 1024) {
+      chunk.append("0123456789abcdef");
+    }
+    int port = bind(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            for (int i = 0;i < chunks;i++) {
+              processContext.append(chunk);
+              processContext.flush();
+              written.incrementAndGet();
+            }
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }, 4096);
+
+    //
+    Socket socket = connect(port);
+    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+    out.writeObject(new ClientMessage.Authenticate("admin", "secret"));
+    out.flush();
+    ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+    assertTrue(((ServerMessage.Authentication)in.readObject()).successful);
+    out.writeObject(new ClientMessage.Execute(80, 40, "produce"));
+    out.flush();
+
+    // The producer is blocked since we do not read
+    Thread.sleep(500);
+    int blocked = written.get();
+    assertTrue("Was expecting the producer to be blocked instead of writing " + blocked + " chunks", blocked < chunks);
+
+    // Consume everything
+    int length = 0;
+    while (true) {
+      Object msg = in.readObject();
+      if (msg instanceof ServerMessage.Chunk.Text) {
+        length += ((ServerMessage.Chunk.Text)msg).payload.length();
+      } else if (msg instanceof ServerMessage.End) {
+        assertInstance(ShellResponse.Ok.class, ((ServerMessage.End)msg).response);
+        break;
+      }
+    }
+    assertEquals(chunks * chunk.length(), length);
+    assertEquals(chunks, written.get());
+  }
+
+  public void testIdleConnectionsDoNotHoldThreads() throws Exception {
+    int port = bind(BaseProcessFactory.NOOP, 64 * 1024);
+    List<ServerAutomaton> automatons = new ArrayList<ServerAutomaton>();
+    for (int i = 0;i < 20;i++) {
+      ServerAutomaton automaton = login(port);
+      assertEquals("% ", automaton.getPrompt());
+      automatons.add(automaton);
+    }
+
+    // The 4 threads of the executor are available
+    final CountDownLatch latch = new CountDownLatch(4);
+    for (int i = 0;i < 4;i++) {
+      executor.execute(new Runnable() {
+        public void run() {
+          latch.countDown();
+          try {
+            latch.await();
+          }
+          catch (InterruptedException ignore) {
+          }
+        }
+      });
+    }
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+}
@@ -32,6 +32,8 @@ import org.crsh.shell.Shell;
 import org.crsh.shell.ShellProcess;
 import org.crsh.shell.ShellProcessContext;
 import org.crsh.shell.ShellResponse;
+import org.crsh.text.Color;
+import org.crsh.text.Style;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -181,6 +183,156 @@ public class RemoteShellTestCase extends AbstractTestCase {
     assertJoin(t);
   }
 
+  public void testExecuteBinary() throws Exception {
+    testExecute(Codec.BINARY);
+  }
+
+  public void testExecuteSerialization() throws Exception {
+    testExecute(Codec.SERIALIZATION);
+  }
+
+  private void testExecute(Codec codec) throws Exception {
+    ClientProcessor t = new ClientProcessor(clientOIS, clientOOS, new BaseShell(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            processContext.append("h\u00e9llo");
+            processContext.append(Color.red.fg().bold());
+            processContext.append(new StringBuilder(" w\u00f6rld"));
+            processContext.append(Style.reset);
+            processContext.flush();
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }));
+    t.start();
+
+    //
+    ServerAutomaton server = new ServerAutomaton(serverOOS, serverOIS).setCodecs(codec);
+    ShellProcess process = server.createProcess("hello");
+    BaseProcessContext context = BaseProcessContext.create(process);
+    context.execute();
+    assertInstance(ShellResponse.Ok.class, context.getResponse());
+    assertEquals("h\u00e9llo w\u00f6rld", context.getOutput());
+    assertEquals(codec, server.getCodec());
+
+    //
+    t.interrupt();
+    assertJoin(t);
+  }
+
+  public void testCoalesce() throws Exception {
+    ClientProcessor t = new ClientProcessor(clientOIS, clientOOS, new BaseShell(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            for (int i = 0;i < 100;i++) {
+              processContext.append('a');
+            }
+            processContext.append(Color.red.fg());
+            processContext.append("b");
+            processContext.append("cd", 1, 2);
+            processContext.flush();
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }));
+    t.start();
+
+    //
+    serverOOS.writeObject(new ClientMessage.Execute(32, 50, ""));
+    serverOOS.flush();
+    assertEquals(100, ((ServerMessage.Chunk.Text)serverOIS.readObject()).payload.length());
+    assertEquals(Color.red, ((Style.Composite)((ServerMessage.Chunk.Style)serverOIS.readObject()).payload).getForeground());
+    assertEquals("bd", ((ServerMessage.Chunk.Text)serverOIS.readObject()).payload.toString());
+    assertInstance(ServerMessage.Flush.class, serverOIS.readObject());
+    assertInstance(ShellResponse.Ok.class, ((ServerMessage.End)serverOIS.readObject()).response);
+
+    //
+    t.interrupt();
+    assertJoin(t);
+  }
+
+  public void testFlushThreshold() throws Exception {
+    final StringBuilder line = new StringBuilder();
+    while (line.length() < ClientProcessContext.FLUSH_THRESHOLD) {
+      line.append("0123456789");
+    }
+    final CountDownLatch latch = new CountDownLatch(1);
+    ClientProcessor t = new ClientProcessor(clientOIS, clientOOS, new BaseShell(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            processContext.append(line);
+            try {
+              latch.await();
+            }
+            catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }));
+    t.start();
+
+    //
+    serverOOS.writeObject(new ClientMessage.Execute(32, 50, ""));
+    serverOOS.flush();
+    assertEquals(line.toString(), ((ServerMessage.Chunk.Text)serverOIS.readObject()).payload.toString());
+    assertInstance(ServerMessage.Flush.class, serverOIS.readObject());
+    latch.countDown();
+    assertInstance(ShellResponse.Ok.class, ((ServerMessage.End)serverOIS.readObject()).response);
+
+    //
+    t.interrupt();
+    assertJoin(t);
+  }
+
+  public void testTimedFlush() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    ClientProcessor t = new ClientProcessor(clientOIS, clientOOS, new BaseShell(new BaseProcessFactory() {
+      @Override
+      public BaseProcess create(String request) {
+        return new BaseProcess(request) {
+          @Override
+          public void process(String request, ShellProcessContext processContext) throws IOException {
+            processContext.append("foo");
+            try {
+              latch.await();
+            }
+            catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            processContext.end(ShellResponse.ok());
+          }
+        };
+      }
+    }));
+    t.start();
+
+    //
+    serverOOS.writeObject(new ClientMessage.Execute(32, 50, ""));
+    serverOOS.flush();
+    assertEquals("foo", ((ServerMessage.Chunk.Text)serverOIS.readObject()).payload.toString());
+    assertInstance(ServerMessage.Flush.class, serverOIS.readObject());
+    latch.countDown();
+    assertInstance(ShellResponse.Ok.class, ((ServerMessage.End)serverOIS.readObject()).response);
+
+    //
+    t.interrupt();
+    assertJoin(t);
+  }
+
   public void testClose() throws Exception {
     ClientProcessor t = new ClientProcessor(clientOIS, clientOOS, new BaseShell(new BaseProcessFactory() {
       @Override
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.crsh.AbstractTestCase;
+
+import java.io.IOException;
+
+public class FrameScreenTestCase extends AbstractTestCase {
+
+  static class TestContext implements ScreenContext {
+
+    final StringBuilder sb = new StringBuilder();
+
+    int width, height;
+
+    TestContext(int width, int height) {
+      this.width = width;
+      this.height = height;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    public Screenable append(CharSequence s) {
+      sb.append(s);
+      return this;
+    }
+
+    public Screenable append(char c) {
+      sb.append(c);
+      return this;
+    }
+
+    public Screenable append(CharSequence csq, int start, int end) {
+      sb.append(csq, start, end);
+      return this;
+    }
+
+    public Screenable append(Style style) throws IOException {
+      style.writeAnsiTo(sb);
+      return this;
+    }
+
+    public Screenable cls() {
+      sb.append("[cls]");
+      return this;
+    }
+
+    public void flush() {
+    }
+
+    String take() {
+      String s = sb.toString();
+      sb.setLength(0);
+      return s;
+    }
+  }
+
+  private static String move(int row, int col) {
+    return "\033[" + row + ";" + col + "H";
+  }
+
+  private static final String RESET = "\033[0m";
+
+  public void testFirstFrame() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("ab\ncd");
+    screen.flush();
+    assertEquals("[cls]" + move(1, 1) + RESET + "ab" + move(2, 1) + "cd", out.take());
+  }
+
+  public void testSameFrame() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("ab\ncd");
+    screen.flush();
+    out.take();
+    screen.cls();
+    screen.append("ab\ncd");
+    screen.flush();
+    assertEquals("", out.take());
+  }
+
+  public void testChangedCells() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("abc\ndef");
+    screen.flush();
+    out.take();
+    screen.cls();
+    screen.append("aXY\ndeZ");
+    screen.flush();
+    assertEquals(move(1, 2) + RESET + "XY" + move(2, 3) + "Z", out.take());
+  }
+
+  public void testShorterFrame() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("abc\ndef");
+    screen.flush();
+    out.take();
+    screen.cls();
+    screen.append("a");
+    screen.flush();
+    assertEquals(move(1, 2) + RESET + "  " + move(2, 1) + "   ", out.take());
+  }
+
+  public void testIncrementalFrame() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.append("ab");
+    screen.flush();
+    out.take();
+    screen.append("c");
+    screen.flush();
+    assertEquals(move(1, 3) + RESET + "c", out.take());
+  }
+
+  public void testTruncate() throws Exception {
+    TestContext out = new TestContext(2, 2);
+    FrameScreen screen = new FrameScreen(out);
+    screen.append("abcdef");
+    screen.flush();
+    assertEquals("[cls]" + move(1, 1) + RESET + "ab" + move(2, 1) + "cd", out.take());
+  }
+
+  public void testStyle() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("a").append(Style.style(Color.red));
+    screen.append("b").append(Style.reset);
+    screen.flush();
+    assertEquals("[cls]" + move(1, 1) + RESET + "a" + RESET + "\033[31mb" + RESET, out.take());
+    screen.cls();
+    screen.append("a").append(Style.style(Color.blue));
+    screen.append("b").append(Style.reset);
+    screen.flush();
+    assertEquals(move(1, 2) + RESET + "\033[34mb" + RESET, out.take());
+    screen.cls();
+    screen.append("ab");
+    screen.flush();
+    assertEquals(move(1, 2) + RESET + "b", out.take());
+  }
+
+  public void testResize() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("abc");
+    screen.flush();
+    out.take();
+    out.width = 2;
+    screen.flush();
+    assertEquals("[cls]" + move(1, 1) + RESET + "ab" + move(2, 1) + "c", out.take());
+  }
+
+  public void testInvalidate() throws Exception {
+    TestContext out = new TestContext(4, 3);
+    FrameScreen screen = new FrameScreen(out);
+    screen.cls();
+    screen.append("ab");
+    screen.flush();
+    out.take();
+    screen.invalidate();
+    screen.flush();
+    assertEquals("[cls]" + move(1, 1) + RESET + "ab", out.take());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.text.renderers.MapRenderer;
+import org.crsh.text.renderers.ThreadRenderer;
+import org.crsh.text.ui.LabelElement;
+import test.plugin.TestPluginLifeCycle;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class RendererResolutionTestCase extends AbstractTestCase {
+
+  public static class Custom {
+  }
+
+  public static class CustomRenderer extends Renderer<Custom> {
+    @Override
+    public Class<Custom> getType() {
+      return Custom.class;
+    }
+    @Override
+    public LineRenderer renderer(Iterator<Custom> stream) {
+      return new LabelElement("custom").renderer();
+    }
+  }
+
+  public void testResolve() {
+    assertInstance(MapRenderer.class, Renderer.getRenderable(HashMap.class));
+    assertSame(Renderer.getRenderable(HashMap.class), Renderer.getRenderable(LinkedHashMap.class));
+    assertInstance(ThreadRenderer.class, Renderer.getRenderable(Thread.class));
+    assertNull(Renderer.getRenderable(String.class));
+    assertNull(Renderer.getRenderable(String.class));
+  }
+
+  private ClassLoader createLoader() throws IOException {
+    File services = File.createTempFile("renderers", ".txt");
+    services.deleteOnExit();
+    FileWriter writer = new FileWriter(services);
+    writer.write(CustomRenderer.class.getName() + "\n");
+    writer.close();
+    final URL url = services.toURI().toURL();
+    return new ClassLoader(getClass().getClassLoader()) {
+      @Override
+      public Enumeration<URL> getResources(String name) throws IOException {
+        if (name.equals("META-INF/services/" + Renderer.class.getName())) {
+          return Collections.enumeration(Collections.singletonList(url));
+        } else {
+          return super.getResources(name);
+        }
+      }
+    };
+  }
+
+  public void testRegister() throws Exception {
+
+    // Cache the negative result
+    assertNull(Renderer.getRenderable(Custom.class));
+
+    //
+    ClassLoader loader = createLoader();
+    Renderer.register(loader);
+    Renderer<?> renderer = Renderer.getRenderable(Custom.class);
+    assertInstance(CustomRenderer.class, renderer);
+    assertInstance(MapRenderer.class, Renderer.getRenderable(HashMap.class));
+
+    // Registering again replaces the renderers of the loader
+    Renderer.register(loader);
+    assertInstance(CustomRenderer.class, Renderer.getRenderable(Custom.class));
+    assertNotSame(renderer, Renderer.getRenderable(Custom.class));
+
+    // Another loader declaring the same renderer does not add it again
+    ClassLoader other = createLoader();
+    Renderer.register(other);
+    renderer = Renderer.getRenderable(Custom.class);
+    Renderer.unregister(other);
+    assertSame(renderer, Renderer.getRenderable(Custom.class));
+
+    // The renderers are removed when every registration is unregistered
+    Renderer.unregister(loader);
+    assertSame(renderer, Renderer.getRenderable(Custom.class));
+    Renderer.unregister(loader);
+    assertNull(Renderer.getRenderable(Custom.class));
+    assertInstance(MapRenderer.class, Renderer.getRenderable(HashMap.class));
+  }
+
+  public void testPluginContext() throws Exception {
+    TestPluginLifeCycle lifeCycle = new TestPluginLifeCycle(createLoader());
+    assertNull(Renderer.getRenderable(Custom.class));
+    lifeCycle.start();
+    assertInstance(CustomRenderer.class, Renderer.getRenderable(Custom.class));
+    lifeCycle.stop();
+    assertNull(Renderer.getRenderable(Custom.class));
+  }
+}
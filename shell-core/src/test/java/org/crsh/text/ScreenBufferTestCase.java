@@ -22,7 +22,11 @@ package org.crsh.text;
 import org.crsh.AbstractTestCase;
 import org.crsh.util.Utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 
 public class ScreenBufferTestCase extends AbstractTestCase {
@@ -45,7 +49,7 @@ public class ScreenBufferTestCase extends AbstractTestCase {
   }
 
   public void testMergeColor() {
-    assertReader(new ScreenBuffer().append(RED, "a", RED, "b"), RED, "a", "b");
+    assertReader(new ScreenBuffer().append(RED, "a", RED, "b"), RED, "ab");
   }
 
   public void testOverwriteColor() {
@@ -53,7 +57,7 @@ public class ScreenBufferTestCase extends AbstractTestCase {
   }
 
   public void testOverwriteMergeColor() {
-    assertReader(new ScreenBuffer().append(RED, "a", BLUE, RED, "b"), RED, "a", "b");
+    assertReader(new ScreenBuffer().append(RED, "a", BLUE, RED, "b"), RED, "ab");
   }
 
   public void testLastColor() {
@@ -70,7 +74,77 @@ public class ScreenBufferTestCase extends AbstractTestCase {
   }
 
   public void testBlend() throws IOException {
-    assertReader(new ScreenBuffer().append(Color.red.fg(),"foo", Color.red.fg(), "bar"), Color.red.fg(), "foo", "bar");
+    assertReader(new ScreenBuffer().append(Color.red.fg(),"foo", Color.red.fg(), "bar"), Color.red.fg(), "foobar");
+  }
+
+  public void testRuns() throws IOException {
+    ScreenBuffer buffer = new ScreenBuffer();
+    buffer.append("a").append('b').append(new StringBuilder("cd"), 1, 2).append(RED).append("e").cls().append("f");
+    assertReader(buffer, "abd", RED, "e", CLS.INSTANCE, "f");
+    assertEquals("abdef", buffer.toString());
+  }
+
+  public void testGrow() throws IOException {
+    ScreenBuffer buffer = new ScreenBuffer();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0;i < 1000;i++) {
+      buffer.append(i % 2 == 0 ? RED : BLUE).append(Integer.toString(i));
+      expected.append(i);
+    }
+    assertEquals(expected.toString(), buffer.toString());
+    assertEquals(2000, Utils.list(buffer).size());
+  }
+
+  public void testFormat() throws IOException {
+    ScreenBuffer buffer = new ScreenBuffer().append("<a>", RED, "b");
+    StringBuilder sb = new StringBuilder();
+    buffer.format(Format.ANSI, sb);
+    assertEquals("<a>\033[41mb", sb.toString());
+    sb.setLength(0);
+    buffer.format(Format.PRE_HTML, sb);
+    assertEquals("<pre>&lt;a&gt;b</pre>", sb.toString());
+  }
+
+  public void testEquals() throws IOException {
+    ScreenBuffer buffer = new ScreenBuffer().append("foo", RED, "bar");
+    assertEquals("foobar".hashCode(), buffer.hashCode());
+    assertEquals(buffer, new ScreenBuffer().append("foobar"));
+    assertFalse(buffer.equals(new ScreenBuffer().append("foo")));
+    buffer.append("juu");
+    assertEquals("foobarjuu".hashCode(), buffer.hashCode());
+    assertTrue(buffer.contains("barj"));
+    assertFalse(buffer.contains("barz"));
+    buffer.clear();
+    assertTrue(buffer.isEmpty());
+    assertEquals("".hashCode(), buffer.hashCode());
+  }
+
+  public void testConcatenateBuffers() throws IOException {
+    ScreenBuffer buffer = new ScreenBuffer().append("a", RED, "b");
+    assertReader(new ScreenBuffer().append("c").append(buffer), "ca", RED, "b");
+  }
+
+  public void testFlush() throws IOException {
+    FrameScreenTestCase.TestContext out = new FrameScreenTestCase.TestContext(10, 10);
+    ScreenBuffer buffer = new ScreenBuffer(out).append("a", RED, "b").cls();
+    buffer.flush();
+    assertTrue(buffer.isEmpty());
+    assertEquals("a\033[41mb[cls]", out.take());
+    buffer.append("c").flush();
+    assertEquals("c", out.take());
+  }
+
+  public void testSerialization() throws Exception {
+    ScreenBuffer buffer = new ScreenBuffer().append("a", RED, "b").cls().append(BLUE);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeObject(buffer);
+    out.close();
+    ScreenBuffer copy = (ScreenBuffer)new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+    assertReader(copy, "a", RED, "b", CLS.INSTANCE);
+    assertEquals(buffer, copy);
+    copy.append("c");
+    assertReader(copy, "a", RED, "b", CLS.INSTANCE, BLUE, "c");
   }
 
   private void assertReader(ScreenBuffer reader, Object... expected) {
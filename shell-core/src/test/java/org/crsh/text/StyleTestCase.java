@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text;
+
+import org.crsh.AbstractTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class StyleTestCase extends AbstractTestCase {
+
+  public void testInterned() {
+    assertSame(Style.style(), Style.style());
+    assertSame(Style.style(Color.red), Style.style(null, null, null, Color.red, null));
+    assertSame(Style.style(Decoration.bold, Color.red, Color.blue), Style.style().bold().fg(Color.red).bg(Color.blue));
+  }
+
+  public void testMerge() {
+    Style.Composite red = Style.style(Color.red);
+    Style.Composite bold = Style.style(Decoration.bold);
+    assertSame(Style.style(Decoration.bold, Color.red), red.merge(bold));
+    assertSame(Style.style(Decoration.bold, Color.blue), red.merge(bold).merge(Style.style(Color.blue)));
+    assertSame(Style.style(true, false, null, Color.red, null), red.merge(bold).merge(Style.style(Decoration.underline_off)));
+    assertSame(red, red.merge(Style.style()));
+    assertSame(Style.reset, red.merge(Style.reset));
+    assertSame(red, Style.reset.merge(red));
+  }
+
+  public void testAnsiSequence() throws Exception {
+    assertEquals("", Style.style().toAnsiSequence().toString());
+    assertEquals("\033[0m", Style.reset.toAnsiSequence().toString());
+    assertEquals("\033[1;31m", Style.style(Decoration.bold, Color.red).toAnsiSequence().toString());
+    assertEquals("\033[22;32;44m", Style.style(false, null, null, Color.green, Color.blue).toAnsiSequence().toString());
+    assertSame(Style.style(Color.red).toAnsiSequence(), Style.style(Color.red).toAnsiSequence());
+    StringBuilder sb = new StringBuilder();
+    Style.style(Color.red).writeAnsiTo(sb);
+    assertEquals("\033[31m", sb.toString());
+  }
+
+  public void testSerialization() throws Exception {
+    Style.Composite style = Style.style(Decoration.underline, Color.red, Color.white);
+    assertSame(style, roundTrip(style));
+    assertSame(Style.style(), roundTrip(Style.style()));
+    assertSame(Style.reset, roundTrip(Style.reset));
+  }
+
+  private static Object roundTrip(Object o) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeObject(o);
+    out.close();
+    return new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+  }
+}
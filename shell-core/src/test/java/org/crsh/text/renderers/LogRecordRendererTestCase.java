@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text.renderers;
+
+import org.crsh.text.LineRenderer;
+import org.crsh.text.ui.AbstractRendererTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+public class LogRecordRendererTestCase extends AbstractRendererTestCase {
+
+  public void testRenderSeveralRecords() throws Exception {
+    LogRecord first = new LogRecord(Level.INFO, "first");
+    LogRecord second = new LogRecord(Level.WARNING, "second");
+    LineRenderer renderer = new LogRecordRenderer().renderer(Arrays.asList(first, second).iterator());
+    List<String> lines = render(renderer.reader(80), 80);
+    StringBuilder sb = new StringBuilder();
+    for (String line : lines) {
+      sb.append(line).append('\n');
+    }
+    assertTrue(sb.toString(), sb.indexOf("INFO: first") != -1);
+    assertTrue(sb.toString(), sb.indexOf("WARNING: second") != -1);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.text.renderers;
+
+import org.crsh.AbstractTestCase;
+import org.crsh.text.Format;
+import org.crsh.text.RenderAppendable;
+import org.crsh.text.Renderer;
+import org.crsh.text.ScreenBuffer;
+import org.crsh.text.ScreenContext;
+import org.crsh.text.ScreenContextConsumer;
+import org.crsh.text.Screenable;
+import org.crsh.text.Style;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MapRendererTestCase extends AbstractTestCase {
+
+  /** . */
+  private final ScreenBuffer buffer = new ScreenBuffer();
+
+  /** . */
+  private final ScreenContext context = new ScreenContext() {
+    public int getWidth() {
+      return 40;
+    }
+    public int getHeight() {
+      return 40;
+    }
+    public Screenable append(CharSequence s) throws IOException {
+      buffer.append(s);
+      return this;
+    }
+    public Appendable append(char c) throws IOException {
+      buffer.append(c);
+      return this;
+    }
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      buffer.append(csq, start, end);
+      return this;
+    }
+    public Screenable append(Style style) throws IOException {
+      buffer.append(style);
+      return this;
+    }
+    public Screenable cls() throws IOException {
+      buffer.cls();
+      return this;
+    }
+    public void flush() throws IOException {
+    }
+  };
+
+  private static Map<String, String> row(String... pairs) {
+    LinkedHashMap<String, String> row = new LinkedHashMap<String, String>();
+    for (int i = 0;i < pairs.length;i += 2) {
+      row.put(pairs[i], pairs[i + 1]);
+    }
+    return row;
+  }
+
+  private List<String> lines() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    buffer.format(Format.TEXT, sb);
+    buffer.clear();
+    List<String> lines = new ArrayList<String>();
+    for (String line : sb.toString().split("\n")) {
+      int end = line.length();
+      while (end > 0 && line.charAt(end - 1) == ' ') {
+        end--;
+      }
+      lines.add(line.substring(0, end));
+    }
+    return lines;
+  }
+
+  public void testStreaming() throws Exception {
+    ScreenContextConsumer consumer = new ScreenContextConsumer(context, 2);
+    consumer.provide(row("a", "1", "bb", "x"));
+    consumer.provide(row("a", "2", "bb", "y"));
+    consumer.provide(row("a", "3", "bb", "z"));
+
+    // Rendered before the flush
+    assertEquals(Arrays.asList("a bb", "-----", "1 x", "2 y"), lines());
+
+    //
+    consumer.flush();
+    assertEquals(Collections.singletonList("3 z"), lines());
+  }
+
+  public void testNoStreamingWithinWindow() throws Exception {
+    ScreenContextConsumer consumer = new ScreenContextConsumer(context, 2);
+    consumer.provide(row("a", "1", "bb", "x"));
+    consumer.provide(row("a", "2", "bb", "y"));
+    assertEquals(Collections.singletonList(""), lines());
+    consumer.flush();
+    assertEquals(Arrays.asList("a bb", "-----", "1 x", "2 y"), lines());
+  }
+
+  public void testReemitHeader() throws Exception {
+    ScreenContextConsumer consumer = new ScreenContextConsumer(context, 2);
+    consumer.provide(row("a", "1", "b", "x"));
+    consumer.provide(row("a", "2", "b", "y"));
+    consumer.provide(row("a", "333", "b", "z"));
+    consumer.flush();
+    assertEquals(Arrays.asList("a b", "----", "1 x", "2 y", "a   b", "------", "333 z"), lines());
+  }
+
+  public void testHeaderChange() throws Exception {
+    ScreenContextConsumer consumer = new ScreenContextConsumer(context, 2);
+    consumer.provide(row("a", "1"));
+    consumer.provide(row("a", "2"));
+    consumer.provide(row("b", "3"));
+    consumer.flush();
+    assertEquals(Arrays.asList("a", "--", "1", "2", "b", "--", "3"), lines());
+  }
+
+  public void testKeyOrder() throws Exception {
+    Renderer<Map<?, ?>> streaming = new MapRenderer().streaming(40);
+    RenderAppendable out = new RenderAppendable(context);
+    streaming.renderer(Collections.<Map<?, ?>>singletonList(row("a", "1", "b", "x")).iterator()).render(out);
+    streaming.renderer(Collections.<Map<?, ?>>singletonList(row("b", "y", "a", "2")).iterator()).render(out);
+    assertEquals(Arrays.asList("a b", "----", "1 x", "2 y"), lines());
+  }
+
+  public void testKeepWidths() throws Exception {
+    Renderer<Map<?, ?>> streaming = new MapRenderer(false).streaming(40);
+    RenderAppendable out = new RenderAppendable(context);
+    streaming.renderer(Collections.<Map<?, ?>>singletonList(row("a", "1")).iterator()).render(out);
+    assertEquals(Arrays.asList("a", "--", "1"), lines());
+
+    // The cell is wrapped instead of growing the column
+    streaming.renderer(Collections.<Map<?, ?>>singletonList(row("a", "23")).iterator()).render(out);
+    assertEquals(Arrays.asList("2", "3"), lines());
+  }
+
+  public void testFitWidth() throws Exception {
+    Renderer<Map<?, ?>> streaming = new MapRenderer().streaming(12);
+    RenderAppendable out = new RenderAppendable(context);
+    streaming.renderer(Collections.<Map<?, ?>>singletonList(row("a", "0123456789", "b", "abcdefghij")).iterator()).render(out);
+    assertEquals(Arrays.asList("a     b", "------------", "01234 abcde", "56789 fghij"), lines());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.crsh.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+public class RingBufferTestCase extends TestCase {
+
+  public void testCapacity() {
+    assertEquals(1, new RingBuffer<String>(1).getCapacity());
+    assertEquals(4, new RingBuffer<String>(3).getCapacity());
+    assertEquals(4, new RingBuffer<String>(4).getCapacity());
+    try {
+      new RingBuffer<String>(0);
+      fail();
+    }
+    catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testDrain() {
+    RingBuffer<String> buffer = new RingBuffer<String>(4);
+    ArrayList<String> list = new ArrayList<String>();
+    assertEquals(0, buffer.drain(list, 10));
+    buffer.offer("a");
+    buffer.offer("b");
+    buffer.offer("c");
+    assertEquals(2, buffer.drain(list, 2));
+    assertEquals(Arrays.asList("a", "b"), list);
+    assertEquals(1, buffer.drain(list, 10));
+    assertEquals(Arrays.asList("a", "b", "c"), list);
+    assertEquals(0, buffer.getDropped());
+  }
+
+  public void testDropOldest() {
+    RingBuffer<String> buffer = new RingBuffer<String>(4);
+    for (int i = 0;i < 10;i++) {
+      buffer.offer("" + i);
+    }
+    ArrayList<String> list = new ArrayList<String>();
+    assertEquals(4, buffer.drain(list, 10));
+    assertEquals(Arrays.asList("6", "7", "8", "9"), list);
+    assertEquals(6, buffer.getDropped());
+  }
+
+  public void testConcurrentProducers() throws Exception {
+    final RingBuffer<Integer> buffer = new RingBuffer<Integer>(1024);
+    final int producers = 4;
+    final int size = 100000;
+    final CountDownLatch done = new CountDownLatch(producers);
+    for (int i = 0;i < producers;i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0;j < size;j++) {
+            buffer.offer(j);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    long drained = 0;
+    ArrayList<Integer> list = new ArrayList<Integer>();
+    while (done.getCount() > 0) {
+      drained += buffer.drain(list, 256);
+      list.clear();
+    }
+    drained += buffer.drain(list, Integer.MAX_VALUE);
+    assertEquals(producers * size, drained + buffer.getDropped());
+  }
+}
@@ -161,7 +161,7 @@ public class TestInvocationContext<C> extends RuntimeContextImpl implements Comm
     return execute(new GroovyScriptShellCommand<B>(commandClass), args);
   }
 
-  private String execute(Command<?> command, String... args) throws IOException, UndeclaredThrowableException, CommandException {
+  public String execute(Command<?> command, String... args) throws IOException, UndeclaredThrowableException, CommandException {
     if (reader != null) {
       reader.clear();
     }